@@ -114,6 +114,28 @@ EOF
     echo ""
 }
 
+function send_batch() {
+    check_deps curl
+    local batch_file="$1"
+
+    if [[ -z "${batch_file}" || ! -f "${batch_file}" ]]; then
+        log_error "Usage: $0 send-batch <NDJSON_FILE>"
+    fi
+
+    log_info "Streaming command batch from: ${batch_file}"
+
+    local port="${SERVER_HTTP_PORT:-$(get_config_value server.http.port | tr -d '[:space:]')}"
+    if [[ -z "${port}" ]]; then
+        port=8080
+    fi
+
+    curl -s -X POST "http://localhost:${port}/commands" \
+        -H "Content-Type: application/x-ndjson" \
+        -H "Transfer-Encoding: chunked" \
+        --data-binary "@${batch_file}" | jq .
+    echo ""
+}
+
 function usage() {
     echo "MDM Command Dispatcher Management Tool"
     echo "Copyright © 2025 Devin B. Royal. All Rights Reserved."
@@ -126,6 +148,8 @@ function usage() {
     echo "  status          Queries the running service for command history."
     echo "  send-command    Sends an MDM command to a device."
     echo "                  Usage: $0 send-command <DEVICE_TOKEN> '<JSON_PAYLOAD>'"
+    echo "  send-batch      Streams a newline-delimited JSON file of commands."
+    echo "                  Usage: $0 send-batch <NDJSON_FILE>"
     echo "  help            Displays this help message."
     echo ""
     echo "Example:"
@@ -149,6 +173,9 @@ case "${COMMAND}" in
     send-command)
         send_command "$@"
         ;;
+    send-batch)
+        send_batch "$@"
+        ;;
     help|--help|-h)
         usage
         ;;
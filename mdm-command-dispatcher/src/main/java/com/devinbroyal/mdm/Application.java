@@ -6,27 +6,53 @@
 package com.devinbroyal.mdm;
 
 import com.devinbroyal.mdm.config.AppConfig;
+import com.devinbroyal.mdm.config.JsonConfig;
 import com.devinbroyal.mdm.config.MdmProperties;
+import com.devinbroyal.mdm.controller.AdmissionController;
+import com.devinbroyal.mdm.controller.BatchCommandHandler;
+import com.devinbroyal.mdm.controller.BroadcastHandler;
+import com.devinbroyal.mdm.controller.CheckInHandler;
 import com.devinbroyal.mdm.controller.CommandHandler;
+import com.devinbroyal.mdm.controller.InvalidTokenHandler;
+import com.devinbroyal.mdm.controller.MetricsHandler;
+import com.devinbroyal.mdm.controller.StatsHandler;
 import com.devinbroyal.mdm.controller.StatusHandler;
+import com.devinbroyal.mdm.persistence.AsyncExecutionHistoryRepository;
+import com.devinbroyal.mdm.persistence.BatchSummaryRepository;
+import com.devinbroyal.mdm.persistence.ColumnarExecutionHistoryRepository;
+import com.devinbroyal.mdm.persistence.DurableExecutionHistoryRepository;
 import com.devinbroyal.mdm.persistence.ExecutionHistoryRepository;
+import com.devinbroyal.mdm.persistence.InMemoryBatchSummaryRepository;
 import com.devinbroyal.mdm.persistence.InMemoryExecutionHistoryRepository;
+import com.devinbroyal.mdm.persistence.InMemoryInvalidTokenRepository;
+import com.devinbroyal.mdm.persistence.InvalidTokenRepository;
+import com.devinbroyal.mdm.server.NettyHttpServer;
 import com.devinbroyal.mdm.service.ApnsMdmService;
 import com.devinbroyal.mdm.service.MdmService;
+import com.devinbroyal.mdm.service.OutcomeRollups;
 import com.google.gson.Gson;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 public class Application {
 
     private static final Logger logger = LoggerFactory.getLogger(Application.class);
+    // The share of the history dropped each time a collection leaves the heap above the threshold.
+    private static final double HISTORY_SHED_FRACTION = 0.25;
 
     public static void main(String[] args) {
         logger.info("Initializing MDM Command Dispatcher...");
@@ -37,18 +63,25 @@ public class Application {
             logger.info("Configuration loaded successfully. APNs Environment: {}", properties.isProduction() ? "Production" : "Development");
 
             // 2. Setup dependencies
-            final ExecutorService notificationExecutor = Executors.newFixedThreadPool(properties.getThreadPoolSize());
-            final ExecutionHistoryRepository historyRepository = new InMemoryExecutionHistoryRepository();
-            final Gson gson = new Gson();
+            final AdmissionController admissionController = new AdmissionController(properties.getQueueHighWaterRatio());
+            final boolean virtualThreads = useVirtualThreads(properties);
+            final ExecutorService notificationExecutor = createExecutor(admissionController, virtualThreads, "notifications",
+                    properties.getThreadPoolSize(), properties.getNotificationQueueCapacity());
+            final ExecutionHistoryRepository historyRepository = createHistoryRepository(properties);
+            final BatchSummaryRepository batchSummaryRepository = new InMemoryBatchSummaryRepository();
+            final InvalidTokenRepository invalidTokenRepository = createInvalidTokenRepository(properties);
+            final OutcomeRollups rollups = new OutcomeRollups(properties.getStatsMinuteBuckets(), properties.getStatsHourBuckets());
+            final Gson gson = JsonConfig.createGson();
 
             // 3. Initialize the APNs service layer
-            final MdmService mdmService = new ApnsMdmService(properties, notificationExecutor, historyRepository);
+            final MdmService mdmService = new ApnsMdmService(properties, notificationExecutor, historyRepository, batchSummaryRepository, invalidTokenRepository, rollups);
 
             // 4. Start the HTTP server for API endpoints
-            startHttpServer(properties, mdmService, historyRepository, gson);
+            startHttpServer(properties, mdmService, historyRepository, batchSummaryRepository, invalidTokenRepository, rollups, admissionController,
+                    virtualThreads, gson);
 
             // 5. Add a shutdown hook for graceful termination
-            addShutdownHook(mdmService, notificationExecutor);
+            addShutdownHook(mdmService, notificationExecutor, historyRepository);
 
         } catch (Exception e) {
             logger.error("Fatal error during application startup. The application will now exit.", e);
@@ -56,16 +89,104 @@ public class Application {
         }
     }
 
-    private static void startHttpServer(MdmProperties properties, MdmService mdmService, ExecutionHistoryRepository historyRepository, Gson gson) throws IOException {
-        HttpServer server = HttpServer.create(new InetSocketAddress(properties.getHttpPort()), 0);
-        server.createContext("/status", new StatusHandler(historyRepository, gson));
-        server.createContext("/command", new CommandHandler(mdmService, gson));
-        server.setExecutor(Executors.newCachedThreadPool());
-        server.start();
-        logger.info("HTTP server started successfully on port {}. Endpoints available at /status and /command", properties.getHttpPort());
+    private static boolean useVirtualThreads(MdmProperties properties) {
+        if (!properties.isVirtualThreads()) {
+            return false;
+        }
+        if (!VirtualThreads.isAvailable()) {
+            logger.warn("Virtual threads (server.virtual.threads) need Java 21 and a jar built with -Pvirtual-threads. Using platform thread pools.");
+            return false;
+        }
+        logger.info("Handling HTTP requests and APNs responses on virtual threads.");
+        return true;
+    }
+
+    /**
+     * Creates a pool of {@code threads} platform threads with a queue of {@code queueCapacity} tasks or,
+     * on virtual threads, an executor running up to {@code threads + queueCapacity} tasks at once. Either
+     * way the executor is watched by the admission controller.
+     */
+    private static ExecutorService createExecutor(AdmissionController admissionController, boolean virtualThreads, String name,
+                                                  int threads, int queueCapacity) {
+        if (virtualThreads) {
+            return admissionController.newConcurrencyLimitedExecutor(name, VirtualThreads.newThreadPerTaskExecutor(name), threads + queueCapacity);
+        }
+        return admissionController.newBoundedExecutor(name, threads, queueCapacity);
+    }
+
+    private static ExecutionHistoryRepository createHistoryRepository(MdmProperties properties) throws IOException {
+        final ExecutionHistoryRepository index = createHistoryIndex(properties);
+        final String logDirectory = properties.getHistoryLogDirectory();
+        final ExecutionHistoryRepository repository = logDirectory == null || logDirectory.isBlank() ? index
+                : new DurableExecutionHistoryRepository(index, Paths.get(logDirectory), properties.getHistoryLogSegmentBytes(),
+                        properties.getHistoryLogSyncIntervalMillis(), Duration.ofSeconds(properties.getHistoryRetentionSeconds()),
+                        properties.getHistoryLogSnapshotIntervalSeconds());
+        if (properties.getHistoryWriterQueueCapacity() == 0) {
+            return repository;
+        }
+        return new AsyncExecutionHistoryRepository(repository, properties.getHistoryWriterQueueCapacity(), properties.getHistoryWriterBatchSize(),
+                AsyncExecutionHistoryRepository.OverflowPolicy.valueOf(properties.getHistoryWriterOverflow().toUpperCase(Locale.ROOT)));
+    }
+
+    private static ExecutionHistoryRepository createHistoryIndex(MdmProperties properties) {
+        if ("columnar".equals(properties.getHistoryStore())) {
+            logger.info("Keeping the execution history in columnar form; history.max.results.per.device and history.heap.threshold do not apply.");
+            return new ColumnarExecutionHistoryRepository(Duration.ofSeconds(properties.getHistoryRetentionSeconds()));
+        }
+        final InMemoryExecutionHistoryRepository repository = new InMemoryExecutionHistoryRepository(
+                properties.getHistoryMaxResultsPerDevice(), Duration.ofSeconds(properties.getHistoryRetentionSeconds()));
+        if (properties.getHistoryHeapThreshold() > 0
+                && !HeapPressureMonitor.start(properties.getHistoryHeapThreshold(), () -> shedHistory(repository))) {
+            logger.warn("The garbage collector reports no heap pool with a fixed maximum; history.heap.threshold has no effect.");
+        }
+        return repository;
+    }
+
+    private static void shedHistory(InMemoryExecutionHistoryRepository repository) {
+        final int evicted = repository.evictOldest(HISTORY_SHED_FRACTION);
+        logger.warn("Heap usage after collection is above history.heap.threshold. Dropped the oldest {} results from the execution history; {} remain.",
+                evicted, repository.size());
+    }
+
+    private static InvalidTokenRepository createInvalidTokenRepository(MdmProperties properties) throws IOException {
+        final String snapshotPath = properties.getInvalidTokenSnapshotPath();
+        if (snapshotPath == null || snapshotPath.isBlank()) {
+            return new InMemoryInvalidTokenRepository();
+        }
+        return new InMemoryInvalidTokenRepository(Paths.get(snapshotPath));
     }
 
-    private static void addShutdownHook(MdmService mdmService, ExecutorService notificationExecutor) {
+    private static void startHttpServer(MdmProperties properties, MdmService mdmService, ExecutionHistoryRepository historyRepository,
+                                        BatchSummaryRepository batchSummaryRepository, InvalidTokenRepository invalidTokenRepository, OutcomeRollups rollups,
+                                        AdmissionController admissionController, boolean virtualThreads, Gson gson) throws IOException, InterruptedException {
+        Map<String, HttpHandler> contexts = new LinkedHashMap<>();
+        contexts.put("/status", new StatusHandler(historyRepository, properties.getStatusCacheMaxBytes()));
+        contexts.put("/command", new CommandHandler(mdmService, gson, admissionController, properties.getMaxCommandBytes()));
+        contexts.put("/commands", new BatchCommandHandler(mdmService, gson, admissionController));
+        contexts.put("/broadcast", new BroadcastHandler(mdmService, batchSummaryRepository, gson, admissionController));
+        contexts.put("/metrics", new MetricsHandler(mdmService, gson, admissionController));
+        contexts.put("/stats", new StatsHandler(rollups, gson));
+        contexts.put("/mdm/connect", new CheckInHandler(mdmService, gson));
+        contexts.put("/admin/invalid-tokens", new InvalidTokenHandler(invalidTokenRepository, gson));
+        // Bounded, so that a burst builds up to a known depth and is then shed with 429 instead of
+        // growing without limit.
+        ExecutorService executor = createExecutor(admissionController, virtualThreads, "http", properties.getHttpThreads(), properties.getHttpQueueCapacity());
+
+        if ("netty".equals(properties.getHttpEngine())) {
+            new NettyHttpServer(new InetSocketAddress(properties.getHttpPort()), contexts, executor).start();
+        } else {
+            HttpServer server = HttpServer.create(new InetSocketAddress(properties.getHttpPort()), 0);
+            // A request the full pool refuses is answered with 503 on the dispatcher thread, never handled there.
+            Filter refused = admissionController.refusedRequestFilter();
+            contexts.forEach((path, handler) -> server.createContext(path, handler).getFilters().add(refused));
+            server.setExecutor(admissionController.refusingWithServiceUnavailable(executor));
+            server.start();
+        }
+        logger.info("HTTP server ({}) started successfully on port {}. Endpoints available at /status, /command, /commands, /broadcast, /metrics, /stats, /mdm/connect and /admin/invalid-tokens",
+                properties.getHttpEngine(), properties.getHttpPort());
+    }
+
+    private static void addShutdownHook(MdmService mdmService, ExecutorService notificationExecutor, ExecutionHistoryRepository historyRepository) {
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             logger.info("Shutdown signal received. Shutting down gracefully...");
             try {
@@ -78,6 +199,11 @@ public class Application {
                     logger.warn("Executor did not terminate in 10 seconds. Forcing shutdown.");
                     notificationExecutor.shutdownNow();
                 }
+
+                // Record the last results, then force the history log to disk
+                if (historyRepository instanceof Closeable) {
+                    ((Closeable) historyRepository).close();
+                }
             } catch (InterruptedException e) {
                 logger.error("Interrupted during graceful shutdown.", e);
                 notificationExecutor.shutdownNow();
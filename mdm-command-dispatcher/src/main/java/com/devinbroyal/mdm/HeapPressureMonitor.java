@@ -0,0 +1,74 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+/**
+ * Runs an action whenever the old generation is still fuller than a threshold right after a garbage
+ * collection, using the JVM's memory pool notifications rather than polling. Usage measured after a
+ * collection counts only live objects, so a young generation filling up between collections does
+ * not set it off.
+ */
+final class HeapPressureMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(HeapPressureMonitor.class);
+
+    private HeapPressureMonitor() {
+    }
+
+    /**
+     * @param threshold The fraction of the pool's maximum size, between 0 and 1, above which
+     *                  {@code onPressure} runs. It runs on the JVM's notification thread, once per
+     *                  collection that leaves the pool above it.
+     * @return Whether a pool is watched; not if the collector offers none with a fixed maximum.
+     */
+    static boolean start(double threshold, Runnable onPressure) {
+        // The old generation, under every HotSpot collector that has one. Young pools are emptied or
+        // nearly full after each collection, whatever the live set, so they would mislead.
+        MemoryPoolMXBean watched = null;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            long max = pool.getUsage().getMax();
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported() && max > 0
+                    && (watched == null || max > watched.getUsage().getMax())) {
+                watched = pool;
+            }
+        }
+        if (watched == null) {
+            return false;
+        }
+        watched.setCollectionUsageThreshold((long) (watched.getUsage().getMax() * threshold));
+        String poolName = watched.getName();
+        NotificationListener listener = (notification, handback) -> {
+            if (!MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())
+                    || !poolName.equals(MemoryNotificationInfo.from((CompositeData) notification.getUserData()).getPoolName())) {
+                return;
+            }
+            try {
+                onPressure.run();
+            } catch (RuntimeException e) {
+                logger.error("Heap pressure handler failed", e);
+            }
+        };
+        ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(listener, null, null);
+        logger.info("Watching heap pool '{}' for usage above {}% after collection", poolName, Math.round(threshold * 100));
+        return true;
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,42 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Access to virtual threads from code compiled for Java 17.
+ * <p>
+ * This version reports them as unavailable. A jar built with {@code -Pvirtual-threads} is a
+ * multi-release jar that also carries a Java 21 version of this class under
+ * {@code META-INF/versions/21}, which a Java 21 or later runtime loads instead.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return Whether {@link #newThreadPerTaskExecutor(String)} can be used on this runtime.
+     */
+    public static boolean isAvailable() {
+        return false;
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread, named {@code <name>-<n>}, for every task.
+     *
+     * @throws UnsupportedOperationException if virtual threads are not available.
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String name) {
+        throw new UnsupportedOperationException("Virtual threads need Java 21 and a jar built with -Pvirtual-threads");
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
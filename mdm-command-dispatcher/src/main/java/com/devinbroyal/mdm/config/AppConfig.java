@@ -13,13 +13,19 @@ import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
 
 public final class AppConfig {
 
     private static final String CONFIG_FILE = "config.properties";
+    private static final String TENANT_PREFIX = "tenants.";
 
     private AppConfig() {
         // Prevent instantiation
@@ -43,14 +49,102 @@ public final class AppConfig {
         mdmProps.setKeyId(getProperty("APNS_KEY_ID", "apns.key.id", properties));
         mdmProps.setAuthKeyPath(getProperty("APNS_AUTH_KEY_PATH", "apns.auth.key.path", properties));
         mdmProps.setTopic(getProperty("APNS_TOPIC", "apns.topic", properties));
+        mdmProps.setAllowedTopics(parseList(getProperty("APNS_ALLOWED_TOPICS", "apns.topics", properties, "")));
         mdmProps.setProduction(Boolean.parseBoolean(getProperty("APNS_PRODUCTION", "apns.production", properties, "false")));
         mdmProps.setHttpPort(Integer.parseInt(getProperty("SERVER_HTTP_PORT", "server.http.port", properties, "8080")));
+        mdmProps.setHttpEngine(getProperty("SERVER_HTTP_ENGINE", "server.http.engine", properties, "jdk").trim().toLowerCase(Locale.ROOT));
         mdmProps.setThreadPoolSize(Integer.parseInt(getProperty("SERVER_THREAD_POOL_SIZE", "server.thread.pool.size", properties, "10")));
+        mdmProps.setNotificationQueueCapacity(Integer.parseInt(getProperty("SERVER_NOTIFICATION_QUEUE_CAPACITY", "server.notification.queue.capacity", properties, "10000")));
+        mdmProps.setHttpThreads(Integer.parseInt(getProperty("SERVER_HTTP_THREADS", "server.http.threads", properties, "50")));
+        mdmProps.setHttpQueueCapacity(Integer.parseInt(getProperty("SERVER_HTTP_QUEUE_CAPACITY", "server.http.queue.capacity", properties, "1000")));
+        mdmProps.setQueueHighWaterRatio(Double.parseDouble(getProperty("SERVER_QUEUE_HIGH_WATER", "server.queue.high.water", properties, "0.8")));
+        mdmProps.setVirtualThreads(Boolean.parseBoolean(getProperty("SERVER_VIRTUAL_THREADS", "server.virtual.threads", properties, "false")));
+        mdmProps.setStatusCacheMaxBytes(Long.parseLong(getProperty("SERVER_STATUS_CACHE_MAX_BYTES", "server.status.cache.max.bytes", properties, "67108864")));
+        mdmProps.setMaxCommandBytes(Integer.parseInt(getProperty("SERVER_MAX_COMMAND_BYTES", "server.max.command.bytes", properties, "1048576")));
+        mdmProps.setHistoryStore(getProperty("HISTORY_STORE", "history.store", properties, "memory").trim().toLowerCase(Locale.ROOT));
+        mdmProps.setHistoryMaxResultsPerDevice(Integer.parseInt(getProperty("HISTORY_MAX_RESULTS_PER_DEVICE", "history.max.results.per.device", properties, "1000")));
+        mdmProps.setHistoryRetentionSeconds(Long.parseLong(getProperty("HISTORY_RETENTION_SECONDS", "history.retention.seconds", properties, "604800")));
+        mdmProps.setHistoryHeapThreshold(Double.parseDouble(getProperty("HISTORY_HEAP_THRESHOLD", "history.heap.threshold", properties, "0.85")));
+        mdmProps.setHistoryLogDirectory(getProperty("HISTORY_LOG_DIR", "history.log.dir", properties, ""));
+        mdmProps.setHistoryLogSegmentBytes(Integer.parseInt(getProperty("HISTORY_LOG_SEGMENT_BYTES", "history.log.segment.bytes", properties, "67108864")));
+        mdmProps.setHistoryLogSyncIntervalMillis(Long.parseLong(getProperty("HISTORY_LOG_SYNC_INTERVAL_MS", "history.log.sync.interval.ms", properties, "100")));
+        mdmProps.setHistoryLogSnapshotIntervalSeconds(Long.parseLong(getProperty("HISTORY_LOG_SNAPSHOT_INTERVAL_SECONDS", "history.log.snapshot.interval.seconds", properties, "300")));
+        mdmProps.setHistoryWriterQueueCapacity(Integer.parseInt(getProperty("HISTORY_WRITER_QUEUE_CAPACITY", "history.writer.queue.capacity", properties, "65536")));
+        mdmProps.setHistoryWriterBatchSize(Integer.parseInt(getProperty("HISTORY_WRITER_BATCH_SIZE", "history.writer.batch.size", properties, "1024")));
+        mdmProps.setHistoryWriterOverflow(getProperty("HISTORY_WRITER_OVERFLOW", "history.writer.overflow", properties, "block").trim().toLowerCase(Locale.ROOT));
+        mdmProps.setStatsMinuteBuckets(Integer.parseInt(getProperty("STATS_MINUTE_BUCKETS", "stats.minute.buckets", properties, "1440")));
+        mdmProps.setStatsHourBuckets(Integer.parseInt(getProperty("STATS_HOUR_BUCKETS", "stats.hour.buckets", properties, "168")));
+        mdmProps.setMaxInFlight(Integer.parseInt(getProperty("APNS_MAX_IN_FLIGHT", "apns.max.in.flight", properties, "1000")));
+        mdmProps.setMaxPending(Integer.parseInt(getProperty("APNS_MAX_PENDING", "apns.max.pending", properties, "10000")));
+        mdmProps.setMaxPendingUrgent(Integer.parseInt(getProperty("APNS_MAX_PENDING_URGENT", "apns.max.pending.urgent", properties, "1000")));
+        mdmProps.setAdaptiveLimit(Boolean.parseBoolean(getProperty("APNS_ADAPTIVE_LIMIT", "apns.limit.adaptive", properties, "true")));
+        mdmProps.setMinInFlight(Integer.parseInt(getProperty("APNS_MIN_IN_FLIGHT", "apns.limit.min", properties, "10")));
+        mdmProps.setLatencyThresholdMillis(Long.parseLong(getProperty("APNS_LATENCY_THRESHOLD_MS", "apns.limit.latency.threshold.ms", properties, "1000")));
+        mdmProps.setLimitBackoffRatio(Double.parseDouble(getProperty("APNS_LIMIT_BACKOFF_RATIO", "apns.limit.backoff.ratio", properties, "0.5")));
+        mdmProps.setDeviceRateBurst(Integer.parseInt(getProperty("APNS_DEVICE_RATE_BURST", "apns.device.rate.burst", properties, "20")));
+        mdmProps.setDeviceRatePerMinute(Integer.parseInt(getProperty("APNS_DEVICE_RATE_PER_MINUTE", "apns.device.rate.per.minute", properties, "60")));
+        mdmProps.setCommandQueueing(Boolean.parseBoolean(getProperty("MDM_COMMAND_QUEUE", "mdm.command.queue", properties, "false")));
+        mdmProps.setCheckInMaxCommands(Integer.parseInt(getProperty("MDM_CHECKIN_MAX_COMMANDS", "mdm.checkin.max.commands", properties, "50")));
+        mdmProps.setWakeUpIntervalSeconds(Long.parseLong(getProperty("MDM_WAKE_INTERVAL_SECONDS", "mdm.wake.interval.seconds", properties, "60")));
+        mdmProps.setApnsClientCount(Integer.parseInt(getProperty("APNS_CLIENT_COUNT", "apns.client.count", properties, "1")));
+        mdmProps.setApnsConnectionsPerClient(Integer.parseInt(getProperty("APNS_CLIENT_CONNECTIONS", "apns.client.connections", properties, "1")));
+        mdmProps.setRetryMaxAttempts(Integer.parseInt(getProperty("APNS_RETRY_MAX_ATTEMPTS", "apns.retry.max.attempts", properties, "3")));
+        mdmProps.setRetryBaseDelayMillis(Long.parseLong(getProperty("APNS_RETRY_BASE_DELAY_MS", "apns.retry.base.delay.ms", properties, "500")));
+        mdmProps.setRetryMaxDelayMillis(Long.parseLong(getProperty("APNS_RETRY_MAX_DELAY_MS", "apns.retry.max.delay.ms", properties, "30000")));
+        mdmProps.setApnsClientIdleTimeoutSeconds(Long.parseLong(getProperty("APNS_CLIENT_IDLE_TIMEOUT_SECONDS", "apns.client.idle.timeout.seconds", properties, "600")));
+        mdmProps.setApnsMaxTenantClients(Integer.parseInt(getProperty("APNS_MAX_TENANT_CLIENTS", "apns.client.max.tenants", properties, "64")));
+        mdmProps.setInvalidTokenSnapshotPath(getProperty("APNS_INVALID_TOKEN_SNAPSHOT", "apns.invalid.token.snapshot.path", properties));
+        mdmProps.setInvalidTokenFlushIntervalSeconds(Long.parseLong(getProperty("APNS_INVALID_TOKEN_FLUSH_SECONDS", "apns.invalid.token.flush.interval.seconds", properties, "60")));
+        loadTenants(properties, mdmProps);
 
         validateProperties(mdmProps);
         return mdmProps;
     }
 
+    /**
+     * Reads every {@code tenants.<name>.{team.id,key.id,auth.key.path,topic,topics,production}} group into a
+     * {@link TenantProperties}. Tenants are only configured through the properties file.
+     */
+    private static void loadTenants(Properties properties, MdmProperties mdmProps) throws AppConfigurationException {
+        Set<String> names = new TreeSet<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(TENANT_PREFIX)) {
+                int end = key.indexOf('.', TENANT_PREFIX.length());
+                if (end > TENANT_PREFIX.length()) {
+                    names.add(key.substring(TENANT_PREFIX.length(), end));
+                }
+            }
+        }
+        for (String name : names) {
+            if (MdmProperties.DEFAULT_TENANT.equals(name)) {
+                throw new AppConfigurationException("Tenant name '" + MdmProperties.DEFAULT_TENANT + "' is reserved for the apns.* properties.");
+            }
+            String prefix = TENANT_PREFIX + name + ".";
+            TenantProperties tenant = new TenantProperties(
+                    properties.getProperty(prefix + "team.id"),
+                    properties.getProperty(prefix + "key.id"),
+                    properties.getProperty(prefix + "auth.key.path"),
+                    properties.getProperty(prefix + "topic"),
+                    Boolean.parseBoolean(properties.getProperty(prefix + "production", "false")));
+            tenant.setAllowedTopics(parseList(properties.getProperty(prefix + "topics", "")));
+            validateTenant("Tenant '" + name + "'", prefix, tenant);
+            mdmProps.addTenant(name, tenant);
+        }
+    }
+
+    /**
+     * @return The non-blank entries of a comma-separated list, trimmed.
+     */
+    private static List<String> parseList(String value) {
+        List<String> entries = new ArrayList<>();
+        for (String entry : value.split(",")) {
+            if (!entry.isBlank()) {
+                entries.add(entry.trim());
+            }
+        }
+        return entries;
+    }
+
     private static String getProperty(String envVar, String propKey, Properties properties) {
         return Optional.ofNullable(System.getenv(envVar))
                 .orElse(properties.getProperty(propKey));
@@ -81,8 +175,144 @@ public final class AppConfig {
         } catch (InvalidPathException e) {
             throw new AppConfigurationException("The configured APNS Auth Key Path is invalid: " + props.getAuthKeyPath(), e);
         }
+        if (props.getThreadPoolSize() < 1) {
+            throw new AppConfigurationException("Server thread pool size (SERVER_THREAD_POOL_SIZE / server.thread.pool.size) must be at least 1.");
+        }
+        if (props.getNotificationQueueCapacity() < 1) {
+            throw new AppConfigurationException("Notification queue capacity (SERVER_NOTIFICATION_QUEUE_CAPACITY / server.notification.queue.capacity) must be at least 1.");
+        }
+        if (!"jdk".equals(props.getHttpEngine()) && !"netty".equals(props.getHttpEngine())) {
+            throw new AppConfigurationException("HTTP engine (SERVER_HTTP_ENGINE / server.http.engine) must be 'jdk' or 'netty'.");
+        }
+        if (props.getHttpThreads() < 1) {
+            throw new AppConfigurationException("HTTP thread count (SERVER_HTTP_THREADS / server.http.threads) must be at least 1.");
+        }
+        if (props.getHttpQueueCapacity() < 1) {
+            throw new AppConfigurationException("HTTP queue capacity (SERVER_HTTP_QUEUE_CAPACITY / server.http.queue.capacity) must be at least 1.");
+        }
+        if (!(props.getQueueHighWaterRatio() > 0.0 && props.getQueueHighWaterRatio() <= 1.0)) {
+            throw new AppConfigurationException("Queue high-water mark (SERVER_QUEUE_HIGH_WATER / server.queue.high.water) must be greater than 0 and at most 1.");
+        }
+        if (props.getStatusCacheMaxBytes() < 0 || props.getStatusCacheMaxBytes() > Integer.MAX_VALUE - 8) {
+            throw new AppConfigurationException("Status cache size (SERVER_STATUS_CACHE_MAX_BYTES / server.status.cache.max.bytes) must be between 0 and 2147483639.");
+        }
+        if (props.getMaxCommandBytes() < 1 || props.getMaxCommandBytes() > Integer.MAX_VALUE - 9) {
+            throw new AppConfigurationException("Command body size (SERVER_MAX_COMMAND_BYTES / server.max.command.bytes) must be between 1 and 2147483638.");
+        }
+        if (!"memory".equals(props.getHistoryStore()) && !"columnar".equals(props.getHistoryStore())) {
+            throw new AppConfigurationException("History store (HISTORY_STORE / history.store) must be 'memory' or 'columnar'.");
+        }
+        if (props.getHistoryMaxResultsPerDevice() < 0) {
+            throw new AppConfigurationException("History results per device (HISTORY_MAX_RESULTS_PER_DEVICE / history.max.results.per.device) must be 0 or more.");
+        }
+        if (props.getHistoryRetentionSeconds() < 0) {
+            throw new AppConfigurationException("History retention (HISTORY_RETENTION_SECONDS / history.retention.seconds) must be 0 or more.");
+        }
+        if (!(props.getHistoryHeapThreshold() >= 0.0 && props.getHistoryHeapThreshold() < 1.0)) {
+            throw new AppConfigurationException("History heap threshold (HISTORY_HEAP_THRESHOLD / history.heap.threshold) must be at least 0 and less than 1.");
+        }
+        if (props.getHistoryLogSegmentBytes() < 1048576 || props.getHistoryLogSegmentBytes() > 1073741824) {
+            throw new AppConfigurationException("History log segment size (HISTORY_LOG_SEGMENT_BYTES / history.log.segment.bytes) must be between 1048576 and 1073741824.");
+        }
+        if (props.getHistoryLogSyncIntervalMillis() < 1) {
+            throw new AppConfigurationException("History log sync interval (HISTORY_LOG_SYNC_INTERVAL_MS / history.log.sync.interval.ms) must be at least 1.");
+        }
+        if (props.getHistoryLogSnapshotIntervalSeconds() < 0) {
+            throw new AppConfigurationException("History log snapshot interval (HISTORY_LOG_SNAPSHOT_INTERVAL_SECONDS / history.log.snapshot.interval.seconds) must be 0 or more.");
+        }
+        if (props.getHistoryWriterQueueCapacity() < 0 || props.getHistoryWriterQueueCapacity() > 1073741824) {
+            throw new AppConfigurationException("History writer queue capacity (HISTORY_WRITER_QUEUE_CAPACITY / history.writer.queue.capacity) must be between 0 and 1073741824.");
+        }
+        if (props.getHistoryWriterBatchSize() < 1) {
+            throw new AppConfigurationException("History writer batch size (HISTORY_WRITER_BATCH_SIZE / history.writer.batch.size) must be at least 1.");
+        }
+        if (!"block".equals(props.getHistoryWriterOverflow()) && !"drop".equals(props.getHistoryWriterOverflow())) {
+            throw new AppConfigurationException("History writer overflow policy (HISTORY_WRITER_OVERFLOW / history.writer.overflow) must be 'block' or 'drop'.");
+        }
+        if (props.getStatsMinuteBuckets() < 1 || props.getStatsMinuteBuckets() > 44640) {
+            throw new AppConfigurationException("Stats minute buckets (STATS_MINUTE_BUCKETS / stats.minute.buckets) must be between 1 and 44640.");
+        }
+        if (props.getStatsHourBuckets() < 1 || props.getStatsHourBuckets() > 8784) {
+            throw new AppConfigurationException("Stats hour buckets (STATS_HOUR_BUCKETS / stats.hour.buckets) must be between 1 and 8784.");
+        }
+        if (props.getMaxInFlight() < 1) {
+            throw new AppConfigurationException("APNs in-flight limit (APNS_MAX_IN_FLIGHT / apns.max.in.flight) must be at least 1.");
+        }
+        if (props.getNotificationQueueCapacity() < props.getMaxInFlight()) {
+            throw new AppConfigurationException("Notification queue capacity (SERVER_NOTIFICATION_QUEUE_CAPACITY / server.notification.queue.capacity) must be at least the APNs in-flight limit (APNS_MAX_IN_FLIGHT / apns.max.in.flight).");
+        }
+        if (props.getMaxPending() < 1) {
+            throw new AppConfigurationException("APNs send queue capacity (APNS_MAX_PENDING / apns.max.pending) must be at least 1.");
+        }
+        if (props.getMaxPendingUrgent() < 1) {
+            throw new AppConfigurationException("APNs urgent send queue capacity (APNS_MAX_PENDING_URGENT / apns.max.pending.urgent) must be at least 1.");
+        }
+        if (props.getApnsClientCount() < 1) {
+            throw new AppConfigurationException("APNs client count (APNS_CLIENT_COUNT / apns.client.count) must be at least 1.");
+        }
+        if (props.getApnsConnectionsPerClient() < 1) {
+            throw new AppConfigurationException("APNs connections per client (APNS_CLIENT_CONNECTIONS / apns.client.connections) must be at least 1.");
+        }
+        if (props.getMinInFlight() < 1 || props.getMinInFlight() > props.getMaxInFlight()) {
+            throw new AppConfigurationException("APNs minimum in-flight limit (APNS_MIN_IN_FLIGHT / apns.limit.min) must be between 1 and the maximum in-flight limit.");
+        }
+        if (props.getLatencyThresholdMillis() < 1) {
+            throw new AppConfigurationException("APNs latency threshold (APNS_LATENCY_THRESHOLD_MS / apns.limit.latency.threshold.ms) must be at least 1.");
+        }
+        if (!(props.getLimitBackoffRatio() > 0.0 && props.getLimitBackoffRatio() < 1.0)) {
+            throw new AppConfigurationException("APNs limit backoff ratio (APNS_LIMIT_BACKOFF_RATIO / apns.limit.backoff.ratio) must be between 0 and 1.");
+        }
+        if (props.getDeviceRatePerMinute() < 0 || props.getDeviceRateBurst() < 1) {
+            throw new AppConfigurationException("Per-device rate (APNS_DEVICE_RATE_PER_MINUTE / apns.device.rate.per.minute) must be at least 0 and burst (APNS_DEVICE_RATE_BURST / apns.device.rate.burst) at least 1.");
+        }
+        if (props.getCheckInMaxCommands() < 1) {
+            throw new AppConfigurationException("Commands per check-in (MDM_CHECKIN_MAX_COMMANDS / mdm.checkin.max.commands) must be at least 1.");
+        }
+        if (props.getWakeUpIntervalSeconds() < 1) {
+            throw new AppConfigurationException("Wake-up interval (MDM_WAKE_INTERVAL_SECONDS / mdm.wake.interval.seconds) must be at least 1.");
+        }
+        if (props.getApnsClientIdleTimeoutSeconds() < 1) {
+            throw new AppConfigurationException("APNs client idle timeout (APNS_CLIENT_IDLE_TIMEOUT_SECONDS / apns.client.idle.timeout.seconds) must be at least 1.");
+        }
+        if (props.getApnsMaxTenantClients() < 1) {
+            throw new AppConfigurationException("APNs tenant client limit (APNS_MAX_TENANT_CLIENTS / apns.client.max.tenants) must be at least 1.");
+        }
+        if (props.getInvalidTokenFlushIntervalSeconds() < 1) {
+            throw new AppConfigurationException("Invalid token flush interval (APNS_INVALID_TOKEN_FLUSH_SECONDS / apns.invalid.token.flush.interval.seconds) must be at least 1.");
+        }
+        if (!isNullOrBlank(props.getInvalidTokenSnapshotPath())) {
+            try {
+                Path snapshotDir = Paths.get(props.getInvalidTokenSnapshotPath()).toAbsolutePath().getParent();
+                if (snapshotDir == null || !Files.isDirectory(snapshotDir) || !Files.isWritable(snapshotDir)) {
+                    throw new AppConfigurationException("Invalid token snapshot directory does not exist or is not writable: " + props.getInvalidTokenSnapshotPath());
+                }
+            } catch (InvalidPathException e) {
+                throw new AppConfigurationException("Invalid token snapshot path is invalid: " + props.getInvalidTokenSnapshotPath(), e);
+            }
+        }
+        if (props.getRetryMaxAttempts() < 1) {
+            throw new AppConfigurationException("APNs retry attempts (APNS_RETRY_MAX_ATTEMPTS / apns.retry.max.attempts) must be at least 1.");
+        }
+        if (props.getRetryBaseDelayMillis() < 1 || props.getRetryMaxDelayMillis() < props.getRetryBaseDelayMillis()) {
+            throw new AppConfigurationException("APNs retry delays (apns.retry.base.delay.ms / apns.retry.max.delay.ms) must satisfy 1 <= base <= max.");
+        }
     }
     
+    private static void validateTenant(String description, String prefix, TenantProperties tenant) throws AppConfigurationException {
+        if (isNullOrBlank(tenant.getTeamId()) || isNullOrBlank(tenant.getKeyId())
+                || isNullOrBlank(tenant.getTopic()) || isNullOrBlank(tenant.getAuthKeyPath())) {
+            throw new AppConfigurationException(description + " requires " + prefix + "team.id, key.id, auth.key.path and topic.");
+        }
+        try {
+            Path authKey = Paths.get(tenant.getAuthKeyPath());
+            if (!Files.exists(authKey) || !Files.isReadable(authKey)) {
+                throw new AppConfigurationException(description + " auth key file does not exist or is not readable at: " + tenant.getAuthKeyPath());
+            }
+        } catch (InvalidPathException e) {
+            throw new AppConfigurationException(description + " auth key path is invalid: " + tenant.getAuthKeyPath(), e);
+        }
+    }
+
     private static boolean isNullOrBlank(String s) {
         return s == null || s.trim().isEmpty();
     }
@@ -0,0 +1,54 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.config;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.time.Instant;
+
+public final class JsonConfig {
+
+    private JsonConfig() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Creates the {@link Gson} instance shared by the HTTP handlers. {@link Instant} values are
+     * written as ISO-8601 strings; Gson cannot reflect into {@code java.time} on Java 17+.
+     */
+    public static Gson createGson() {
+        return new GsonBuilder()
+                .registerTypeAdapter(Instant.class, new InstantTypeAdapter().nullSafe())
+                .create();
+    }
+
+    private static final class InstantTypeAdapter extends TypeAdapter<Instant> {
+        @Override
+        public void write(JsonWriter out, Instant value) throws IOException {
+            out.value(value.toString());
+        }
+
+        @Override
+        public Instant read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            return Instant.parse(in.nextString());
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -5,14 +5,64 @@
 
 package com.devinbroyal.mdm.config;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 public class MdmProperties {
+    public static final String DEFAULT_TENANT = "default";
+
     private String teamId;
     private String keyId;
     private String authKeyPath;
     private String topic;
+    private List<String> allowedTopics = List.of();
     private boolean isProduction;
     private int httpPort;
+    private String httpEngine;
     private int threadPoolSize;
+    private int httpThreads;
+    private int httpQueueCapacity;
+    private int notificationQueueCapacity;
+    private double queueHighWaterRatio;
+    private boolean virtualThreads;
+    private long statusCacheMaxBytes;
+    private int maxCommandBytes;
+    private String historyStore;
+    private int historyMaxResultsPerDevice;
+    private long historyRetentionSeconds;
+    private double historyHeapThreshold;
+    private String historyLogDirectory;
+    private int historyLogSegmentBytes;
+    private long historyLogSyncIntervalMillis;
+    private long historyLogSnapshotIntervalSeconds;
+    private int historyWriterQueueCapacity;
+    private int historyWriterBatchSize;
+    private String historyWriterOverflow;
+    private int statsMinuteBuckets;
+    private int statsHourBuckets;
+    private int maxInFlight;
+    private int maxPending;
+    private int maxPendingUrgent;
+    private boolean adaptiveLimit;
+    private int minInFlight;
+    private long latencyThresholdMillis;
+    private double limitBackoffRatio;
+    private int deviceRateBurst;
+    private int deviceRatePerMinute;
+    private boolean commandQueueing;
+    private int checkInMaxCommands;
+    private long wakeUpIntervalSeconds;
+    private int apnsClientCount;
+    private int apnsConnectionsPerClient;
+    private int retryMaxAttempts;
+    private long retryBaseDelayMillis;
+    private long retryMaxDelayMillis;
+    private long apnsClientIdleTimeoutSeconds;
+    private int apnsMaxTenantClients;
+    private String invalidTokenSnapshotPath;
+    private long invalidTokenFlushIntervalSeconds;
+    private final Map<String, TenantProperties> tenants = new LinkedHashMap<>();
 
     // Getters and Setters
     public String getTeamId() { return teamId; }
@@ -27,14 +77,237 @@ public class MdmProperties {
     public String getTopic() { return topic; }
     public void setTopic(String topic) { this.topic = topic; }
 
+    /**
+     * @return The topics, besides apns.topic, that requests to the default tenant may select.
+     */
+    public List<String> getAllowedTopics() { return allowedTopics; }
+    public void setAllowedTopics(List<String> allowedTopics) { this.allowedTopics = allowedTopics; }
+
     public boolean isProduction() { return isProduction; }
     public void setProduction(boolean production) { isProduction = production; }
 
     public int getHttpPort() { return httpPort; }
     public void setHttpPort(int httpPort) { this.httpPort = httpPort; }
 
+    /**
+     * @return {@code jdk} for the built-in {@code com.sun.net.httpserver} server, or {@code netty}
+     *         for the Netty front end with HTTP/1.1 pipelining and h2c.
+     */
+    public String getHttpEngine() { return httpEngine; }
+    public void setHttpEngine(String httpEngine) { this.httpEngine = httpEngine; }
+
     public int getThreadPoolSize() { return threadPoolSize; }
     public void setThreadPoolSize(int threadPoolSize) { this.threadPoolSize = threadPoolSize; }
+
+    public int getHttpThreads() { return httpThreads; }
+    public void setHttpThreads(int httpThreads) { this.httpThreads = httpThreads; }
+
+    public int getHttpQueueCapacity() { return httpQueueCapacity; }
+    public void setHttpQueueCapacity(int httpQueueCapacity) { this.httpQueueCapacity = httpQueueCapacity; }
+
+    public int getNotificationQueueCapacity() { return notificationQueueCapacity; }
+    public void setNotificationQueueCapacity(int notificationQueueCapacity) { this.notificationQueueCapacity = notificationQueueCapacity; }
+
+    /**
+     * @return The fraction of a bounded queue's capacity beyond which new commands are answered with
+     *         429 Too Many Requests.
+     */
+    public double getQueueHighWaterRatio() { return queueHighWaterRatio; }
+    public void setQueueHighWaterRatio(double queueHighWaterRatio) { this.queueHighWaterRatio = queueHighWaterRatio; }
+
+    /**
+     * @return Whether HTTP requests and APNs responses are handled on virtual threads rather than the
+     *         fixed pools. Needs Java 21 and a jar built with the {@code virtual-threads} profile.
+     */
+    public boolean isVirtualThreads() { return virtualThreads; }
+    public void setVirtualThreads(boolean virtualThreads) { this.virtualThreads = virtualThreads; }
+
+    /**
+     * @return The largest encoded {@code /status} history kept in memory and shared between
+     *         requests for the same version; larger ones are streamed for every request. 0 disables
+     *         the cache.
+     */
+    public long getStatusCacheMaxBytes() { return statusCacheMaxBytes; }
+    public void setStatusCacheMaxBytes(long statusCacheMaxBytes) { this.statusCacheMaxBytes = statusCacheMaxBytes; }
+
+    /**
+     * @return The largest {@code POST /command} body read; a larger one is refused with 413.
+     */
+    public int getMaxCommandBytes() { return maxCommandBytes; }
+    public void setMaxCommandBytes(int maxCommandBytes) { this.maxCommandBytes = maxCommandBytes; }
+
+    /**
+     * @return How the execution history is held: {@code memory}, as objects in ordered indexes, or
+     *         {@code columnar}, as compact rows.
+     */
+    public String getHistoryStore() { return historyStore; }
+    public void setHistoryStore(String historyStore) { this.historyStore = historyStore; }
+
+    /**
+     * @return The results kept per device; recording another drops the device's oldest. 0 keeps all.
+     */
+    public int getHistoryMaxResultsPerDevice() { return historyMaxResultsPerDevice; }
+    public void setHistoryMaxResultsPerDevice(int historyMaxResultsPerDevice) { this.historyMaxResultsPerDevice = historyMaxResultsPerDevice; }
+
+    /**
+     * @return How long results are kept, in seconds. 0 keeps them until they are displaced.
+     */
+    public long getHistoryRetentionSeconds() { return historyRetentionSeconds; }
+    public void setHistoryRetentionSeconds(long historyRetentionSeconds) { this.historyRetentionSeconds = historyRetentionSeconds; }
+
+    /**
+     * @return The fraction of the heap still in use after a collection above which the oldest part
+     *         of the history is dropped. 0 disables it.
+     */
+    public double getHistoryHeapThreshold() { return historyHeapThreshold; }
+    public void setHistoryHeapThreshold(double historyHeapThreshold) { this.historyHeapThreshold = historyHeapThreshold; }
+
+    /**
+     * @return The directory the execution history is logged to and replayed from on startup, or an
+     *         empty string to keep it in memory only.
+     */
+    public String getHistoryLogDirectory() { return historyLogDirectory; }
+    public void setHistoryLogDirectory(String historyLogDirectory) { this.historyLogDirectory = historyLogDirectory; }
+
+    public int getHistoryLogSegmentBytes() { return historyLogSegmentBytes; }
+    public void setHistoryLogSegmentBytes(int historyLogSegmentBytes) { this.historyLogSegmentBytes = historyLogSegmentBytes; }
+
+    /**
+     * @return How often results appended to the history log are forced to disk, in milliseconds.
+     */
+    public long getHistoryLogSyncIntervalMillis() { return historyLogSyncIntervalMillis; }
+    public void setHistoryLogSyncIntervalMillis(long historyLogSyncIntervalMillis) { this.historyLogSyncIntervalMillis = historyLogSyncIntervalMillis; }
+
+    /**
+     * @return How often a columnar history is snapshotted beside its log, in seconds, or 0 never to
+     *         snapshot it.
+     */
+    public long getHistoryLogSnapshotIntervalSeconds() { return historyLogSnapshotIntervalSeconds; }
+    public void setHistoryLogSnapshotIntervalSeconds(long historyLogSnapshotIntervalSeconds) { this.historyLogSnapshotIntervalSeconds = historyLogSnapshotIntervalSeconds; }
+
+    /**
+     * @return The results that may wait for the history writer thread, or 0 to record each result
+     *         on the thread that produced it.
+     */
+    public int getHistoryWriterQueueCapacity() { return historyWriterQueueCapacity; }
+    public void setHistoryWriterQueueCapacity(int historyWriterQueueCapacity) { this.historyWriterQueueCapacity = historyWriterQueueCapacity; }
+
+    public int getHistoryWriterBatchSize() { return historyWriterBatchSize; }
+    public void setHistoryWriterBatchSize(int historyWriterBatchSize) { this.historyWriterBatchSize = historyWriterBatchSize; }
+
+    /**
+     * @return What happens to a result when the history writer's queue is full: "block" waits for
+     *         room, "drop" discards the result.
+     */
+    public String getHistoryWriterOverflow() { return historyWriterOverflow; }
+    public void setHistoryWriterOverflow(String historyWriterOverflow) { this.historyWriterOverflow = historyWriterOverflow; }
+
+    /**
+     * @return The minutes of dispatch outcomes /stats keeps, including the current one.
+     */
+    public int getStatsMinuteBuckets() { return statsMinuteBuckets; }
+    public void setStatsMinuteBuckets(int statsMinuteBuckets) { this.statsMinuteBuckets = statsMinuteBuckets; }
+
+    /**
+     * @return The hours of dispatch outcomes /stats keeps, including the current one.
+     */
+    public int getStatsHourBuckets() { return statsHourBuckets; }
+    public void setStatsHourBuckets(int statsHourBuckets) { this.statsHourBuckets = statsHourBuckets; }
+
+    public int getMaxInFlight() { return maxInFlight; }
+    public void setMaxInFlight(int maxInFlight) { this.maxInFlight = maxInFlight; }
+
+    public int getMaxPending() { return maxPending; }
+    public void setMaxPending(int maxPending) { this.maxPending = maxPending; }
+
+    public int getMaxPendingUrgent() { return maxPendingUrgent; }
+    public void setMaxPendingUrgent(int maxPendingUrgent) { this.maxPendingUrgent = maxPendingUrgent; }
+
+    /**
+     * @return Whether the in-flight limit adapts between {@link #getMinInFlight()} and
+     *         {@link #getMaxInFlight()} to APNs latency and throttling.
+     */
+    public boolean isAdaptiveLimit() { return adaptiveLimit; }
+    public void setAdaptiveLimit(boolean adaptiveLimit) { this.adaptiveLimit = adaptiveLimit; }
+
+    public int getMinInFlight() { return minInFlight; }
+    public void setMinInFlight(int minInFlight) { this.minInFlight = minInFlight; }
+
+    public long getLatencyThresholdMillis() { return latencyThresholdMillis; }
+    public void setLatencyThresholdMillis(long latencyThresholdMillis) { this.latencyThresholdMillis = latencyThresholdMillis; }
+
+    public double getLimitBackoffRatio() { return limitBackoffRatio; }
+    public void setLimitBackoffRatio(double limitBackoffRatio) { this.limitBackoffRatio = limitBackoffRatio; }
+
+    public int getDeviceRateBurst() { return deviceRateBurst; }
+    public void setDeviceRateBurst(int deviceRateBurst) { this.deviceRateBurst = deviceRateBurst; }
+
+    /**
+     * @return The sustained pushes per minute allowed to one device token, or 0 for no limit.
+     */
+    public int getDeviceRatePerMinute() { return deviceRatePerMinute; }
+    public void setDeviceRatePerMinute(int deviceRatePerMinute) { this.deviceRatePerMinute = deviceRatePerMinute; }
+
+    /**
+     * @return Whether commands wait in per-device queues for the device to fetch them from
+     *         {@code /mdm/connect}, with only a wake-up push sent through APNs.
+     */
+    public boolean isCommandQueueing() { return commandQueueing; }
+    public void setCommandQueueing(boolean commandQueueing) { this.commandQueueing = commandQueueing; }
+
+    public int getCheckInMaxCommands() { return checkInMaxCommands; }
+    public void setCheckInMaxCommands(int checkInMaxCommands) { this.checkInMaxCommands = checkInMaxCommands; }
+
+    /**
+     * @return How long to wait for a woken device to check in before pushing to it again.
+     */
+    public long getWakeUpIntervalSeconds() { return wakeUpIntervalSeconds; }
+    public void setWakeUpIntervalSeconds(long wakeUpIntervalSeconds) { this.wakeUpIntervalSeconds = wakeUpIntervalSeconds; }
+
+    public int getApnsClientCount() { return apnsClientCount; }
+    public void setApnsClientCount(int apnsClientCount) { this.apnsClientCount = apnsClientCount; }
+
+    public int getApnsConnectionsPerClient() { return apnsConnectionsPerClient; }
+    public void setApnsConnectionsPerClient(int apnsConnectionsPerClient) { this.apnsConnectionsPerClient = apnsConnectionsPerClient; }
+
+    public int getRetryMaxAttempts() { return retryMaxAttempts; }
+    public void setRetryMaxAttempts(int retryMaxAttempts) { this.retryMaxAttempts = retryMaxAttempts; }
+
+    public long getRetryBaseDelayMillis() { return retryBaseDelayMillis; }
+    public void setRetryBaseDelayMillis(long retryBaseDelayMillis) { this.retryBaseDelayMillis = retryBaseDelayMillis; }
+
+    public long getRetryMaxDelayMillis() { return retryMaxDelayMillis; }
+    public void setRetryMaxDelayMillis(long retryMaxDelayMillis) { this.retryMaxDelayMillis = retryMaxDelayMillis; }
+
+    public long getApnsClientIdleTimeoutSeconds() { return apnsClientIdleTimeoutSeconds; }
+    public void setApnsClientIdleTimeoutSeconds(long apnsClientIdleTimeoutSeconds) { this.apnsClientIdleTimeoutSeconds = apnsClientIdleTimeoutSeconds; }
+
+    public int getApnsMaxTenantClients() { return apnsMaxTenantClients; }
+    public void setApnsMaxTenantClients(int apnsMaxTenantClients) { this.apnsMaxTenantClients = apnsMaxTenantClients; }
+
+    /**
+     * @return The file invalid device tokens are persisted to, or {@code null} to keep them in memory only.
+     */
+    public String getInvalidTokenSnapshotPath() { return invalidTokenSnapshotPath; }
+    public void setInvalidTokenSnapshotPath(String invalidTokenSnapshotPath) { this.invalidTokenSnapshotPath = invalidTokenSnapshotPath; }
+
+    public long getInvalidTokenFlushIntervalSeconds() { return invalidTokenFlushIntervalSeconds; }
+    public void setInvalidTokenFlushIntervalSeconds(long invalidTokenFlushIntervalSeconds) { this.invalidTokenFlushIntervalSeconds = invalidTokenFlushIntervalSeconds; }
+
+    /**
+     * @return The additional tenants configured under {@code tenants.<name>.*}, keyed by name.
+     */
+    public Map<String, TenantProperties> getTenants() { return tenants; }
+    public void addTenant(String name, TenantProperties tenant) { tenants.put(name, tenant); }
+
+    /**
+     * @return The tenant described by the top-level {@code apns.*} properties.
+     */
+    public TenantProperties getDefaultTenant() {
+        TenantProperties tenant = new TenantProperties(teamId, keyId, authKeyPath, topic, isProduction);
+        tenant.setAllowedTopics(allowedTopics);
+        return tenant;
+    }
 }
 
 /*
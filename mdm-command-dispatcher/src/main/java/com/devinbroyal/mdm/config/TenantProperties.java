@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.config;
+
+import java.util.List;
+
+/**
+ * The APNs credentials and topic of one tenant served by the dispatcher.
+ */
+public class TenantProperties {
+    private String teamId;
+    private String keyId;
+    private String authKeyPath;
+    private String topic;
+    private boolean isProduction;
+    private List<String> allowedTopics = List.of();
+
+    public TenantProperties() {
+    }
+
+    public TenantProperties(String teamId, String keyId, String authKeyPath, String topic, boolean isProduction) {
+        this.teamId = teamId;
+        this.keyId = keyId;
+        this.authKeyPath = authKeyPath;
+        this.topic = topic;
+        this.isProduction = isProduction;
+    }
+
+    /**
+     * @return A copy of these properties that pushes to a different topic with the same credentials.
+     */
+    public TenantProperties withTopic(String topic) {
+        TenantProperties copy = new TenantProperties(teamId, keyId, authKeyPath, topic, isProduction);
+        copy.setAllowedTopics(allowedTopics);
+        return copy;
+    }
+
+    /**
+     * @return Whether a request may push to the topic with these credentials: the configured topic
+     *         or one of the allowed topics.
+     */
+    public boolean isTopicAllowed(String topic) {
+        return topic.equals(this.topic) || allowedTopics.contains(topic);
+    }
+
+    /**
+     * @return The identity under which APNs clients for this tenant are shared: team, key and
+     *         environment. Token-based clients are not bound to a topic, which travels with each
+     *         notification.
+     */
+    public String getClientKey() {
+        return teamId + "/" + keyId + "/" + (isProduction ? "production" : "development");
+    }
+
+    // Getters and Setters
+    public String getTeamId() { return teamId; }
+    public void setTeamId(String teamId) { this.teamId = teamId; }
+
+    public String getKeyId() { return keyId; }
+    public void setKeyId(String keyId) { this.keyId = keyId; }
+
+    public String getAuthKeyPath() { return authKeyPath; }
+    public void setAuthKeyPath(String authKeyPath) { this.authKeyPath = authKeyPath; }
+
+    public String getTopic() { return topic; }
+    public void setTopic(String topic) { this.topic = topic; }
+
+    public boolean isProduction() { return isProduction; }
+    public void setProduction(boolean production) { isProduction = production; }
+
+    /**
+     * @return The topics, besides the configured one, that requests may select with {@code "topic"}.
+     */
+    public List<String> getAllowedTopics() { return allowedTopics; }
+    public void setAllowedTopics(List<String> allowedTopics) { this.allowedTopics = List.copyOf(allowedTopics); }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,354 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.controller;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps the server's work queues bounded and decides whether new commands are admitted.
+ * <p>
+ * Every pool created through {@link #newBoundedExecutor(String, int, int)} has a fixed number of
+ * threads and a queue of fixed capacity; one created through
+ * {@link #newConcurrencyLimitedExecutor(String, ExecutorService, int)} runs a bounded number of
+ * tasks at once. Once the queue or the concurrency limit is full, further tasks are refused with a
+ * {@link RejectedExecutionException} and counted. They are never run on the submitting thread,
+ * which may be an HTTP server's dispatcher or a Netty event loop that must not block; the
+ * submitter decides what to do instead, such as answering 503. Long before that, as soon as any
+ * queue holds more than the high-water mark, {@link #tryAdmit()} turns new commands away. The
+ * {@code Retry-After} it suggests is the time the most loaded queue needs to drain back to half
+ * its high-water mark at the rate it has recently been completing tasks.
+ */
+public class AdmissionController {
+
+    static final long MIN_RETRY_AFTER_SECONDS = 1;
+    static final long MAX_RETRY_AFTER_SECONDS = 60;
+    private static final long SAMPLE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+    private static final double RATE_SMOOTHING = 0.5;
+
+    private final double highWaterRatio;
+    private final LongSupplier nanoClock;
+    private final List<WatchedPool> pools = new CopyOnWriteArrayList<>();
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+    // Set while a request refused by a full HTTP pool runs on the server's dispatcher thread.
+    private final ThreadLocal<Boolean> refusedRequest = new ThreadLocal<>();
+
+    public AdmissionController(double highWaterRatio) {
+        this(highWaterRatio, System::nanoTime);
+    }
+
+    AdmissionController(double highWaterRatio, LongSupplier nanoClock) {
+        if (!(highWaterRatio > 0.0 && highWaterRatio <= 1.0)) {
+            throw new IllegalArgumentException("highWaterRatio must be in (0, 1]");
+        }
+        this.highWaterRatio = highWaterRatio;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Creates a pool of {@code threads} threads whose queue holds at most {@code queueCapacity} tasks
+     * and registers it with this controller.
+     */
+    public ThreadPoolExecutor newBoundedExecutor(String name, int threads, int queueCapacity) {
+        final LongAdder overflows = new LongAdder();
+        final AtomicInteger threadNumber = new AtomicInteger();
+        final ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, (task, pool) -> {
+                    if (!pool.isShutdown()) {
+                        overflows.increment();
+                    }
+                    throw new RejectedExecutionException(name + " queue is full (" + queueCapacity + " tasks)");
+                });
+        watch(new WatchedPool(name, queueCapacity, () -> executor.getQueue().size(), executor::getCompletedTaskCount,
+                executor::getActiveCount, threads, overflows));
+        return executor;
+    }
+
+    /**
+     * Wraps a thread-per-task executor, such as one running virtual threads, so that at most
+     * {@code maxConcurrency} of its tasks run at once, and registers it with this controller. Further
+     * tasks are refused. As such an executor has no queue, its depth is the number of tasks in
+     * progress.
+     */
+    public ExecutorService newConcurrencyLimitedExecutor(String name, ExecutorService threadPerTaskExecutor, int maxConcurrency) {
+        final ConcurrencyLimitedExecutor executor = new ConcurrencyLimitedExecutor(name, threadPerTaskExecutor, maxConcurrency);
+        watch(new WatchedPool(name, maxConcurrency, executor.inProgress::get, executor.completed::sum,
+                executor.inProgress::get, -1, executor.overflows));
+        return executor;
+    }
+
+    /**
+     * Adapts a pool from this controller for {@link com.sun.net.httpserver.HttpServer}, which has no
+     * way to answer a request its executor refuses. A refused request runs on the server's dispatcher
+     * thread only as far as {@link #refusedRequestFilter()}, which answers it with 503 and
+     * {@code Retry-After} without reading the body or calling the handler.
+     */
+    public Executor refusingWithServiceUnavailable(ExecutorService pool) {
+        return task -> {
+            try {
+                pool.execute(task);
+            } catch (RejectedExecutionException e) {
+                if (pool.isShutdown()) {
+                    throw e;
+                }
+                refusedRequest.set(Boolean.TRUE);
+                try {
+                    task.run();
+                } finally {
+                    refusedRequest.remove();
+                }
+            }
+        };
+    }
+
+    /**
+     * @return The filter that answers requests refused by a pool wrapped with
+     *         {@link #refusingWithServiceUnavailable(ExecutorService)}; add it to every context.
+     */
+    public Filter refusedRequestFilter() {
+        return new Filter() {
+            @Override
+            public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+                if (refusedRequest.get() == null) {
+                    chain.doFilter(exchange);
+                    return;
+                }
+                final byte[] responseBytes = "{\"error\":\"Service Unavailable\"}".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+                exchange.getResponseHeaders().set("Retry-After", Long.toString(MIN_RETRY_AFTER_SECONDS));
+                exchange.getResponseHeaders().set("Connection", "close");
+                exchange.sendResponseHeaders(503, responseBytes.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(responseBytes);
+                }
+            }
+
+            @Override
+            public String description() {
+                return "Answers requests the HTTP pool had no room for with 503";
+            }
+        };
+    }
+
+    private void watch(WatchedPool pool) {
+        pool.lastSampleNanos = nanoClock.getAsLong();
+        pools.add(pool);
+    }
+
+    /**
+     * Decides whether one more command may enter the system.
+     *
+     * @return 0 if it is admitted; otherwise the number of seconds the client should wait before
+     *         retrying, between {@value #MIN_RETRY_AFTER_SECONDS} and {@value #MAX_RETRY_AFTER_SECONDS}.
+     */
+    public long tryAdmit() {
+        long retryAfterSeconds = 0;
+        for (WatchedPool pool : pools) {
+            final int depth = pool.depth.getAsInt();
+            final double drainRate = pool.sampleDrainRate(nanoClock.getAsLong());
+            if (depth > pool.highWater) {
+                retryAfterSeconds = Math.max(retryAfterSeconds, retryAfterSeconds(depth - pool.highWater / 2, drainRate));
+            }
+        }
+        if (retryAfterSeconds > 0) {
+            shed.increment();
+            return retryAfterSeconds;
+        }
+        admitted.increment();
+        return 0;
+    }
+
+    /**
+     * Answers the exchange with 429 Too Many Requests and a {@code Retry-After} header if
+     * {@link #tryAdmit()} turns the command away. The request body is left unread.
+     *
+     * @return Whether the request was shed.
+     */
+    public boolean shedIfOverloaded(HttpExchange exchange) throws IOException {
+        final long retryAfterSeconds = tryAdmit();
+        if (retryAfterSeconds == 0) {
+            return false;
+        }
+        final byte[] responseBytes = ("{\"error\":\"Too Many Requests\",\"retryAfterSeconds\":" + retryAfterSeconds + "}")
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.getResponseHeaders().set("Retry-After", Long.toString(retryAfterSeconds));
+        exchange.sendResponseHeaders(429, responseBytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(responseBytes);
+        }
+        return true;
+    }
+
+    static long retryAfterSeconds(int excess, double drainRatePerSecond) {
+        if (drainRatePerSecond <= 0.0) {
+            return MAX_RETRY_AFTER_SECONDS;
+        }
+        final long seconds = (long) Math.ceil(excess / drainRatePerSecond);
+        return Math.min(MAX_RETRY_AFTER_SECONDS, Math.max(MIN_RETRY_AFTER_SECONDS, seconds));
+    }
+
+    public Map<String, Object> snapshot() {
+        final Map<String, Object> queues = new LinkedHashMap<>();
+        for (WatchedPool pool : pools) {
+            final Map<String, Object> queue = new LinkedHashMap<>();
+            queue.put("depth", pool.depth.getAsInt());
+            queue.put("capacity", pool.capacity);
+            queue.put("highWater", pool.highWater);
+            queue.put("activeThreads", pool.active.getAsInt());
+            queue.put("threads", pool.threads < 0 ? "virtual" : pool.threads);
+            queue.put("completed", pool.completed.getAsLong());
+            queue.put("drainRatePerSecond", Math.round(pool.drainRate * 10) / 10.0);
+            queue.put("rejected", pool.overflows.sum());
+            queues.put(pool.name, queue);
+        }
+        final Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("highWaterRatio", highWaterRatio);
+        snapshot.put("admitted", admitted.sum());
+        snapshot.put("shed", shed.sum());
+        snapshot.put("queues", queues);
+        return snapshot;
+    }
+
+    private final class WatchedPool {
+        private final String name;
+        private final int capacity;
+        private final int highWater;
+        private final IntSupplier depth;
+        private final LongSupplier completed;
+        private final IntSupplier active;
+        private final int threads;
+        private final LongAdder overflows;
+        private long lastCompleted;
+        private volatile long lastSampleNanos;
+        private volatile double drainRate;
+
+        private WatchedPool(String name, int capacity, IntSupplier depth, LongSupplier completed, IntSupplier active,
+                            int threads, LongAdder overflows) {
+            this.name = name;
+            this.capacity = capacity;
+            this.highWater = Math.max(1, (int) (capacity * highWaterRatio));
+            this.depth = depth;
+            this.completed = completed;
+            this.active = active;
+            this.threads = threads;
+            this.overflows = overflows;
+        }
+
+        /**
+         * Folds the completions since the last sample into the smoothed drain rate, at most once per
+         * sample interval.
+         */
+        private double sampleDrainRate(long now) {
+            if (now - lastSampleNanos >= SAMPLE_INTERVAL_NANOS) {
+                synchronized (this) {
+                    final long elapsed = now - lastSampleNanos;
+                    if (elapsed >= SAMPLE_INTERVAL_NANOS) {
+                        final long completedNow = completed.getAsLong();
+                        final double rate = (completedNow - lastCompleted) * 1e9 / elapsed;
+                        lastCompleted = completedNow;
+                        lastSampleNanos = now;
+                        drainRate = drainRate == 0.0 ? rate : RATE_SMOOTHING * rate + (1 - RATE_SMOOTHING) * drainRate;
+                    }
+                }
+            }
+            return drainRate;
+        }
+    }
+
+    private static final class ConcurrencyLimitedExecutor extends AbstractExecutorService {
+        private final String name;
+        private final ExecutorService delegate;
+        private final int maxConcurrency;
+        private final AtomicInteger inProgress = new AtomicInteger();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder overflows = new LongAdder();
+
+        private ConcurrencyLimitedExecutor(String name, ExecutorService delegate, int maxConcurrency) {
+            this.name = name;
+            this.delegate = delegate;
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            if (inProgress.incrementAndGet() > maxConcurrency) {
+                inProgress.decrementAndGet();
+                overflows.increment();
+                throw new RejectedExecutionException(name + " has " + maxConcurrency + " tasks in progress");
+            }
+            try {
+                delegate.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        inProgress.decrementAndGet();
+                        completed.increment();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inProgress.decrementAndGet();
+                throw e;
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,241 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.controller;
+
+import com.devinbroyal.mdm.domain.CommandRequest;
+import com.devinbroyal.mdm.exception.MdmCommandException;
+import com.devinbroyal.mdm.exception.SendQueueFullException;
+import com.devinbroyal.mdm.service.MdmService;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Accepts a stream of newline-delimited {@code {"deviceToken": ..., "payload": {...}}} records, each
+ * optionally carrying a {@code tenant}, {@code topic} and {@code priority}, and submits each one to the {@link MdmService} as soon as it has been read.
+ * <p>
+ * The body is never buffered as a whole: one line is held at a time, so a single request can carry
+ * hundreds of thousands of commands in constant memory. A malformed line is counted as rejected and
+ * does not abort the rest of the batch.
+ */
+public class BatchCommandHandler implements HttpHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchCommandHandler.class);
+    private static final int MAX_LINE_CHARS = 64 * 1024;
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private static final int LINE_READ = 0;
+    private static final int LINE_TOO_LONG = 1;
+    private static final int END_OF_STREAM = -1;
+
+    private final MdmService mdmService;
+    private final Gson gson;
+    private final AdmissionController admissionController;
+    private final TypeAdapter<Map<String, Object>> payloadAdapter;
+
+    public BatchCommandHandler(MdmService mdmService, Gson gson, AdmissionController admissionController) {
+        this.mdmService = mdmService;
+        this.gson = gson;
+        this.admissionController = admissionController;
+        this.payloadAdapter = gson.getAdapter(new TypeToken<Map<String, Object>>() {});
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+            sendResponse(exchange, 405, "{\"error\":\"Method Not Allowed\"}");
+            return;
+        }
+        if (admissionController.shedIfOverloaded(exchange)) {
+            return;
+        }
+
+        final String batchId = UUID.randomUUID().toString();
+        final List<Map<String, Object>> errors = new ArrayList<>();
+        long lineNumber = 0;
+        long accepted = 0;
+        long rejected = 0;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+            final StringBuilder line = new StringBuilder();
+            int lineStatus;
+            while ((lineStatus = readLine(reader, line)) != END_OF_STREAM) {
+                lineNumber++;
+                if (lineStatus == LINE_TOO_LONG) {
+                    rejected++;
+                    addError(errors, lineNumber, "Line exceeds " + MAX_LINE_CHARS + " characters");
+                    continue;
+                }
+                final String record = line.toString();
+                if (record.isBlank()) {
+                    continue;
+                }
+
+                try {
+                    submitRecord(record);
+                    accepted++;
+                } catch (JsonParseException | IOException | IllegalStateException e) {
+                    rejected++;
+                    addError(errors, lineNumber, "Malformed record: " + e.getMessage());
+                } catch (IllegalArgumentException e) {
+                    rejected++;
+                    addError(errors, lineNumber, e.getMessage());
+                } catch (SendQueueFullException e) {
+                    rejected++;
+                    addError(errors, lineNumber, e.getMessage());
+                } catch (MdmCommandException e) {
+                    rejected++;
+                    addError(errors, lineNumber, "Failed to submit command");
+                    logger.warn("Batch {} line {}: failed to submit command", batchId, lineNumber, e);
+                    if (Thread.currentThread().isInterrupted()) {
+                        break;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Batch {} aborted after {} lines", batchId, lineNumber, e);
+            sendResponse(exchange, 500, gson.toJson(summary(batchId, accepted, rejected, errors, "Batch aborted: " + e.getMessage())));
+            return;
+        }
+
+        logger.info("Batch {} submitted: {} accepted, {} rejected", batchId, accepted, rejected);
+        sendResponse(exchange, 202, gson.toJson(summary(batchId, accepted, rejected, errors, null)));
+    }
+
+    private void submitRecord(String line) throws IOException, MdmCommandException {
+        final CommandRequest request = new CommandRequest();
+        String deviceToken = null;
+        Map<String, Object> payload = null;
+
+        JsonReader jsonReader = new JsonReader(new StringReader(line));
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            switch (jsonReader.nextName()) {
+                case "deviceToken":
+                    deviceToken = nextNullableString(jsonReader);
+                    break;
+                case "payload":
+                    payload = payloadAdapter.read(jsonReader);
+                    break;
+                case "tenant":
+                    request.setTenant(nextNullableString(jsonReader));
+                    break;
+                case "topic":
+                    request.setTopic(nextNullableString(jsonReader));
+                    break;
+                case "priority":
+                    request.setPriority(nextNullableString(jsonReader));
+                    break;
+                default:
+                    jsonReader.skipValue();
+            }
+        }
+        jsonReader.endObject();
+        if (jsonReader.peek() != JsonToken.END_DOCUMENT) {
+            throw new JsonParseException("Unexpected content after record");
+        }
+
+        if (deviceToken == null || deviceToken.isBlank() || payload == null) {
+            throw new IllegalArgumentException("deviceToken and payload are required");
+        }
+        if (!payload.containsKey("CommandUUID")) {
+            payload.put("CommandUUID", UUID.randomUUID().toString());
+        }
+        request.setDeviceToken(deviceToken);
+        request.setPayload(payload);
+        mdmService.sendCommand(request);
+    }
+
+    private static String nextNullableString(JsonReader jsonReader) throws IOException {
+        if (jsonReader.peek() == JsonToken.NULL) {
+            jsonReader.nextNull();
+            return null;
+        }
+        return jsonReader.nextString();
+    }
+
+    /**
+     * Reads the next line into the reusable buffer, discarding anything beyond
+     * {@link #MAX_LINE_CHARS} so that one oversized record cannot exhaust the heap.
+     */
+    private static int readLine(Reader reader, StringBuilder line) throws IOException {
+        line.setLength(0);
+        boolean tooLong = false;
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (c == '\n') {
+                return tooLong ? LINE_TOO_LONG : LINE_READ;
+            }
+            if (c == '\r') {
+                continue;
+            }
+            if (line.length() < MAX_LINE_CHARS) {
+                line.append((char) c);
+            } else {
+                tooLong = true;
+            }
+        }
+        if (line.length() == 0 && !tooLong) {
+            return END_OF_STREAM;
+        }
+        return tooLong ? LINE_TOO_LONG : LINE_READ;
+    }
+
+    private static void addError(List<Map<String, Object>> errors, long lineNumber, String message) {
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            Map<String, Object> error = new LinkedHashMap<>();
+            error.put("line", lineNumber);
+            error.put("error", message);
+            errors.add(error);
+        }
+    }
+
+    private static Map<String, Object> summary(String batchId, long accepted, long rejected, List<Map<String, Object>> errors, String failure) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("batchId", batchId);
+        summary.put("accepted", accepted);
+        summary.put("rejected", rejected);
+        summary.put("errors", errors);
+        if (failure != null) {
+            summary.put("error", failure);
+        }
+        return summary;
+    }
+
+    private void sendResponse(HttpExchange exchange, int statusCode, String responseBody) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        byte[] responseBytes = responseBody.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(statusCode, responseBytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(responseBytes);
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,227 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.controller;
+
+import com.devinbroyal.mdm.domain.BatchSummary;
+import com.devinbroyal.mdm.domain.CommandResult;
+import com.devinbroyal.mdm.exception.MdmCommandException;
+import com.devinbroyal.mdm.exception.SendQueueFullException;
+import com.devinbroyal.mdm.persistence.BatchSummaryRepository;
+import com.devinbroyal.mdm.service.MdmService;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+/**
+ * Sends one command payload to many devices ({@code POST /broadcast}) and reports the aggregated
+ * outcome of a broadcast ({@code GET /broadcast/{batchId}}).
+ * <p>
+ * The request body is read with a streaming JSON reader: {@code payload} (and optionally
+ * {@code recordDetail}, {@code tenant}, {@code topic} and {@code priority}) must precede {@code deviceTokens}, whose elements are handed to the service
+ * one at a time without materialising the token list.
+ */
+public class BroadcastHandler implements HttpHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(BroadcastHandler.class);
+    private static final String CONTEXT_PATH = "/broadcast";
+
+    private final MdmService mdmService;
+    private final BatchSummaryRepository batchSummaryRepository;
+    private final Gson gson;
+    private final AdmissionController admissionController;
+    private final TypeAdapter<Map<String, Object>> payloadAdapter;
+
+    public BroadcastHandler(MdmService mdmService, BatchSummaryRepository batchSummaryRepository, Gson gson, AdmissionController admissionController) {
+        this.mdmService = mdmService;
+        this.batchSummaryRepository = batchSummaryRepository;
+        this.gson = gson;
+        this.admissionController = admissionController;
+        this.payloadAdapter = gson.getAdapter(new TypeToken<Map<String, Object>>() {});
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if ("GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+            handleSummary(exchange);
+        } else if ("POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+            handleBroadcast(exchange);
+        } else {
+            sendResponse(exchange, 405, "{\"error\":\"Method Not Allowed\"}");
+        }
+    }
+
+    private void handleSummary(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String batchId = path.length() > CONTEXT_PATH.length() + 1 ? path.substring(CONTEXT_PATH.length() + 1) : "";
+        if (batchId.isBlank()) {
+            sendResponse(exchange, 400, "{\"error\":\"A batch ID is required: GET /broadcast/{batchId}\"}");
+            return;
+        }
+        Optional<BatchSummary> summary = batchSummaryRepository.findById(batchId);
+        if (summary.isEmpty()) {
+            sendResponse(exchange, 404, "{\"error\":\"Unknown batch ID\"}");
+            return;
+        }
+        sendResponse(exchange, 200, gson.toJson(toResponse(summary.get())));
+    }
+
+    private void handleBroadcast(HttpExchange exchange) throws IOException {
+        if (admissionController.shedIfOverloaded(exchange)) {
+            return;
+        }
+        try (JsonReader reader = new JsonReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+            Map<String, Object> payload = null;
+            boolean recordDetail = false;
+            String tenant = null;
+            String topic = null;
+            String priority = null;
+            BatchSummary summary = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "payload":
+                        payload = payloadAdapter.read(reader);
+                        break;
+                    case "recordDetail":
+                        recordDetail = reader.nextBoolean();
+                        break;
+                    case "tenant":
+                        tenant = reader.nextString();
+                        break;
+                    case "topic":
+                        topic = reader.nextString();
+                        break;
+                    case "priority":
+                        priority = reader.nextString();
+                        break;
+                    case "deviceTokens":
+                        if (payload == null) {
+                            sendResponse(exchange, 400, "{\"error\":\"payload must precede deviceTokens in the request body\"}");
+                            return;
+                        }
+                        if (summary != null) {
+                            throw new JsonParseException("deviceTokens may only appear once");
+                        }
+                        reader.beginArray();
+                        summary = mdmService.broadcastCommand(tenant, topic, priority, payload, new TokenIterator(reader), recordDetail);
+                        reader.endArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (summary == null) {
+                sendResponse(exchange, 400, "{\"error\":\"Invalid request body: payload and deviceTokens are required\"}");
+                return;
+            }
+            sendResponse(exchange, 202, gson.toJson(toResponse(summary)));
+
+        } catch (JsonParseException | IllegalStateException | UncheckedIOException e) {
+            logger.warn("Failed to parse broadcast request body", e);
+            sendResponse(exchange, 400, "{\"error\":\"Malformed JSON request body\"}");
+        } catch (IllegalArgumentException e) {
+            sendResponse(exchange, 400, gson.toJson(Map.of("error", e.getMessage())));
+        } catch (SendQueueFullException e) {
+            logger.warn("Broadcast stopped: {}", e.getMessage());
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            sendResponse(exchange, 503, gson.toJson(Map.of("error", e.getMessage())));
+        } catch (MdmCommandException e) {
+            logger.error("Error dispatching broadcast", e);
+            sendResponse(exchange, 500, "{\"error\":\"Failed to send MDM broadcast\"}");
+        } catch (Exception e) {
+            logger.error("An unexpected error occurred in BroadcastHandler", e);
+            sendResponse(exchange, 500, "{\"error\":\"Internal Server Error\"}");
+        }
+    }
+
+    private static Map<String, Object> toResponse(BatchSummary summary) {
+        Map<String, Object> counts = new LinkedHashMap<>();
+        for (CommandResult.Status status : CommandResult.Status.values()) {
+            counts.put(status.name(), summary.getCount(status));
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("batchId", summary.getBatchId());
+        response.put("createdAt", summary.getCreatedAt());
+        response.put("submitted", summary.getSubmitted());
+        response.put("skipped", summary.getSkipped());
+        response.put("completed", summary.getCompleted());
+        response.put("statusCounts", counts);
+        response.put("rejectionReasons", summary.getRejectionReasons());
+        response.put("detailRecorded", summary.isDetailRecorded());
+        return response;
+    }
+
+    private void sendResponse(HttpExchange exchange, int statusCode, String responseBody) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        byte[] responseBytes = responseBody.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(statusCode, responseBytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(responseBytes);
+        }
+    }
+
+    /**
+     * Reads device tokens lazily from the open {@code deviceTokens} array.
+     */
+    private static final class TokenIterator implements Iterator<String> {
+        private final JsonReader reader;
+
+        private TokenIterator(JsonReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                return reader.hasNext();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public String next() {
+            try {
+                if (!reader.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    return null;
+                }
+                return reader.nextString();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,152 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.controller;
+
+import com.devinbroyal.mdm.domain.CheckInRequest;
+import com.devinbroyal.mdm.plist.XmlPlistReader;
+import com.devinbroyal.mdm.plist.XmlPlistWriter;
+import com.devinbroyal.mdm.service.MdmService;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The endpoint a woken device checks in at ({@code PUT} or {@code POST /mdm/connect}). The body
+ * reports on the commands the device fetched last time; the response carries every command now
+ * queued for it as {@code {"commands":[...]}}, empty when there is nothing to do.
+ * <p>
+ * A body sent as {@code application/x-apple-aspen-mdm} or with a plist content type is read as an
+ * XML property list with the same keys, and answered with a plist {@code dict} holding a
+ * {@code commands} array. Commands are transcoded from their stored JSON into a per-thread
+ * {@link XmlPlistWriter} buffer.
+ */
+public class CheckInHandler implements HttpHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(CheckInHandler.class);
+    private static final int MAX_PLIST_BYTES = 1 << 20;
+    private static final ThreadLocal<XmlPlistWriter> PLIST_WRITER = ThreadLocal.withInitial(XmlPlistWriter::new);
+    private final MdmService mdmService;
+    private final Gson gson;
+
+    public CheckInHandler(MdmService mdmService, Gson gson) {
+        this.mdmService = mdmService;
+        this.gson = gson;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (!"PUT".equalsIgnoreCase(exchange.getRequestMethod()) && !"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+            sendResponse(exchange, 405, "{\"error\":\"Method Not Allowed\"}");
+            return;
+        }
+
+        if (isPlist(exchange.getRequestHeaders().getFirst("Content-Type"))) {
+            handlePlist(exchange);
+            return;
+        }
+
+        try (InputStreamReader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+            CheckInRequest request = gson.fromJson(reader, CheckInRequest.class);
+            if (request == null || request.getDeviceToken() == null || request.getDeviceToken().isBlank()) {
+                sendResponse(exchange, 400, "{\"error\":\"Invalid request body: deviceToken is required\"}");
+                return;
+            }
+
+            List<String> commands = mdmService.checkIn(request);
+
+            // The payloads are already JSON; splice them in rather than parsing them back into maps.
+            StringBuilder responseBody = new StringBuilder("{\"commands\":[");
+            for (int i = 0; i < commands.size(); i++) {
+                if (i > 0) {
+                    responseBody.append(',');
+                }
+                responseBody.append(commands.get(i));
+            }
+            responseBody.append("]}");
+            sendResponse(exchange, 200, responseBody.toString());
+
+        } catch (JsonSyntaxException e) {
+            logger.warn("Failed to parse check-in request body", e);
+            sendResponse(exchange, 400, "{\"error\":\"Malformed JSON request body\"}");
+        } catch (IllegalArgumentException e) {
+            sendResponse(exchange, 400, gson.toJson(Map.of("error", e.getMessage())));
+        } catch (UnsupportedOperationException e) {
+            sendResponse(exchange, 404, gson.toJson(Map.of("error", e.getMessage())));
+        } catch (Exception e) {
+            logger.error("An unexpected error occurred in CheckInHandler", e);
+            sendResponse(exchange, 500, "{\"error\":\"Internal Server Error\"}");
+        }
+    }
+
+    private void handlePlist(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            byte[] bytes = body.readNBytes(MAX_PLIST_BYTES + 1);
+            if (bytes.length > MAX_PLIST_BYTES) {
+                sendResponse(exchange, 413, "{\"error\":\"Check-in body too large\"}");
+                return;
+            }
+            Map<String, Object> message = XmlPlistReader.parseDict(bytes, 0, bytes.length);
+            CheckInRequest request = gson.fromJson(gson.toJsonTree(message), CheckInRequest.class);
+            if (request == null || request.getDeviceToken() == null || request.getDeviceToken().isBlank()) {
+                sendResponse(exchange, 400, "{\"error\":\"Invalid request body: deviceToken is required\"}");
+                return;
+            }
+
+            List<String> commands = mdmService.checkIn(request);
+
+            XmlPlistWriter writer = PLIST_WRITER.get();
+            writer.startDocument().startDict().key("commands").startArray();
+            for (String command : commands) {
+                writer.json(new JsonReader(new StringReader(command)));
+            }
+            writer.endArray().endDict().endDocument();
+
+            exchange.getResponseHeaders().set("Content-Type", "application/xml; charset=UTF-8");
+            exchange.sendResponseHeaders(200, writer.size());
+            try (OutputStream os = exchange.getResponseBody()) {
+                writer.writeTo(os);
+            }
+        } catch (JsonSyntaxException | IllegalArgumentException e) {
+            sendResponse(exchange, 400, gson.toJson(Map.of("error", String.valueOf(e.getMessage()))));
+        } catch (UnsupportedOperationException e) {
+            sendResponse(exchange, 404, gson.toJson(Map.of("error", e.getMessage())));
+        } catch (Exception e) {
+            logger.error("An unexpected error occurred in CheckInHandler", e);
+            sendResponse(exchange, 500, "{\"error\":\"Internal Server Error\"}");
+        }
+    }
+
+    private static boolean isPlist(String contentType) {
+        return contentType != null && (contentType.contains("plist") || contentType.contains("x-apple-aspen-mdm"));
+    }
+
+    private void sendResponse(HttpExchange exchange, int statusCode, String responseBody) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        byte[] responseBytes = responseBody.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(statusCode, responseBytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(responseBytes);
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -7,6 +7,7 @@ package com.devinbroyal.mdm.controller;
 
 import com.devinbroyal.mdm.domain.CommandRequest;
 import com.devinbroyal.mdm.exception.MdmCommandException;
+import com.devinbroyal.mdm.exception.SendQueueFullException;
 import com.devinbroyal.mdm.service.MdmService;
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
@@ -16,7 +17,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
@@ -27,10 +28,14 @@ public class CommandHandler implements HttpHandler {
     private static final Logger logger = LoggerFactory.getLogger(CommandHandler.class);
     private final MdmService mdmService;
     private final Gson gson;
+    private final AdmissionController admissionController;
+    private final int maxBodyBytes;
 
-    public CommandHandler(MdmService mdmService, Gson gson) {
+    public CommandHandler(MdmService mdmService, Gson gson, AdmissionController admissionController, int maxBodyBytes) {
         this.mdmService = mdmService;
         this.gson = gson;
+        this.admissionController = admissionController;
+        this.maxBodyBytes = maxBodyBytes;
     }
 
     @Override
@@ -39,9 +44,18 @@ public class CommandHandler implements HttpHandler {
             sendResponse(exchange, 405, "{\"error\":\"Method Not Allowed\"}");
             return;
         }
+        if (admissionController.shedIfOverloaded(exchange)) {
+            return;
+        }
 
-        try (InputStreamReader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
-            CommandRequest request = gson.fromJson(reader, CommandRequest.class);
+        try (InputStream body = exchange.getRequestBody()) {
+            byte[] bytes = body.readNBytes(maxBodyBytes + 1);
+            if (bytes.length > maxBodyBytes) {
+                sendResponse(exchange, 413, "{\"error\":\"Command body exceeds " + maxBodyBytes + " bytes\"}");
+                return;
+            }
+            // The payload stays the JSON text the client sent; see CommandRequestReader.
+            CommandRequest request = CommandRequestReader.read(bytes);
 
             if (request == null || request.getDeviceToken() == null || request.getDeviceToken().isBlank() || request.getPayload() == null) {
                 sendResponse(exchange, 400, "{\"error\":\"Invalid request body: deviceToken and payload are required\"}");
@@ -52,11 +66,12 @@ public class CommandHandler implements HttpHandler {
             if (!request.getPayload().containsKey("CommandUUID")) {
                 String generatedUUID = UUID.randomUUID().toString();
                 request.getPayload().put("CommandUUID", generatedUUID);
+                request.setPayloadJson(CommandRequestReader.withCommandUUID(request.getPayloadJson(), generatedUUID));
                 logger.warn("No CommandUUID found in payload. Generated new UUID: {}", generatedUUID);
             }
             String commandUUID = (String) request.getPayload().get("CommandUUID");
 
-            mdmService.sendCommand(request.getDeviceToken(), request.getPayload());
+            mdmService.sendCommand(request);
 
             String responseBody = gson.toJson(Map.of(
                 "message", "Command submitted for processing",
@@ -68,6 +83,12 @@ public class CommandHandler implements HttpHandler {
         } catch (JsonSyntaxException e) {
             logger.warn("Failed to parse JSON request body", e);
             sendResponse(exchange, 400, "{\"error\":\"Malformed JSON request body\"}");
+        } catch (IllegalArgumentException e) {
+            sendResponse(exchange, 400, gson.toJson(Map.of("error", e.getMessage())));
+        } catch (SendQueueFullException e) {
+            logger.warn("Refusing MDM command for token {}: {}", getPartialTokenForLogging(e.getDeviceToken()), e.getMessage());
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            sendResponse(exchange, 503, gson.toJson(Map.of("error", e.getMessage())));
         } catch (MdmCommandException e) {
             logger.error("Error processing MDM command request for token {}", getPartialTokenForLogging(e.getDeviceToken()), e);
             sendResponse(exchange, 500, "{\"error\":\"Failed to send MDM command\"}");
@@ -0,0 +1,438 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.controller;
+
+import com.devinbroyal.mdm.domain.CommandRequest;
+import com.google.gson.JsonSyntaxException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads a {@code POST /command} body straight from its UTF-8 bytes in a single forward pass,
+ * keeping the payload as the JSON text the client sent.
+ * <p>
+ * The whole body is validated as strict JSON (RFC 8259, including UTF-8), but only the request's
+ * own string members are decoded. The payload is never materialized: its text becomes
+ * {@link CommandRequest#getPayloadJson()}, so numbers and key order reach the device exactly as
+ * sent, and {@link CommandRequest#getPayload()} holds only the members the dispatcher reads, its
+ * {@code CommandUUID} and {@code Command.RequestType}. Nesting is limited to {@value #MAX_DEPTH}
+ * levels.
+ */
+final class CommandRequestReader {
+
+    static final int MAX_DEPTH = 64;
+    static final String COMMAND_UUID_KEY = "CommandUUID";
+
+    private final byte[] in;
+    private final int end;
+    private int pos;
+
+    private CommandRequestReader(byte[] in) {
+        this.in = in;
+        this.end = in.length;
+    }
+
+    /**
+     * @return The request, whose payload map and JSON are both {@code null} if the body has no
+     *         payload or a {@code null} one.
+     * @throws JsonSyntaxException if the body is not a well-formed JSON object.
+     * @throws IllegalArgumentException if a request member or the payload's {@code CommandUUID} is
+     *                                  not a string.
+     */
+    static CommandRequest read(byte[] body) {
+        return new CommandRequestReader(body).request();
+    }
+
+    /**
+     * Makes {@code commandUUID} the first member of the payload object.
+     */
+    static String withCommandUUID(String payloadJson, String commandUUID) {
+        int i = 1;
+        while (i < payloadJson.length() && isWhitespace(payloadJson.charAt(i))) {
+            i++;
+        }
+        String member = "{\"" + COMMAND_UUID_KEY + "\":\"" + commandUUID + "\"";
+        return payloadJson.charAt(i) == '}' ? member + "}" : member + "," + payloadJson.substring(1);
+    }
+
+    private CommandRequest request() {
+        CommandRequest request = new CommandRequest();
+        skipWhitespace();
+        expect('{');
+        if (!consume('}')) {
+            do {
+                String key = string(true);
+                expect(':');
+                switch (key) {
+                    case "deviceToken":
+                        request.setDeviceToken(requestMember(key));
+                        break;
+                    case "tenant":
+                        request.setTenant(requestMember(key));
+                        break;
+                    case "topic":
+                        request.setTopic(requestMember(key));
+                        break;
+                    case "priority":
+                        request.setPriority(requestMember(key));
+                        break;
+                    case "pushMagic":
+                        request.setPushMagic(requestMember(key));
+                        break;
+                    case "payload":
+                        payload(request);
+                        break;
+                    default:
+                        value(2);
+                }
+            } while (consume(','));
+            expect('}');
+        }
+        skipWhitespace();
+        if (pos != end) {
+            throw error("Unexpected data after the request object");
+        }
+        return request;
+    }
+
+    private String requestMember(String key) {
+        skipWhitespace();
+        if (peek() == '"') {
+            return string(true);
+        }
+        if (literal("null")) {
+            return null;
+        }
+        throw new IllegalArgumentException(key + " must be a string");
+    }
+
+    private void payload(CommandRequest request) {
+        skipWhitespace();
+        if (literal("null")) {
+            request.setPayload(null);
+            request.setPayloadJson(null);
+            return;
+        }
+        int start = pos;
+        if (peek() != '{') {
+            throw new IllegalArgumentException("payload must be an object");
+        }
+        Map<String, Object> summary = new LinkedHashMap<>();
+        pos++;
+        if (!consume('}')) {
+            do {
+                String key = string(true);
+                expect(':');
+                skipWhitespace();
+                if (COMMAND_UUID_KEY.equals(key)) {
+                    if (peek() != '"') {
+                        throw new IllegalArgumentException(COMMAND_UUID_KEY + " must be a string");
+                    }
+                    summary.put(COMMAND_UUID_KEY, string(true));
+                } else if ("Command".equals(key) && peek() == '{') {
+                    String requestType = command();
+                    summary.put("Command", requestType == null ? Map.of() : Map.of("RequestType", requestType));
+                } else {
+                    value(3);
+                }
+            } while (consume(','));
+            expect('}');
+        }
+        request.setPayload(summary);
+        request.setPayloadJson(new String(in, start, pos - start, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Scans the payload's {@code Command} object.
+     *
+     * @return Its {@code RequestType} if that is a string, otherwise {@code null}.
+     */
+    private String command() {
+        String requestType = null;
+        pos++;
+        if (!consume('}')) {
+            do {
+                String key = string(true);
+                expect(':');
+                skipWhitespace();
+                if ("RequestType".equals(key) && peek() == '"') {
+                    requestType = string(true);
+                } else {
+                    value(4);
+                }
+            } while (consume(','));
+            expect('}');
+        }
+        return requestType;
+    }
+
+    /**
+     * Validates and skips one value nested {@code depth} levels deep.
+     */
+    private void value(int depth) {
+        if (depth > MAX_DEPTH) {
+            throw error("Nesting exceeds " + MAX_DEPTH + " levels");
+        }
+        skipWhitespace();
+        switch (peek()) {
+            case '{':
+                pos++;
+                if (!consume('}')) {
+                    do {
+                        string(false);
+                        expect(':');
+                        value(depth + 1);
+                    } while (consume(','));
+                    expect('}');
+                }
+                break;
+            case '[':
+                pos++;
+                if (!consume(']')) {
+                    do {
+                        value(depth + 1);
+                    } while (consume(','));
+                    expect(']');
+                }
+                break;
+            case '"':
+                string(false);
+                break;
+            case 't':
+                requireLiteral("true");
+                break;
+            case 'f':
+                requireLiteral("false");
+                break;
+            case 'n':
+                requireLiteral("null");
+                break;
+            default:
+                number();
+        }
+    }
+
+    private void number() {
+        consumeByte('-');
+        if (!consumeByte('0')) {
+            if (digits() == 0) {
+                throw error("Expected a value");
+            }
+        }
+        if (consumeByte('.') && digits() == 0) {
+            throw error("Expected a digit after the decimal point");
+        }
+        if (consumeByte('e') || consumeByte('E')) {
+            if (!consumeByte('+')) {
+                consumeByte('-');
+            }
+            if (digits() == 0) {
+                throw error("Expected a digit in the exponent");
+            }
+        }
+    }
+
+    private int digits() {
+        int start = pos;
+        while (pos < end && in[pos] >= '0' && in[pos] <= '9') {
+            pos++;
+        }
+        return pos - start;
+    }
+
+    /**
+     * Reads a string at the next non-whitespace position.
+     *
+     * @return The decoded string, or {@code null} when {@code decode} is false.
+     */
+    private String string(boolean decode) {
+        skipWhitespace();
+        if (peek() != '"') {
+            throw error("Expected a string");
+        }
+        pos++;
+        StringBuilder decoded = null;
+        int runStart = pos;
+        while (true) {
+            if (pos >= end) {
+                throw error("Unterminated string");
+            }
+            int b = in[pos] & 0xFF;
+            if (b == '"') {
+                String result = null;
+                if (decode) {
+                    String run = new String(in, runStart, pos - runStart, StandardCharsets.UTF_8);
+                    result = decoded == null ? run : decoded.append(run).toString();
+                }
+                pos++;
+                return result;
+            } else if (b == '\\') {
+                if (decode) {
+                    if (decoded == null) {
+                        decoded = new StringBuilder();
+                    }
+                    decoded.append(new String(in, runStart, pos - runStart, StandardCharsets.UTF_8));
+                }
+                pos++;
+                char c = escape();
+                if (decode) {
+                    decoded.append(c);
+                }
+                runStart = pos;
+            } else if (b < 0x20) {
+                throw error("Unescaped control character in string");
+            } else if (b < 0x80) {
+                pos++;
+            } else {
+                utf8Sequence(b);
+            }
+        }
+    }
+
+    private char escape() {
+        if (pos >= end) {
+            throw error("Unterminated escape");
+        }
+        byte c = in[pos++];
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                return (char) c;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                if (pos + 4 > end) {
+                    throw error("Truncated unicode escape");
+                }
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(in[pos++], 16);
+                    if (digit < 0) {
+                        throw error("Invalid unicode escape");
+                    }
+                    value = value << 4 | digit;
+                }
+                return (char) value;
+            default:
+                throw error("Invalid escape");
+        }
+    }
+
+    /**
+     * Validates one multi-byte UTF-8 sequence, rejecting overlong forms, surrogates and code points
+     * beyond U+10FFFF.
+     */
+    private void utf8Sequence(int lead) {
+        int length;
+        int min;
+        if (lead >= 0xC2 && lead <= 0xDF) {
+            length = 2;
+            min = 0x80;
+        } else if (lead >= 0xE0 && lead <= 0xEF) {
+            length = 3;
+            min = 0x800;
+        } else if (lead >= 0xF0 && lead <= 0xF4) {
+            length = 4;
+            min = 0x10000;
+        } else {
+            throw error("Invalid UTF-8");
+        }
+        if (pos + length > end) {
+            throw error("Truncated UTF-8 sequence");
+        }
+        int codePoint = lead & (0x7F >> length);
+        for (int i = 1; i < length; i++) {
+            int b = in[pos + i] & 0xFF;
+            if ((b & 0xC0) != 0x80) {
+                throw error("Invalid UTF-8");
+            }
+            codePoint = codePoint << 6 | (b & 0x3F);
+        }
+        if (codePoint < min || codePoint > 0x10FFFF || (codePoint >= 0xD800 && codePoint <= 0xDFFF)) {
+            throw error("Invalid UTF-8");
+        }
+        pos += length;
+    }
+
+    private boolean literal(String word) {
+        int length = word.length();
+        if (pos + length > end) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (in[pos + i] != word.charAt(i)) {
+                return false;
+            }
+        }
+        pos += length;
+        return true;
+    }
+
+    private void requireLiteral(String word) {
+        if (!literal(word)) {
+            throw error("Expected " + word);
+        }
+    }
+
+    private void expect(char c) {
+        if (!consume(c)) {
+            throw error("Expected '" + c + "'");
+        }
+    }
+
+    /**
+     * Skips whitespace, then consumes {@code c} if it comes next.
+     */
+    private boolean consume(char c) {
+        skipWhitespace();
+        return consumeByte(c);
+    }
+
+    private boolean consumeByte(char c) {
+        if (pos < end && in[pos] == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private int peek() {
+        if (pos >= end) {
+            throw error("Unexpected end of input");
+        }
+        return in[pos];
+    }
+
+    private void skipWhitespace() {
+        while (pos < end && isWhitespace((char) in[pos])) {
+            pos++;
+        }
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private JsonSyntaxException error(String message) {
+        return new JsonSyntaxException(message + " at offset " + pos);
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,322 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.controller;
+
+import com.devinbroyal.mdm.domain.CommandResult;
+import com.devinbroyal.mdm.persistence.ExecutionHistoryRepository;
+import com.devinbroyal.mdm.persistence.HistoryEntry;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.Collection;
+
+/**
+ * Writes execution history as JSON, encoding UTF-8 straight into one fixed buffer that is flushed
+ * to the response whenever it fills. Numbers and timestamps are formatted in place, so a response of
+ * any size allocates little beyond the {@value #BUFFER_SIZE}-byte buffer.
+ * <p>
+ * The output is byte for byte what the shared {@link com.google.gson.Gson} produces for the same
+ * values: the fields of {@link CommandResult} in declaration order, {@code null}s omitted, and the
+ * same escaping, including Gson's HTML-safe escapes. No reflection is involved.
+ */
+final class HistoryJsonWriter {
+
+    static final int BUFFER_SIZE = 16 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int[] POWERS_OF_TEN = {1, 10, 100, 1000, 10_000, 100_000, 1_000_000, 10_000_000, 100_000_000};
+    private static final long MIN_FAST_EPOCH_SECOND = -62_167_219_200L; // 0000-01-01T00:00:00Z
+    private static final long MAX_FAST_EPOCH_SECOND = 253_402_300_799L; // 9999-12-31T23:59:59Z
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int count;
+
+    HistoryJsonWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes the whole history as an object of device tokens to arrays of results, one device at a
+     * time as the repository visits them.
+     */
+    void history(ExecutionHistoryRepository repository) throws IOException {
+        raw('{');
+        boolean[] first = {true};
+        try {
+            repository.forEachDevice((deviceToken, results) -> {
+                try {
+                    name(deviceToken, first[0]);
+                    first[0] = false;
+                    commandResults(results);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        raw('}');
+    }
+
+    private void commandResults(Collection<CommandResult> results) throws IOException {
+        raw('[');
+        boolean first = true;
+        for (CommandResult result : results) {
+            if (!first) {
+                raw(',');
+            }
+            commandResult(result);
+            first = false;
+        }
+        raw(']');
+    }
+
+    /**
+     * Writes a result as a JSON object.
+     */
+    void commandResult(CommandResult result) throws IOException {
+        raw('{');
+        commandResultMembers(result, true);
+        raw('}');
+    }
+
+    /**
+     * Writes a history entry as a JSON object: its {@code deviceToken}, then its result's fields.
+     */
+    void historyEntry(HistoryEntry entry) throws IOException {
+        raw('{');
+        name("deviceToken", true);
+        string(entry.getDeviceToken());
+        commandResultMembers(entry.getResult(), false);
+        raw('}');
+    }
+
+    private void commandResultMembers(CommandResult result, boolean first) throws IOException {
+        if (result.getCommandUUID() != null) {
+            name("commandUUID", first);
+            string(result.getCommandUUID());
+            first = false;
+        }
+        if (result.getStatus() != null) {
+            name("status", first);
+            string(result.getStatus().name());
+            first = false;
+        }
+        if (result.getTimestamp() != null) {
+            name("timestamp", first);
+            instant(result.getTimestamp());
+            first = false;
+        }
+        if (result.getRejectionReason() != null) {
+            name("rejectionReason", first);
+            string(result.getRejectionReason());
+            first = false;
+        }
+        name("attempt", first);
+        number(result.getAttempt());
+        if (result.getBatchId() != null) {
+            name("batchId", false);
+            string(result.getBatchId());
+        }
+    }
+
+    /**
+     * Writes {@code "name":}, preceded by a comma unless it is the object's first member.
+     */
+    void name(String name, boolean first) throws IOException {
+        if (!first) {
+            raw(',');
+        }
+        string(name);
+        raw(':');
+    }
+
+    void raw(char c) throws IOException {
+        reserve(1);
+        buffer[count++] = (byte) c;
+    }
+
+    void number(long value) throws IOException {
+        if (value < 0) {
+            // Not worth avoiding the allocation: attempts are never negative.
+            String digits = Long.toString(value);
+            for (int i = 0; i < digits.length(); i++) {
+                raw(digits.charAt(i));
+            }
+            return;
+        }
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            raw((char) ('0' + value / divisor % 10));
+        }
+    }
+
+    /**
+     * Writes an instant as a string in the form of {@link Instant#toString()}, without the
+     * formatter's allocations for the years 0 to 9999.
+     */
+    void instant(Instant instant) throws IOException {
+        long seconds = instant.getEpochSecond();
+        if (seconds < MIN_FAST_EPOCH_SECOND || seconds > MAX_FAST_EPOCH_SECOND) {
+            string(instant.toString());
+            return;
+        }
+        long days = Math.floorDiv(seconds, 86_400);
+        int secondOfDay = Math.floorMod(seconds, 86_400);
+        // Days to a proleptic Gregorian date, after Howard Hinnant's civil_from_days.
+        long z = days + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long dayOfEra = z - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+        raw('"');
+        digits(year, 4);
+        raw('-');
+        digits(month, 2);
+        raw('-');
+        digits(day, 2);
+        raw('T');
+        digits(secondOfDay / 3600, 2);
+        raw(':');
+        digits(secondOfDay / 60 % 60, 2);
+        raw(':');
+        digits(secondOfDay % 60, 2);
+        int nanos = instant.getNano();
+        if (nanos > 0) {
+            raw('.');
+            if (nanos % 1_000_000 == 0) {
+                digits(nanos / 1_000_000, 3);
+            } else if (nanos % 1000 == 0) {
+                digits(nanos / 1000, 6);
+            } else {
+                digits(nanos, 9);
+            }
+        }
+        raw('Z');
+        raw('"');
+    }
+
+    private void digits(int value, int width) throws IOException {
+        for (int divisor = POWERS_OF_TEN[width - 1]; divisor > 0; divisor /= 10) {
+            raw((char) ('0' + value / divisor % 10));
+        }
+    }
+
+    void string(String value) throws IOException {
+        raw('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                switch (c) {
+                    case '"':
+                    case '\\':
+                        raw('\\');
+                        raw(c);
+                        break;
+                    case '\t':
+                        escape('t');
+                        break;
+                    case '\b':
+                        escape('b');
+                        break;
+                    case '\n':
+                        escape('n');
+                        break;
+                    case '\r':
+                        escape('r');
+                        break;
+                    case '\f':
+                        escape('f');
+                        break;
+                    case '<':
+                    case '>':
+                    case '&':
+                    case '=':
+                    case '\'':
+                        unicodeEscape(c);
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            unicodeEscape(c);
+                        } else {
+                            raw(c);
+                        }
+                }
+            } else if (c == '\u2028' || c == '\u2029') {
+                unicodeEscape(c);
+            } else if (c < 0x800) {
+                reserve(2);
+                buffer[count++] = (byte) (0xC0 | c >> 6);
+                buffer[count++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                reserve(4);
+                buffer[count++] = (byte) (0xF0 | codePoint >> 18);
+                buffer[count++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                buffer[count++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                buffer[count++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                // An unpaired surrogate has no UTF-8 form; String.getBytes writes '?' as well.
+                raw('?');
+            } else {
+                reserve(3);
+                buffer[count++] = (byte) (0xE0 | c >> 12);
+                buffer[count++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buffer[count++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        raw('"');
+    }
+
+    private void escape(char c) throws IOException {
+        raw('\\');
+        raw(c);
+    }
+
+    private void unicodeEscape(char c) throws IOException {
+        raw('\\');
+        raw('u');
+        for (int shift = 12; shift >= 0; shift -= 4) {
+            raw(HEX[c >> shift & 0xF]);
+        }
+    }
+
+    private void reserve(int length) throws IOException {
+        if (count + length > buffer.length) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        out.write(buffer, 0, count);
+        count = 0;
+    }
+
+    /**
+     * Writes out whatever is buffered; the underlying stream is left open.
+     */
+    void flush() throws IOException {
+        if (count > 0) {
+            flushBuffer();
+        }
+        out.flush();
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
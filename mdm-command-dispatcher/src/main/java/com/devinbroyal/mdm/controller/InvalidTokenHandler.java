@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.controller;
+
+import com.devinbroyal.mdm.domain.InvalidToken;
+import com.devinbroyal.mdm.persistence.InvalidTokenRepository;
+import com.eatthepath.pushy.apns.util.TokenUtil;
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Exports ({@code GET /admin/invalid-tokens}) and clears ({@code DELETE /admin/invalid-tokens} or
+ * {@code DELETE /admin/invalid-tokens/{deviceToken}}) the device tokens that APNs has rejected as
+ * unusable and that the dispatcher therefore no longer pushes to.
+ */
+public class InvalidTokenHandler implements HttpHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(InvalidTokenHandler.class);
+    private static final String CONTEXT_PATH = "/admin/invalid-tokens";
+
+    private final InvalidTokenRepository invalidTokenRepository;
+    private final Gson gson;
+
+    public InvalidTokenHandler(InvalidTokenRepository invalidTokenRepository, Gson gson) {
+        this.invalidTokenRepository = invalidTokenRepository;
+        this.gson = gson;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String deviceToken = path.length() > CONTEXT_PATH.length() + 1 ? TokenUtil.sanitizeTokenString(path.substring(CONTEXT_PATH.length() + 1)) : null;
+
+        try {
+            if ("GET".equalsIgnoreCase(exchange.getRequestMethod()) && deviceToken == null) {
+                Collection<InvalidToken> tokens = invalidTokenRepository.findAll();
+                Map<String, Object> response = new LinkedHashMap<>();
+                response.put("count", tokens.size());
+                response.put("tokens", tokens);
+                sendResponse(exchange, 200, gson.toJson(response));
+            } else if ("DELETE".equalsIgnoreCase(exchange.getRequestMethod())) {
+                int removed;
+                if (deviceToken == null) {
+                    removed = invalidTokenRepository.clear();
+                    logger.info("Cleared {} invalid device tokens", removed);
+                } else if ((removed = invalidTokenRepository.remove(deviceToken)) == 0) {
+                    sendResponse(exchange, 404, "{\"error\":\"Unknown device token\"}");
+                    return;
+                }
+                invalidTokenRepository.flush();
+                sendResponse(exchange, 200, gson.toJson(Map.of("removed", removed)));
+            } else {
+                sendResponse(exchange, 405, "{\"error\":\"Method Not Allowed\"}");
+            }
+        } catch (Exception e) {
+            logger.error("An unexpected error occurred in InvalidTokenHandler", e);
+            sendResponse(exchange, 500, "{\"error\":\"Internal Server Error\"}");
+        }
+    }
+
+    private void sendResponse(HttpExchange exchange, int statusCode, String responseBody) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        byte[] responseBytes = responseBody.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(statusCode, responseBytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(responseBytes);
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
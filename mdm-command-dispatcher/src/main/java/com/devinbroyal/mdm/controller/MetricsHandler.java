@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.controller;
+
+import com.devinbroyal.mdm.service.MdmService;
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class MetricsHandler implements HttpHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsHandler.class);
+    private final MdmService mdmService;
+    private final Gson gson;
+    private final AdmissionController admissionController;
+
+    public MetricsHandler(MdmService mdmService, Gson gson, AdmissionController admissionController) {
+        this.mdmService = mdmService;
+        this.gson = gson;
+        this.admissionController = admissionController;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+            sendResponse(exchange, 405, "{\"error\":\"Method Not Allowed\"}");
+            return;
+        }
+        try {
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            metrics.put("admission", admissionController.snapshot());
+            metrics.putAll(mdmService.getMetrics());
+            sendResponse(exchange, 200, gson.toJson(metrics));
+        } catch (Exception e) {
+            logger.error("Failed to collect service metrics", e);
+            sendResponse(exchange, 500, "{\"error\":\"Internal Server Error\"}");
+        }
+    }
+
+    private void sendResponse(HttpExchange exchange, int statusCode, String responseBody) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        byte[] responseBytes = responseBody.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(statusCode, responseBytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(responseBytes);
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.controller;
+
+import com.devinbroyal.mdm.service.OutcomeRollups;
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Serves the per-minute or per-hour counts of dispatch outcomes at
+ * {@code GET /stats?resolution=minute|hour&buckets=N}, read from the {@link OutcomeRollups} rather
+ * than the execution history. By default the last hour of minutes, or the last day of hours.
+ */
+public class StatsHandler implements HttpHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatsHandler.class);
+    private static final int DEFAULT_MINUTE_BUCKETS = 60;
+    private static final int DEFAULT_HOUR_BUCKETS = 24;
+    private final OutcomeRollups rollups;
+    private final Gson gson;
+
+    public StatsHandler(OutcomeRollups rollups, Gson gson) {
+        this.rollups = rollups;
+        this.gson = gson;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+            sendResponse(exchange, 405, "{\"error\":\"Method Not Allowed\"}");
+            return;
+        }
+        String resolution = "minute";
+        String buckets = null;
+        String rawQuery = exchange.getRequestURI().getRawQuery();
+        if (rawQuery != null && !rawQuery.isEmpty()) {
+            for (String pair : rawQuery.split("&")) {
+                int eq = pair.indexOf('=');
+                String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+                String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+                if ("resolution".equals(name)) {
+                    resolution = value;
+                } else if ("buckets".equals(name)) {
+                    buckets = value;
+                }
+            }
+        }
+        if (!"minute".equals(resolution) && !"hour".equals(resolution)) {
+            sendResponse(exchange, 400, "{\"error\":\"resolution must be minute or hour\"}");
+            return;
+        }
+        boolean hourly = "hour".equals(resolution);
+        int kept = rollups.getBuckets(hourly);
+        int count = Math.min(hourly ? DEFAULT_HOUR_BUCKETS : DEFAULT_MINUTE_BUCKETS, kept);
+        if (buckets != null) {
+            try {
+                count = Integer.parseInt(buckets);
+            } catch (NumberFormatException e) {
+                count = 0;
+            }
+            if (count < 1 || count > kept) {
+                sendResponse(exchange, 400, "{\"error\":\"buckets must be between 1 and " + kept + "\"}");
+                return;
+            }
+        }
+        try {
+            Map<String, Object> snapshot = rollups.snapshot(hourly, count);
+            sendResponse(exchange, 200, gson.toJson(snapshot));
+        } catch (Exception e) {
+            logger.error("Failed to read the outcome rollups", e);
+            sendResponse(exchange, 500, "{\"error\":\"Internal Server Error\"}");
+        }
+    }
+
+    private void sendResponse(HttpExchange exchange, int statusCode, String responseBody) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        byte[] responseBytes = responseBody.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(statusCode, responseBytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(responseBytes);
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -5,43 +5,357 @@
 
 package com.devinbroyal.mdm.controller;
 
+import com.devinbroyal.mdm.domain.CommandResult;
 import com.devinbroyal.mdm.persistence.ExecutionHistoryRepository;
-import com.google.gson.Gson;
+import com.devinbroyal.mdm.persistence.HistoryEntry;
+import com.devinbroyal.mdm.persistence.HistoryPage;
+import com.devinbroyal.mdm.persistence.HistoryQuery;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.security.SecureRandom;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
+/**
+ * Serves the execution history: the whole of it or a query over it ({@code GET /status}), the
+ * newest result of one command ({@code GET /status/{commandUUID}}), and the newest results of many
+ * ({@code POST /status/query} with {@code {"commandUUIDs": [...]}}).
+ */
 public class StatusHandler implements HttpHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(StatusHandler.class);
+    private static final String CONTEXT_PATH = "/status";
+    static final int MAX_LOOKUP_COMMANDS = 10_000;
+    private static final Set<String> QUERY_PARAMETERS = Set.of("deviceToken", "status", "batchId", "since", "until", "limit", "cursor");
+    // Distinguishes the versions of this process from those of an earlier run, which restart at 0.
+    private static final String ETAG_PREFIX = "W/\"" + Long.toHexString(new SecureRandom().nextLong()) + "-";
     private final ExecutionHistoryRepository historyRepository;
-    private final Gson gson;
+    private final StatusSnapshotCache snapshotCache;
 
-    public StatusHandler(ExecutionHistoryRepository historyRepository, Gson gson) {
+    /**
+     * @param snapshotCacheMaxBytes The largest encoded history shared between requests; 0 to stream
+     *                              every response.
+     */
+    public StatusHandler(ExecutionHistoryRepository historyRepository, long snapshotCacheMaxBytes) {
         this.historyRepository = historyRepository;
-        this.gson = gson;
+        this.snapshotCache = new StatusSnapshotCache(historyRepository, snapshotCacheMaxBytes);
     }
 
     @Override
     public void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if (path.startsWith(CONTEXT_PATH + "/") && path.length() > CONTEXT_PATH.length() + 1) {
+            String command = path.substring(CONTEXT_PATH.length() + 1);
+            if ("POST".equalsIgnoreCase(exchange.getRequestMethod()) && command.equals("query")) {
+                lookUpCommands(exchange);
+            } else if ("GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                lookUpCommand(exchange, command);
+            } else {
+                sendResponse(exchange, 405, "{\"error\":\"Method Not Allowed\"}");
+            }
+            return;
+        }
         if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
             sendResponse(exchange, 405, "{\"error\":\"Method Not Allowed\"}");
             return;
         }
+        Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+        HistoryQuery query = null;
+        if (!parameters.isEmpty()) {
+            try {
+                query = toHistoryQuery(parameters);
+            } catch (IllegalArgumentException e) {
+                sendResponse(exchange, 400, "{\"error\":" + quote(e.getMessage()) + "}");
+                return;
+            }
+        }
+
+        // Read before the history so that the tag never claims more than the body contains.
+        long version = historyRepository.getVersion();
+        if (matchesIfNoneMatch(exchange, etag(version))) {
+            exchange.getResponseHeaders().set("ETag", etag(version));
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        if (query != null) {
+            sendPage(exchange, historyRepository.query(query), etag(version));
+            return;
+        }
+
+        StatusSnapshotCache.Snapshot snapshot;
         try {
-            String jsonResponse = gson.toJson(historyRepository.getFullHistory());
-            sendResponse(exchange, 200, jsonResponse);
-        } catch (Exception e) {
-            logger.error("Failed to retrieve and serialize execution history", e);
+            snapshot = snapshotCache.get(version);
+        } catch (IOException e) {
+            logger.error("Failed to encode the execution history", e);
             sendResponse(exchange, 500, "{\"error\":\"Internal Server Error\"}");
+            return;
+        }
+        if (snapshot != null) {
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+            exchange.getResponseHeaders().set("ETag", etag(snapshot.getVersion()));
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, snapshot.getJson().length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(snapshot.getJson());
+            }
+            return;
+        }
+
+        // Too large to keep: the history is streamed with chunked encoding, one device at a time,
+        // straight from the repository; memory use does not grow with its size.
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.getResponseHeaders().set("ETag", etag(version));
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream os = exchange.getResponseBody()) {
+            HistoryJsonWriter json = new HistoryJsonWriter(os);
+            json.history(historyRepository);
+            json.flush();
+        } catch (IOException | RuntimeException e) {
+            // The status line has gone out; dropping the connection is the only way left to signal
+            // that the body is incomplete.
+            logger.error("Failed to stream the execution history", e);
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+    }
+
+    private void lookUpCommand(HttpExchange exchange, String commandUUID) throws IOException {
+        HistoryEntry entry = historyRepository.findLatest(commandUUID);
+        if (entry == null) {
+            sendResponse(exchange, 404, "{\"error\":\"Unknown command\"}");
+            return;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        HistoryJsonWriter json = new HistoryJsonWriter(out);
+        json.historyEntry(entry);
+        json.flush();
+        sendResponse(exchange, 200, out.toString(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Answers with the newest entry of each command found, in the order asked, and the
+     * {@code CommandUUID}s of those with no result held.
+     */
+    private void lookUpCommands(HttpExchange exchange) throws IOException {
+        Set<String> commandUUIDs;
+        try {
+            commandUUIDs = readCommandUUIDs(exchange.getRequestBody());
+        } catch (IllegalArgumentException e) {
+            sendResponse(exchange, 400, "{\"error\":" + quote(e.getMessage()) + "}");
+            return;
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            sendResponse(exchange, 400, "{\"error\":" + quote("Malformed request: " + e.getMessage()) + "}");
+            return;
+        }
+        Map<String, HistoryEntry> found = historyRepository.findLatest(commandUUIDs);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream os = exchange.getResponseBody()) {
+            HistoryJsonWriter json = new HistoryJsonWriter(os);
+            json.raw('{');
+            json.name("results", true);
+            json.raw('[');
+            boolean first = true;
+            for (HistoryEntry entry : found.values()) {
+                if (!first) {
+                    json.raw(',');
+                }
+                json.historyEntry(entry);
+                first = false;
+            }
+            json.raw(']');
+            json.name("notFound", false);
+            json.raw('[');
+            first = true;
+            for (String commandUUID : commandUUIDs) {
+                if (!found.containsKey(commandUUID)) {
+                    if (!first) {
+                        json.raw(',');
+                    }
+                    json.string(commandUUID);
+                    first = false;
+                }
+            }
+            json.raw(']');
+            json.raw('}');
+            json.flush();
         }
     }
 
+    /**
+     * Reads {@code {"commandUUIDs": [...]}}, ignoring other members.
+     *
+     * @return The distinct {@code CommandUUID}s, in the order given.
+     * @throws IllegalArgumentException if there are none, or more than {@value #MAX_LOOKUP_COMMANDS}.
+     */
+    private static Set<String> readCommandUUIDs(InputStream body) throws IOException {
+        Set<String> commandUUIDs = new LinkedHashSet<>();
+        JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!reader.nextName().equals("commandUUIDs")) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (commandUUIDs.size() == MAX_LOOKUP_COMMANDS) {
+                    throw new IllegalArgumentException("At most " + MAX_LOOKUP_COMMANDS + " commandUUIDs may be looked up at once");
+                }
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                } else {
+                    commandUUIDs.add(reader.nextString());
+                }
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+        if (reader.peek() != JsonToken.END_DOCUMENT) {
+            throw new JsonParseException("Unexpected content after the request");
+        }
+        if (commandUUIDs.isEmpty()) {
+            throw new IllegalArgumentException("commandUUIDs must list at least one CommandUUID");
+        }
+        return commandUUIDs;
+    }
+
+    private static String etag(long version) {
+        return ETAG_PREFIX + version + "\"";
+    }
+
+    /**
+     * Compares the request's {@code If-None-Match} with the tag, weakly as RFC 9110 requires for it.
+     */
+    private static boolean matchesIfNoneMatch(HttpExchange exchange, String etag) {
+        String opaque = etag.substring(2);
+        for (String header : exchange.getRequestHeaders().getOrDefault("If-None-Match", List.of())) {
+            for (String candidate : header.split(",")) {
+                candidate = candidate.trim();
+                if (candidate.equals("*") || candidate.equals(etag) || candidate.equals(opaque)) {
+                    return true;
+                }
+                if (candidate.startsWith("W/") && candidate.substring(2).equals(opaque)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static HistoryQuery toHistoryQuery(Map<String, String> parameters) {
+        HistoryQuery query = new HistoryQuery();
+        query.setDeviceToken(parameters.get("deviceToken"));
+        query.setBatchId(parameters.get("batchId"));
+        query.setCursor(parameters.get("cursor"));
+        String status = parameters.get("status");
+        if (status != null) {
+            try {
+                query.setStatus(CommandResult.Status.valueOf(status.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown status: " + status);
+            }
+        }
+        if (parameters.containsKey("since")) {
+            query.setSince(parseInstant("since", parameters.get("since")));
+        }
+        if (parameters.containsKey("until")) {
+            query.setUntil(parseInstant("until", parameters.get("until")));
+        }
+        if (parameters.containsKey("limit")) {
+            try {
+                query.setLimit(Integer.parseInt(parameters.get("limit")));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("limit must be between 1 and " + HistoryQuery.MAX_LIMIT);
+            }
+        }
+        return query;
+    }
+
+    private static Instant parseInstant(String name, String value) {
+        try {
+            return Instant.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(name + " must be an ISO-8601 instant such as 2025-01-31T10:00:00Z");
+        }
+    }
+
+    /**
+     * @return The recognised query parameters, URL-decoded; the last occurrence of a repeated one wins.
+     */
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            if (QUERY_PARAMETERS.contains(name)) {
+                parameters.put(name, eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private static void sendPage(HttpExchange exchange, HistoryPage page, String etag) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream os = exchange.getResponseBody()) {
+            HistoryJsonWriter json = new HistoryJsonWriter(os);
+            json.raw('{');
+            json.name("results", true);
+            json.raw('[');
+            boolean first = true;
+            for (HistoryEntry entry : page.getEntries()) {
+                if (!first) {
+                    json.raw(',');
+                }
+                json.historyEntry(entry);
+                first = false;
+            }
+            json.raw(']');
+            if (page.getNextCursor() != null) {
+                json.name("nextCursor", false);
+                json.string(page.getNextCursor());
+            }
+            json.raw('}');
+            json.flush();
+        }
+    }
+
+    private static String quote(String value) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HistoryJsonWriter json = new HistoryJsonWriter(out);
+        json.string(value);
+        json.flush();
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
     private void sendResponse(HttpExchange exchange, int statusCode, String responseBody) throws IOException {
         exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
         byte[] responseBytes = responseBody.getBytes(StandardCharsets.UTF_8);
@@ -55,4 +369,4 @@ public class StatusHandler implements HttpHandler {
 /*
  * Copyright © 2025 Devin B. Royal.
  * All Rights Reserved.
- */
\ No newline at end of file
+ */
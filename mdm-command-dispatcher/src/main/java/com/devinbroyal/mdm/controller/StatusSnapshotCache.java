@@ -0,0 +1,162 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.controller;
+
+import com.devinbroyal.mdm.persistence.ExecutionHistoryRepository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the encoded full history for the latest version of the repository that was asked for.
+ * <p>
+ * Requests for a version that is already encoded, or being encoded, share that encoding: the first
+ * request encodes the history and the concurrent ones wait for it instead of each doing the same
+ * work. A history whose encoding exceeds the size limit is not kept, and every request for it
+ * streams its own copy.
+ */
+final class StatusSnapshotCache {
+
+    private final ExecutionHistoryRepository repository;
+    private final int maxBytes;
+    private final AtomicReference<Flight> latest = new AtomicReference<>();
+
+    StatusSnapshotCache(ExecutionHistoryRepository repository, long maxBytes) {
+        this.repository = repository;
+        this.maxBytes = (int) maxBytes;
+    }
+
+    /**
+     * @return The encoded history at {@code version} or a later one, or {@code null} if it is too
+     *         large to keep, in which case the caller streams it.
+     * @throws IOException if encoding failed.
+     */
+    Snapshot get(long version) throws IOException {
+        if (maxBytes == 0) {
+            return null;
+        }
+        while (true) {
+            Flight current = latest.get();
+            if (current != null && current.version >= version) {
+                return current.await();
+            }
+            Flight flight = new Flight(version);
+            if (latest.compareAndSet(current, flight)) {
+                flight.encode();
+                return flight.await();
+            }
+        }
+    }
+
+    /**
+     * The encoded history and the version it was taken at; it may also include later changes.
+     */
+    static final class Snapshot {
+        private final long version;
+        private final byte[] json;
+
+        private Snapshot(long version, byte[] json) {
+            this.version = version;
+            this.json = json;
+        }
+
+        long getVersion() {
+            return version;
+        }
+
+        byte[] getJson() {
+            return json;
+        }
+    }
+
+    private final class Flight {
+        private final long version;
+        private final CompletableFuture<Snapshot> result = new CompletableFuture<>();
+
+        private Flight(long version) {
+            this.version = version;
+        }
+
+        private void encode() {
+            try {
+                BoundedOutputStream out = new BoundedOutputStream(maxBytes);
+                HistoryJsonWriter json = new HistoryJsonWriter(out);
+                json.history(repository);
+                json.flush();
+                result.complete(new Snapshot(version, out.toByteArray()));
+            } catch (TooLargeException e) {
+                result.complete(null);
+            } catch (IOException | RuntimeException e) {
+                // Let the next request try again instead of sharing the failure.
+                latest.compareAndSet(this, null);
+                result.completeExceptionally(e);
+            }
+        }
+
+        private Snapshot await() throws IOException {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw new IOException("Failed to encode the execution history", cause);
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Collects up to a fixed number of bytes, then gives up with a {@link TooLargeException}.
+     */
+    private static final class BoundedOutputStream extends OutputStream {
+        private final int limit;
+        private byte[] buffer = new byte[HistoryJsonWriter.BUFFER_SIZE];
+        private int count;
+
+        private BoundedOutputStream(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > limit - count) {
+                throw new TooLargeException();
+            }
+            if (count + len > buffer.length) {
+                buffer = Arrays.copyOf(buffer, (int) Math.min(limit, Math.max(count + len, 2L * buffer.length)));
+            }
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer, count);
+        }
+    }
+
+    private static final class TooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private TooLargeException() {
+            super("The encoded history exceeds the cache limit");
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.domain;
+
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Aggregated outcome of a broadcast: one counter per {@link CommandResult.Status} instead of one
+ * {@link CommandResult} per device. Counters are updated concurrently as APNs responds.
+ */
+public class BatchSummary {
+
+    private static final int MAX_DISTINCT_REASONS = 64;
+    private static final String OTHER_REASON = "Other";
+
+    private final String batchId;
+    private final Instant createdAt;
+    private final boolean detailRecorded;
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final Map<CommandResult.Status, AtomicLong> statusCounts = new EnumMap<>(CommandResult.Status.class);
+    private final Map<String, AtomicLong> rejectionReasons = new ConcurrentHashMap<>();
+
+    public BatchSummary(String batchId, boolean detailRecorded) {
+        this.batchId = batchId;
+        this.detailRecorded = detailRecorded;
+        this.createdAt = Instant.now();
+        // Populated once up front so that concurrent updates never mutate the map itself.
+        for (CommandResult.Status status : CommandResult.Status.values()) {
+            statusCounts.put(status, new AtomicLong());
+        }
+    }
+
+    public void recordSubmitted() {
+        submitted.incrementAndGet();
+    }
+
+    public void recordSkipped() {
+        skipped.incrementAndGet();
+    }
+
+    public void recordResult(CommandResult result) {
+        statusCounts.get(result.getStatus()).incrementAndGet();
+        if (result.getStatus().isTerminal() && result.getRejectionReason() != null) {
+            String reason = result.getRejectionReason();
+            if (!rejectionReasons.containsKey(reason) && rejectionReasons.size() >= MAX_DISTINCT_REASONS) {
+                reason = OTHER_REASON;
+            }
+            rejectionReasons.computeIfAbsent(reason, k -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    public String getBatchId() {
+        return batchId;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public boolean isDetailRecorded() {
+        return detailRecorded;
+    }
+
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    public long getCount(CommandResult.Status status) {
+        return statusCounts.get(status).get();
+    }
+
+    public long getCompleted() {
+        long completed = 0;
+        for (Map.Entry<CommandResult.Status, AtomicLong> entry : statusCounts.entrySet()) {
+            if (entry.getKey().isTerminal()) {
+                completed += entry.getValue().get();
+            }
+        }
+        return completed;
+    }
+
+    public Map<String, AtomicLong> getRejectionReasons() {
+        return rejectionReasons;
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
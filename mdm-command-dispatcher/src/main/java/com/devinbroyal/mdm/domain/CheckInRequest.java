@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The body a device sends to {@code /mdm/connect}. As in the MDM protocol, the top-level
+ * {@code Status} and {@code CommandUUID} report on one command ({@code Idle} reports none); the
+ * {@code results} list reports on several at once, so a device that fetched a whole queue in one
+ * round trip answers for all of it in the next.
+ */
+public class CheckInRequest extends CommandReport {
+
+    private String deviceToken;
+    private List<CommandReport> results;
+
+    public String getDeviceToken() {
+        return deviceToken;
+    }
+
+    public void setDeviceToken(String deviceToken) {
+        this.deviceToken = deviceToken;
+    }
+
+    public List<CommandReport> getResults() {
+        return results;
+    }
+
+    public void setResults(List<CommandReport> results) {
+        this.results = results;
+    }
+
+    /**
+     * @return Every command report in the request, top-level report first.
+     */
+    public List<CommandReport> getReports() {
+        List<CommandReport> reports = new ArrayList<>();
+        if (getCommandUUID() != null && getStatus() != null && !IDLE.equals(getStatus())) {
+            reports.add(this);
+        }
+        if (results != null) {
+            reports.addAll(results);
+        }
+        return reports;
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
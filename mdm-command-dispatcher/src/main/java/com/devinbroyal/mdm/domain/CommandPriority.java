@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.domain;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The dispatch lane of a command. Queued pushes are drained from the lanes in proportion to their
+ * weights, so urgent commands overtake bulk traffic without starving it.
+ */
+public enum CommandPriority {
+    /** Security-critical commands such as locking or erasing a lost device. */
+    URGENT(8),
+    /** Individually submitted commands. */
+    NORMAL(3),
+    /** Broadcasts and other fleet-wide traffic. */
+    BULK(1);
+
+    /**
+     * MDM request types that act on a lost or stolen device and must not wait behind bulk traffic.
+     */
+    private static final Set<String> URGENT_REQUEST_TYPES = Set.of(
+            "DeviceLock",
+            "EraseDevice",
+            "EnableLostMode",
+            "PlayLostModeSound",
+            "DeviceLocation",
+            "ClearPasscode");
+
+    private final int weight;
+
+    CommandPriority(int weight) {
+        this.weight = weight;
+    }
+
+    /**
+     * @return The share of dispatch slots this lane receives while every lane has work queued.
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return Whether commands of this {@code Command.RequestType} act on a lost or stolen device.
+     */
+    public static boolean isUrgentRequestType(String requestType) {
+        return requestType != null && URGENT_REQUEST_TYPES.contains(requestType);
+    }
+
+    /**
+     * Parses an explicit priority, ignoring case.
+     *
+     * @throws IllegalArgumentException if the value names no priority.
+     */
+    public static CommandPriority parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown priority: " + value + " (expected urgent, normal or bulk)");
+        }
+    }
+
+    /**
+     * Chooses the lane for a command: an explicit priority wins, then the command's
+     * {@code Command.RequestType}, then the given default.
+     *
+     * @throws IllegalArgumentException if an explicit priority is given but invalid.
+     */
+    public static CommandPriority resolve(String explicitPriority, Map<String, Object> payload, CommandPriority defaultPriority) {
+        if (explicitPriority != null && !explicitPriority.isBlank()) {
+            return parse(explicitPriority);
+        }
+        Object command = payload == null ? null : payload.get("Command");
+        Object requestType = command instanceof Map ? ((Map<?, ?>) command).get("RequestType") : null;
+        if (requestType != null && URGENT_REQUEST_TYPES.contains(requestType)) {
+            return URGENT;
+        }
+        return defaultPriority;
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.domain;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A device's report on one command it fetched from {@code /mdm/connect}, using the key names of the
+ * MDM protocol.
+ */
+public class CommandReport {
+
+    public static final String IDLE = "Idle";
+    public static final String ACKNOWLEDGED = "Acknowledged";
+    public static final String ERROR = "Error";
+    public static final String COMMAND_FORMAT_ERROR = "CommandFormatError";
+    public static final String NOT_NOW = "NotNow";
+
+    @SerializedName("CommandUUID")
+    private String commandUUID;
+    @SerializedName("Status")
+    private String status;
+    @SerializedName("ErrorChain")
+    private List<Map<String, Object>> errorChain;
+
+    public CommandReport() {
+    }
+
+    public CommandReport(String commandUUID, String status) {
+        this.commandUUID = commandUUID;
+        this.status = status;
+    }
+
+    public String getCommandUUID() {
+        return commandUUID;
+    }
+
+    public void setCommandUUID(String commandUUID) {
+        this.commandUUID = commandUUID;
+    }
+
+    /**
+     * @return {@code Acknowledged}, {@code Error}, {@code CommandFormatError}, {@code NotNow} or
+     *         {@code Idle}.
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public List<Map<String, Object>> getErrorChain() {
+        return errorChain;
+    }
+
+    public void setErrorChain(List<Map<String, Object>> errorChain) {
+        this.errorChain = errorChain;
+    }
+
+    /**
+     * @return A one-line description of the error for the execution history, or {@code null} if the
+     *         command did not fail.
+     */
+    public String describeError() {
+        if (!ERROR.equals(status) && !COMMAND_FORMAT_ERROR.equals(status)) {
+            return null;
+        }
+        if (errorChain != null && !errorChain.isEmpty()) {
+            Map<String, Object> first = errorChain.get(0);
+            Object description = first.getOrDefault("LocalizedDescription", first.get("USEnglishDescription"));
+            if (description != null) {
+                return description.toString();
+            }
+            Object code = first.get("ErrorCode");
+            Object domain = first.get("ErrorDomain");
+            if (code != null || domain != null) {
+                return domain + " " + code;
+            }
+        }
+        return status;
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -10,6 +10,11 @@ import java.util.Map;
 public class CommandRequest {
     private String deviceToken;
     private Map<String, Object> payload;
+    private transient String payloadJson;
+    private String tenant;
+    private String topic;
+    private String priority;
+    private String pushMagic;
 
     public String getDeviceToken() {
         return deviceToken;
@@ -26,6 +31,66 @@ public class CommandRequest {
     public void setPayload(Map<String, Object> payload) {
         this.payload = payload;
     }
+
+    /**
+     * @return The payload as JSON text, sent to the device exactly as given, or {@code null} to
+     *         encode {@link #getPayload()}. When set, the payload map only needs the members the
+     *         dispatcher reads: {@code CommandUUID} and {@code Command.RequestType}.
+     */
+    public String getPayloadJson() {
+        return payloadJson;
+    }
+
+    public void setPayloadJson(String payloadJson) {
+        this.payloadJson = payloadJson;
+    }
+
+    /**
+     * @return The name of the tenant whose APNs credentials send this command, or {@code null} for
+     *         the default tenant.
+     */
+    public String getTenant() {
+        return tenant;
+    }
+
+    public void setTenant(String tenant) {
+        this.tenant = tenant;
+    }
+
+    /**
+     * @return The APNs topic to push to instead of the tenant's configured topic, or {@code null}.
+     */
+    public String getTopic() {
+        return topic;
+    }
+
+    public void setTopic(String topic) {
+        this.topic = topic;
+    }
+
+    /**
+     * @return The dispatch lane ({@code urgent}, {@code normal} or {@code bulk}), or {@code null} to
+     *         choose it from the command's request type.
+     */
+    public String getPriority() {
+        return priority;
+    }
+
+    public void setPriority(String priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * @return The {@code PushMagic} the device enrolled with, sent in the wake-up push when commands
+     *         are queued for check-in, or {@code null}.
+     */
+    public String getPushMagic() {
+        return pushMagic;
+    }
+
+    public void setPushMagic(String pushMagic) {
+        this.pushMagic = pushMagic;
+    }
 }
 
 /*
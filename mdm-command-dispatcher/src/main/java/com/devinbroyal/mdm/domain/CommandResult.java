@@ -12,19 +12,60 @@ public class CommandResult {
     public enum Status {
         ACCEPTED,
         REJECTED,
-        FAILED_TO_SEND
+        FAILED_TO_SEND,
+        /** The attempt failed for a transient reason and another attempt has been scheduled. */
+        RETRYING,
+        /** The command waits in the device's queue for the device to check in and fetch it. */
+        QUEUED,
+        /** The device fetched and executed the command. */
+        ACKNOWLEDGED,
+        /** The device fetched the command and reported that it failed. */
+        ERROR,
+        /** The device cannot execute the command yet; it stays queued for a later check-in. */
+        NOT_NOW,
+        /** The dispatcher refused the command before sending it, e.g. by the per-device rate limit. */
+        THROTTLED;
+
+        /**
+         * @return Whether this status is the final outcome of a command rather than of one attempt.
+         */
+        public boolean isTerminal() {
+            return this != RETRYING && this != QUEUED && this != NOT_NOW;
+        }
     }
 
     private final String commandUUID;
     private final Status status;
     private final Instant timestamp;
     private final String rejectionReason;
+    private final int attempt;
+    private final String batchId;
 
     public CommandResult(String commandUUID, Status status, String rejectionReason) {
+        this(commandUUID, status, rejectionReason, 1);
+    }
+
+    public CommandResult(String commandUUID, Status status, String rejectionReason, int attempt) {
+        this(commandUUID, status, Instant.now(), rejectionReason, attempt, null);
+    }
+
+    /**
+     * Recreates a result exactly as it was recorded, for repositories that do not keep the object.
+     */
+    public CommandResult(String commandUUID, Status status, Instant timestamp, String rejectionReason, int attempt, String batchId) {
         this.commandUUID = commandUUID;
         this.status = status;
+        this.timestamp = timestamp;
         this.rejectionReason = rejectionReason;
-        this.timestamp = Instant.now();
+        this.attempt = attempt;
+        this.batchId = batchId;
+    }
+
+    /**
+     * @return This result, attributed to the broadcast with the given id.
+     */
+    public CommandResult withBatchId(String batchId) {
+        return new CommandResult(commandUUID, status, timestamp, rejectionReason, attempt, batchId);
     }
 
     public String getCommandUUID() {
@@ -42,6 +83,21 @@ public class CommandResult {
     public String getRejectionReason() {
         return rejectionReason;
     }
+
+    /**
+     * @return The delivery attempt this result describes, starting at 1, or 0 if the command was
+     *         rejected without being sent because its device token is known to be invalid.
+     */
+    public int getAttempt() {
+        return attempt;
+    }
+
+    /**
+     * @return The id of the broadcast the command was part of, or {@code null}.
+     */
+    public String getBatchId() {
+        return batchId;
+    }
 }
 
 /*
@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.domain;
+
+import java.time.Instant;
+
+/**
+ * A device token that APNs has reported as unusable for a topic with one set of credentials,
+ * together with the evidence.
+ */
+public class InvalidToken {
+
+    private final String deviceToken;
+    private final String clientKey;
+    private final String topic;
+    private final String reason;
+    private final Instant invalidatedAt;
+    private final Instant recordedAt;
+
+    public InvalidToken(String deviceToken, String clientKey, String topic, String reason, Instant invalidatedAt, Instant recordedAt) {
+        this.deviceToken = deviceToken;
+        this.clientKey = clientKey;
+        this.topic = topic;
+        this.reason = reason;
+        this.invalidatedAt = invalidatedAt;
+        this.recordedAt = recordedAt;
+    }
+
+    public String getDeviceToken() {
+        return deviceToken;
+    }
+
+    /**
+     * @return The credentials (team/key/environment) the token was rejected for, or {@code null} for
+     *         an entry recorded before credentials were tracked, which applies to all of them.
+     */
+    public String getClientKey() {
+        return clientKey;
+    }
+
+    /**
+     * @return The APNs topic the token was rejected for.
+     */
+    public String getTopic() {
+        return topic;
+    }
+
+    /**
+     * @return The APNs rejection reason, e.g. {@code Unregistered} or {@code BadDeviceToken}.
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * @return The time APNs says the token stopped being valid, or {@code null} if APNs did not say.
+     */
+    public Instant getInvalidatedAt() {
+        return invalidatedAt;
+    }
+
+    public Instant getRecordedAt() {
+        return recordedAt;
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,28 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.exception;
+
+/**
+ * Thrown when a property list cannot be parsed, or a value has no property list representation.
+ * It is an {@link IllegalArgumentException} so that endpoints answer it with 400 like any other bad
+ * request.
+ */
+public class PlistFormatException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    public PlistFormatException(String message) {
+        super(message);
+    }
+
+    public PlistFormatException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,23 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.exception;
+
+/**
+ * Thrown when a command is refused because the queue it would wait in is full. Nothing was sent;
+ * the caller may retry later.
+ */
+public class SendQueueFullException extends MdmCommandException {
+    private static final long serialVersionUID = 1L;
+
+    public SendQueueFullException(String message, String deviceToken, Throwable cause) {
+        super(message, deviceToken, cause);
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,283 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.persistence;
+
+import com.devinbroyal.mdm.domain.CommandResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+/**
+ * Records results in another repository on a single writer thread, so that the threads completing
+ * APNs sends only hand their results over. Results go into a bounded {@link MpscRingBuffer}; the
+ * writer drains it in batches of up to {@code maxBatchSize} and passes each to
+ * {@link ExecutionHistoryRepository#recordResults(List)}, so a repository with a per-call cost,
+ * such as a lock or a log append, pays it once per batch.
+ * <p>
+ * When the writer falls behind and the buffer fills, the {@link OverflowPolicy} decides: the
+ * producer waits for room, slowing the sends that produce results, or the result is dropped and
+ * counted. Reads go straight to the other repository and see a result once the writer has
+ * recorded it.
+ */
+public final class AsyncExecutionHistoryRepository implements ExecutionHistoryRepository, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncExecutionHistoryRepository.class);
+    private static final long WRITER_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long PRODUCER_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final int DROP_LOG_INTERVAL = 10_000;
+
+    /**
+     * What a producer does when the buffer is full.
+     */
+    public enum OverflowPolicy {
+        /** Wait until the writer makes room. No result is lost. */
+        BLOCK,
+        /** Drop the result and count it, logging a warning for every 10,000th. */
+        DROP
+    }
+
+    private final ExecutionHistoryRepository repository;
+    private final MpscRingBuffer<Object> buffer;
+    private final int maxBatchSize;
+    private final OverflowPolicy overflowPolicy;
+    private final Thread writer;
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean writerWaiting;
+    private volatile boolean closed;
+
+    /**
+     * Starts the writer thread.
+     *
+     * @param repository     The repository that results are recorded in, and that answers reads.
+     * @param capacity       The results held for the writer, rounded up to a power of two.
+     * @param maxBatchSize   The most results passed to {@code repository} at once.
+     * @param overflowPolicy What to do with a result when {@code capacity} are already waiting.
+     */
+    public AsyncExecutionHistoryRepository(ExecutionHistoryRepository repository, int capacity, int maxBatchSize,
+                                           OverflowPolicy overflowPolicy) {
+        this.repository = repository;
+        this.buffer = new MpscRingBuffer<>(capacity);
+        this.maxBatchSize = maxBatchSize;
+        this.overflowPolicy = overflowPolicy;
+        this.writer = new Thread(this::write, "history-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void recordResult(String deviceToken, CommandResult result) {
+        // Defensive programming: ensure non-null inputs
+        if (deviceToken == null || deviceToken.isBlank() || result == null || result.getStatus() == null) {
+            return;
+        }
+        enqueue(new DeviceResult(deviceToken, result));
+    }
+
+    /**
+     * Hands the batch to the writer as one element, so that it is recorded whole.
+     *
+     * @return A stage that completes once the writer has recorded the batch, or exceptionally with
+     *         a {@link RejectedExecutionException} if it was dropped.
+     */
+    @Override
+    public CompletionStage<Void> recordResults(List<DeviceResult> results) {
+        Batch batch = new Batch(List.copyOf(results));
+        if (!enqueue(batch)) {
+            batch.completion.completeExceptionally(new RejectedExecutionException("The execution history writer is behind; the batch was dropped"));
+        }
+        return batch.completion;
+    }
+
+    /**
+     * @return Whether the element was queued.
+     */
+    private boolean enqueue(Object element) {
+        if (closed) {
+            drop();
+            return false;
+        }
+        boolean waited = false;
+        while (!buffer.offer(element)) {
+            if (closed || overflowPolicy == OverflowPolicy.DROP) {
+                drop();
+                return false;
+            }
+            if (!waited) {
+                blocked.increment();
+                waited = true;
+            }
+            LockSupport.parkNanos(this, PRODUCER_PARK_NANOS);
+        }
+        // Checked after publishing, as the writer checks for elements after announcing it waits.
+        if (writerWaiting) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    private void drop() {
+        dropped.increment();
+        long count = dropped.sum();
+        if (count % DROP_LOG_INTERVAL == 1) {
+            logger.warn("The execution history writer is behind ({} results waiting). {} results have been dropped so far.",
+                    buffer.size(), count);
+        }
+    }
+
+    private void write() {
+        List<Object> drained = new ArrayList<>(maxBatchSize);
+        List<DeviceResult> results = new ArrayList<>(maxBatchSize);
+        List<Batch> batches = new ArrayList<>();
+        while (true) {
+            if (buffer.drainTo(drained, maxBatchSize) == 0) {
+                // A result claimed before closing but not yet published is still waited for.
+                if (closed && buffer.size() == 0) {
+                    return;
+                }
+                writerWaiting = true;
+                if (!buffer.isReady() && !closed) {
+                    // Timed, in case a producer claimed a slot and has not yet published it.
+                    LockSupport.parkNanos(this, WRITER_PARK_NANOS);
+                }
+                writerWaiting = false;
+                continue;
+            }
+            for (Object element : drained) {
+                if (element instanceof Batch) {
+                    results.addAll(((Batch) element).results);
+                    batches.add((Batch) element);
+                } else {
+                    results.add((DeviceResult) element);
+                }
+            }
+            record(results, batches);
+            drained.clear();
+            results.clear();
+            batches.clear();
+        }
+    }
+
+    private void record(List<DeviceResult> results, List<Batch> batches) {
+        Throwable failure;
+        try {
+            failure = repository.recordResults(results).handle((ignored, error) -> error).toCompletableFuture().join();
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        if (failure != null) {
+            logger.error("Failed to record {} results in the execution history", results.size(), failure);
+        }
+        for (Batch batch : batches) {
+            if (failure == null) {
+                batch.completion.complete(null);
+            } else {
+                batch.completion.completeExceptionally(failure);
+            }
+        }
+    }
+
+    /**
+     * @return The writer's backlog and what the overflow policy has done, for {@code /metrics}.
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("enabled", true);
+        snapshot.put("pending", buffer.size());
+        snapshot.put("capacity", buffer.capacity());
+        snapshot.put("overflowPolicy", overflowPolicy.name());
+        snapshot.put("blockedProducers", blocked.sum());
+        snapshot.put("dropped", dropped.sum());
+        return snapshot;
+    }
+
+    /**
+     * Stops accepting results, waits up to ten seconds for the writer to record those waiting, and
+     * closes the other repository if it is {@link Closeable}.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            logger.warn("The execution history writer did not finish in 10 seconds; {} results are not recorded.", buffer.size());
+        }
+        if (repository instanceof Closeable) {
+            ((Closeable) repository).close();
+        }
+    }
+
+    @Override
+    public Map<String, List<CommandResult>> getFullHistory() {
+        return repository.getFullHistory();
+    }
+
+    @Override
+    public void forEachDevice(BiConsumer<String, Collection<CommandResult>> action) {
+        repository.forEachDevice(action);
+    }
+
+    @Override
+    public HistoryPage query(HistoryQuery query) {
+        return repository.query(query);
+    }
+
+    @Override
+    public HistoryEntry findLatest(String commandUUID) {
+        return repository.findLatest(commandUUID);
+    }
+
+    @Override
+    public Map<String, HistoryEntry> findLatest(Collection<String> commandUUIDs) {
+        return repository.findLatest(commandUUIDs);
+    }
+
+    @Override
+    public long getVersion() {
+        return repository.getVersion();
+    }
+
+    @Override
+    public int evictExpired() {
+        return repository.evictExpired();
+    }
+
+    /**
+     * Results handed over together by {@link #recordResults(List)}, and the stage their caller holds.
+     */
+    private static final class Batch {
+        final List<DeviceResult> results;
+        final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+        Batch(List<DeviceResult> results) {
+            this.results = results;
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
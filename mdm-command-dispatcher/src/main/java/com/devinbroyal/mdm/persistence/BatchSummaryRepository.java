@@ -0,0 +1,32 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.persistence;
+
+import com.devinbroyal.mdm.domain.BatchSummary;
+
+import java.util.Optional;
+
+public interface BatchSummaryRepository {
+    /**
+     * Registers a batch so that its aggregated results can be looked up while it is in progress.
+     *
+     * @param summary The summary of the batch.
+     */
+    void save(BatchSummary summary);
+
+    /**
+     * Looks up the summary of a batch.
+     *
+     * @param batchId The identifier returned when the batch was submitted.
+     * @return The summary, or empty if the batch is unknown or has been evicted.
+     */
+    Optional<BatchSummary> findById(String batchId);
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
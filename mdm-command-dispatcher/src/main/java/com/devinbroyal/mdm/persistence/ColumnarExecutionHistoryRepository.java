@@ -0,0 +1,1172 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.persistence;
+
+import com.devinbroyal.mdm.domain.CommandResult;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BiConsumer;
+
+/**
+ * Keeps results as rows of primitive columns rather than as objects, materializing a
+ * {@link CommandResult} only when one is read. A row takes about 48 bytes:
+ * <ul>
+ *     <li>the device, as a number into a dictionary that holds each 64-digit hex token once, as 32
+ *     bytes;</li>
+ *     <li>the {@code CommandUUID}, as two longs;</li>
+ *     <li>the timestamp, as nanoseconds since the epoch;</li>
+ *     <li>the status, one byte, and the rejection reason, two bytes coding into a dictionary of the
+ *     distinct reasons seen;</li>
+ *     <li>the attempt and the broadcast, the latter coding into a dictionary of batch ids;</li>
+ *     <li>its place in its device's list of rows, one long.</li>
+ * </ul>
+ * Tokens, UUIDs and reasons that do not fit these forms, such as UUIDs in mixed case, are kept as
+ * strings beside the columns, so every result reads back exactly as recorded.
+ * <p>
+ * Rows are appended to chunks of {@value #CHUNK_SIZE}. Each chunk notes the range of its
+ * timestamps and broadcasts and the statuses it holds, so a query skips the chunks that cannot
+ * match and those too old to reach its page, and scans the rest newest first; a query by device
+ * reads only that device's rows. A lookup by {@code CommandUUID} goes through a hash table of the
+ * newest row of each command, which takes 16 to 32 bytes per command and holds no UUID of its own:
+ * it compares against the row's columns. Writers are serialized. Readers take no lock and see every row
+ * recorded before they started, and possibly later ones.
+ * <p>
+ * The retention period is applied a chunk at a time: {@link #evictExpired()} drops the oldest
+ * chunks once every result in them has expired. There is no per-device cap.
+ * <p>
+ * A snapshot holds the dictionaries and the columns as they are, and is written and read a column
+ * at a time. The device lists, the command index and each chunk's ranges are rebuilt from the
+ * columns on loading, which needs no parsing and no strings beyond those kept beside the columns.
+ */
+public class ColumnarExecutionHistoryRepository implements ExecutionHistoryRepository, Snapshottable {
+
+    static final int CHUNK_SIZE = 4096;
+    private static final int CHUNK_SHIFT = 12;
+    private static final int MAX_REASON_CODE = 0xFFFF;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final CommandResult.Status[] STATUSES = CommandResult.Status.values();
+    // The range of times, in nanoseconds since the epoch, a row can hold.
+    private static final Instant EARLIEST = Instant.ofEpochSecond(0, Long.MIN_VALUE);
+    private static final Instant LATEST = Instant.ofEpochSecond(0, Long.MAX_VALUE);
+
+    // The low two bits of a row's flags give the form of its CommandUUID; the next one marks a
+    // reason kept beside the columns.
+    private static final byte UUID_LOWER_CASE = HexCodec.LOWER_CASE;
+    private static final byte UUID_UPPER_CASE = HexCodec.UPPER_CASE;
+    private static final byte UUID_OTHER = 2;
+    private static final byte UUID_NULL = 3;
+    private static final byte UUID_FORM = 3;
+    private static final byte REASON_OTHER = 4;
+
+    private final Duration retention;
+    private final Clock clock;
+    private final DeviceDictionary devices = new DeviceDictionary();
+    private final Dictionary reasons = new Dictionary(MAX_REASON_CODE);
+    private final Dictionary batches = new Dictionary(Integer.MAX_VALUE);
+    private final Map<Long, String> otherUUIDs = new ConcurrentHashMap<>();
+    private final Map<Long, String> otherReasons = new ConcurrentHashMap<>();
+    private final CommandIndex latestByCommand = new CommandIndex();
+    private final Map<String, Long> latestByOtherCommand = new ConcurrentHashMap<>();
+    private volatile Chunk[] chunks = new Chunk[64];
+    // Rows below firstRow have been dropped; rows from size on are not yet written.
+    private volatile long firstRow;
+    private volatile long size;
+    private volatile long version;
+
+    /**
+     * Creates a repository that keeps every result.
+     */
+    public ColumnarExecutionHistoryRepository() {
+        this(Duration.ZERO);
+    }
+
+    /**
+     * @param retention How long results are kept before {@link #evictExpired()} drops them, or
+     *                  {@link Duration#ZERO} to keep them.
+     */
+    public ColumnarExecutionHistoryRepository(Duration retention) {
+        this(retention, Clock.systemUTC());
+    }
+
+    ColumnarExecutionHistoryRepository(Duration retention, Clock clock) {
+        this.retention = retention;
+        this.clock = clock;
+    }
+
+    @Override
+    public synchronized void recordResult(String deviceToken, CommandResult result) {
+        // Defensive programming: ensure non-null inputs
+        if (deviceToken == null || deviceToken.isBlank() || result == null || result.getStatus() == null) {
+            return;
+        }
+        long row = size;
+        int chunkNumber = (int) (row >>> CHUNK_SHIFT);
+        int i = (int) row & (CHUNK_SIZE - 1);
+        if (i == 0) {
+            if (chunkNumber == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunks.length * 2);
+            }
+            chunks[chunkNumber] = new Chunk();
+        }
+        Chunk chunk = chunks[chunkNumber];
+
+        int device = devices.idOf(deviceToken);
+        chunk.device[i] = device;
+        byte flags = encodeUUID(chunk, i, row, result.getCommandUUID());
+        long time = epochNanos(result.getTimestamp());
+        chunk.time[i] = time;
+        chunk.status[i] = (byte) result.getStatus().ordinal();
+        int reason = reasons.encode(result.getRejectionReason());
+        if (reason < 0) {
+            otherReasons.put(row, result.getRejectionReason());
+            flags |= REASON_OTHER;
+            reason = 0;
+        }
+        chunk.reason[i] = (short) reason;
+        chunk.attempt[i] = result.getAttempt();
+        int batch = batches.encode(result.getBatchId());
+        chunk.batch[i] = batch;
+        chunk.flags[i] = flags;
+
+        chunk.cover(i);
+        devices.append(device, row, firstRow);
+        // Written last: a reader that sees the new size sees the whole row and the chunk's ranges.
+        size = row + 1;
+        // Pointed to only once written, as a reader of the index does not check the size.
+        indexCommand(chunk, i, row, result.getCommandUUID());
+        version++;
+    }
+
+    /**
+     * Fixes the rows written so far, and the dictionary entries they use. Rows and entries are never
+     * changed once written, so they are read afterwards without the lock.
+     */
+    @Override
+    public synchronized Snapshot snapshot() {
+        long first = firstRow;
+        long end = size;
+        Chunk[] fixedChunks = chunks;
+        DeviceDictionary.View fixedDevices = devices.view();
+        String[] fixedReasons = reasons.values();
+        String[] fixedBatches = batches.values();
+        return out -> {
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(first);
+            out.writeLong(end);
+            fixedDevices.writeTo(out);
+            writeStrings(out, fixedReasons);
+            writeStrings(out, fixedBatches);
+            for (long base = first; base < end; base += CHUNK_SIZE) {
+                Chunk chunk = fixedChunks[(int) (base >>> CHUNK_SHIFT)];
+                int n = (int) Math.min(CHUNK_SIZE, end - base);
+                out.writeInts(chunk.device, n);
+                out.writeLongs(chunk.uuidHigh, n);
+                out.writeLongs(chunk.uuidLow, n);
+                out.writeLongs(chunk.time, n);
+                out.writeBytes(chunk.status, n);
+                out.writeBytes(chunk.flags, n);
+                out.writeShorts(chunk.reason, n);
+                out.writeInts(chunk.attempt, n);
+                out.writeInts(chunk.batch, n);
+                for (int i = 0; i < n; i++) {
+                    if ((chunk.flags[i] & UUID_FORM) == UUID_OTHER) {
+                        out.writeString(otherUUIDs.get(base + i));
+                    }
+                    if ((chunk.flags[i] & REASON_OTHER) != 0) {
+                        out.writeString(otherReasons.get(base + i));
+                    }
+                }
+            }
+        };
+    }
+
+    private static void writeStrings(SnapshotOutput out, String[] values) throws IOException {
+        // Code 0 stands for null and is not written.
+        out.writeInt(values.length - 1);
+        for (int code = 1; code < values.length; code++) {
+            out.writeString(values[code]);
+        }
+    }
+
+    /**
+     * Loads the rows of a snapshot under the row numbers they had, so that history cursors taken
+     * before a restart still apply.
+     */
+    @Override
+    public synchronized long restore(SnapshotInput in) throws IOException {
+        if (size != 0) {
+            throw new IllegalStateException("A snapshot can only be restored into an empty repository");
+        }
+        int snapshotVersion = in.readInt();
+        if (snapshotVersion != SNAPSHOT_VERSION) {
+            throw new IOException("Unsupported columnar snapshot version " + snapshotVersion);
+        }
+        long first = in.readLong();
+        long end = in.readLong();
+        if (first < 0 || first % CHUNK_SIZE != 0 || end < first) {
+            throw new IOException("The columnar snapshot holds an invalid row range");
+        }
+        devices.restore(in);
+        restoreStrings(in, reasons);
+        restoreStrings(in, batches);
+        int lastChunk = end > first ? (int) ((end - 1) >>> CHUNK_SHIFT) : 0;
+        if (lastChunk >= chunks.length) {
+            chunks = new Chunk[Integer.highestOneBit(lastChunk) << 1];
+        }
+        firstRow = first;
+        size = first;
+        int[] rowsPerDevice = new int[devices.count()];
+        for (long base = first; base < end; base += CHUNK_SIZE) {
+            Chunk chunk = new Chunk();
+            chunks[(int) (base >>> CHUNK_SHIFT)] = chunk;
+            int n = (int) Math.min(CHUNK_SIZE, end - base);
+            in.readInts(chunk.device, n);
+            in.readLongs(chunk.uuidHigh, n);
+            in.readLongs(chunk.uuidLow, n);
+            in.readLongs(chunk.time, n);
+            in.readBytes(chunk.status, n);
+            in.readBytes(chunk.flags, n);
+            in.readShorts(chunk.reason, n);
+            in.readInts(chunk.attempt, n);
+            in.readInts(chunk.batch, n);
+            for (int i = 0; i < n; i++) {
+                long row = base + i;
+                if (chunk.device[i] < 0 || chunk.device[i] >= devices.count() || chunk.status[i] < 0 || chunk.status[i] >= STATUSES.length
+                        || (chunk.reason[i] & 0xFFFF) >= reasons.count || chunk.batch[i] < 0 || chunk.batch[i] >= batches.count) {
+                    throw new IOException("The columnar snapshot holds an invalid row " + row);
+                }
+                if ((chunk.flags[i] & UUID_FORM) == UUID_OTHER) {
+                    otherUUIDs.put(row, in.readString());
+                }
+                if ((chunk.flags[i] & REASON_OTHER) != 0) {
+                    otherReasons.put(row, in.readString());
+                }
+                chunk.cover(i);
+                rowsPerDevice[chunk.device[i]]++;
+            }
+        }
+        // Sized up front, so that neither is copied as it fills.
+        devices.reserve(rowsPerDevice);
+        latestByCommand.reserve(end - first);
+        for (long row = first; row < end; row++) {
+            devices.append(chunks[(int) (row >>> CHUNK_SHIFT)].device[(int) row & (CHUNK_SIZE - 1)], row, first);
+        }
+        size = end;
+        for (long row = first; row < end; row++) {
+            Chunk chunk = chunks[(int) (row >>> CHUNK_SHIFT)];
+            int i = (int) row & (CHUNK_SIZE - 1);
+            indexCommand(chunk, i, row, (chunk.flags[i] & UUID_FORM) == UUID_OTHER ? otherUUIDs.get(row) : null);
+        }
+        version++;
+        return end - first;
+    }
+
+    private static void restoreStrings(SnapshotInput in, Dictionary dictionary) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            dictionary.encode(in.readString());
+        }
+    }
+
+    private void indexCommand(Chunk chunk, int i, long row, String uuid) {
+        switch (chunk.flags[i] & UUID_FORM) {
+            case UUID_NULL:
+                break;
+            case UUID_OTHER:
+                latestByOtherCommand.merge(uuid, row, (current, added) -> chunk.time[i] >= timeOf(current) ? added : current);
+                break;
+            default:
+                latestByCommand.put(row, chunk.uuidHigh[i], chunk.uuidLow[i], chunk.flags[i] & UUID_FORM, chunk.time[i]);
+        }
+    }
+
+    private long timeOf(long row) {
+        return chunks[(int) (row >>> CHUNK_SHIFT)].time[(int) row & (CHUNK_SIZE - 1)];
+    }
+
+    /**
+     * Appends the batch under one acquisition of the writers' lock.
+     */
+    @Override
+    public synchronized CompletionStage<Void> recordResults(List<DeviceResult> results) {
+        for (DeviceResult result : results) {
+            recordResult(result.getDeviceToken(), result.getResult());
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private byte encodeUUID(Chunk chunk, int i, long row, String uuid) {
+        if (uuid == null) {
+            return UUID_NULL;
+        }
+        int form = HexCodec.uuidCase(uuid);
+        if (form == HexCodec.NOT_HEX) {
+            otherUUIDs.put(row, uuid);
+            return UUID_OTHER;
+        }
+        chunk.uuidHigh[i] = HexCodec.uuidHigh(uuid);
+        chunk.uuidLow[i] = HexCodec.uuidLow(uuid);
+        return (byte) form;
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The number of results held.
+     */
+    public long size() {
+        return size - firstRow;
+    }
+
+    /**
+     * Drops the oldest chunks whose results have all outlived the retention period.
+     */
+    @Override
+    public synchronized int evictExpired() {
+        if (retention.isZero()) {
+            return 0;
+        }
+        long cutoff = epochNanos(clock.instant().minus(retention));
+        long first = firstRow;
+        // Only full chunks: the one being written to stays until it is full.
+        while (first + CHUNK_SIZE <= size && chunks[(int) (first >>> CHUNK_SHIFT)].maxTime < cutoff) {
+            first += CHUNK_SIZE;
+        }
+        if (first == firstRow) {
+            return 0;
+        }
+        // Cleared in a copy: a query in progress keeps the chunks it has found.
+        Chunk[] retainedChunks = chunks.clone();
+        Arrays.fill(retainedChunks, (int) (firstRow >>> CHUNK_SHIFT), (int) (first >>> CHUNK_SHIFT), null);
+        chunks = retainedChunks;
+        int evicted = (int) (first - firstRow);
+        long retained = first;
+        firstRow = first;
+        devices.trim(retained);
+        otherUUIDs.keySet().removeIf(row -> row < retained);
+        otherReasons.keySet().removeIf(row -> row < retained);
+        latestByOtherCommand.values().removeIf(row -> row < retained);
+        version++;
+        return evicted;
+    }
+
+    @Override
+    public Map<String, List<CommandResult>> getFullHistory() {
+        Map<String, List<CommandResult>> history = new HashMap<>();
+        forEachDevice((deviceToken, results) -> history.put(deviceToken, new ArrayList<>(results)));
+        return history;
+    }
+
+    /**
+     * Passes each device's results in the order they were recorded, which matches their timestamps
+     * whenever results are recorded as they are created.
+     */
+    @Override
+    public void forEachDevice(BiConsumer<String, Collection<CommandResult>> action) {
+        long end = size;
+        int count = devices.count();
+        for (int device = 0; device < count; device++) {
+            RowList rows = devices.rows(device);
+            int n = rows.count;
+            long first = firstRow;
+            if (n == 0 || rows.rows[n - 1] < first) {
+                continue;
+            }
+            action.accept(devices.token(device), new AbstractCollection<>() {
+                @Override
+                public Iterator<CommandResult> iterator() {
+                    return new Iterator<>() {
+                        private int next = skipDropped(0);
+                        private CommandResult result;
+
+                        private int skipDropped(int from) {
+                            while (from < n && rows.rows[from] < first) {
+                                from++;
+                            }
+                            return from;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            while (result == null && next < n) {
+                                result = read(rows.rows[next++], end);
+                            }
+                            return result != null;
+                        }
+
+                        @Override
+                        public CommandResult next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            CommandResult current = result;
+                            result = null;
+                            return current;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    int live = 0;
+                    for (int i = 0; i < n; i++) {
+                        if (rows.rows[i] >= first) {
+                            live++;
+                        }
+                    }
+                    return live;
+                }
+            });
+        }
+    }
+
+    @Override
+    public HistoryEntry findLatest(String commandUUID) {
+        if (commandUUID == null) {
+            return null;
+        }
+        long row;
+        int form = HexCodec.uuidCase(commandUUID);
+        if (form == HexCodec.NOT_HEX) {
+            Long found = latestByOtherCommand.get(commandUUID);
+            row = found != null ? found : -1;
+        } else {
+            row = latestByCommand.find(HexCodec.uuidHigh(commandUUID), HexCodec.uuidLow(commandUUID), form);
+        }
+        if (row < firstRow) {
+            return null;
+        }
+        Chunk chunk = chunks[(int) (row >>> CHUNK_SHIFT)];
+        if (chunk == null) {
+            return null;
+        }
+        return new HistoryEntry(devices.token(chunk.device[(int) row & (CHUNK_SIZE - 1)]), materialize(chunk, row), row + 1);
+    }
+
+    @Override
+    public HistoryPage query(HistoryQuery query) {
+        long end = size;
+        long first = firstRow;
+        Chunk[] chunks = this.chunks;
+        int device = -1;
+        if (query.getDeviceToken() != null && (device = devices.find(query.getDeviceToken())) < 0) {
+            return new HistoryPage(List.of(), null);
+        }
+        int batch = 0;
+        if (query.getBatchId() != null && (batch = batches.find(query.getBatchId())) <= 0) {
+            return new HistoryPage(List.of(), null);
+        }
+        int status = query.getStatus() != null ? query.getStatus().ordinal() : -1;
+        long since = query.getSince() != null ? boundNanos(query.getSince()) : Long.MIN_VALUE;
+        // Rows must sort before (upperTime, upperSequence).
+        long upperTime = Long.MAX_VALUE;
+        long upperSequence = Long.MAX_VALUE;
+        if (query.getUntil() != null) {
+            upperTime = boundNanos(query.getUntil());
+            upperSequence = Long.MIN_VALUE;
+        }
+        HistoryEntry cursor = query.getCursorPosition();
+        if (cursor != null) {
+            long cursorTime = boundNanos(cursor.getTimestamp());
+            if (cursorTime < upperTime || cursorTime == upperTime && cursor.getSequence() < upperSequence) {
+                upperTime = cursorTime;
+                upperSequence = cursor.getSequence();
+            }
+        }
+
+        Newest newest = new Newest(query.getLimit() + 1);
+        if (device >= 0) {
+            RowList rows = devices.rows(device);
+            for (int i = rows.count - 1; i >= 0; i--) {
+                long row = rows.rows[i];
+                if (row >= first && row < end) {
+                    Chunk chunk = chunks[(int) (row >>> CHUNK_SHIFT)];
+                    if (chunk != null) {
+                        offer(newest, chunk, row, status, batch, since, upperTime, upperSequence);
+                    }
+                }
+            }
+        } else if (end > first) {
+            for (int chunkNumber = (int) ((end - 1) >>> CHUNK_SHIFT); chunkNumber >= (int) (first >>> CHUNK_SHIFT); chunkNumber--) {
+                Chunk chunk = chunks[chunkNumber];
+                if (chunk == null
+                        || chunk.maxTime < since || chunk.minTime > upperTime
+                        || newest.isFull() && chunk.maxTime < newest.oldestTime()
+                        || status >= 0 && (chunk.statuses & 1 << status) == 0
+                        || batch != 0 && (batch < chunk.minBatch || batch > chunk.maxBatch)) {
+                    continue;
+                }
+                long base = (long) chunkNumber << CHUNK_SHIFT;
+                for (long row = Math.min(end, base + CHUNK_SIZE) - 1; row >= Math.max(first, base); row--) {
+                    offer(newest, chunk, row, status, batch, since, upperTime, upperSequence);
+                }
+            }
+        }
+
+        long[] rows = newest.drainNewestFirst();
+        int pageSize = Math.min(rows.length, query.getLimit());
+        List<HistoryEntry> page = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            Chunk chunk = chunks[(int) (rows[i] >>> CHUNK_SHIFT)];
+            int r = (int) rows[i] & (CHUNK_SIZE - 1);
+            page.add(new HistoryEntry(devices.token(chunk.device[r]), materialize(chunk, rows[i]), rows[i] + 1));
+        }
+        String nextCursor = rows.length > query.getLimit() ? HistoryQuery.cursorAfter(page.get(pageSize - 1)) : null;
+        return new HistoryPage(page, nextCursor);
+    }
+
+    private static void offer(Newest newest, Chunk chunk, long row, int status, int batch,
+                              long since, long upperTime, long upperSequence) {
+        int i = (int) row & (CHUNK_SIZE - 1);
+        long time = chunk.time[i];
+        long sequence = row + 1;
+        if (time < since || time > upperTime || time == upperTime && sequence >= upperSequence
+                || status >= 0 && chunk.status[i] != status
+                || batch != 0 && chunk.batch[i] != batch) {
+            return;
+        }
+        newest.offer(time, row);
+    }
+
+    /**
+     * @return The row's result, or {@code null} if it was dropped or written after {@code end}.
+     */
+    private CommandResult read(long row, long end) {
+        if (row < firstRow || row >= end) {
+            return null;
+        }
+        Chunk chunk = chunks[(int) (row >>> CHUNK_SHIFT)];
+        return chunk == null ? null : materialize(chunk, row);
+    }
+
+    private CommandResult materialize(Chunk chunk, long row) {
+        int i = (int) row & (CHUNK_SIZE - 1);
+        byte flags = chunk.flags[i];
+        String uuid;
+        switch (flags & UUID_FORM) {
+            case UUID_NULL:
+                uuid = null;
+                break;
+            case UUID_OTHER:
+                uuid = otherUUIDs.get(row);
+                break;
+            default:
+                uuid = HexCodec.formatUUID(chunk.uuidHigh[i], chunk.uuidLow[i], (flags & UUID_FORM) == UUID_UPPER_CASE);
+        }
+        String reason = (flags & REASON_OTHER) != 0 ? otherReasons.get(row) : reasons.decode(chunk.reason[i] & 0xFFFF);
+        long time = chunk.time[i];
+        return new CommandResult(uuid, STATUSES[chunk.status[i]],
+                Instant.ofEpochSecond(Math.floorDiv(time, 1_000_000_000L), Math.floorMod(time, 1_000_000_000L)),
+                reason, chunk.attempt[i], batches.decode(chunk.batch[i]));
+    }
+
+    /**
+     * @throws ArithmeticException for instants outside the years 1677 to 2262.
+     */
+    private static long epochNanos(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000_000L), instant.getNano());
+    }
+
+    /**
+     * Like {@link #epochNanos(Instant)} for a query bound, which may lie outside the years 1677 to
+     * 2262: such a bound becomes the earliest or latest time there is, as no result is recorded
+     * outside them.
+     */
+    private static long boundNanos(Instant instant) {
+        if (instant.isBefore(EARLIEST)) {
+            return Long.MIN_VALUE;
+        }
+        if (instant.isAfter(LATEST)) {
+            return Long.MAX_VALUE;
+        }
+        return epochNanos(instant);
+    }
+
+    /**
+     * {@value #CHUNK_SIZE} rows, column by column, and the ranges of what they hold. Only the writer
+     * changes a chunk; readers read no further than the {@link #size} they started with.
+     */
+    private static final class Chunk {
+        final int[] device = new int[CHUNK_SIZE];
+        final long[] uuidHigh = new long[CHUNK_SIZE];
+        final long[] uuidLow = new long[CHUNK_SIZE];
+        final long[] time = new long[CHUNK_SIZE];
+        final byte[] status = new byte[CHUNK_SIZE];
+        final byte[] flags = new byte[CHUNK_SIZE];
+        final short[] reason = new short[CHUNK_SIZE];
+        final int[] attempt = new int[CHUNK_SIZE];
+        final int[] batch = new int[CHUNK_SIZE];
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        int statuses;
+        int minBatch = Integer.MAX_VALUE;
+        int maxBatch;
+
+        /**
+         * Widens the ranges to take in row {@code i}, once it is written.
+         */
+        void cover(int i) {
+            minTime = Math.min(minTime, time[i]);
+            maxTime = Math.max(maxTime, time[i]);
+            statuses |= 1 << status[i];
+            if (batch[i] != 0) {
+                minBatch = Math.min(minBatch, batch[i]);
+                maxBatch = Math.max(maxBatch, batch[i]);
+            }
+        }
+    }
+
+    /**
+     * A device's rows, oldest first. The writer appends in place, and replaces the list to grow or
+     * trim it; {@code rows} below {@code count} never change.
+     */
+    private static final class RowList {
+        static final RowList EMPTY = new RowList(new long[0], 0);
+
+        final long[] rows;
+        volatile int count;
+
+        RowList(long[] rows, int count) {
+            this.rows = rows;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Strings by code, code 0 standing for {@code null}. Codes are only added, by the writer.
+     */
+    private static final class Dictionary {
+        private final int maxCode;
+        private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+        private volatile String[] values = new String[16];
+        private int count = 1;
+
+        Dictionary(int maxCode) {
+            this.maxCode = maxCode;
+        }
+
+        /**
+         * @return The value's code, or -1 if the dictionary is full.
+         */
+        int encode(String value) {
+            if (value == null) {
+                return 0;
+            }
+            Integer code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            if (count > maxCode) {
+                return -1;
+            }
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count] = value;
+            codes.put(value, count);
+            return count++;
+        }
+
+        /**
+         * @return The value's code, or -1 if it has none.
+         */
+        int find(String value) {
+            Integer code = codes.get(value);
+            return code != null ? code : -1;
+        }
+
+        String decode(int code) {
+            return values[code];
+        }
+
+        /**
+         * @return The values by code, from code 0. Called by the writer only.
+         */
+        String[] values() {
+            return Arrays.copyOf(values, count);
+        }
+    }
+
+    /**
+     * Device tokens by number. A token of 64 hex digits in one case is kept as 32 bytes and found
+     * through an open-addressing table over them; any other token is kept as a string.
+     */
+    private static final class DeviceDictionary {
+        private static final byte OTHER = 0;
+        private static final byte LOWER_CASE = 1;
+        private static final byte UPPER_CASE = 2;
+
+        private volatile long[] keys = new long[4 * 64];
+        private volatile byte[] forms = new byte[64];
+        private volatile RowList[] rows = new RowList[64];
+        // Holds id + 1 for each key; 0 marks a free slot. At most half full.
+        private volatile int[] table = new int[128];
+        private final Map<String, Integer> others = new ConcurrentHashMap<>();
+        private final Map<Integer, String> otherTokens = new ConcurrentHashMap<>();
+        private volatile int count;
+
+        int count() {
+            return count;
+        }
+
+        RowList rows(int id) {
+            return rows[id];
+        }
+
+        /**
+         * @return The token's id, or -1 if it has none.
+         */
+        int find(String token) {
+            byte form = form(token);
+            if (form == OTHER) {
+                Integer id = others.get(token);
+                return id != null ? id : -1;
+            }
+            // Read first: the ids below it are fully written, whatever the table shows beyond them.
+            int n = count;
+            long[] keys = this.keys;
+            byte[] forms = this.forms;
+            int[] table = this.table;
+            long k0 = HexCodec.tokenPart(token, 0);
+            long k1 = HexCodec.tokenPart(token, 1);
+            long k2 = HexCodec.tokenPart(token, 2);
+            long k3 = HexCodec.tokenPart(token, 3);
+            for (int slot = hash(k0, k1, k2, k3, form) & (table.length - 1); ; slot = (slot + 1) & (table.length - 1)) {
+                int id = table[slot] - 1;
+                if (id < 0) {
+                    return -1;
+                }
+                if (id < n && forms[id] == form && keys[4 * id] == k0 && keys[4 * id + 1] == k1 && keys[4 * id + 2] == k2 && keys[4 * id + 3] == k3) {
+                    return id;
+                }
+            }
+        }
+
+        /**
+         * Finds the token's id, adding it if it has none. Called by the writer only.
+         */
+        int idOf(String token) {
+            int id = find(token);
+            if (id >= 0) {
+                return id;
+            }
+            byte form = form(token);
+            if (form == OTHER) {
+                return add(form, 0, 0, 0, 0, token);
+            }
+            return add(form, HexCodec.tokenPart(token, 0), HexCodec.tokenPart(token, 1), HexCodec.tokenPart(token, 2),
+                    HexCodec.tokenPart(token, 3), null);
+        }
+
+        /**
+         * Gives the next id to a token not yet known: one of hex digits by its key, any other as
+         * {@code token}. Called by the writer only.
+         */
+        private int add(byte form, long k0, long k1, long k2, long k3, String token) {
+            int id = count;
+            if (id == forms.length) {
+                keys = Arrays.copyOf(keys, 8 * id);
+                forms = Arrays.copyOf(forms, 2 * id);
+                rows = Arrays.copyOf(rows, 2 * id);
+            }
+            rows[id] = RowList.EMPTY;
+            forms[id] = form;
+            if (form == OTHER) {
+                otherTokens.put(id, token);
+                others.put(token, id);
+            } else {
+                keys[4 * id] = k0;
+                keys[4 * id + 1] = k1;
+                keys[4 * id + 2] = k2;
+                keys[4 * id + 3] = k3;
+                if (2 * (id + 1) > table.length) {
+                    int[] grown = new int[table.length * 2];
+                    for (int existing = 0; existing < id; existing++) {
+                        if (forms[existing] != OTHER) {
+                            insert(grown, existing);
+                        }
+                    }
+                    insert(grown, id);
+                    table = grown;
+                } else {
+                    insert(table, id);
+                }
+            }
+            count = id + 1;
+            return id;
+        }
+
+        private void insert(int[] table, int id) {
+            int slot = hash(keys[4 * id], keys[4 * id + 1], keys[4 * id + 2], keys[4 * id + 3], forms[id]) & (table.length - 1);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (table.length - 1);
+            }
+            table[slot] = id + 1;
+        }
+
+        /**
+         * @return The tokens known so far. Called by the writer only.
+         */
+        View view() {
+            return new View(count, keys, forms);
+        }
+
+        /**
+         * Adds the tokens of a snapshot, in the order of their ids, to an empty dictionary.
+         */
+        void restore(SnapshotInput in) throws IOException {
+            int n = in.readInt();
+            if (n < 0) {
+                throw new IOException("The columnar snapshot holds an invalid device count");
+            }
+            byte[] restoredForms = new byte[n];
+            long[] restoredKeys = new long[4 * n];
+            in.readBytes(restoredForms, n);
+            in.readLongs(restoredKeys, 4 * n);
+            for (int id = 0; id < n; id++) {
+                byte form = restoredForms[id];
+                if (form < OTHER || form > UPPER_CASE) {
+                    throw new IOException("The columnar snapshot holds an invalid device " + id);
+                }
+                add(form, restoredKeys[4 * id], restoredKeys[4 * id + 1], restoredKeys[4 * id + 2], restoredKeys[4 * id + 3],
+                        form == OTHER ? in.readString() : null);
+            }
+        }
+
+        /**
+         * The first {@code count} tokens, which never change.
+         */
+        final class View {
+            private final int count;
+            private final long[] keys;
+            private final byte[] forms;
+
+            private View(int count, long[] keys, byte[] forms) {
+                this.count = count;
+                this.keys = keys;
+                this.forms = forms;
+            }
+
+            void writeTo(SnapshotOutput out) throws IOException {
+                out.writeInt(count);
+                out.writeBytes(forms, count);
+                out.writeLongs(keys, 4 * count);
+                for (int id = 0; id < count; id++) {
+                    if (forms[id] == OTHER) {
+                        out.writeString(otherTokens.get(id));
+                    }
+                }
+            }
+        }
+
+        String token(int id) {
+            if (forms[id] == OTHER) {
+                return otherTokens.get(id);
+            }
+            return HexCodec.formatToken(keys[4 * id], keys[4 * id + 1], keys[4 * id + 2], keys[4 * id + 3], forms[id] == UPPER_CASE);
+        }
+
+        /**
+         * Appends a row to the device's list, first dropping rows below {@code firstRow} if the list
+         * is full. Called by the writer only.
+         */
+        void append(int id, long row, long firstRow) {
+            RowList list = rows[id];
+            int n = list.count;
+            if (n == list.rows.length) {
+                int live = live(list, firstRow);
+                long[] grown = new long[Math.max(4, 2 * (live + 1))];
+                System.arraycopy(list.rows, n - live, grown, 0, live);
+                list = new RowList(grown, live);
+                rows[id] = list;
+                n = live;
+            }
+            list.rows[n] = row;
+            list.count = n + 1;
+        }
+
+        /**
+         * Makes room in each device's list for the given number of rows. Called by the writer only.
+         */
+        void reserve(int[] rowsPerDevice) {
+            for (int id = 0; id < rowsPerDevice.length; id++) {
+                RowList list = rows[id];
+                if (rowsPerDevice[id] > list.rows.length - list.count) {
+                    long[] grown = Arrays.copyOf(list.rows, list.count + rowsPerDevice[id]);
+                    rows[id] = new RowList(grown, list.count);
+                }
+            }
+        }
+
+        /**
+         * Drops the rows below {@code firstRow} from every list. Called by the writer only.
+         */
+        void trim(long firstRow) {
+            for (int id = 0; id < count; id++) {
+                RowList list = rows[id];
+                int live = live(list, firstRow);
+                if (live < list.count) {
+                    rows[id] = live == 0 ? RowList.EMPTY : new RowList(Arrays.copyOfRange(list.rows, list.count - live, list.count), live);
+                }
+            }
+        }
+
+        private static int live(RowList list, long firstRow) {
+            int n = list.count;
+            int dropped = 0;
+            while (dropped < n && list.rows[dropped] < firstRow) {
+                dropped++;
+            }
+            return n - dropped;
+        }
+
+        private static byte form(String token) {
+            int letterCase = HexCodec.tokenCase(token);
+            return letterCase == HexCodec.NOT_HEX ? OTHER : letterCase == HexCodec.UPPER_CASE ? UPPER_CASE : LOWER_CASE;
+        }
+
+        private static int hash(long k0, long k1, long k2, long k3, byte form) {
+            // Tokens are random, so mixing a few of their bits is enough.
+            long h = k0 * 0x9E3779B97F4A7C15L ^ k1 ^ k2 * 31 ^ k3 ^ form;
+            return (int) (h ^ h >>> 32);
+        }
+    }
+
+    /**
+     * The newest row of each {@code CommandUUID} in hex form, in an open-addressing table of row
+     * numbers. A slot's UUID and case are read from its row's columns. The slots of dropped rows
+     * are skipped, reused by the writer, and cleared when the table is rebuilt; it is rebuilt, at
+     * four times the commands it holds, whenever half its slots are in use.
+     */
+    private final class CommandIndex {
+        private static final int MIN_CAPACITY = 1024;
+
+        // Holds row + 1 for each command; 0 marks a free slot. Replaced whole when rebuilt.
+        private volatile AtomicLongArray table = new AtomicLongArray(MIN_CAPACITY);
+        private int used;
+
+        /**
+         * @return The newest row of the command, or -1 if it has none. The row may since have been
+         *         dropped.
+         */
+        long find(long high, long low, int form) {
+            AtomicLongArray table = this.table;
+            int mask = table.length() - 1;
+            long first = firstRow;
+            for (int slot = hash(high, low, form) & mask; ; slot = (slot + 1) & mask) {
+                long row = table.get(slot) - 1;
+                if (row < 0) {
+                    return -1;
+                }
+                if (row >= first && matches(row, high, low, form)) {
+                    return row;
+                }
+            }
+        }
+
+        /**
+         * Makes {@code row} the command's newest unless it has a newer one. Called by the writer only,
+         * after the row is written.
+         */
+        void put(long row, long high, long low, int form, long time) {
+            if (2 * (used + 1) > table.length()) {
+                rebuild();
+            }
+            AtomicLongArray table = this.table;
+            int mask = table.length() - 1;
+            int reusable = -1;
+            for (int slot = hash(high, low, form) & mask; ; slot = (slot + 1) & mask) {
+                long current = table.get(slot) - 1;
+                if (current < 0) {
+                    if (reusable < 0) {
+                        reusable = slot;
+                        used++;
+                    }
+                    table.set(reusable, row + 1);
+                    return;
+                }
+                if (current < firstRow) {
+                    if (reusable < 0) {
+                        reusable = slot;
+                    }
+                } else if (matches(current, high, low, form)) {
+                    if (time >= timeOf(current)) {
+                        table.set(slot, row + 1);
+                    }
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Grows the table, if need be, so that {@code commands} more can be added before it is next
+         * rebuilt. Called by the writer only.
+         */
+        void reserve(long commands) {
+            long needed = 2 * (used + commands + 1);
+            if (needed > table.length() && needed <= 1 << 30) {
+                rehash((int) (Long.highestOneBit(needed - 1) << 1));
+            }
+        }
+
+        private void rebuild() {
+            AtomicLongArray table = this.table;
+            long first = firstRow;
+            int live = 0;
+            for (int slot = 0; slot < table.length(); slot++) {
+                if (table.get(slot) - 1 >= first) {
+                    live++;
+                }
+            }
+            rehash(Math.max(MIN_CAPACITY, Integer.highestOneBit(4 * (live + 1) - 1) << 1));
+        }
+
+        /**
+         * Moves the slots of rows not dropped into a new table of {@code capacity} slots.
+         */
+        private void rehash(int capacity) {
+            AtomicLongArray table = this.table;
+            long first = firstRow;
+            AtomicLongArray rebuilt = new AtomicLongArray(capacity);
+            int mask = rebuilt.length() - 1;
+            int live = 0;
+            for (int slot = 0; slot < table.length(); slot++) {
+                long row = table.get(slot) - 1;
+                if (row >= first) {
+                    Chunk chunk = chunks[(int) (row >>> CHUNK_SHIFT)];
+                    int i = (int) row & (CHUNK_SIZE - 1);
+                    int target = hash(chunk.uuidHigh[i], chunk.uuidLow[i], chunk.flags[i] & UUID_FORM) & mask;
+                    while (rebuilt.get(target) != 0) {
+                        target = (target + 1) & mask;
+                    }
+                    rebuilt.set(target, row + 1);
+                    live++;
+                }
+            }
+            this.table = rebuilt;
+            used = live;
+        }
+
+        private boolean matches(long row, long high, long low, int form) {
+            Chunk chunk = chunks[(int) (row >>> CHUNK_SHIFT)];
+            int i = (int) row & (CHUNK_SIZE - 1);
+            return chunk != null && chunk.uuidLow[i] == low && chunk.uuidHigh[i] == high && (chunk.flags[i] & UUID_FORM) == form;
+        }
+
+        private int hash(long high, long low, int form) {
+            // The high half of the product depends on every bit, so time-based UUIDs, which share
+            // most of theirs, spread as well as random ones.
+            long h = (high ^ Long.rotateLeft(low, 32) ^ form) * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 32);
+        }
+    }
+
+    /**
+     * Keeps the {@code capacity} newest rows offered, by timestamp and then row, in a heap whose
+     * root is the oldest of them.
+     */
+    private static final class Newest {
+        private final long[] times;
+        private final long[] rows;
+        private int size;
+
+        Newest(int capacity) {
+            times = new long[capacity];
+            rows = new long[capacity];
+        }
+
+        boolean isFull() {
+            return size == times.length;
+        }
+
+        long oldestTime() {
+            return times[0];
+        }
+
+        void offer(long time, long row) {
+            if (size < times.length) {
+                int i = size++;
+                while (i > 0) {
+                    int parent = (i - 1) / 2;
+                    if (!older(time, row, times[parent], rows[parent])) {
+                        break;
+                    }
+                    times[i] = times[parent];
+                    rows[i] = rows[parent];
+                    i = parent;
+                }
+                times[i] = time;
+                rows[i] = row;
+            } else if (older(times[0], rows[0], time, row)) {
+                siftDown(time, row);
+            }
+        }
+
+        private void siftDown(long time, long row) {
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && older(times[child + 1], rows[child + 1], times[child], rows[child])) {
+                    child++;
+                }
+                if (!older(times[child], rows[child], time, row)) {
+                    break;
+                }
+                times[i] = times[child];
+                rows[i] = rows[child];
+                i = child;
+            }
+            times[i] = time;
+            rows[i] = row;
+        }
+
+        /**
+         * @return The rows held, newest first. Empties the heap.
+         */
+        long[] drainNewestFirst() {
+            long[] drained = new long[size];
+            for (int i = size - 1; i >= 0; i--) {
+                drained[i] = rows[0];
+                size--;
+                if (size > 0) {
+                    siftDown(times[size], rows[size]);
+                }
+            }
+            return drained;
+        }
+
+        private static boolean older(long time, long row, long otherTime, long otherRow) {
+            return time < otherTime || time == otherTime && row < otherRow;
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
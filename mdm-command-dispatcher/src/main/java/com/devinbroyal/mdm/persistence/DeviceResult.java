@@ -0,0 +1,36 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.persistence;
+
+import com.devinbroyal.mdm.domain.CommandResult;
+
+/**
+ * A result to be recorded for a device, one element of
+ * {@link ExecutionHistoryRepository#recordResults(java.util.List)}.
+ */
+public final class DeviceResult {
+
+    private final String deviceToken;
+    private final CommandResult result;
+
+    public DeviceResult(String deviceToken, CommandResult result) {
+        this.deviceToken = deviceToken;
+        this.result = result;
+    }
+
+    public String getDeviceToken() {
+        return deviceToken;
+    }
+
+    public CommandResult getResult() {
+        return result;
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
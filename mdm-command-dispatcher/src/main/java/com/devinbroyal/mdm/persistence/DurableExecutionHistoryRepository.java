@@ -0,0 +1,728 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.persistence;
+
+import com.devinbroyal.mdm.domain.CommandResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Makes another repository durable: every result is appended to a log on disk as well as recorded
+ * in the other repository, which answers all reads. On startup the log is replayed into it.
+ * <p>
+ * The log is a directory of segment files, {@code history-<n>.log}, each memory-mapped and filled
+ * with records up to its fixed size before the next is started. Appending a record is a copy into
+ * the mapping, so it costs no system call; a background thread forces what has been appended to
+ * disk every sync interval, committing all records of that interval with one {@code msync}. A
+ * crash of the process loses nothing, as the mapped pages belong to the operating system; a crash
+ * of the machine loses at most the last interval.
+ * <p>
+ * A segment starts with an 8-byte header: the magic number {@code MDMH} and the format version.
+ * A record is its length and CRC32C, then its fields. Tokens and UUIDs of hex digits in one case are
+ * packed into 32 and 16 bytes. Replay stops at the first record that is incomplete or fails its
+ * checksum, which is where appending resumes. Sealed segments are deleted once every result in them
+ * has outlived the retention period.
+ * <p>
+ * Replaying a record costs about as much as recording it, so when the index is {@link Snapshottable}
+ * it is also saved to {@code history.snapshot} every snapshot interval and on closing, with the
+ * position in the log it reflects and the newest timestamp of each segment. A restart loads the
+ * snapshot and replays only the records after that position. Results are recorded in the index in
+ * the order of the log, under its lock, so that a snapshot matches a position exactly. The snapshot
+ * is written beside the log and renamed into place once it and the log up to its position are on
+ * disk, so the one in place is always whole.
+ */
+public final class DurableExecutionHistoryRepository implements ExecutionHistoryRepository, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(DurableExecutionHistoryRepository.class);
+    static final int MAGIC = 0x4D444D48;
+    static final byte FORMAT_VERSION = 1;
+    static final int SEGMENT_HEADER_BYTES = 8;
+    static final String SNAPSHOT_NAME = "history.snapshot";
+    private static final int SNAPSHOT_MAGIC = 0x4D444D53;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("history-(\\d{20})\\.log");
+    // Statuses are stored by ordinal, so new ones must only ever be appended to the enum.
+    private static final CommandResult.Status[] STATUSES = CommandResult.Status.values();
+
+    // The low two bits of a record's flags give the token's form, the next two its CommandUUID's.
+    private static final int FORM_STRING = 0;
+    private static final int FORM_LOWER_CASE = 1;
+    private static final int FORM_UPPER_CASE = 2;
+    private static final int FORM_NULL = 3;
+
+    private final ExecutionHistoryRepository index;
+    private final Path directory;
+    private final int segmentBytes;
+    private final Duration retention;
+    private final Clock clock;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final ScheduledExecutorService syncer;
+    private final Snapshottable snapshottable;
+    private final ScheduledExecutorService snapshotter;
+    // Held while a snapshot is written, which must not run alongside an eviction from the index.
+    private final Object snapshotLock = new Object();
+    private final Object syncLock = new Object();
+    private final CRC32C crc = new CRC32C();
+    private final Deque<Segment> sealed = new ArrayDeque<>();
+    private final List<Segment> unsynced = new ArrayList<>();
+    private ByteBuffer scratch = ByteBuffer.allocate(1024);
+    private Segment active;
+    private long nextSegmentNumber;
+    // The log position of the last snapshot, or -1 if there is none.
+    private long snapshotSegmentNumber = -1;
+    private int snapshotPosition;
+    private boolean failing;
+    private boolean closed;
+
+    /**
+     * Opens the log in {@code directory}, creating it if need be, and replays it into {@code index}.
+     *
+     * @param index               The repository that holds the results in memory and answers reads.
+     * @param segmentBytes        The size of each segment file.
+     * @param syncIntervalMillis  How often appended records are forced to disk.
+     * @param retention           How long results are kept, or {@link Duration#ZERO} to keep them;
+     *                            expired results are not replayed.
+     * @param snapshotIntervalSeconds How often the index is snapshotted, if it can be, or 0 never to
+     *                            snapshot it and to replay the whole log.
+     * @throws IOException if the log or its snapshot cannot be read, or the log is already open here
+     *                     or in another process.
+     */
+    public DurableExecutionHistoryRepository(ExecutionHistoryRepository index, Path directory, int segmentBytes,
+                                             long syncIntervalMillis, Duration retention, long snapshotIntervalSeconds) throws IOException {
+        this(index, directory, segmentBytes, syncIntervalMillis, retention, snapshotIntervalSeconds, Clock.systemUTC());
+    }
+
+    DurableExecutionHistoryRepository(ExecutionHistoryRepository index, Path directory, int segmentBytes,
+                                      long syncIntervalMillis, Duration retention, long snapshotIntervalSeconds, Clock clock) throws IOException {
+        this.index = index;
+        this.snapshottable = snapshotIntervalSeconds > 0 && index instanceof Snapshottable ? (Snapshottable) index : null;
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.retention = retention;
+        this.clock = clock;
+        Files.createDirectories(directory);
+        this.lockChannel = FileChannel.open(directory.resolve("history.lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock acquired;
+        try {
+            acquired = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Held by another repository in this process.
+            acquired = null;
+        }
+        this.lock = acquired;
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException("The execution history log in " + directory + " is already open");
+        }
+        try {
+            recover();
+        } catch (IOException | RuntimeException e) {
+            lock.release();
+            lockChannel.close();
+            throw e;
+        }
+        this.syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "history-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        syncer.scheduleWithFixedDelay(this::sync, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+        if (snapshottable == null) {
+            this.snapshotter = null;
+            return;
+        }
+        // Its own thread: a snapshot of a large index takes seconds, and must not hold up syncing.
+        this.snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "history-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotter.scheduleWithFixedDelay(this::snapshot, snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void recordResult(String deviceToken, CommandResult result) {
+        // Defensive programming: ensure non-null inputs
+        if (deviceToken == null || deviceToken.isBlank() || result == null || result.getStatus() == null) {
+            return;
+        }
+        synchronized (this) {
+            append(deviceToken, result);
+            index.recordResult(deviceToken, result);
+        }
+    }
+
+    /**
+     * Appends the batch to the log and records it in the index as a batch, under one acquisition of
+     * the log's lock.
+     */
+    @Override
+    public synchronized CompletionStage<Void> recordResults(List<DeviceResult> results) {
+        for (DeviceResult entry : results) {
+            CommandResult result = entry.getResult();
+            if (entry.getDeviceToken() != null && !entry.getDeviceToken().isBlank() && result != null && result.getStatus() != null) {
+                append(entry.getDeviceToken(), result);
+            }
+        }
+        return index.recordResults(results);
+    }
+
+    private synchronized void append(String deviceToken, CommandResult result) {
+        if (closed) {
+            return;
+        }
+        int length = encode(deviceToken, result);
+        int recordBytes = RECORD_HEADER_BYTES + length;
+        if (recordBytes > segmentBytes - SEGMENT_HEADER_BYTES) {
+            logger.error("A result of {} bytes does not fit in a history segment of {} bytes; it is not persisted.", recordBytes, segmentBytes);
+            return;
+        }
+        if (active == null || active.position + recordBytes > segmentBytes) {
+            try {
+                roll();
+                failing = false;
+            } catch (IOException e) {
+                if (!failing) {
+                    logger.error("Failed to start a new execution history segment in {}. Results are not persisted until one can be started.", directory, e);
+                    failing = true;
+                }
+                return;
+            }
+        }
+        MappedByteBuffer buffer = active.buffer;
+        int position = active.position;
+        buffer.put(position + RECORD_HEADER_BYTES, scratch, 0, length);
+        crc.reset();
+        crc.update(scratch.array(), 0, length);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        // The length goes last: until it is written, the record reads as the end of the segment.
+        buffer.putInt(position, length);
+        active.position = position + recordBytes;
+        active.maxEpochSecond = Math.max(active.maxEpochSecond, result.getTimestamp().getEpochSecond());
+    }
+
+    /**
+     * Encodes a record's fields into {@link #scratch}, growing it as needed.
+     *
+     * @return The number of bytes written.
+     */
+    private int encode(String deviceToken, CommandResult result) {
+        while (true) {
+            try {
+                scratch.clear();
+                int tokenForm = form(HexCodec.tokenCase(deviceToken));
+                int uuidForm = result.getCommandUUID() == null ? FORM_NULL : form(HexCodec.uuidCase(result.getCommandUUID()));
+                scratch.put((byte) (tokenForm | uuidForm << 2));
+                if (tokenForm == FORM_STRING) {
+                    putString(deviceToken);
+                } else {
+                    for (int part = 0; part < 4; part++) {
+                        scratch.putLong(HexCodec.tokenPart(deviceToken, part));
+                    }
+                }
+                if (uuidForm == FORM_STRING) {
+                    putString(result.getCommandUUID());
+                } else if (uuidForm != FORM_NULL) {
+                    scratch.putLong(HexCodec.uuidHigh(result.getCommandUUID()));
+                    scratch.putLong(HexCodec.uuidLow(result.getCommandUUID()));
+                }
+                scratch.put((byte) result.getStatus().ordinal());
+                scratch.putLong(result.getTimestamp().getEpochSecond());
+                scratch.putInt(result.getTimestamp().getNano());
+                putString(result.getRejectionReason());
+                scratch.putInt(result.getAttempt());
+                putString(result.getBatchId());
+                return scratch.position();
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+            }
+        }
+    }
+
+    private static int form(int letterCase) {
+        return letterCase == HexCodec.NOT_HEX ? FORM_STRING : letterCase == HexCodec.UPPER_CASE ? FORM_UPPER_CASE : FORM_LOWER_CASE;
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            scratch.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        scratch.putInt(bytes.length);
+        scratch.put(bytes);
+    }
+
+    /**
+     * Seals the active segment, if any, and starts the next.
+     */
+    private void roll() throws IOException {
+        Path path = directory.resolve(String.format("history-%020d.log", nextSegmentNumber));
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping outlives the channel.
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.put(4, FORMAT_VERSION);
+        seal();
+        active = new Segment(nextSegmentNumber++, path, buffer, SEGMENT_HEADER_BYTES);
+    }
+
+    private void seal() {
+        if (active != null) {
+            unsynced.add(active);
+            sealed.addLast(active);
+        }
+    }
+
+    /**
+     * Forces the records appended since the last sync to disk. Called by the sync thread and, before
+     * a snapshot is put in place, by the snapshot thread, one at a time.
+     */
+    void sync() {
+        synchronized (syncLock) {
+            List<Segment> segments;
+            Segment current;
+            int position;
+            synchronized (this) {
+                segments = new ArrayList<>(unsynced);
+                unsynced.clear();
+                current = active;
+                position = current != null ? current.position : 0;
+            }
+            try {
+                for (Segment segment : segments) {
+                    segment.buffer.force();
+                    // Sealed and on disk; the mapping is no longer needed.
+                    segment.buffer = null;
+                }
+                if (current != null && position > current.synced) {
+                    current.buffer.force(current.synced, position - current.synced);
+                    current.synced = position;
+                }
+            } catch (RuntimeException e) {
+                // An exception would cancel the periodic sync; log it and try again next time.
+                logger.error("Failed to sync the execution history log", e);
+            }
+        }
+    }
+
+    /**
+     * Saves the index with the log position it reflects, unless nothing has been appended since the
+     * last snapshot.
+     */
+    void snapshot() {
+        synchronized (snapshotLock) {
+            Snapshottable.Snapshot image;
+            long segmentNumber;
+            int position;
+            // Each segment's number and newest timestamp, so that a restart need not read the segments.
+            List<long[]> segmentTimes = new ArrayList<>();
+            synchronized (this) {
+                if (active == null || active.number == snapshotSegmentNumber && active.position == snapshotPosition) {
+                    return;
+                }
+                image = snapshottable.snapshot();
+                segmentNumber = active.number;
+                position = active.position;
+                for (Segment segment : sealed) {
+                    segmentTimes.add(new long[]{segment.number, segment.maxEpochSecond});
+                }
+                segmentTimes.add(new long[]{active.number, active.maxEpochSecond});
+            }
+            long started = System.nanoTime();
+            Path temporary = directory.resolve(SNAPSHOT_NAME + ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE)) {
+                    SnapshotOutput out = new SnapshotOutput(channel);
+                    out.writeInt(SNAPSHOT_MAGIC);
+                    out.writeByte(FORMAT_VERSION);
+                    out.writeLong(segmentNumber);
+                    out.writeInt(position);
+                    out.writeInt(segmentTimes.size());
+                    for (long[] segment : segmentTimes) {
+                        out.writeLong(segment[0]);
+                        out.writeLong(segment[1]);
+                    }
+                    image.writeTo(out);
+                    out.flush();
+                    channel.force(true);
+                }
+                // After a machine crash the log must still reach the position, as appending resumes
+                // wherever the log ends.
+                sync();
+                Files.move(temporary, directory.resolve(SNAPSHOT_NAME), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException | RuntimeException e) {
+                // An exception would cancel the periodic snapshot; log it and try again next time.
+                logger.error("Failed to snapshot the execution history in {}; a restart replays more of the log until one succeeds.",
+                        directory, e);
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException ignored) {
+                    // Overwritten by the next attempt.
+                }
+                return;
+            }
+            synchronized (this) {
+                snapshotSegmentNumber = segmentNumber;
+                snapshotPosition = position;
+            }
+            logger.info("Snapshotted the execution history at segment {}, offset {} in {} ms", segmentNumber, position,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        }
+    }
+
+    /**
+     * Loads the snapshot, if there is one and the index can take it.
+     *
+     * @return The newest timestamp of each segment the snapshot covers, by segment number, or
+     *         {@code null} if none was loaded.
+     */
+    private Map<Long, Long> restoreSnapshot() throws IOException {
+        Path path = directory.resolve(SNAPSHOT_NAME);
+        if (snapshottable == null || !Files.exists(path)) {
+            return null;
+        }
+        long started = System.nanoTime();
+        Map<Long, Long> segmentTimes = new HashMap<>();
+        long restored;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            SnapshotInput in = new SnapshotInput(channel);
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readByte() != FORMAT_VERSION) {
+                throw new IOException(path + " is not an execution history snapshot of version " + FORMAT_VERSION);
+            }
+            snapshotSegmentNumber = in.readLong();
+            snapshotPosition = in.readInt();
+            int segments = in.readInt();
+            for (int i = 0; i < segments; i++) {
+                segmentTimes.put(in.readLong(), in.readLong());
+            }
+            restored = snapshottable.restore(in);
+        }
+        logger.info("Loaded {} results from the execution history snapshot in {} ms", restored,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return segmentTimes;
+    }
+
+    /**
+     * Loads the snapshot, if any, then replays every segment in order from the position it reflects,
+     * resuming appends after the last valid record.
+     */
+    private void recover() throws IOException {
+        Map<Long, Long> snapshotted = restoreSnapshot();
+        List<Path> paths = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> SEGMENT_NAME.matcher(path.getFileName().toString()).matches()).sorted().forEach(paths::add);
+        }
+        long cutoff = retention.isZero() ? Long.MIN_VALUE : clock.instant().minus(retention).getEpochSecond();
+        long started = System.nanoTime();
+        long replayed = 0;
+        int scanned = 0;
+        for (int i = 0; i < paths.size(); i++) {
+            Path path = paths.get(i);
+            Matcher name = SEGMENT_NAME.matcher(path.getFileName().toString());
+            name.matches();
+            long number = Long.parseLong(name.group(1));
+            nextSegmentNumber = number + 1;
+            boolean last = i == paths.size() - 1;
+            // Records before this offset are in the snapshot already.
+            int recordFrom = SEGMENT_HEADER_BYTES;
+            Long maxEpochSecond = null;
+            if (snapshotted != null && number <= snapshotSegmentNumber) {
+                maxEpochSecond = snapshotted.get(number);
+                recordFrom = number == snapshotSegmentNumber ? snapshotPosition : Integer.MAX_VALUE;
+                if (number < snapshotSegmentNumber && maxEpochSecond != null && !last) {
+                    // Wholly in the snapshot; not even read.
+                    Segment segment = new Segment(number, path, null, 0);
+                    segment.maxEpochSecond = maxEpochSecond;
+                    sealed.addLast(segment);
+                    continue;
+                }
+            }
+            MappedByteBuffer buffer = null;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                if (channel.size() >= SEGMENT_HEADER_BYTES) {
+                    buffer = last
+                            ? channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentBytes, channel.size()))
+                            : channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+            }
+            if (buffer == null) {
+                logger.warn("Deleting the incomplete execution history segment {}", path);
+                Files.delete(path);
+                continue;
+            }
+            if (buffer.getInt(0) != MAGIC || buffer.get(4) != FORMAT_VERSION) {
+                throw new IOException(path + " is not an execution history segment of version " + FORMAT_VERSION);
+            }
+            Segment segment = new Segment(number, path, buffer, SEGMENT_HEADER_BYTES);
+            if (maxEpochSecond != null) {
+                segment.maxEpochSecond = maxEpochSecond;
+            }
+            replayed += replay(segment, cutoff, recordFrom, maxEpochSecond != null);
+            scanned++;
+            if (last && segment.position + RECORD_HEADER_BYTES < buffer.capacity()) {
+                segment.synced = segment.position;
+                active = segment;
+            } else {
+                segment.buffer = null;
+                sealed.addLast(segment);
+            }
+        }
+        if (snapshotted != null) {
+            // Never reuse a number the snapshot's position may refer to, even if its segment is gone.
+            nextSegmentNumber = Math.max(nextSegmentNumber, snapshotSegmentNumber + 1);
+        }
+        if (scanned > 0) {
+            logger.info("Replayed {} results from {} execution history segments in {} ms", replayed, scanned,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        }
+    }
+
+    /**
+     * Records the segment's results from offset {@code recordFrom} on in the index, except those
+     * older than {@code cutoff}, and leaves its position after the last valid record. Records before
+     * {@code recordFrom} are only checked, and read for their timestamps unless {@code timesKnown}.
+     *
+     * @return The number of results recorded.
+     */
+    private long replay(Segment segment, long cutoff, int recordFrom, boolean timesKnown) {
+        ByteBuffer buffer = segment.buffer;
+        int position = SEGMENT_HEADER_BYTES;
+        long replayed = 0;
+        while (position + RECORD_HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || length > buffer.capacity() - position - RECORD_HEADER_BYTES || !checksumMatches(buffer, position, length)) {
+                logger.warn("Execution history segment {} ends in an incomplete record at offset {}; replay of it stops there.",
+                        segment.path, position);
+                if (!buffer.isReadOnly()) {
+                    // So that records appended from here on are not followed by its remains.
+                    boolean lengthValid = length > 0 && length <= buffer.capacity() - position - RECORD_HEADER_BYTES;
+                    int end = lengthValid ? position + RECORD_HEADER_BYTES + length : buffer.capacity();
+                    for (int i = position; i < end; i++) {
+                        buffer.put(i, (byte) 0);
+                    }
+                }
+                break;
+            }
+            boolean recording = position >= recordFrom;
+            if (recording || !timesKnown) {
+                ByteBuffer record = buffer.slice(position + RECORD_HEADER_BYTES, length);
+                String deviceToken = decodeToken(record);
+                CommandResult result = decodeResult(record);
+                segment.maxEpochSecond = Math.max(segment.maxEpochSecond, result.getTimestamp().getEpochSecond());
+                if (recording && result.getTimestamp().getEpochSecond() >= cutoff) {
+                    index.recordResult(deviceToken, result);
+                    replayed++;
+                }
+            }
+            position += RECORD_HEADER_BYTES + length;
+        }
+        segment.position = position;
+        return replayed;
+    }
+
+    private boolean checksumMatches(ByteBuffer buffer, int position, int length) {
+        crc.reset();
+        crc.update(buffer.slice(position + RECORD_HEADER_BYTES, length));
+        return (int) crc.getValue() == buffer.getInt(position + 4);
+    }
+
+    private static String decodeToken(ByteBuffer record) {
+        int flags = record.get(0);
+        record.position(1);
+        int tokenForm = flags & 3;
+        if (tokenForm == FORM_STRING) {
+            return getString(record);
+        }
+        return HexCodec.formatToken(record.getLong(), record.getLong(), record.getLong(), record.getLong(), tokenForm == FORM_UPPER_CASE);
+    }
+
+    /**
+     * Reads the fields after the token.
+     */
+    private static CommandResult decodeResult(ByteBuffer record) {
+        int uuidForm = record.get(0) >> 2 & 3;
+        String commandUUID;
+        if (uuidForm == FORM_NULL) {
+            commandUUID = null;
+        } else if (uuidForm == FORM_STRING) {
+            commandUUID = getString(record);
+        } else {
+            commandUUID = HexCodec.formatUUID(record.getLong(), record.getLong(), uuidForm == FORM_UPPER_CASE);
+        }
+        CommandResult.Status status = STATUSES[record.get()];
+        Instant timestamp = Instant.ofEpochSecond(record.getLong(), record.getInt());
+        String rejectionReason = getString(record);
+        int attempt = record.getInt();
+        String batchId = getString(record);
+        return new CommandResult(commandUUID, status, timestamp, rejectionReason, attempt, batchId);
+    }
+
+    private static String getString(ByteBuffer record) {
+        int length = record.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int evictExpired() {
+        int evicted;
+        synchronized (snapshotLock) {
+            evicted = index.evictExpired();
+        }
+        if (retention.isZero()) {
+            return evicted;
+        }
+        long cutoff = clock.instant().minus(retention).getEpochSecond();
+        List<Segment> expired = new ArrayList<>();
+        synchronized (this) {
+            while (!sealed.isEmpty() && sealed.peekFirst().maxEpochSecond < cutoff && !unsynced.contains(sealed.peekFirst())) {
+                expired.add(sealed.removeFirst());
+            }
+        }
+        for (Segment segment : expired) {
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                logger.error("Failed to delete the expired execution history segment {}", segment.path, e);
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Forces everything appended to disk, snapshots the index if it can be, and stops appending;
+     * results recorded afterwards are kept in memory only.
+     */
+    @Override
+    public void close() throws IOException {
+        syncer.shutdown();
+        if (snapshotter != null) {
+            snapshotter.shutdown();
+        }
+        try {
+            syncer.awaitTermination(10, TimeUnit.SECONDS);
+            if (snapshotter != null) {
+                snapshotter.awaitTermination(60, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        sync();
+        if (snapshottable != null) {
+            // So that a clean restart replays nothing.
+            snapshot();
+        }
+        lock.release();
+        lockChannel.close();
+    }
+
+    @Override
+    public Map<String, List<CommandResult>> getFullHistory() {
+        return index.getFullHistory();
+    }
+
+    @Override
+    public void forEachDevice(BiConsumer<String, Collection<CommandResult>> action) {
+        index.forEachDevice(action);
+    }
+
+    @Override
+    public HistoryEntry findLatest(String commandUUID) {
+        return index.findLatest(commandUUID);
+    }
+
+    @Override
+    public Map<String, HistoryEntry> findLatest(Collection<String> commandUUIDs) {
+        return index.findLatest(commandUUIDs);
+    }
+
+    @Override
+    public HistoryPage query(HistoryQuery query) {
+        return index.query(query);
+    }
+
+    @Override
+    public long getVersion() {
+        return index.getVersion();
+    }
+
+    /**
+     * A segment file. Its mapping is dropped once it is sealed and synced; the rest is changed only
+     * while holding the repository's lock, except {@code synced}, which is used only while syncing.
+     */
+    private static final class Segment {
+        final long number;
+        final Path path;
+        volatile MappedByteBuffer buffer;
+        int position;
+        int synced;
+        long maxEpochSecond = Long.MIN_VALUE;
+
+        Segment(long number, Path path, MappedByteBuffer buffer, int position) {
+            this.number = number;
+            this.path = path;
+            this.buffer = buffer;
+            this.position = position;
+            this.synced = position;
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -7,8 +7,13 @@ package com.devinbroyal.mdm.persistence;
 
 import com.devinbroyal.mdm.domain.CommandResult;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.BiConsumer;
 
 public interface ExecutionHistoryRepository {
     /**
@@ -19,12 +24,95 @@ public interface ExecutionHistoryRepository {
      */
     void recordResult(String deviceToken, CommandResult result);
 
+    /**
+     * Adds a batch of results, in order, each to its device's history. A repository may write the
+     * batch at once, or later on another thread; either way the results are visible to reads once
+     * the returned stage completes.
+     *
+     * @param results The results and the devices they belong to.
+     * @return A stage that completes once every result is recorded, or exceptionally if the batch
+     *         could not be.
+     */
+    default CompletionStage<Void> recordResults(List<DeviceResult> results) {
+        try {
+            for (DeviceResult result : results) {
+                recordResult(result.getDeviceToken(), result.getResult());
+            }
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     /**
      * Retrieves the entire history of all commands sent.
      *
      * @return A map where the key is the device token and the value is a list of command results.
      */
     Map<String, List<CommandResult>> getFullHistory();
+
+    /**
+     * Passes each device's results to {@code action} without copying the history first, so that it
+     * can be streamed. Results recorded meanwhile may or may not be seen.
+     *
+     * @param action Receives a device token and its results, oldest first.
+     */
+    default void forEachDevice(BiConsumer<String, Collection<CommandResult>> action) {
+        getFullHistory().forEach(action);
+    }
+
+    /**
+     * Finds the entries matching a query, newest first.
+     *
+     * @param query The filters, page size and cursor.
+     * @return One page of matching entries and the cursor of the next page.
+     */
+    HistoryPage query(HistoryQuery query);
+
+    /**
+     * Finds the newest result held for a command, which carries its outcome or, while it is still
+     * being delivered, its progress. Served from an index by {@code CommandUUID}, so the cost does
+     * not depend on the size of the history.
+     *
+     * @param commandUUID The command's {@code CommandUUID}, matched exactly.
+     * @return The newest entry for the command, or {@code null} if none is held.
+     */
+    HistoryEntry findLatest(String commandUUID);
+
+    /**
+     * Looks up many commands at once, as {@link #findLatest(String)} does.
+     *
+     * @return The newest entry of each command found, by {@code CommandUUID}, in the order asked;
+     *         commands with no result held are left out.
+     */
+    default Map<String, HistoryEntry> findLatest(Collection<String> commandUUIDs) {
+        Map<String, HistoryEntry> found = new LinkedHashMap<>();
+        for (String commandUUID : commandUUIDs) {
+            HistoryEntry entry = findLatest(commandUUID);
+            if (entry != null) {
+                found.put(commandUUID, entry);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns a number that grows whenever the history changes, so that an encoding of it can be
+     * reused until then. A snapshot taken after reading version {@code v} contains at least every
+     * change counted in {@code v}.
+     *
+     * @return The current version, starting at 0 for an empty history.
+     */
+    long getVersion();
+
+    /**
+     * Drops the results that have outlived the repository's retention period, if it has one.
+     *
+     * @return The number of results dropped.
+     */
+    default int evictExpired() {
+        return 0;
+    }
 }
 
 /*
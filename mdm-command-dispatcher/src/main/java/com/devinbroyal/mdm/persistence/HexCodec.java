@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.persistence;
+
+/**
+ * Packs the hex strings the history is full of, 64-digit device tokens and canonical UUIDs, into
+ * longs and back. A string packs only if its letters are all in one case, which is then kept
+ * alongside, so that it unpacks exactly as it was.
+ */
+final class HexCodec {
+
+    static final int NOT_HEX = -1;
+    static final int LOWER_CASE = 0;
+    static final int UPPER_CASE = 1;
+
+    private HexCodec() {
+    }
+
+    /**
+     * @return {@link #LOWER_CASE} or {@link #UPPER_CASE} for a token of 64 hex digits, otherwise
+     *         {@link #NOT_HEX}.
+     */
+    static int tokenCase(String token) {
+        return token.length() == 64 ? letterCase(token, -1) : NOT_HEX;
+    }
+
+    /**
+     * @return {@link #LOWER_CASE} or {@link #UPPER_CASE} for a UUID in the canonical 8-4-4-4-12
+     *         form, otherwise {@link #NOT_HEX}.
+     */
+    static int uuidCase(String uuid) {
+        if (uuid.length() != 36 || uuid.charAt(8) != '-' || uuid.charAt(13) != '-' || uuid.charAt(18) != '-' || uuid.charAt(23) != '-') {
+            return NOT_HEX;
+        }
+        return letterCase(uuid, '-');
+    }
+
+    private static int letterCase(String s, int separator) {
+        boolean lower = false;
+        boolean upper = false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 'a' && c <= 'f') {
+                lower = true;
+            } else if (c >= 'A' && c <= 'F') {
+                upper = true;
+            } else if ((c < '0' || c > '9') && c != separator) {
+                return NOT_HEX;
+            }
+        }
+        return lower && upper ? NOT_HEX : upper ? UPPER_CASE : LOWER_CASE;
+    }
+
+    /**
+     * @return Digits {@code 16 * part} to {@code 16 * part + 15} of a token, as a long.
+     */
+    static long tokenPart(String token, int part) {
+        return parse(token, 16 * part, 16 * part + 16);
+    }
+
+    static String formatToken(long part0, long part1, long part2, long part3, boolean upperCase) {
+        char[] chars = new char[64];
+        format(part0, chars, 0, 16, upperCase);
+        format(part1, chars, 16, 16, upperCase);
+        format(part2, chars, 32, 16, upperCase);
+        format(part3, chars, 48, 16, upperCase);
+        return new String(chars);
+    }
+
+    static long uuidHigh(String uuid) {
+        return parse(uuid, 0, 8) << 32 | parse(uuid, 9, 13) << 16 | parse(uuid, 14, 18);
+    }
+
+    static long uuidLow(String uuid) {
+        return parse(uuid, 19, 23) << 48 | parse(uuid, 24, 36);
+    }
+
+    static String formatUUID(long high, long low, boolean upperCase) {
+        char[] chars = new char[36];
+        format(high >>> 32, chars, 0, 8, upperCase);
+        chars[8] = '-';
+        format(high >>> 16, chars, 9, 4, upperCase);
+        chars[13] = '-';
+        format(high, chars, 14, 4, upperCase);
+        chars[18] = '-';
+        format(low >>> 48, chars, 19, 4, upperCase);
+        chars[23] = '-';
+        format(low, chars, 24, 12, upperCase);
+        return new String(chars);
+    }
+
+    private static long parse(String s, int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            value = value << 4 | Character.digit(s.charAt(i), 16);
+        }
+        return value;
+    }
+
+    /**
+     * Writes the low {@code digits * 4} bits of {@code value} as hex.
+     */
+    private static void format(long value, char[] chars, int offset, int digits, boolean upperCase) {
+        char letter = upperCase ? 'A' : 'a';
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            int digit = (int) value & 0xF;
+            chars[i] = (char) (digit < 10 ? '0' + digit : letter + digit - 10);
+            value >>>= 4;
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,79 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.persistence;
+
+import com.devinbroyal.mdm.domain.CommandResult;
+
+import java.time.Instant;
+
+/**
+ * A recorded result together with the device it concerns. Entries are ordered by the result's
+ * timestamp and then by the sequence number the repository assigned when recording it, which
+ * makes the order total and a position in it usable as a pagination cursor.
+ */
+public final class HistoryEntry implements Comparable<HistoryEntry> {
+
+    private final String deviceToken;
+    private final CommandResult result;
+    private final Instant timestamp;
+    private final long sequence;
+
+    public HistoryEntry(String deviceToken, CommandResult result, long sequence) {
+        this(deviceToken, result, result.getTimestamp(), sequence);
+    }
+
+    private HistoryEntry(String deviceToken, CommandResult result, Instant timestamp, long sequence) {
+        this.deviceToken = deviceToken;
+        this.result = result;
+        this.timestamp = timestamp;
+        this.sequence = sequence;
+    }
+
+    /**
+     * @return An entry without a result that sorts before every recorded entry at {@code timestamp}
+     *         whose sequence is at least {@code sequence}, for searching an ordered index.
+     */
+    static HistoryEntry position(Instant timestamp, long sequence) {
+        return new HistoryEntry(null, null, timestamp, sequence);
+    }
+
+    public String getDeviceToken() {
+        return deviceToken;
+    }
+
+    public CommandResult getResult() {
+        return result;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    @Override
+    public int compareTo(HistoryEntry other) {
+        int byTime = timestamp.compareTo(other.timestamp);
+        return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof HistoryEntry && compareTo((HistoryEntry) other) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return timestamp.hashCode() * 31 + Long.hashCode(sequence);
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
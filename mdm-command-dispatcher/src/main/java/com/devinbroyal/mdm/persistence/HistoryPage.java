@@ -0,0 +1,39 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.persistence;
+
+import java.util.List;
+
+/**
+ * One page of a {@link HistoryQuery}'s results, newest first.
+ */
+public final class HistoryPage {
+
+    private final List<HistoryEntry> entries;
+    private final String nextCursor;
+
+    public HistoryPage(List<HistoryEntry> entries, String nextCursor) {
+        this.entries = entries;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<HistoryEntry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return The cursor that continues after the last entry of this page, or {@code null} if there
+     *         are no further matching entries.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
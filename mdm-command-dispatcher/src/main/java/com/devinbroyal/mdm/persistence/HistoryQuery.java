@@ -0,0 +1,140 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.persistence;
+
+import com.devinbroyal.mdm.domain.CommandResult;
+
+import java.time.Instant;
+
+/**
+ * Selects history entries. Every filter is optional; the results come newest first, at most
+ * {@link #getLimit()} at a time, continuing after the {@linkplain #setCursor(String) cursor} of the
+ * previous page.
+ */
+public class HistoryQuery {
+
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    private String deviceToken;
+    private CommandResult.Status status;
+    private String batchId;
+    private Instant since;
+    private Instant until;
+    private int limit = DEFAULT_LIMIT;
+    private HistoryEntry cursor;
+
+    public String getDeviceToken() {
+        return deviceToken;
+    }
+
+    public void setDeviceToken(String deviceToken) {
+        this.deviceToken = deviceToken;
+    }
+
+    public CommandResult.Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(CommandResult.Status status) {
+        this.status = status;
+    }
+
+    public String getBatchId() {
+        return batchId;
+    }
+
+    public void setBatchId(String batchId) {
+        this.batchId = batchId;
+    }
+
+    /**
+     * @return The earliest timestamp to include, or {@code null}.
+     */
+    public Instant getSince() {
+        return since;
+    }
+
+    public void setSince(Instant since) {
+        this.since = since;
+    }
+
+    /**
+     * @return The timestamp before which entries are included (exclusive), or {@code null}.
+     */
+    public Instant getUntil() {
+        return until;
+    }
+
+    public void setUntil(Instant until) {
+        this.until = until;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the limit is not between 1 and {@value #MAX_LIMIT}.
+     */
+    public void setLimit(int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        this.limit = limit;
+    }
+
+    /**
+     * @return The position after which the page starts, or {@code null} for the newest entry.
+     */
+    HistoryEntry getCursorPosition() {
+        return cursor;
+    }
+
+    /**
+     * @param cursor A {@link HistoryPage#getNextCursor()}, or {@code null} to start with the newest entry.
+     * @throws IllegalArgumentException if the cursor is malformed.
+     */
+    public void setCursor(String cursor) {
+        if (cursor == null) {
+            this.cursor = null;
+            return;
+        }
+        String[] parts = cursor.split("\\.", -1);
+        try {
+            if (parts.length != 3) {
+                throw new NumberFormatException();
+            }
+            this.cursor = HistoryEntry.position(Instant.ofEpochSecond(Long.parseLong(parts[0]), Integer.parseInt(parts[1])), Long.parseLong(parts[2]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    /**
+     * @return The cursor that continues after {@code entry}.
+     */
+    static String cursorAfter(HistoryEntry entry) {
+        return entry.getTimestamp().getEpochSecond() + "." + entry.getTimestamp().getNano() + "." + entry.getSequence();
+    }
+
+    /**
+     * @return Whether the entry passes every filter except the cursor.
+     */
+    boolean matches(HistoryEntry entry) {
+        CommandResult result = entry.getResult();
+        return (deviceToken == null || deviceToken.equals(entry.getDeviceToken()))
+                && (status == null || status == result.getStatus())
+                && (batchId == null || batchId.equals(result.getBatchId()))
+                && (since == null || !entry.getTimestamp().isBefore(since))
+                && (until == null || entry.getTimestamp().isBefore(until));
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
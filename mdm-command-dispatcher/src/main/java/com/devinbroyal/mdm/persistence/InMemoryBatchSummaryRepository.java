@@ -0,0 +1,59 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.persistence;
+
+import com.devinbroyal.mdm.domain.BatchSummary;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class InMemoryBatchSummaryRepository implements BatchSummaryRepository {
+
+    private static final int DEFAULT_MAX_BATCHES = 10_000;
+
+    private final Map<String, BatchSummary> summaries = new ConcurrentHashMap<>();
+    private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final int maxBatches;
+
+    public InMemoryBatchSummaryRepository() {
+        this(DEFAULT_MAX_BATCHES);
+    }
+
+    public InMemoryBatchSummaryRepository(int maxBatches) {
+        this.maxBatches = maxBatches;
+    }
+
+    @Override
+    public void save(BatchSummary summary) {
+        if (summary == null || summary.getBatchId() == null) {
+            return;
+        }
+        if (summaries.put(summary.getBatchId(), summary) == null) {
+            insertionOrder.offer(summary.getBatchId());
+        }
+        // Only the oldest batches are evicted, so the map stays bounded however many broadcasts run.
+        while (summaries.size() > maxBatches) {
+            String oldest = insertionOrder.poll();
+            if (oldest == null) {
+                break;
+            }
+            summaries.remove(oldest);
+        }
+    }
+
+    @Override
+    public Optional<BatchSummary> findById(String batchId) {
+        return batchId == null ? Optional.empty() : Optional.ofNullable(summaries.get(batchId));
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -7,32 +7,326 @@ package com.devinbroyal.mdm.persistence;
 
 import com.devinbroyal.mdm.domain.CommandResult;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 
+/**
+ * Keeps every result in time-ordered indexes: one per device, one per status, one per broadcast,
+ * one per {@code CommandUUID} and one over all results. A query walks the narrowest index that
+ * applies, from its upper time bound (or cursor) downwards, so a query filtering on one of them costs
+ * in proportion to the page it returns rather than to the size of the history. Filters beyond the
+ * first are checked while walking. A command's newest result is the last of its index, which stays
+ * right whichever of its results are dropped, even when it was sent to many devices.
+ * <p>
+ * The history can be bounded three ways, each dropping the oldest results first: a cap on the
+ * results kept per device, applied as each result is recorded; a retention period, applied by
+ * {@link #evictExpired()}; and {@link #evictOldest(double)}, for shedding a share of the whole
+ * history when the heap runs short. Recording a result never copies existing ones, and a dropped
+ * result leaves every index, so that devices and broadcasts with nothing left take no memory.
+ */
 public class InMemoryExecutionHistoryRepository implements ExecutionHistoryRepository {
 
-    private final Map<String, List<CommandResult>> history = new ConcurrentHashMap<>();
+    private final int maxResultsPerDevice;
+    private final Duration retention;
+    private final Clock clock;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong size = new AtomicLong();
+    private final Map<String, DeviceHistory> byDevice = new ConcurrentHashMap<>();
+    private final Map<CommandResult.Status, NavigableSet<HistoryEntry>> byStatus = new EnumMap<>(CommandResult.Status.class);
+    private final Map<String, NavigableSet<HistoryEntry>> byBatch = new ConcurrentHashMap<>();
+    private final NavigableSet<HistoryEntry> all = new ConcurrentSkipListSet<>();
+    private final Map<String, NavigableSet<HistoryEntry>> byCommand = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a repository that keeps every result.
+     */
+    public InMemoryExecutionHistoryRepository() {
+        this(0, Duration.ZERO);
+    }
+
+    /**
+     * @param maxResultsPerDevice The results kept per device, or 0 for no limit.
+     * @param retention           How long results are kept before {@link #evictExpired()} drops
+     *                            them, or {@link Duration#ZERO} to keep them.
+     */
+    public InMemoryExecutionHistoryRepository(int maxResultsPerDevice, Duration retention) {
+        this(maxResultsPerDevice, retention, Clock.systemUTC());
+    }
+
+    InMemoryExecutionHistoryRepository(int maxResultsPerDevice, Duration retention, Clock clock) {
+        this.maxResultsPerDevice = maxResultsPerDevice;
+        this.retention = retention;
+        this.clock = clock;
+        // Populated once up front so that concurrent writers never mutate the map itself.
+        for (CommandResult.Status status : CommandResult.Status.values()) {
+            byStatus.put(status, new ConcurrentSkipListSet<>());
+        }
+    }
 
     @Override
     public void recordResult(String deviceToken, CommandResult result) {
         // Defensive programming: ensure non-null inputs
-        if (deviceToken == null || deviceToken.isBlank() || result == null) {
+        if (deviceToken == null || deviceToken.isBlank() || result == null || result.getStatus() == null) {
             return;
         }
-        history.computeIfAbsent(deviceToken, k -> new CopyOnWriteArrayList<>()).add(result);
+        HistoryEntry entry = new HistoryEntry(deviceToken, result, sequence.incrementAndGet());
+        if (result.getCommandUUID() != null) {
+            // Before the entry can be evicted: eviction takes it out of this index only once it is in all.
+            addTo(byCommand, result.getCommandUUID(), entry);
+        }
+        all.add(entry);
+        size.incrementAndGet();
+        byStatus.get(result.getStatus()).add(entry);
+        if (result.getBatchId() != null) {
+            addTo(byBatch, result.getBatchId(), entry);
+        }
+        HistoryEntry displaced = null;
+        while (true) {
+            DeviceHistory device = byDevice.computeIfAbsent(deviceToken, k -> new DeviceHistory());
+            synchronized (device) {
+                if (device.retired) {
+                    continue;
+                }
+                device.entries.add(entry);
+                if (++device.size > maxResultsPerDevice && maxResultsPerDevice > 0) {
+                    displaced = device.entries.pollFirst();
+                    device.size--;
+                }
+            }
+            break;
+        }
+        if (displaced != null && all.remove(displaced)) {
+            removeFromSharedIndexes(displaced);
+        }
+        // Counted only once the entry is visible in every index.
+        version.incrementAndGet();
+    }
+
+    @Override
+    public int evictExpired() {
+        if (retention.isZero()) {
+            return 0;
+        }
+        HistoryEntry cutoff = HistoryEntry.position(clock.instant().minus(retention), Long.MIN_VALUE);
+        int evicted = 0;
+        for (HistoryEntry entry : all.headSet(cutoff, false)) {
+            if (evict(entry)) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Drops the oldest {@code fraction} of all results, whatever their device.
+     *
+     * @return The number of results dropped.
+     */
+    public int evictOldest(double fraction) {
+        long target = (long) (size.get() * fraction);
+        int evicted = 0;
+        for (Iterator<HistoryEntry> iterator = all.iterator(); evicted < target && iterator.hasNext(); ) {
+            if (evict(iterator.next())) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * @return The number of results held.
+     */
+    public long size() {
+        return size.get();
+    }
+
+    /**
+     * Removes an entry from every index, unless another thread got to it first.
+     *
+     * @return Whether this call removed it.
+     */
+    private boolean evict(HistoryEntry entry) {
+        if (!all.remove(entry)) {
+            return false;
+        }
+        DeviceHistory device = byDevice.get(entry.getDeviceToken());
+        if (device != null) {
+            synchronized (device) {
+                if (device.entries.remove(entry) && --device.size == 0) {
+                    // A writer holding this instance sees the flag and registers a new one.
+                    device.retired = true;
+                    byDevice.remove(entry.getDeviceToken(), device);
+                }
+            }
+        }
+        removeFromSharedIndexes(entry);
+        return true;
+    }
+
+    /**
+     * Finishes removing an entry that has left {@link #all} and its device's index.
+     */
+    private void removeFromSharedIndexes(HistoryEntry entry) {
+        size.decrementAndGet();
+        byStatus.get(entry.getResult().getStatus()).remove(entry);
+        // A device's cap can drop a command's newest result while older ones remain on other
+        // devices; they stay in its index, and the next newest becomes its last.
+        removeFrom(byCommand, entry.getResult().getCommandUUID(), entry);
+        removeFrom(byBatch, entry.getResult().getBatchId(), entry);
+        version.incrementAndGet();
+    }
+
+    /**
+     * Adds an entry to the keyed index, under the map's lock, so that an index being dropped as
+     * empty cannot swallow it.
+     */
+    private static void addTo(Map<String, NavigableSet<HistoryEntry>> indexes, String key, HistoryEntry entry) {
+        indexes.compute(key, (k, entries) -> {
+            NavigableSet<HistoryEntry> index = entries != null ? entries : new ConcurrentSkipListSet<>();
+            index.add(entry);
+            return index;
+        });
+    }
+
+    /**
+     * Removes an entry from the keyed index, dropping the index once it is empty.
+     */
+    private static void removeFrom(Map<String, NavigableSet<HistoryEntry>> indexes, String key, HistoryEntry entry) {
+        if (key == null) {
+            return;
+        }
+        NavigableSet<HistoryEntry> index = indexes.get(key);
+        if (index != null && index.remove(entry)) {
+            indexes.computeIfPresent(key, (k, entries) -> entries.isEmpty() ? null : entries);
+        }
+    }
+
+    @Override
+    public long getVersion() {
+        return version.get();
     }
 
     @Override
     public Map<String, List<CommandResult>> getFullHistory() {
         // Return a defensive copy to prevent modification of the internal state.
-        return new ConcurrentHashMap<>(history);
+        Map<String, List<CommandResult>> history = new ConcurrentHashMap<>();
+        byDevice.forEach((deviceToken, device) -> history.put(deviceToken, new ArrayList<>(results(device.entries))));
+        return history;
+    }
+
+    @Override
+    public void forEachDevice(BiConsumer<String, Collection<CommandResult>> action) {
+        // Iterating the live indexes is weakly consistent; nothing is copied.
+        byDevice.forEach((deviceToken, device) -> action.accept(deviceToken, results(device.entries)));
+    }
+
+    @Override
+    public HistoryEntry findLatest(String commandUUID) {
+        NavigableSet<HistoryEntry> index = commandUUID != null ? byCommand.get(commandUUID) : null;
+        if (index == null) {
+            return null;
+        }
+        // Not last(), which throws should the index be emptied meanwhile.
+        Iterator<HistoryEntry> newest = index.descendingIterator();
+        return newest.hasNext() ? newest.next() : null;
+    }
+
+    @Override
+    public HistoryPage query(HistoryQuery query) {
+        NavigableSet<HistoryEntry> index;
+        if (query.getDeviceToken() != null) {
+            DeviceHistory device = byDevice.get(query.getDeviceToken());
+            index = device != null ? device.entries : null;
+        } else if (query.getBatchId() != null) {
+            index = byBatch.get(query.getBatchId());
+        } else if (query.getStatus() != null) {
+            index = byStatus.get(query.getStatus());
+        } else {
+            index = all;
+        }
+        if (index == null) {
+            return new HistoryPage(List.of(), null);
+        }
+
+        HistoryEntry upper = query.getUntil() != null ? HistoryEntry.position(query.getUntil(), Long.MIN_VALUE) : null;
+        HistoryEntry cursor = query.getCursorPosition();
+        if (cursor != null && (upper == null || cursor.compareTo(upper) < 0)) {
+            upper = cursor;
+        }
+        NavigableSet<HistoryEntry> range = index;
+        if (upper != null) {
+            range = range.headSet(upper, false);
+        }
+        if (query.getSince() != null) {
+            range = range.tailSet(HistoryEntry.position(query.getSince(), Long.MIN_VALUE), true);
+        }
+
+        List<HistoryEntry> page = new ArrayList<>(Math.min(query.getLimit(), 64));
+        for (HistoryEntry entry : range.descendingSet()) {
+            if (!query.matches(entry)) {
+                continue;
+            }
+            if (page.size() == query.getLimit()) {
+                return new HistoryPage(page, HistoryQuery.cursorAfter(page.get(page.size() - 1)));
+            }
+            page.add(entry);
+        }
+        return new HistoryPage(page, null);
+    }
+
+    /**
+     * @return A live view of the entries' results.
+     */
+    private static Collection<CommandResult> results(Collection<HistoryEntry> entries) {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<CommandResult> iterator() {
+                Iterator<HistoryEntry> iterator = entries.iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public CommandResult next() {
+                        return iterator.next().getResult();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return entries.size();
+            }
+        };
+    }
+
+    /**
+     * A device's entries. Its count is kept alongside because counting a skip list walks it. Both
+     * change only while holding the instance's lock, which is also what retires an emptied one.
+     */
+    private static final class DeviceHistory {
+        final NavigableSet<HistoryEntry> entries = new ConcurrentSkipListSet<>();
+        int size;
+        boolean retired;
     }
 }
 
 /*
  * Copyright © 2025 Devin B. Royal.
  * All Rights Reserved.
- */
\ No newline at end of file
+ */
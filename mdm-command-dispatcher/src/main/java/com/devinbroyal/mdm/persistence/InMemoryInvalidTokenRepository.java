@@ -0,0 +1,256 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.persistence;
+
+import com.devinbroyal.mdm.domain.InvalidToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps invalid device tokens in a hash map and, when given a snapshot file, persists them as one
+ * tab-separated line per entry: {@code token, clientKey, topic, reason, invalidatedAt, recordedAt}.
+ * <p>
+ * A token is invalid only for the credentials and topic APNs rejected it for, so the map is keyed
+ * by the lower-cased token and holds a small array with one entry per credentials and topic. Lines
+ * in the older five-field format have no credentials and match the topic with any of them.
+ * <p>
+ * The snapshot is only rewritten by {@link #flush()} and only if something changed, so the send
+ * path never touches the disk. The file is written to a temporary sibling and moved into place, so
+ * a crash mid-write leaves the previous snapshot intact.
+ */
+public class InMemoryInvalidTokenRepository implements InvalidTokenRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryInvalidTokenRepository.class);
+    private static final String NONE = "-";
+
+    private static final InvalidToken[] EMPTY = new InvalidToken[0];
+
+    private final Map<String, InvalidToken[]> tokens = new ConcurrentHashMap<>();
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final Path snapshotFile;
+
+    public InMemoryInvalidTokenRepository() {
+        this.snapshotFile = null;
+    }
+
+    /**
+     * @param snapshotFile The file to load the tokens from and to flush them to. It is created on the
+     *                     first flush if it does not exist.
+     * @throws IOException if an existing snapshot cannot be read.
+     */
+    public InMemoryInvalidTokenRepository(Path snapshotFile) throws IOException {
+        this.snapshotFile = snapshotFile;
+        if (Files.exists(snapshotFile)) {
+            load();
+        }
+    }
+
+    @Override
+    public void save(InvalidToken invalidToken) {
+        if (invalidToken == null || invalidToken.getDeviceToken() == null || invalidToken.getDeviceToken().isBlank()) {
+            return;
+        }
+        put(invalidToken);
+        dirty.set(true);
+    }
+
+    @Override
+    public Optional<InvalidToken> find(String clientKey, String topic, String deviceToken) {
+        if (deviceToken == null) {
+            return Optional.empty();
+        }
+        InvalidToken[] entries = tokens.get(key(deviceToken));
+        if (entries != null) {
+            for (InvalidToken entry : entries) {
+                if (Objects.equals(entry.getTopic(), topic)
+                        && (entry.getClientKey() == null || entry.getClientKey().equals(clientKey))) {
+                    return Optional.of(entry);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Collection<InvalidToken> findAll() {
+        Collection<InvalidToken> all = new ArrayList<>();
+        for (InvalidToken[] entries : tokens.values()) {
+            all.addAll(Arrays.asList(entries));
+        }
+        return all;
+    }
+
+    @Override
+    public int remove(String deviceToken) {
+        InvalidToken[] removed = deviceToken == null ? null : tokens.remove(key(deviceToken));
+        if (removed == null) {
+            return 0;
+        }
+        count.addAndGet(-removed.length);
+        dirty.set(true);
+        return removed.length;
+    }
+
+    @Override
+    public int clear() {
+        int removed = 0;
+        for (String deviceToken : tokens.keySet()) {
+            removed += remove(deviceToken);
+        }
+        dirty.set(true);
+        return removed;
+    }
+
+    @Override
+    public int size() {
+        return count.get();
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (snapshotFile == null || !dirty.getAndSet(false)) {
+            return;
+        }
+        Path tempFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                for (InvalidToken[] entries : tokens.values()) {
+                    for (InvalidToken token : entries) {
+                        writer.write(format(token));
+                        writer.newLine();
+                    }
+                }
+            }
+            try {
+                Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            dirty.set(true);
+            logger.warn("Failed to write invalid token snapshot to {}", snapshotFile, e);
+        }
+    }
+
+    private void load() throws IOException {
+        int skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(snapshotFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                InvalidToken token = parse(line);
+                if (token == null) {
+                    skipped++;
+                } else {
+                    put(token);
+                }
+            }
+        }
+        logger.info("Loaded {} invalid device tokens from {}", count.get(), snapshotFile);
+        if (skipped > 0) {
+            logger.warn("Skipped {} malformed lines in {}", skipped, snapshotFile);
+        }
+    }
+
+    /**
+     * Adds the entry, replacing the one for the same credentials and topic. The array for a token is
+     * copied on write, so {@link #find} can scan it without locking.
+     */
+    private void put(InvalidToken invalidToken) {
+        tokens.compute(key(invalidToken.getDeviceToken()), (token, entries) -> {
+            if (entries == null) {
+                entries = EMPTY;
+            }
+            for (int i = 0; i < entries.length; i++) {
+                if (Objects.equals(entries[i].getClientKey(), invalidToken.getClientKey())
+                        && Objects.equals(entries[i].getTopic(), invalidToken.getTopic())) {
+                    InvalidToken[] replaced = entries.clone();
+                    replaced[i] = invalidToken;
+                    return replaced;
+                }
+            }
+            InvalidToken[] added = Arrays.copyOf(entries, entries.length + 1);
+            added[entries.length] = invalidToken;
+            count.incrementAndGet();
+            return added;
+        });
+    }
+
+    /**
+     * APNs device tokens are hex strings and compare without regard to case. Tokens that are already
+     * lower case, which is what APNs reports, are returned as they are.
+     */
+    private static String key(String deviceToken) {
+        return deviceToken.toLowerCase(Locale.ROOT);
+    }
+
+    private static String format(InvalidToken token) {
+        return String.join("\t",
+                token.getDeviceToken(),
+                field(token.getClientKey()),
+                field(token.getTopic()),
+                field(token.getReason()),
+                token.getInvalidatedAt() == null ? NONE : token.getInvalidatedAt().toString(),
+                token.getRecordedAt() == null ? NONE : token.getRecordedAt().toString());
+    }
+
+    private static InvalidToken parse(String line) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length == 5) {
+            // Written before entries were scoped to credentials.
+            fields = new String[]{fields[0], NONE, fields[1], fields[2], fields[3], fields[4]};
+        }
+        if (fields.length != 6 || fields[0].isBlank()) {
+            return null;
+        }
+        try {
+            return new InvalidToken(fields[0], value(fields[1]), value(fields[2]), value(fields[3]), instant(fields[4]), instant(fields[5]));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static String field(String value) {
+        return value == null ? NONE : value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    private static String value(String field) {
+        return NONE.equals(field) ? null : field;
+    }
+
+    private static Instant instant(String field) {
+        return NONE.equals(field) ? null : Instant.parse(field);
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
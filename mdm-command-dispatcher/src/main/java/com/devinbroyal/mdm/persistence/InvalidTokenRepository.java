@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.persistence;
+
+import com.devinbroyal.mdm.domain.InvalidToken;
+
+import java.util.Collection;
+import java.util.Optional;
+
+public interface InvalidTokenRepository {
+    /**
+     * Records that APNs rejected a device token as unusable, replacing any earlier entry for it with
+     * the same credentials and topic.
+     *
+     * @param invalidToken The token and the rejection that invalidated it.
+     */
+    void save(InvalidToken invalidToken);
+
+    /**
+     * Looks up a device token. Called for every outbound push, so implementations must answer in
+     * constant time without I/O. Tokens are matched regardless of case.
+     *
+     * @param clientKey   The credentials the push would be sent with.
+     * @param topic       The topic the push would be sent to.
+     * @param deviceToken The sanitized device token.
+     * @return The entry for the token, if it is known to be invalid for these credentials and topic.
+     */
+    Optional<InvalidToken> find(String clientKey, String topic, String deviceToken);
+
+    /**
+     * @return A snapshot of every known invalid token.
+     */
+    Collection<InvalidToken> findAll();
+
+    /**
+     * Forgets a device token for every topic, e.g. after the device has re-enrolled.
+     *
+     * @return The number of entries removed.
+     */
+    int remove(String deviceToken);
+
+    /**
+     * Forgets every device token.
+     *
+     * @return The number of entries removed.
+     */
+    int clear();
+
+    int size();
+
+    /**
+     * Persists any changes made since the last flush. The default implementation keeps nothing.
+     */
+    default void flush() {
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,122 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.persistence;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded queue for many producers and one consumer, over a ring of slots that are reused
+ * without allocating. Each slot carries a sequence number that says whose turn it is: a producer
+ * claims the next position with one compare-and-set and publishes its element by advancing the
+ * slot's sequence, and the consumer takes elements in position order as they are published. A
+ * producer never waits for another, and the consumer takes no lock.
+ * <p>
+ * After Dmitry Vyukov's bounded MPMC queue, with the consumer side simplified for one thread.
+ */
+final class MpscRingBuffer<E> {
+
+    private final Object[] elements;
+    // A slot's sequence is its position while free for that position's producer, and position + 1
+    // once published for the consumer.
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    /**
+     * @param capacity The number of elements held, rounded up to a power of two.
+     */
+    MpscRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be between 1 and " + (1 << 30));
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        elements = new Object[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    int capacity() {
+        return elements.length;
+    }
+
+    /**
+     * Adds an element unless the buffer is full. Safe to call from any number of threads.
+     *
+     * @return Whether the element was added.
+     */
+    boolean offer(E element) {
+        long position;
+        int slot;
+        while (true) {
+            position = tail.get();
+            slot = (int) position & mask;
+            long sequence = sequences.get(slot);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (sequence < position) {
+                // The slot still holds the element of the previous lap.
+                return false;
+            }
+            // Otherwise another producer claimed this position first.
+        }
+        elements[slot] = element;
+        sequences.set(slot, position + 1);
+        return true;
+    }
+
+    /**
+     * Moves up to {@code max} published elements, oldest first, into {@code into}. Called by the
+     * consumer only.
+     *
+     * @return The number of elements moved.
+     */
+    @SuppressWarnings("unchecked")
+    int drainTo(Collection<? super E> into, int max) {
+        long position = head;
+        int drained = 0;
+        while (drained < max) {
+            int slot = (int) position & mask;
+            if (sequences.get(slot) != position + 1) {
+                // Empty, or the next producer has claimed its slot but not yet published.
+                break;
+            }
+            into.add((E) elements[slot]);
+            elements[slot] = null;
+            sequences.set(slot, position + elements.length);
+            position++;
+            drained++;
+        }
+        head = position;
+        return drained;
+    }
+
+    /**
+     * @return Whether an element is ready for the consumer. Called by the consumer only.
+     */
+    boolean isReady() {
+        return sequences.get((int) head & mask) == head + 1;
+    }
+
+    /**
+     * @return The number of positions claimed and not yet taken; a snapshot.
+     */
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
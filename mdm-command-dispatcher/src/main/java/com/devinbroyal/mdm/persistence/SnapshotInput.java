@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.persistence;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads what a {@link SnapshotOutput} wrote, through one direct buffer.
+ */
+final class SnapshotInput {
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+
+    SnapshotInput(ReadableByteChannel channel) {
+        this.channel = channel;
+        buffer.limit(0);
+    }
+
+    byte readByte() throws IOException {
+        require(1);
+        return buffer.get();
+    }
+
+    int readInt() throws IOException {
+        require(4);
+        return buffer.getInt();
+    }
+
+    long readLong() throws IOException {
+        require(8);
+        return buffer.getLong();
+    }
+
+    String readString() throws IOException {
+        int length = readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        readBytes(bytes, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    void readBytes(byte[] values, int count) throws IOException {
+        for (int done = 0; done < count; ) {
+            int n = Math.min(count - done, available(1));
+            buffer.get(values, done, n);
+            done += n;
+        }
+    }
+
+    void readShorts(short[] values, int count) throws IOException {
+        for (int done = 0; done < count; ) {
+            int n = Math.min(count - done, available(2));
+            buffer.asShortBuffer().get(values, done, n);
+            buffer.position(buffer.position() + 2 * n);
+            done += n;
+        }
+    }
+
+    void readInts(int[] values, int count) throws IOException {
+        for (int done = 0; done < count; ) {
+            int n = Math.min(count - done, available(4));
+            buffer.asIntBuffer().get(values, done, n);
+            buffer.position(buffer.position() + 4 * n);
+            done += n;
+        }
+    }
+
+    void readLongs(long[] values, int count) throws IOException {
+        for (int done = 0; done < count; ) {
+            int n = Math.min(count - done, available(8));
+            buffer.asLongBuffer().get(values, done, n);
+            buffer.position(buffer.position() + 8 * n);
+            done += n;
+        }
+    }
+
+    /**
+     * @return How many values of {@code width} bytes are buffered, after reading more if none are.
+     */
+    private int available(int width) throws IOException {
+        require(width);
+        return buffer.remaining() / width;
+    }
+
+    private void require(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("The snapshot ends part way through");
+            }
+        }
+        buffer.flip();
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a snapshot to a channel through one direct buffer. Arrays are copied into it in bulk, in
+ * little-endian order, which is the native order of the machines this runs on, so a column of a
+ * few thousand values costs one copy rather than a call per value.
+ */
+final class SnapshotOutput {
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+
+    SnapshotOutput(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    void writeByte(int value) throws IOException {
+        ensure(1);
+        buffer.put((byte) value);
+    }
+
+    void writeInt(int value) throws IOException {
+        ensure(4);
+        buffer.putInt(value);
+    }
+
+    void writeLong(long value) throws IOException {
+        ensure(8);
+        buffer.putLong(value);
+    }
+
+    /**
+     * Writes the string as its length in UTF-8 bytes, or -1 for {@code null}, and those bytes.
+     */
+    void writeString(String value) throws IOException {
+        if (value == null) {
+            writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeInt(bytes.length);
+        writeBytes(bytes, bytes.length);
+    }
+
+    void writeBytes(byte[] values, int count) throws IOException {
+        for (int done = 0; done < count; ) {
+            int n = Math.min(count - done, room(1));
+            buffer.put(values, done, n);
+            done += n;
+        }
+    }
+
+    void writeShorts(short[] values, int count) throws IOException {
+        for (int done = 0; done < count; ) {
+            int n = Math.min(count - done, room(2));
+            buffer.asShortBuffer().put(values, done, n);
+            buffer.position(buffer.position() + 2 * n);
+            done += n;
+        }
+    }
+
+    void writeInts(int[] values, int count) throws IOException {
+        for (int done = 0; done < count; ) {
+            int n = Math.min(count - done, room(4));
+            buffer.asIntBuffer().put(values, done, n);
+            buffer.position(buffer.position() + 4 * n);
+            done += n;
+        }
+    }
+
+    void writeLongs(long[] values, int count) throws IOException {
+        for (int done = 0; done < count; ) {
+            int n = Math.min(count - done, room(8));
+            buffer.asLongBuffer().put(values, done, n);
+            buffer.position(buffer.position() + 8 * n);
+            done += n;
+        }
+    }
+
+    /**
+     * Writes out what is buffered.
+     */
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * @return How many values of {@code width} bytes fit in the buffer, after flushing it if none do.
+     */
+    private int room(int width) throws IOException {
+        ensure(width);
+        return buffer.remaining() / width;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
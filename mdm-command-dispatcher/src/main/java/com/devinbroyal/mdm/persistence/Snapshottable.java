@@ -0,0 +1,42 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.persistence;
+
+import java.io.IOException;
+
+/**
+ * A repository that can save its results whole and load them back, far faster than recording them
+ * again one by one, so that {@link DurableExecutionHistoryRepository} need replay only the part of
+ * its log written since.
+ */
+interface Snapshottable {
+
+    /**
+     * Fixes the results recorded so far. This is quick; the snapshot is written afterwards without
+     * holding up results recorded meanwhile, which it leaves out.
+     */
+    Snapshot snapshot();
+
+    /**
+     * Loads a snapshot into this repository, which must hold no results.
+     *
+     * @return The number of results loaded.
+     * @throws IOException if the snapshot cannot be read or is not one this repository wrote.
+     */
+    long restore(SnapshotInput in) throws IOException;
+
+    /**
+     * The results fixed by {@link #snapshot()}.
+     */
+    interface Snapshot {
+        void writeTo(SnapshotOutput out) throws IOException;
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,270 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.plist;
+
+import com.devinbroyal.mdm.exception.PlistFormatException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes payload maps as binary property lists ({@code bplist00}) into a reusable
+ * {@link PlistBuffer}, with the same value mapping as {@link XmlPlistWriter}.
+ * <p>
+ * The value tree is first flattened into the object table, with equal strings (typically the keys
+ * repeated across a command) stored once, and then written in a single pass once the width of
+ * object references is known. The flattening tables are kept between documents. Instances are not
+ * thread-safe.
+ */
+public final class BinaryPlistWriter extends PlistBuffer {
+
+    private static final byte[] MAGIC = "bplist00".getBytes(StandardCharsets.US_ASCII);
+    private static final long APPLE_EPOCH_SECONDS = 978_307_200L;
+
+    private final List<Object> objects = new ArrayList<>();
+    private final Map<String, Integer> stringRefs = new HashMap<>();
+    private long[] offsets = new long[64];
+
+    public BinaryPlistWriter() {
+        this(1024);
+    }
+
+    public BinaryPlistWriter(int initialCapacity) {
+        super(initialCapacity);
+    }
+
+    /**
+     * Replaces the buffer's content with a binary plist holding the given value.
+     *
+     * @throws PlistFormatException if the value, or anything inside it, has no plist representation.
+     */
+    public BinaryPlistWriter write(Object root) {
+        reset();
+        objects.clear();
+        stringRefs.clear();
+        try {
+            flatten(root);
+            final int count = objects.size();
+            final int refSize = count <= 0xFF ? 1 : count <= 0xFFFF ? 2 : 4;
+            if (offsets.length < count) {
+                offsets = new long[Math.max(count, offsets.length * 2)];
+            }
+
+            append(MAGIC);
+            for (int i = 0; i < count; i++) {
+                offsets[i] = size;
+                writeObject(objects.get(i), refSize);
+            }
+
+            final long offsetTableOffset = size;
+            final int offsetSize = widthOf(offsetTableOffset);
+            for (int i = 0; i < count; i++) {
+                writeSized(offsets[i], offsetSize);
+            }
+
+            // Trailer: five unused bytes and the sort version, then the table geometry.
+            ensureCapacity(32);
+            for (int i = 0; i < 6; i++) {
+                buf[size++] = 0;
+            }
+            buf[size++] = (byte) offsetSize;
+            buf[size++] = (byte) refSize;
+            writeSized(count, 8);
+            writeSized(0, 8);
+            writeSized(offsetTableOffset, 8);
+            return this;
+        } finally {
+            objects.clear();
+        }
+    }
+
+    /**
+     * Appends the value, and everything inside it, to the object table.
+     *
+     * @return The value's object reference.
+     */
+    private int flatten(Object value) {
+        if (value instanceof String) {
+            final Integer existing = stringRefs.get(value);
+            if (existing != null) {
+                return existing;
+            }
+            final int ref = add(value);
+            stringRefs.put((String) value, ref);
+            return ref;
+        }
+        if (value instanceof Map) {
+            final int ref = add(null);
+            final Map<?, ?> map = (Map<?, ?>) value;
+            int entries = 0;
+            for (Object entryValue : map.values()) {
+                if (entryValue != null) {
+                    entries++;
+                }
+            }
+            final int[] refs = new int[entries * 2];
+            int i = 0;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (entry.getValue() != null) {
+                    refs[i] = flatten(String.valueOf(entry.getKey()));
+                    refs[entries + i] = flatten(entry.getValue());
+                    i++;
+                }
+            }
+            objects.set(ref, new Container(true, refs));
+            return ref;
+        }
+        if (value instanceof Iterable || value instanceof Object[]) {
+            final int ref = add(null);
+            final Iterable<?> elements = value instanceof Object[] ? Arrays.asList((Object[]) value) : (Iterable<?>) value;
+            int[] refs = new int[8];
+            int count = 0;
+            for (Object element : elements) {
+                if (count == refs.length) {
+                    refs = Arrays.copyOf(refs, count * 2);
+                }
+                refs[count++] = flatten(element);
+            }
+            objects.set(ref, new Container(false, Arrays.copyOf(refs, count)));
+            return ref;
+        }
+        if (value == null) {
+            throw new PlistFormatException("A plist cannot hold null outside of a dict");
+        }
+        if (!(value instanceof Boolean || value instanceof Number || value instanceof byte[]
+                || value instanceof Instant || value instanceof Date)) {
+            throw new PlistFormatException("Unsupported plist value type: " + value.getClass().getName());
+        }
+        return add(value);
+    }
+
+    private int add(Object value) {
+        objects.add(value);
+        return objects.size() - 1;
+    }
+
+    private void writeObject(Object value, int refSize) {
+        if (value instanceof Container) {
+            final Container container = (Container) value;
+            final int count = container.dict ? container.refs.length / 2 : container.refs.length;
+            writeMarker(container.dict ? 0xD0 : 0xA0, count);
+            ensureCapacity(container.refs.length * refSize);
+            for (int ref : container.refs) {
+                writeSized(ref, refSize);
+            }
+        } else if (value instanceof String) {
+            writeString((String) value);
+        } else if (value instanceof Boolean) {
+            append((Boolean) value ? (byte) 0x09 : (byte) 0x08);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            writeInteger(((Number) value).longValue());
+        } else if (value instanceof BigInteger) {
+            final BigInteger big = (BigInteger) value;
+            if (big.bitLength() > 63) {
+                throw new PlistFormatException("Integer out of plist range: " + big);
+            }
+            writeInteger(big.longValue());
+        } else if (value instanceof Number) {
+            final double real = value instanceof BigDecimal ? ((BigDecimal) value).doubleValue() : ((Number) value).doubleValue();
+            if (isIntegral(real)) {
+                writeInteger((long) real);
+            } else {
+                append((byte) 0x23);
+                writeSized(Double.doubleToRawLongBits(real), 8);
+            }
+        } else if (value instanceof byte[]) {
+            final byte[] data = (byte[]) value;
+            writeMarker(0x40, data.length);
+            append(data);
+        } else {
+            final Instant instant = value instanceof Date ? ((Date) value).toInstant() : (Instant) value;
+            final double seconds = (instant.getEpochSecond() - APPLE_EPOCH_SECONDS) + instant.getNano() / 1e9;
+            append((byte) 0x33);
+            writeSized(Double.doubleToRawLongBits(seconds), 8);
+        }
+    }
+
+    private void writeString(String value) {
+        final int length = value.length();
+        boolean ascii = true;
+        for (int i = 0; i < length && ascii; i++) {
+            ascii = value.charAt(i) < 0x80;
+        }
+        if (ascii) {
+            writeMarker(0x50, length);
+            ensureCapacity(length);
+            for (int i = 0; i < length; i++) {
+                buf[size++] = (byte) value.charAt(i);
+            }
+        } else {
+            // UTF-16 big-endian; the count is in code units.
+            writeMarker(0x60, length);
+            ensureCapacity(length * 2);
+            for (int i = 0; i < length; i++) {
+                final char c = value.charAt(i);
+                buf[size++] = (byte) (c >> 8);
+                buf[size++] = (byte) c;
+            }
+        }
+    }
+
+    private void writeMarker(int type, int count) {
+        if (count < 15) {
+            append((byte) (type | count));
+        } else {
+            append((byte) (type | 0x0F));
+            writeInteger(count);
+        }
+    }
+
+    private void writeInteger(long value) {
+        // Negative integers are always written as eight bytes.
+        final int width = value < 0 ? 8 : widthOf(value);
+        final int log2 = width == 1 ? 0 : width == 2 ? 1 : width == 4 ? 2 : 3;
+        append((byte) (0x10 | log2));
+        writeSized(value, width);
+    }
+
+    private void writeSized(long value, int width) {
+        ensureCapacity(width);
+        for (int shift = (width - 1) * 8; shift >= 0; shift -= 8) {
+            buf[size++] = (byte) (value >>> shift);
+        }
+    }
+
+    private static int widthOf(long value) {
+        if (value <= 0xFFL) {
+            return 1;
+        }
+        if (value <= 0xFFFFL) {
+            return 2;
+        }
+        return value <= 0xFFFF_FFFFL ? 4 : 8;
+    }
+
+    private static final class Container {
+        private final boolean dict;
+        private final int[] refs;
+
+        private Container(boolean dict, int[] refs) {
+            this.dict = dict;
+            this.refs = refs;
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
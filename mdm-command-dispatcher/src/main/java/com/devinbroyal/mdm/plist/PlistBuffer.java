@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.plist;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A growable byte array that a plist writer encodes into. Each document starts by resetting the
+ * buffer rather than allocating a new one, so a writer kept per thread encodes any number of
+ * commands while allocating only when a document outgrows every earlier one.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public abstract class PlistBuffer {
+
+    private static final int MAX_RETAINED_CAPACITY = 1 << 20;
+
+    protected byte[] buf;
+    protected int size;
+
+    protected PlistBuffer(int initialCapacity) {
+        this.buf = new byte[Math.max(16, initialCapacity)];
+    }
+
+    /**
+     * @return The number of bytes of the current document.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The backing array; only the first {@link #size()} bytes belong to the document. The
+     *         array is overwritten by the next document.
+     */
+    public byte[] array() {
+        return buf;
+    }
+
+    /**
+     * @return A read-only view of the current document, valid until the next document is written.
+     */
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(buf, 0, size).asReadOnlyBuffer();
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, size);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, size);
+    }
+
+    protected void reset() {
+        // Do not pin an exceptionally large document's buffer for the life of the thread.
+        if (buf.length > MAX_RETAINED_CAPACITY) {
+            buf = new byte[MAX_RETAINED_CAPACITY];
+        }
+        size = 0;
+    }
+
+    protected final void ensureCapacity(int extra) {
+        if (size + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+        }
+    }
+
+    protected final void append(byte b) {
+        ensureCapacity(1);
+        buf[size++] = b;
+    }
+
+    protected final void append(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buf, size, bytes.length);
+        size += bytes.length;
+    }
+
+    /**
+     * Gson decodes every JSON number as a {@code double}; whole numbers among them are written as
+     * plist integers, which is what MDM clients expect for counts, flags and identifiers.
+     */
+    protected static boolean isIntegral(double value) {
+        return value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) <= 0x1p53;
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
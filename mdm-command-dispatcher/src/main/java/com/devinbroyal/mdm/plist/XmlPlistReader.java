@@ -0,0 +1,479 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.plist;
+
+import com.devinbroyal.mdm.exception.PlistFormatException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes an XML property list straight from its UTF-8 bytes in a single forward pass, without a
+ * DOM or an XML parser underneath.
+ * <p>
+ * The result uses the types of {@link XmlPlistWriter}'s mapping: {@code dict} becomes a
+ * {@link LinkedHashMap} in document order, {@code array} an {@link ArrayList}, {@code integer} a
+ * {@link Long}, {@code real} a {@link Double}, {@code data} a {@code byte[]} and {@code date} an
+ * {@link Instant}. Only the plist vocabulary is accepted. The DOCTYPE is skipped and no entities
+ * beyond the five predefined ones and character references are expanded, so device input cannot
+ * trigger external entity resolution. Nesting is limited to {@value #MAX_DEPTH} levels.
+ */
+public final class XmlPlistReader {
+
+    static final int MAX_DEPTH = 64;
+
+    private static final int PLIST = 0;
+    private static final int DICT = 1;
+    private static final int ARRAY = 2;
+    private static final int KEY = 3;
+    private static final int STRING = 4;
+    private static final int INTEGER = 5;
+    private static final int REAL = 6;
+    private static final int TRUE = 7;
+    private static final int FALSE = 8;
+    private static final int DATE = 9;
+    private static final int DATA = 10;
+    private static final byte[][] TAG_NAMES = {
+            bytes("plist"), bytes("dict"), bytes("array"), bytes("key"), bytes("string"), bytes("integer"),
+            bytes("real"), bytes("true"), bytes("false"), bytes("date"), bytes("data")
+    };
+    private static final byte[] CDATA_START = bytes("<![CDATA[");
+    private static final byte[] CDATA_END = bytes("]]>");
+    private static final byte[] COMMENT_START = bytes("<!--");
+    private static final byte[] COMMENT_END = bytes("-->");
+    private static final byte[] PI_START = bytes("<?");
+    private static final byte[] PI_END = bytes("?>");
+
+    private final byte[] in;
+    private final int end;
+    private int pos;
+    private int tag;
+    private boolean selfClosing;
+
+    private XmlPlistReader(byte[] in, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > in.length) {
+            throw new IndexOutOfBoundsException("Range [" + offset + ", " + (offset + length) + ") out of bounds for length " + in.length);
+        }
+        this.in = in;
+        this.pos = offset;
+        this.end = offset + length;
+    }
+
+    public static Object parse(byte[] data) {
+        return parse(data, 0, data.length);
+    }
+
+    /**
+     * @throws PlistFormatException if the bytes are not a well-formed XML property list.
+     */
+    public static Object parse(byte[] data, int offset, int length) {
+        return new XmlPlistReader(data, offset, length).document();
+    }
+
+    /**
+     * Parses the buffer's remaining bytes without changing its position.
+     */
+    public static Object parse(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return parse(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        byte[] copy = new byte[buffer.remaining()];
+        buffer.duplicate().get(copy);
+        return parse(copy);
+    }
+
+    /**
+     * Parses a property list whose root must be a {@code dict}, as every MDM message is.
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> parseDict(byte[] data, int offset, int length) {
+        Object root = parse(data, offset, length);
+        if (!(root instanceof Map)) {
+            throw new PlistFormatException("Expected a dict at the root of the plist");
+        }
+        return (Map<String, Object>) root;
+    }
+
+    private Object document() {
+        // A UTF-8 byte order mark.
+        if (end - pos >= 3 && in[pos] == (byte) 0xEF && in[pos + 1] == (byte) 0xBB && in[pos + 2] == (byte) 0xBF) {
+            pos += 3;
+        }
+        skipMisc();
+        readStartTag();
+        Object value;
+        if (tag == PLIST) {
+            if (selfClosing) {
+                throw fail("Empty plist");
+            }
+            skipMisc();
+            readStartTag();
+            value = value(0);
+            skipMisc();
+            readEndTag(PLIST);
+        } else {
+            value = value(0);
+        }
+        skipMisc();
+        if (pos != end) {
+            throw fail("Unexpected content after the plist");
+        }
+        return value;
+    }
+
+    private Object value(int depth) {
+        switch (tag) {
+            case DICT:
+                return dict(depth);
+            case ARRAY:
+                return array(depth);
+            case STRING:
+                return selfClosing ? "" : text(STRING);
+            case INTEGER:
+                return integer();
+            case REAL:
+                return real();
+            case TRUE:
+            case FALSE:
+                final boolean value = tag == TRUE;
+                if (!selfClosing) {
+                    readEndTag(tag);
+                }
+                return value;
+            case DATE:
+                return date();
+            case DATA:
+                return selfClosing ? new byte[0] : Base64.getMimeDecoder().decode(text(DATA));
+            default:
+                throw fail("Unexpected <" + new String(TAG_NAMES[tag], StandardCharsets.US_ASCII) + "> where a value was expected");
+        }
+    }
+
+    private Map<String, Object> dict(int depth) {
+        checkDepth(depth);
+        final Map<String, Object> dict = new LinkedHashMap<>();
+        if (selfClosing) {
+            return dict;
+        }
+        while (true) {
+            skipMisc();
+            if (atEndTag()) {
+                readEndTag(DICT);
+                return dict;
+            }
+            readStartTag();
+            if (tag != KEY) {
+                throw fail("Expected <key> in dict");
+            }
+            final String key = selfClosing ? "" : text(KEY);
+            skipMisc();
+            readStartTag();
+            dict.put(key, value(depth + 1));
+        }
+    }
+
+    private List<Object> array(int depth) {
+        checkDepth(depth);
+        final List<Object> array = new ArrayList<>();
+        if (selfClosing) {
+            return array;
+        }
+        while (true) {
+            skipMisc();
+            if (atEndTag()) {
+                readEndTag(ARRAY);
+                return array;
+            }
+            readStartTag();
+            array.add(value(depth + 1));
+        }
+    }
+
+    private Long integer() {
+        final String text = selfClosing ? "" : text(INTEGER).trim();
+        try {
+            if (text.startsWith("0x") || text.startsWith("0X")) {
+                return Long.parseUnsignedLong(text.substring(2), 16);
+            }
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw fail("Invalid integer: " + text);
+        }
+    }
+
+    private Double real() {
+        final String text = selfClosing ? "" : text(REAL).trim();
+        switch (text.toLowerCase()) {
+            case "nan":
+                return Double.NaN;
+            case "inf":
+            case "+inf":
+            case "infinity":
+            case "+infinity":
+                return Double.POSITIVE_INFINITY;
+            case "-inf":
+            case "-infinity":
+                return Double.NEGATIVE_INFINITY;
+            default:
+                try {
+                    return Double.parseDouble(text);
+                } catch (NumberFormatException e) {
+                    throw fail("Invalid real: " + text);
+                }
+        }
+    }
+
+    private Instant date() {
+        final String text = selfClosing ? "" : text(DATE).trim();
+        try {
+            return Instant.parse(text);
+        } catch (DateTimeParseException e) {
+            throw fail("Invalid date: " + text);
+        }
+    }
+
+    /**
+     * Reads character data up to and including the end tag of the given element, expanding
+     * references and CDATA sections. Text without either is decoded in one step.
+     */
+    private String text(int element) {
+        final int start = pos;
+        while (pos < end && in[pos] != '<' && in[pos] != '&') {
+            pos++;
+        }
+        if (atEndTag()) {
+            final String text = new String(in, start, pos - start, StandardCharsets.UTF_8);
+            readEndTag(element);
+            return text;
+        }
+
+        final StringBuilder text = new StringBuilder(new String(in, start, pos - start, StandardCharsets.UTF_8));
+        while (true) {
+            if (pos >= end) {
+                throw fail("Unterminated <" + new String(TAG_NAMES[element], StandardCharsets.US_ASCII) + ">");
+            }
+            if (in[pos] == '&') {
+                reference(text);
+            } else if (atEndTag()) {
+                readEndTag(element);
+                return text.toString();
+            } else if (startsWith(CDATA_START)) {
+                final int dataStart = pos + CDATA_START.length;
+                final int dataEnd = indexOf(CDATA_END, dataStart);
+                text.append(new String(in, dataStart, dataEnd - dataStart, StandardCharsets.UTF_8));
+                pos = dataEnd + CDATA_END.length;
+            } else if (startsWith(COMMENT_START)) {
+                pos = indexOf(COMMENT_END, pos + COMMENT_START.length) + COMMENT_END.length;
+            } else if (in[pos] == '<') {
+                throw fail("Unexpected element inside <" + new String(TAG_NAMES[element], StandardCharsets.US_ASCII) + ">");
+            } else {
+                final int runStart = pos;
+                while (pos < end && in[pos] != '<' && in[pos] != '&') {
+                    pos++;
+                }
+                text.append(new String(in, runStart, pos - runStart, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private void reference(StringBuilder text) {
+        final int semicolon = indexOf((byte) ';', pos + 1, 12);
+        final String name = new String(in, pos + 1, semicolon - pos - 1, StandardCharsets.US_ASCII);
+        switch (name) {
+            case "amp":
+                text.append('&');
+                break;
+            case "lt":
+                text.append('<');
+                break;
+            case "gt":
+                text.append('>');
+                break;
+            case "quot":
+                text.append('"');
+                break;
+            case "apos":
+                text.append('\'');
+                break;
+            default:
+                if (!name.startsWith("#")) {
+                    throw fail("Unknown entity &" + name + ";");
+                }
+                try {
+                    final int codePoint = name.startsWith("#x") || name.startsWith("#X")
+                            ? Integer.parseInt(name.substring(2), 16)
+                            : Integer.parseInt(name.substring(1));
+                    text.appendCodePoint(codePoint);
+                } catch (IllegalArgumentException e) {
+                    throw fail("Invalid character reference &" + name + ";");
+                }
+        }
+        pos = semicolon + 1;
+    }
+
+    /**
+     * Reads a start tag and records which element it opens and whether it is self-closing.
+     */
+    private void readStartTag() {
+        if (pos >= end || in[pos] != '<' || (pos + 1 < end && in[pos + 1] == '/')) {
+            throw fail(pos >= end ? "Unexpected end of plist" : "Expected an element");
+        }
+        pos++;
+        final int nameStart = pos;
+        while (pos < end && isNameChar(in[pos])) {
+            pos++;
+        }
+        tag = lookupTag(nameStart, pos - nameStart);
+        // Skip attributes, such as plist's version.
+        byte quote = 0;
+        byte previous = 0;
+        while (pos < end && (quote != 0 || in[pos] != '>')) {
+            if (quote == 0 && (in[pos] == '"' || in[pos] == '\'')) {
+                quote = in[pos];
+            } else if (in[pos] == quote) {
+                quote = 0;
+            }
+            previous = in[pos++];
+        }
+        if (pos >= end) {
+            throw fail("Unterminated start tag");
+        }
+        selfClosing = previous == '/';
+        pos++;
+    }
+
+    private void readEndTag(int element) {
+        if (!atEndTag()) {
+            throw fail("Expected </" + new String(TAG_NAMES[element], StandardCharsets.US_ASCII) + ">");
+        }
+        pos += 2;
+        final int nameStart = pos;
+        while (pos < end && isNameChar(in[pos])) {
+            pos++;
+        }
+        if (lookupTag(nameStart, pos - nameStart) != element) {
+            throw fail("Mismatched end tag, expected </" + new String(TAG_NAMES[element], StandardCharsets.US_ASCII) + ">");
+        }
+        skipWhitespace();
+        if (pos >= end || in[pos] != '>') {
+            throw fail("Unterminated end tag");
+        }
+        pos++;
+    }
+
+    private int lookupTag(int nameStart, int nameLength) {
+        for (int i = 0; i < TAG_NAMES.length; i++) {
+            final byte[] name = TAG_NAMES[i];
+            if (name.length == nameLength && regionMatches(nameStart, name)) {
+                return i;
+            }
+        }
+        throw fail("Unknown plist element <" + new String(in, nameStart, nameLength, StandardCharsets.UTF_8) + ">");
+    }
+
+    /**
+     * Skips whitespace, comments, processing instructions (including the XML declaration) and the
+     * DOCTYPE, whose internal subset, if any, is skipped unread.
+     */
+    private void skipMisc() {
+        while (true) {
+            skipWhitespace();
+            if (startsWith(COMMENT_START)) {
+                pos = indexOf(COMMENT_END, pos + COMMENT_START.length) + COMMENT_END.length;
+            } else if (startsWith(PI_START)) {
+                pos = indexOf(PI_END, pos + PI_START.length) + PI_END.length;
+            } else if (pos + 1 < end && in[pos] == '<' && in[pos + 1] == '!') {
+                int brackets = 0;
+                while (pos < end && (brackets > 0 || in[pos] != '>')) {
+                    if (in[pos] == '[') {
+                        brackets++;
+                    } else if (in[pos] == ']') {
+                        brackets--;
+                    }
+                    pos++;
+                }
+                if (pos >= end) {
+                    throw fail("Unterminated declaration");
+                }
+                pos++;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < end && (in[pos] == ' ' || in[pos] == '\n' || in[pos] == '\r' || in[pos] == '\t')) {
+            pos++;
+        }
+    }
+
+    private boolean atEndTag() {
+        return pos + 1 < end && in[pos] == '<' && in[pos + 1] == '/';
+    }
+
+    private boolean startsWith(byte[] prefix) {
+        return end - pos >= prefix.length && regionMatches(pos, prefix);
+    }
+
+    private boolean regionMatches(int offset, byte[] expected) {
+        for (int i = 0; i < expected.length; i++) {
+            if (in[offset + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(byte[] needle, int from) {
+        for (int i = from; i <= end - needle.length; i++) {
+            if (regionMatches(i, needle)) {
+                return i;
+            }
+        }
+        throw fail("Missing " + new String(needle, StandardCharsets.US_ASCII));
+    }
+
+    private int indexOf(byte b, int from, int maxDistance) {
+        final int limit = Math.min(end, from + maxDistance);
+        for (int i = from; i < limit; i++) {
+            if (in[i] == b) {
+                return i;
+            }
+        }
+        throw fail("Unterminated entity reference");
+    }
+
+    private void checkDepth(int depth) {
+        if (depth >= MAX_DEPTH) {
+            throw fail("Plist nested deeper than " + MAX_DEPTH + " levels");
+        }
+    }
+
+    private PlistFormatException fail(String message) {
+        return new PlistFormatException(message + " at byte " + pos);
+    }
+
+    private static boolean isNameChar(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,373 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.plist;
+
+import com.devinbroyal.mdm.exception.PlistFormatException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Encodes payload maps as XML property lists, writing UTF-8 straight into a reusable
+ * {@link PlistBuffer} without building a DOM or intermediate strings.
+ * <p>
+ * Values map as follows: {@link Map} to {@code dict} (keys via {@code toString()}, entries with a
+ * {@code null} value omitted), {@link Iterable} and arrays to {@code array}, {@link String} to
+ * {@code string}, {@link Boolean} to {@code true}/{@code false}, integral numbers, including whole
+ * {@code double}s as produced by Gson, to {@code integer}, other numbers to {@code real},
+ * {@code byte[]} to {@code data} and {@link Instant} or {@link Date} to {@code date}. Documents are
+ * written without indentation.
+ * <p>
+ * Besides {@link #write(Object)} for a whole value, the {@code start}/{@code end} methods compose a
+ * document piecewise, and {@link #json(JsonReader)} transcodes an already encoded JSON payload
+ * without materializing it as a map. Instances are not thread-safe.
+ */
+public final class XmlPlistWriter extends PlistBuffer {
+
+    private static final byte[] PROLOG = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<!DOCTYPE plist PUBLIC \"-//Apple//DTD PLIST 1.0//EN\" \"http://www.apple.com/DTDs/PropertyList-1.0.dtd\">\n"
+            + "<plist version=\"1.0\">").getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EPILOG = bytes("</plist>\n");
+    private static final byte[] DICT_START = bytes("<dict>");
+    private static final byte[] DICT_END = bytes("</dict>");
+    private static final byte[] ARRAY_START = bytes("<array>");
+    private static final byte[] ARRAY_END = bytes("</array>");
+    private static final byte[] KEY_START = bytes("<key>");
+    private static final byte[] KEY_END = bytes("</key>");
+    private static final byte[] STRING_START = bytes("<string>");
+    private static final byte[] STRING_END = bytes("</string>");
+    private static final byte[] INTEGER_START = bytes("<integer>");
+    private static final byte[] INTEGER_END = bytes("</integer>");
+    private static final byte[] REAL_START = bytes("<real>");
+    private static final byte[] REAL_END = bytes("</real>");
+    private static final byte[] DATA_START = bytes("<data>");
+    private static final byte[] DATA_END = bytes("</data>");
+    private static final byte[] DATE_START = bytes("<date>");
+    private static final byte[] DATE_END = bytes("</date>");
+    private static final byte[] TRUE = bytes("<true/>");
+    private static final byte[] FALSE = bytes("<false/>");
+    private static final byte[] AMP = bytes("&amp;");
+    private static final byte[] LT = bytes("&lt;");
+    private static final byte[] GT = bytes("&gt;");
+    private static final byte[] LONG_MIN = bytes(Long.toString(Long.MIN_VALUE));
+
+    public XmlPlistWriter() {
+        this(1024);
+    }
+
+    public XmlPlistWriter(int initialCapacity) {
+        super(initialCapacity);
+    }
+
+    /**
+     * Replaces the buffer's content with a plist document holding the given value.
+     *
+     * @throws PlistFormatException if the value, or anything inside it, has no plist representation.
+     */
+    public XmlPlistWriter write(Object root) {
+        startDocument();
+        value(root);
+        return endDocument();
+    }
+
+    /**
+     * Replaces the buffer's content with a plist document holding the JSON value read from the
+     * reader. JSON {@code null} members are omitted; a {@code null} elsewhere is rejected.
+     */
+    public XmlPlistWriter writeJson(JsonReader json) throws IOException {
+        startDocument();
+        json(json);
+        return endDocument();
+    }
+
+    /**
+     * Discards the buffer's content and writes the XML prolog and the opening {@code plist} tag.
+     */
+    public XmlPlistWriter startDocument() {
+        reset();
+        append(PROLOG);
+        return this;
+    }
+
+    public XmlPlistWriter endDocument() {
+        append(EPILOG);
+        return this;
+    }
+
+    public XmlPlistWriter startDict() {
+        append(DICT_START);
+        return this;
+    }
+
+    public XmlPlistWriter endDict() {
+        append(DICT_END);
+        return this;
+    }
+
+    public XmlPlistWriter startArray() {
+        append(ARRAY_START);
+        return this;
+    }
+
+    public XmlPlistWriter endArray() {
+        append(ARRAY_END);
+        return this;
+    }
+
+    public XmlPlistWriter key(String key) {
+        append(KEY_START);
+        text(key);
+        append(KEY_END);
+        return this;
+    }
+
+    /**
+     * Writes one value; see the class documentation for the mapping.
+     *
+     * @throws PlistFormatException if the value has no plist representation.
+     */
+    public XmlPlistWriter value(Object value) {
+        if (value instanceof String) {
+            append(STRING_START);
+            text((String) value);
+            append(STRING_END);
+        } else if (value instanceof Map) {
+            append(DICT_START);
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (entry.getValue() != null) {
+                    key(String.valueOf(entry.getKey()));
+                    value(entry.getValue());
+                }
+            }
+            append(DICT_END);
+        } else if (value instanceof Boolean) {
+            append((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            integer(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            real(((Number) value).doubleValue());
+        } else if (value instanceof Iterable) {
+            append(ARRAY_START);
+            for (Object element : (Iterable<?>) value) {
+                value(element);
+            }
+            append(ARRAY_END);
+        } else if (value instanceof Object[]) {
+            append(ARRAY_START);
+            for (Object element : (Object[]) value) {
+                value(element);
+            }
+            append(ARRAY_END);
+        } else if (value instanceof byte[]) {
+            append(DATA_START);
+            append(Base64.getEncoder().encode((byte[]) value));
+            append(DATA_END);
+        } else if (value instanceof Instant) {
+            date((Instant) value);
+        } else if (value instanceof Date) {
+            date(((Date) value).toInstant());
+        } else if (value instanceof BigInteger) {
+            BigInteger big = (BigInteger) value;
+            if (big.bitLength() > 63) {
+                throw new PlistFormatException("Integer out of plist range: " + big);
+            }
+            integer(big.longValue());
+        } else if (value instanceof BigDecimal) {
+            real(((BigDecimal) value).doubleValue());
+        } else if (value instanceof Number) {
+            number(value.toString());
+        } else if (value == null) {
+            throw new PlistFormatException("A plist cannot hold null outside of a dict");
+        } else {
+            throw new PlistFormatException("Unsupported plist value type: " + value.getClass().getName());
+        }
+        return this;
+    }
+
+    /**
+     * Transcodes the next JSON value from the reader.
+     */
+    public XmlPlistWriter json(JsonReader json) throws IOException {
+        JsonToken token = json.peek();
+        switch (token) {
+            case BEGIN_OBJECT:
+                json.beginObject();
+                append(DICT_START);
+                while (json.hasNext()) {
+                    String name = json.nextName();
+                    if (json.peek() == JsonToken.NULL) {
+                        json.nextNull();
+                        continue;
+                    }
+                    key(name);
+                    json(json);
+                }
+                json.endObject();
+                append(DICT_END);
+                break;
+            case BEGIN_ARRAY:
+                json.beginArray();
+                append(ARRAY_START);
+                while (json.hasNext()) {
+                    json(json);
+                }
+                json.endArray();
+                append(ARRAY_END);
+                break;
+            case STRING:
+                append(STRING_START);
+                text(json.nextString());
+                append(STRING_END);
+                break;
+            case NUMBER:
+                number(json.nextString());
+                break;
+            case BOOLEAN:
+                append(json.nextBoolean() ? TRUE : FALSE);
+                break;
+            default:
+                throw new PlistFormatException("A plist cannot hold JSON " + token + " here");
+        }
+        return this;
+    }
+
+    private void number(String literal) {
+        boolean integral = true;
+        for (int i = 0; i < literal.length() && integral; i++) {
+            char c = literal.charAt(i);
+            integral = c != '.' && c != 'e' && c != 'E';
+        }
+        if (integral && literal.length() < 19) {
+            append(INTEGER_START);
+            ascii(literal);
+            append(INTEGER_END);
+        } else {
+            real(Double.parseDouble(literal));
+        }
+    }
+
+    private void real(double value) {
+        if (isIntegral(value)) {
+            integer((long) value);
+            return;
+        }
+        append(REAL_START);
+        if (Double.isNaN(value)) {
+            ascii("nan");
+        } else if (Double.isInfinite(value)) {
+            ascii(value > 0 ? "+infinity" : "-infinity");
+        } else {
+            ascii(Double.toString(value));
+        }
+        append(REAL_END);
+    }
+
+    private void integer(long value) {
+        append(INTEGER_START);
+        if (value == Long.MIN_VALUE) {
+            append(LONG_MIN);
+        } else {
+            ensureCapacity(20);
+            if (value < 0) {
+                buf[size++] = '-';
+                value = -value;
+            }
+            int digits = 1;
+            for (long rest = value / 10; rest > 0; rest /= 10) {
+                digits++;
+            }
+            for (int i = size + digits - 1; i >= size; i--) {
+                buf[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            size += digits;
+        }
+        append(INTEGER_END);
+    }
+
+    private void date(Instant instant) {
+        append(DATE_START);
+        // The plist date format has whole seconds only.
+        ascii(instant.truncatedTo(ChronoUnit.SECONDS).toString());
+        append(DATE_END);
+    }
+
+    /**
+     * Appends the text as escaped UTF-8. Characters XML cannot carry are replaced by U+FFFD.
+     */
+    private void text(String text) {
+        final int length = text.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (size + 6 > buf.length) {
+                ensureCapacity(Math.max(6, length - i));
+            }
+            if (c < 0x80) {
+                if (c == '&') {
+                    System.arraycopy(AMP, 0, buf, size, AMP.length);
+                    size += AMP.length;
+                } else if (c == '<') {
+                    System.arraycopy(LT, 0, buf, size, LT.length);
+                    size += LT.length;
+                } else if (c == '>') {
+                    System.arraycopy(GT, 0, buf, size, GT.length);
+                    size += GT.length;
+                } else if (c < 0x20 && c != '\t' && c != '\n' && c != '\r') {
+                    replacement();
+                } else {
+                    buf[size++] = (byte) c;
+                }
+            } else if (c < 0x800) {
+                buf[size++] = (byte) (0xC0 | (c >> 6));
+                buf[size++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                buf[size++] = (byte) (0xF0 | (codePoint >> 18));
+                buf[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buf[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buf[size++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c) || c == 0xFFFE || c == 0xFFFF) {
+                replacement();
+            } else {
+                buf[size++] = (byte) (0xE0 | (c >> 12));
+                buf[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[size++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void replacement() {
+        buf[size++] = (byte) 0xEF;
+        buf[size++] = (byte) 0xBF;
+        buf[size++] = (byte) 0xBD;
+    }
+
+    private void ascii(String text) {
+        ensureCapacity(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            buf[size++] = (byte) text.charAt(i);
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
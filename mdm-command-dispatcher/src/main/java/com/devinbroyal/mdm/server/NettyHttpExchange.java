@@ -0,0 +1,342 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.server;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.DateFormatter;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Presents a Netty request to an unchanged {@link com.sun.net.httpserver.HttpHandler}.
+ * <p>
+ * The request body streams from the pooled buffers Netty read it into. A response declared with a
+ * length up to {@link #BUFFERED_RESPONSE_LIMIT} is collected in one pooled buffer and written as a
+ * single message when the stream is closed; longer and chunked ({@code 0}) responses are written in
+ * {@link #BUFFERED_RESPONSE_LIMIT}-sized chunks, waiting for the connection to drain when it is not
+ * writable. Instances are used by one handler thread at a time, like the JDK's.
+ */
+final class NettyHttpExchange extends HttpExchange {
+
+    static final int BUFFERED_RESPONSE_LIMIT = 64 * 1024;
+
+    private final ChannelHandlerContext ctx;
+    private final HttpRequest request;
+    private final NettyHttpContext context;
+    private final String protocol;
+    private final Headers requestHeaders = new Headers();
+    private final Headers responseHeaders = new Headers();
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private final RequestBodyStream requestBody;
+    private final URI requestUri;
+    private InputStream in;
+    private OutputStream out;
+    private ResponseStream responseStream;
+    private int responseCode = -1;
+    private boolean closed;
+
+    NettyHttpExchange(ChannelHandlerContext ctx, HttpRequest request, RequestBodyStream requestBody, NettyHttpContext context, String protocol) {
+        this.ctx = ctx;
+        this.request = request;
+        this.requestBody = requestBody;
+        this.context = context;
+        this.protocol = protocol;
+        this.requestUri = URI.create(request.uri());
+        for (Map.Entry<String, String> header : request.headers()) {
+            requestHeaders.add(header.getKey(), header.getValue());
+        }
+        this.in = requestBody;
+    }
+
+    @Override
+    public Headers getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    @Override
+    public Headers getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    @Override
+    public URI getRequestURI() {
+        return requestUri;
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return request.method().name();
+    }
+
+    @Override
+    public HttpContext getHttpContext() {
+        return context;
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return in;
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        if (out == null) {
+            responseStream = new ResponseStream();
+            out = responseStream;
+        }
+        return out;
+    }
+
+    @Override
+    public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+        if (responseCode != -1) {
+            throw new IOException("headers already sent");
+        }
+        responseCode = rCode;
+        getResponseBody();
+
+        final HttpResponseStatus status = HttpResponseStatus.valueOf(rCode);
+        final boolean bodyless = responseLength == -1 || rCode == 204 || rCode == 304 || HttpMethod.HEAD.equals(request.method());
+        if (bodyless) {
+            final DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, ctx.alloc().buffer(0));
+            copyHeaders(response.headers());
+            if (rCode != 204 && rCode != 304) {
+                response.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
+            }
+            ctx.writeAndFlush(response);
+            responseStream.finished = true;
+        } else if (responseLength > 0 && responseLength <= BUFFERED_RESPONSE_LIMIT) {
+            responseStream.buffered = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, ctx.alloc().buffer((int) responseLength));
+            copyHeaders(responseStream.buffered.headers());
+            responseStream.buffered.headers().set(HttpHeaderNames.CONTENT_LENGTH, responseLength);
+            responseStream.remaining = responseLength;
+        } else {
+            final DefaultHttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, status);
+            copyHeaders(response.headers());
+            if (responseLength > 0) {
+                response.headers().set(HttpHeaderNames.CONTENT_LENGTH, responseLength);
+                responseStream.remaining = responseLength;
+            } else {
+                response.headers().set(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
+                responseStream.remaining = Long.MAX_VALUE;
+                responseStream.chunked = true;
+            }
+            responseStream.streaming = true;
+            ctx.write(response);
+        }
+    }
+
+    private void copyHeaders(HttpHeaders headers) {
+        for (Map.Entry<String, List<String>> header : responseHeaders.entrySet()) {
+            headers.add(header.getKey(), header.getValue());
+        }
+        if (!headers.contains(HttpHeaderNames.DATE)) {
+            headers.set(HttpHeaderNames.DATE, DateFormatter.format(new Date()));
+        }
+    }
+
+    /**
+     * Completes the exchange. A handler that never sent a response is answered with 500.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        requestBody.close();
+        try {
+            if (responseCode == -1) {
+                responseHeaders.clear();
+                sendResponseHeaders(500, -1);
+            }
+            out.close();
+        } catch (IOException e) {
+            ctx.channel().close();
+        }
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return (InetSocketAddress) ctx.channel().remoteAddress();
+    }
+
+    @Override
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return (InetSocketAddress) ctx.channel().localAddress();
+    }
+
+    @Override
+    public String getProtocol() {
+        return protocol;
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        if (value == null) {
+            attributes.remove(name);
+        } else {
+            attributes.put(name, value);
+        }
+    }
+
+    @Override
+    public void setStreams(InputStream i, OutputStream o) {
+        if (i != null) {
+            in = i;
+        }
+        if (o != null) {
+            getResponseBody();
+            out = o;
+        }
+    }
+
+    @Override
+    public HttpPrincipal getPrincipal() {
+        return null;
+    }
+
+    /**
+     * Writes the response body, either into {@link #buffered} or as a series of chunks.
+     */
+    private final class ResponseStream extends OutputStream {
+        private DefaultFullHttpResponse buffered;
+        private boolean streaming;
+        private boolean chunked;
+        private ByteBuf chunk;
+        private long remaining;
+        private boolean finished;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (responseCode == -1) {
+                throw new IOException("response headers not sent yet");
+            }
+            if (finished) {
+                throw new IOException("stream is closed");
+            }
+            if (len > remaining) {
+                throw new IOException("too many bytes to write to stream");
+            }
+            remaining -= len;
+            if (buffered != null) {
+                buffered.content().writeBytes(b, off, len);
+                return;
+            }
+            if (!streaming) {
+                throw new IOException("response has no body");
+            }
+            while (len > 0) {
+                if (chunk == null) {
+                    chunk = ctx.alloc().buffer(BUFFERED_RESPONSE_LIMIT);
+                }
+                final int n = Math.min(len, chunk.writableBytes());
+                chunk.writeBytes(b, off, n);
+                off += n;
+                len -= n;
+                if (!chunk.isWritable()) {
+                    flushChunk();
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (streaming && !finished && chunk != null && chunk.isReadable()) {
+                flushChunk();
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            if (!ctx.channel().isActive()) {
+                throw new IOException("Connection closed");
+            }
+            final ChannelFuture write = ctx.writeAndFlush(new DefaultHttpContent(chunk));
+            chunk = null;
+            if (!ctx.channel().isWritable() && !ctx.executor().inEventLoop()) {
+                write.awaitUninterruptibly();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (finished || responseCode == -1) {
+                return;
+            }
+            if (buffered != null) {
+                final DefaultFullHttpResponse response = buffered;
+                buffered = null;
+                if (remaining > 0) {
+                    response.release();
+                    ctx.channel().close();
+                    finished = true;
+                    throw new IOException("insufficient bytes written to stream");
+                }
+                ctx.writeAndFlush(response);
+                finished = true;
+            } else if (streaming) {
+                final ByteBuf last = chunk;
+                chunk = null;
+                if (remaining > 0 && !chunked) {
+                    if (last != null) {
+                        last.release();
+                    }
+                    ctx.channel().close();
+                    finished = true;
+                    throw new IOException("insufficient bytes written to stream");
+                }
+                ctx.writeAndFlush(last == null ? LastHttpContent.EMPTY_LAST_CONTENT : new DefaultLastHttpContent(last));
+                finished = true;
+            }
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,193 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.server;
+
+import com.sun.net.httpserver.HttpHandler;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpMessage;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpServerExpectContinueHandler;
+import io.netty.handler.codec.http.HttpServerKeepAliveHandler;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http2.CleartextHttp2ServerUpgradeHandler;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2FrameCodec;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2ServerUpgradeCodec;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.util.AsciiString;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.net.InetSocketAddress;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+/**
+ * An HTTP server on Netty that serves the same {@link HttpHandler}s as the JDK server, selected with
+ * {@code server.http.engine=netty}.
+ * <p>
+ * A connection speaks HTTP/1.1, with keep-alive and pipelining, or cleartext HTTP/2 (h2c), either
+ * with prior knowledge or after an {@code Upgrade: h2c} request. Sockets are served by a few event
+ * loop threads, whatever the number of connections; buffers come from the pooled allocator. Each
+ * request is passed to its handler on the given executor, with the body streaming in as it arrives.
+ * Contexts match by longest path prefix, as in the JDK server.
+ */
+public class NettyHttpServer {
+
+    static final int MAX_CONCURRENT_STREAMS = 256;
+    private static final int MAX_UPGRADE_CONTENT_BYTES = 64 * 1024;
+
+    private final InetSocketAddress address;
+    private final Routes routes;
+    private final Executor executor;
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private Channel serverChannel;
+
+    /**
+     * @param contexts Handlers by context path.
+     * @param executor Runs the handlers. It must not run a task on the submitting thread for long:
+     *                 a task it hands back is answered with 503.
+     */
+    public NettyHttpServer(InetSocketAddress address, Map<String, HttpHandler> contexts, Executor executor) {
+        this.address = address;
+        this.routes = new Routes(contexts);
+        this.executor = executor;
+    }
+
+    public synchronized void start() throws InterruptedException {
+        bossGroup = new NioEventLoopGroup(1, new DefaultThreadFactory("http-accept"));
+        workerGroup = new NioEventLoopGroup(0, new DefaultThreadFactory("http-io"));
+        serverChannel = new ServerBootstrap()
+                .group(bossGroup, workerGroup)
+                .channel(NioServerSocketChannel.class)
+                .option(ChannelOption.SO_BACKLOG, 1024)
+                .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel channel) {
+                        configureCleartext(channel.pipeline());
+                    }
+                })
+                .bind(address).sync().channel();
+    }
+
+    /**
+     * @return The bound address, useful when the configured port is 0.
+     */
+    public InetSocketAddress getAddress() {
+        return (InetSocketAddress) serverChannel.localAddress();
+    }
+
+    public synchronized void stop() {
+        if (serverChannel != null) {
+            serverChannel.close().syncUninterruptibly();
+            bossGroup.shutdownGracefully();
+            workerGroup.shutdownGracefully();
+            serverChannel = null;
+        }
+    }
+
+    private void configureCleartext(ChannelPipeline pipeline) {
+        final HttpServerCodec sourceCodec = new HttpServerCodec();
+        final HttpServerUpgradeHandler upgradeHandler = new HttpServerUpgradeHandler(sourceCodec, protocol ->
+                AsciiString.contentEquals(Http2CodecUtil.HTTP_UPGRADE_PROTOCOL_NAME, protocol)
+                        ? new Http2ServerUpgradeCodec(newHttp2FrameCodec(), newHttp2Multiplexer())
+                        : null,
+                MAX_UPGRADE_CONTENT_BYTES) {
+            @Override
+            protected boolean shouldHandleUpgradeRequest(HttpRequest request) {
+                // An upgrade request is aggregated before it is answered; one whose body would not
+                // fit is served on HTTP/1.1 instead, as RFC 9110 lets a server ignore Upgrade.
+                return !HttpUtil.isTransferEncodingChunked(request)
+                        && HttpUtil.getContentLength(request, 0L) <= MAX_UPGRADE_CONTENT_BYTES;
+            }
+        };
+        pipeline.addLast(new CleartextHttp2ServerUpgradeHandler(sourceCodec, upgradeHandler, new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel channel) {
+                channel.pipeline().addLast(newHttp2FrameCodec(), newHttp2Multiplexer());
+            }
+        }));
+        // Reached by the first request of a connection that stays on HTTP/1.1.
+        pipeline.addLast(new SimpleChannelInboundHandler<HttpMessage>() {
+            @Override
+            protected void channelRead0(ChannelHandlerContext ctx, HttpMessage msg) {
+                final ChannelPipeline http1 = ctx.pipeline();
+                http1.addAfter(ctx.name(), null, new RequestDispatcher(routes, executor, "HTTP/1.1"));
+                http1.addAfter(ctx.name(), null, new HttpServerExpectContinueHandler());
+                http1.replace(this, null, new HttpServerKeepAliveHandler());
+                ctx.fireChannelRead(ReferenceCountUtil.retain(msg));
+            }
+        });
+    }
+
+    private static Http2FrameCodec newHttp2FrameCodec() {
+        return Http2FrameCodecBuilder.forServer()
+                .initialSettings(Http2Settings.defaultSettings().maxConcurrentStreams(MAX_CONCURRENT_STREAMS))
+                .build();
+    }
+
+    private Http2MultiplexHandler newHttp2Multiplexer() {
+        return new Http2MultiplexHandler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel stream) {
+                stream.pipeline().addLast(
+                        new Http2StreamFrameToHttpObjectCodec(true),
+                        new HttpServerExpectContinueHandler(),
+                        new RequestDispatcher(routes, executor, "HTTP/2"));
+            }
+        });
+    }
+
+    /**
+     * The contexts, longest path first.
+     */
+    static final class Routes {
+        private final List<NettyHttpContext> contexts;
+
+        Routes(Map<String, HttpHandler> handlers) {
+            this.contexts = handlers.entrySet().stream()
+                    .map(entry -> new NettyHttpContext(entry.getKey(), entry.getValue()))
+                    .sorted(Comparator.comparingInt((NettyHttpContext context) -> context.getPath().length()).reversed())
+                    .collect(Collectors.toList());
+        }
+
+        NettyHttpContext find(String path) {
+            for (NettyHttpContext context : contexts) {
+                if (path.startsWith(context.getPath())) {
+                    return context;
+                }
+            }
+            return null;
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,57 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.server;
+
+import io.netty.channel.Channel;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps the request body bytes a channel (an HTTP/1.1 connection or an HTTP/2 stream) buffers ahead
+ * of its handler. Reading stops above {@link #HIGH_WATER} buffered bytes and resumes once the handler
+ * has consumed them down to {@link #LOW_WATER}; for HTTP/2 this also withholds flow-control credit
+ * from the client. Both decisions are taken on the channel's event loop.
+ */
+final class ReadBudget {
+
+    static final int HIGH_WATER = 1 << 20;
+    static final int LOW_WATER = 256 << 10;
+
+    private final Channel channel;
+    private final AtomicLong buffered = new AtomicLong();
+
+    ReadBudget(Channel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Called on the event loop for every chunk queued for a handler.
+     */
+    void charge(int bytes) {
+        if (buffered.addAndGet(bytes) > HIGH_WATER && channel.config().isAutoRead()) {
+            channel.config().setAutoRead(false);
+        }
+    }
+
+    /**
+     * Called from any thread for bytes a handler has consumed or discarded.
+     */
+    void refund(int bytes) {
+        final long after = buffered.addAndGet(-bytes);
+        if (after < LOW_WATER && after + bytes >= LOW_WATER) {
+            channel.eventLoop().execute(() -> {
+                if (buffered.get() < LOW_WATER && !channel.config().isAutoRead()) {
+                    channel.config().setAutoRead(true);
+                }
+            });
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,176 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.server;
+
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A request body as the handler thread reads it, fed chunk by chunk from the event loop. The chunks
+ * are the pooled buffers Netty read them into; each is released as soon as it has been consumed.
+ * <p>
+ * The connection's {@link ReadBudget} is charged for every buffered byte, so that a handler reading
+ * slowly stops the connection from reading more. A {@link ReentrantLock} rather than a monitor guards
+ * the queue, so that a waiting virtual thread does not pin its carrier.
+ */
+final class RequestBodyStream extends InputStream {
+
+    private final ReadBudget budget;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition readable = lock.newCondition();
+    private final Queue<ByteBuf> chunks = new ArrayDeque<>();
+    private ByteBuf current;
+    private boolean ended;
+    private boolean closed;
+    private IOException failure;
+
+    RequestBodyStream(ReadBudget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Queues a chunk, taking over the caller's reference to it.
+     */
+    void offer(ByteBuf chunk) {
+        if (!chunk.isReadable()) {
+            chunk.release();
+            return;
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                chunk.release();
+                return;
+            }
+            chunks.add(chunk);
+            budget.charge(chunk.readableBytes());
+            readable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void end() {
+        lock.lock();
+        try {
+            ended = true;
+            readable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void fail(IOException cause) {
+        lock.lock();
+        try {
+            if (!ended) {
+                failure = cause;
+            }
+            readable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        final byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        lock.lock();
+        try {
+            if (!awaitReadable()) {
+                return -1;
+            }
+            final int n = Math.min(len, current.readableBytes());
+            current.readBytes(b, off, n);
+            budget.refund(n);
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int available() {
+        lock.lock();
+        try {
+            return current == null ? 0 : current.readableBytes();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Discards whatever has not been read. Chunks still arriving for this request are dropped.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (current != null) {
+                budget.refund(current.readableBytes());
+                current.release();
+                current = null;
+            }
+            for (ByteBuf chunk; (chunk = chunks.poll()) != null; ) {
+                budget.refund(chunk.readableBytes());
+                chunk.release();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Whether {@link #current} has bytes to read, waiting for the next chunk if needed;
+     *         {@code false} at the end of the body.
+     */
+    private boolean awaitReadable() throws IOException {
+        while (current == null || !current.isReadable()) {
+            if (closed) {
+                throw new IOException("Request body stream is closed");
+            }
+            if (current != null) {
+                current.release();
+                current = null;
+            }
+            current = chunks.poll();
+            if (current != null) {
+                continue;
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            if (ended) {
+                return false;
+            }
+            readable.awaitUninterruptibly();
+        }
+        return true;
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,202 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.server;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Hands each request on a channel to its context's handler on the server executor, one request at a
+ * time. Pipelined HTTP/1.1 requests queue up, with their bodies, behind the one being handled, so
+ * that responses leave in request order; each HTTP/2 stream is a channel of its own and is handled
+ * concurrently with the others. All state is confined to the channel's event loop, which never runs
+ * a handler: when the executor is saturated, the request is answered with 503 and {@code Retry-After}.
+ */
+final class RequestDispatcher extends ChannelInboundHandlerAdapter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestDispatcher.class);
+    private static final byte[] SERVICE_UNAVAILABLE = "{\"error\":\"Service Unavailable\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NOT_FOUND = "<h1>404 Not Found</h1>No context found for request".getBytes(StandardCharsets.UTF_8);
+
+    private final NettyHttpServer.Routes routes;
+    private final Executor executor;
+    private final String protocol;
+    private final Queue<Pending> pending = new ArrayDeque<>();
+    private ReadBudget budget;
+    private Pending receiving;
+    private boolean busy;
+
+    RequestDispatcher(NettyHttpServer.Routes routes, Executor executor, String protocol) {
+        this.routes = routes;
+        this.executor = executor;
+        this.protocol = protocol;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        budget = new ReadBudget(ctx.channel());
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (msg instanceof HttpRequest) {
+            final HttpRequest request = (HttpRequest) msg;
+            receiving = new Pending(request, new RequestBodyStream(budget));
+            pending.add(receiving);
+        }
+        if (msg instanceof HttpContent) {
+            final HttpContent content = (HttpContent) msg;
+            if (receiving == null) {
+                content.release();
+                return;
+            }
+            receiving.body.offer(content.content().retain());
+            if (content instanceof LastHttpContent) {
+                receiving.body.end();
+                receiving = null;
+            }
+            content.release();
+        } else if (!(msg instanceof HttpRequest)) {
+            ReferenceCountUtil.release(msg);
+            return;
+        }
+        if (!busy) {
+            dispatchNext(ctx);
+        }
+    }
+
+    private void dispatchNext(ChannelHandlerContext ctx) {
+        final Pending next = pending.poll();
+        if (next == null) {
+            busy = false;
+            return;
+        }
+        busy = true;
+
+        if (!next.request.decoderResult().isSuccess()) {
+            next.body.close();
+            respond(ctx, HttpResponseStatus.BAD_REQUEST, new byte[0]);
+            ctx.close();
+            return;
+        }
+        final String path = pathOf(next.request.uri());
+        final NettyHttpContext context = routes.find(path);
+        if (context == null) {
+            next.body.close();
+            respond(ctx, HttpResponseStatus.NOT_FOUND, NOT_FOUND);
+            dispatchNext(ctx);
+            return;
+        }
+
+        final NettyHttpExchange exchange;
+        try {
+            exchange = new NettyHttpExchange(ctx, next.request, next.body, context, protocol);
+        } catch (IllegalArgumentException e) {
+            next.body.close();
+            respond(ctx, HttpResponseStatus.BAD_REQUEST, new byte[0]);
+            dispatchNext(ctx);
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    context.getHandler().handle(exchange);
+                } catch (Throwable e) {
+                    logger.error("Unhandled error in the handler for {}", context.getPath(), e);
+                } finally {
+                    exchange.close();
+                    ctx.executor().execute(() -> dispatchNext(ctx));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            next.body.close();
+            if (executor instanceof ExecutorService && ((ExecutorService) executor).isShutdown()) {
+                ctx.close();
+                return;
+            }
+            // The executor is full. A handler must never run on the event loop, which would also
+            // starve the request body it may be reading.
+            final DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+                    HttpResponseStatus.SERVICE_UNAVAILABLE, Unpooled.wrappedBuffer(SERVICE_UNAVAILABLE));
+            response.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/json; charset=UTF-8");
+            response.headers().set(HttpHeaderNames.CONTENT_LENGTH, SERVICE_UNAVAILABLE.length);
+            response.headers().set(HttpHeaderNames.RETRY_AFTER, 1);
+            ctx.writeAndFlush(response);
+            dispatchNext(ctx);
+        }
+    }
+
+    private static String pathOf(String uri) {
+        int end = uri.indexOf('?');
+        if (end < 0) {
+            end = uri.indexOf('#');
+        }
+        return end < 0 ? uri : uri.substring(0, end);
+    }
+
+    private static void respond(ChannelHandlerContext ctx, HttpResponseStatus status, byte[] body) {
+        final DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, Unpooled.wrappedBuffer(body));
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.TEXT_HTML);
+        response.headers().set(HttpHeaderNames.CONTENT_LENGTH, body.length);
+        ctx.writeAndFlush(response);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        final IOException closed = new IOException("Connection closed before the request body was received");
+        for (Pending request : pending) {
+            request.body.fail(closed);
+            request.body.close();
+        }
+        pending.clear();
+        if (receiving != null) {
+            receiving.body.fail(closed);
+            receiving = null;
+        }
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        logger.debug("Closing HTTP channel {} after an error", ctx.channel(), cause);
+        ctx.close();
+    }
+
+    private static final class Pending {
+        private final HttpRequest request;
+        private final RequestBodyStream body;
+
+        private Pending(HttpRequest request, RequestBodyStream body) {
+            this.request = request;
+            this.body = body;
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
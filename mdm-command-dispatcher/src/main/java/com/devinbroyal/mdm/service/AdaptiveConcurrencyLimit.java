@@ -0,0 +1,164 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Moves the {@link InFlightLimiter}'s limit with an AIMD controller fed by APNs responses.
+ * <p>
+ * The limit starts at the minimum and, until the first congestion signal, grows by one for every
+ * healthy response (slow start, doubling per round trip). After that it grows by one per full
+ * window of healthy responses (additive increase). A {@code TooManyRequests} rejection, a response
+ * slower than the latency threshold or a push lost to a connection failure cuts it by the backoff ratio (multiplicative decrease), at most
+ * once per cooldown so that one burst of throttled responses counts as a single signal. The limit
+ * only grows while the window is actually being used, so an idle dispatcher does not drift upward.
+ */
+final class AdaptiveConcurrencyLimit {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveConcurrencyLimit.class);
+    private static final int MAX_HISTORY = 100;
+    private static final long DECREASE_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final InFlightLimiter limiter;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private final LongSupplier nanoClock;
+    private final Deque<Map<String, Object>> history = new ArrayDeque<>();
+
+    private int limit;
+    private boolean slowStart = true;
+    private int healthySinceIncrease;
+    private long lastDecreaseNanos;
+    private long increases;
+    private long decreases;
+
+    AdaptiveConcurrencyLimit(InFlightLimiter limiter, int minLimit, int maxLimit, long latencyThresholdMillis, double backoffRatio) {
+        this(limiter, minLimit, maxLimit, latencyThresholdMillis, backoffRatio, System::nanoTime);
+    }
+
+    AdaptiveConcurrencyLimit(InFlightLimiter limiter, int minLimit, int maxLimit, long latencyThresholdMillis, double backoffRatio, LongSupplier nanoClock) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min <= max, were " + minLimit + " and " + maxLimit);
+        }
+        if (!(backoffRatio > 0.0 && backoffRatio < 1.0)) {
+            throw new IllegalArgumentException("Backoff ratio must be between 0 and 1, was " + backoffRatio);
+        }
+        this.limiter = limiter;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+        this.backoffRatio = backoffRatio;
+        this.nanoClock = nanoClock;
+        this.lastDecreaseNanos = nanoClock.getAsLong() - DECREASE_COOLDOWN_NANOS;
+        this.limit = minLimit;
+        limiter.setLimit(minLimit);
+    }
+
+    /**
+     * Feeds one APNs response into the controller.
+     *
+     * @param latencyNanos The time from handing the push to the client until APNs answered.
+     * @param throttled    Whether APNs rejected the push with {@code TooManyRequests}.
+     */
+    void onResponse(long latencyNanos, boolean throttled) {
+        boolean increased = false;
+        synchronized (this) {
+            if (throttled) {
+                decrease("TooManyRequests");
+            } else if (latencyNanos > latencyThresholdNanos) {
+                decrease("Latency " + TimeUnit.NANOSECONDS.toMillis(latencyNanos) + " ms");
+            } else if (limit < maxLimit && limiter.getInFlight() * 2 >= limit) {
+                healthySinceIncrease++;
+                if (slowStart || healthySinceIncrease >= limit) {
+                    healthySinceIncrease = 0;
+                    apply(limit + 1, slowStart ? "Slow start" : "Additive increase");
+                    increases++;
+                    increased = true;
+                }
+            }
+        }
+        if (increased) {
+            // Start queued sends for the new slot outside the lock; dispatching must not serialize on it.
+            limiter.drain();
+        }
+    }
+
+    /**
+     * Feeds one push that got no response at all, e.g. because its connection failed, into the
+     * controller. Like a throttled response, it is a congestion signal.
+     *
+     * @param reason What went wrong, for the decision history.
+     */
+    synchronized void onDrop(String reason) {
+        decrease("Dropped: " + reason);
+    }
+
+    synchronized int getLimit() {
+        return limit;
+    }
+
+    synchronized Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", true);
+        stats.put("limit", limit);
+        stats.put("minLimit", minLimit);
+        stats.put("maxLimit", maxLimit);
+        stats.put("phase", slowStart ? "SLOW_START" : "CONGESTION_AVOIDANCE");
+        stats.put("latencyThresholdMillis", TimeUnit.NANOSECONDS.toMillis(latencyThresholdNanos));
+        stats.put("backoffRatio", backoffRatio);
+        stats.put("increases", increases);
+        stats.put("decreases", decreases);
+        stats.put("history", new ArrayList<>(history));
+        return stats;
+    }
+
+    private void decrease(String reason) {
+        final long now = nanoClock.getAsLong();
+        if (now - lastDecreaseNanos < DECREASE_COOLDOWN_NANOS) {
+            return;
+        }
+        lastDecreaseNanos = now;
+        slowStart = false;
+        healthySinceIncrease = 0;
+        decreases++;
+        int reduced = Math.max(minLimit, (int) (limit * backoffRatio));
+        logger.info("Reducing APNs in-flight limit from {} to {} ({})", limit, reduced, reason);
+        apply(reduced, reason);
+    }
+
+    private void apply(int newLimit, String reason) {
+        Map<String, Object> decision = new LinkedHashMap<>();
+        decision.put("at", Instant.now());
+        decision.put("from", limit);
+        decision.put("to", newLimit);
+        decision.put("reason", reason);
+        if (history.size() == MAX_HISTORY) {
+            history.removeFirst();
+        }
+        history.addLast(decision);
+
+        limit = newLimit;
+        limiter.setLimit(newLimit);
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
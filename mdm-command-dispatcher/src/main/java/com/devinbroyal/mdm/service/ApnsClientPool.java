@@ -0,0 +1,231 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.service;
+
+import com.eatthepath.pushy.apns.ApnsClient;
+import com.eatthepath.pushy.apns.ApnsClientBuilder;
+import com.eatthepath.pushy.apns.ApnsClientMetricsListener;
+import com.eatthepath.pushy.apns.PushNotificationResponse;
+import com.eatthepath.pushy.apns.auth.ApnsSigningKey;
+import com.eatthepath.pushy.apns.util.SimpleApnsPushNotification;
+import io.netty.channel.EventLoopGroup;
+
+import javax.net.ssl.SSLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed set of {@link ApnsClient} shards, each holding its own HTTP/2 connections, so that pushes
+ * are spread over several {@code MAX_CONCURRENT_STREAMS} windows instead of one.
+ * <p>
+ * A device token always maps to the same shard (by hash), which keeps per-device ordering on a
+ * single client. Every shard tracks its in-flight count, outcome counters and response latency.
+ */
+final class ApnsClientPool {
+
+    private static final double LATENCY_EWMA_WEIGHT = 0.1;
+
+    private final Shard[] shards;
+
+    ApnsClientPool(String apnsHost, ApnsSigningKey signingKey, int clientCount, int connectionsPerClient, EventLoopGroup eventLoopGroup) throws SSLException {
+        if (clientCount < 1 || connectionsPerClient < 1) {
+            throw new IllegalArgumentException("Client count and connections per client must be at least 1");
+        }
+        this.shards = new Shard[clientCount];
+        try {
+            for (int i = 0; i < clientCount; i++) {
+                ShardMetricsListener listener = new ShardMetricsListener();
+                ApnsClient client = new ApnsClientBuilder()
+                        .setApnsServer(apnsHost)
+                        .setSigningKey(signingKey)
+                        .setConcurrentConnections(connectionsPerClient)
+                        .setEventLoopGroup(eventLoopGroup)
+                        .setMetricsListener(listener)
+                        .build();
+                shards[i] = new Shard(i, client, listener);
+            }
+        } catch (SSLException | RuntimeException e) {
+            close().join();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends the notification on the shard that owns its device token.
+     */
+    CompletableFuture<PushNotificationResponse<SimpleApnsPushNotification>> send(SimpleApnsPushNotification notification) {
+        return shardFor(notification.getToken()).send(notification);
+    }
+
+    int size() {
+        return shards.length;
+    }
+
+    int getInFlight() {
+        int total = 0;
+        for (Shard shard : shards) {
+            total += shard.inFlight.get();
+        }
+        return total;
+    }
+
+    List<Map<String, Object>> getStats() {
+        List<Map<String, Object>> stats = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            stats.add(shard.snapshot());
+        }
+        return stats;
+    }
+
+    CompletableFuture<Void> close() {
+        List<CompletableFuture<Void>> closeFutures = new ArrayList<>();
+        for (Shard shard : shards) {
+            if (shard != null) {
+                closeFutures.add(shard.client.close());
+            }
+        }
+        return CompletableFuture.allOf(closeFutures.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private Shard shardFor(String deviceToken) {
+        return shards[Math.floorMod(deviceToken.hashCode(), shards.length)];
+    }
+
+    private static final class Shard {
+        private final int index;
+        private final ApnsClient client;
+        private final ShardMetricsListener listener;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final LongAdder sent = new LongAdder();
+        private final LongAdder accepted = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder totalLatencyNanos = new LongAdder();
+        private final AtomicLong maxLatencyNanos = new AtomicLong();
+        private final AtomicLong ewmaLatencyNanosBits = new AtomicLong(Double.doubleToRawLongBits(0.0));
+
+        private Shard(int index, ApnsClient client, ShardMetricsListener listener) {
+            this.index = index;
+            this.client = client;
+            this.listener = listener;
+        }
+
+        private CompletableFuture<PushNotificationResponse<SimpleApnsPushNotification>> send(SimpleApnsPushNotification notification) {
+            final long startNanos = System.nanoTime();
+            inFlight.incrementAndGet();
+            sent.increment();
+            final CompletableFuture<PushNotificationResponse<SimpleApnsPushNotification>> future;
+            try {
+                future = client.sendNotification(notification);
+            } catch (RuntimeException e) {
+                inFlight.decrementAndGet();
+                failed.increment();
+                throw e;
+            }
+            return future.whenComplete((response, error) -> {
+                inFlight.decrementAndGet();
+                if (error != null) {
+                    failed.increment();
+                    return;
+                }
+                if (response.isAccepted()) {
+                    accepted.increment();
+                } else {
+                    rejected.increment();
+                }
+                recordLatency(System.nanoTime() - startNanos);
+            });
+        }
+
+        private void recordLatency(long latencyNanos) {
+            totalLatencyNanos.add(latencyNanos);
+            maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+            long currentBits;
+            long updatedBits;
+            do {
+                currentBits = ewmaLatencyNanosBits.get();
+                double current = Double.longBitsToDouble(currentBits);
+                double updated = current == 0.0 ? latencyNanos : current + LATENCY_EWMA_WEIGHT * (latencyNanos - current);
+                updatedBits = Double.doubleToRawLongBits(updated);
+            } while (!ewmaLatencyNanosBits.compareAndSet(currentBits, updatedBits));
+        }
+
+        private Map<String, Object> snapshot() {
+            long responses = accepted.sum() + rejected.sum();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("shard", index);
+            stats.put("openConnections", listener.openConnections.get());
+            stats.put("connectionFailures", listener.connectionFailures.sum());
+            stats.put("inFlight", inFlight.get());
+            stats.put("sent", sent.sum());
+            stats.put("accepted", accepted.sum());
+            stats.put("rejected", rejected.sum());
+            stats.put("failed", failed.sum());
+            stats.put("writeFailures", listener.writeFailures.sum());
+            stats.put("avgLatencyMillis", responses == 0 ? 0.0 : toMillis(totalLatencyNanos.sum() / (double) responses));
+            stats.put("ewmaLatencyMillis", toMillis(Double.longBitsToDouble(ewmaLatencyNanosBits.get())));
+            stats.put("maxLatencyMillis", toMillis(maxLatencyNanos.get()));
+            return stats;
+        }
+
+        private static double toMillis(double nanos) {
+            return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+
+    /**
+     * Tracks the connection lifecycle that Pushy reports for one client.
+     */
+    private static final class ShardMetricsListener implements ApnsClientMetricsListener {
+        private final AtomicInteger openConnections = new AtomicInteger();
+        private final LongAdder connectionFailures = new LongAdder();
+        private final LongAdder writeFailures = new LongAdder();
+
+        @Override
+        public void handleWriteFailure(ApnsClient apnsClient, long notificationId) {
+            writeFailures.increment();
+        }
+
+        @Override
+        public void handleNotificationSent(ApnsClient apnsClient, long notificationId) {
+        }
+
+        @Override
+        public void handleNotificationAccepted(ApnsClient apnsClient, long notificationId) {
+        }
+
+        @Override
+        public void handleNotificationRejected(ApnsClient apnsClient, long notificationId) {
+        }
+
+        @Override
+        public void handleConnectionAdded(ApnsClient apnsClient) {
+            openConnections.incrementAndGet();
+        }
+
+        @Override
+        public void handleConnectionRemoved(ApnsClient apnsClient) {
+            openConnections.decrementAndGet();
+        }
+
+        @Override
+        public void handleConnectionCreationFailed(ApnsClient apnsClient) {
+            connectionFailures.increment();
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,226 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.service;
+
+import com.devinbroyal.mdm.config.TenantProperties;
+import com.devinbroyal.mdm.exception.MdmCommandException;
+import com.eatthepath.pushy.apns.ApnsClientBuilder;
+import com.eatthepath.pushy.apns.auth.ApnsSigningKey;
+import io.netty.channel.EventLoopGroup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Lazily creates one {@link ApnsClientPool} per (team, key, environment) so a single dispatcher can
+ * serve many tenants. A pool serves every topic of its credentials; the topic travels with each
+ * notification.
+ * <p>
+ * The signing keys of all configured tenants are read when the registry is created, so creating a
+ * pool on the dispatch path reads no files, and it happens outside any map lock. Pushy opens a
+ * pool's connections on its first send. All pools share one Netty event loop group. A pool that has
+ * had nothing in flight for the idle timeout is closed, and when more than {@code maxClients} pools
+ * are open the least recently used idle pools are closed first. A closed pool is simply recreated
+ * on its tenant's next push.
+ */
+final class ApnsClientRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ApnsClientRegistry.class);
+    private static final long MIN_LRU_IDLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, ApnsSigningKey> signingKeys = new HashMap<>();
+    private final EventLoopGroup eventLoopGroup;
+    private final int clientCount;
+    private final int connectionsPerClient;
+    private final long idleTimeoutNanos;
+    private final int maxClients;
+    private volatile boolean closed;
+
+    /**
+     * @param tenants Every tenant that will be pushed for; their signing keys are loaded now.
+     * @throws MdmCommandException if a tenant's signing key cannot be loaded.
+     */
+    ApnsClientRegistry(Collection<TenantProperties> tenants, EventLoopGroup eventLoopGroup, int clientCount, int connectionsPerClient,
+                       long idleTimeoutSeconds, int maxClients, ScheduledExecutorService scheduler) throws MdmCommandException {
+        for (TenantProperties tenant : tenants) {
+            if (!signingKeys.containsKey(tenant.getClientKey())) {
+                signingKeys.put(tenant.getClientKey(), loadSigningKey(tenant));
+            }
+        }
+        this.eventLoopGroup = eventLoopGroup;
+        this.clientCount = clientCount;
+        this.connectionsPerClient = connectionsPerClient;
+        this.idleTimeoutNanos = TimeUnit.SECONDS.toNanos(idleTimeoutSeconds);
+        this.maxClients = maxClients;
+        long sweepSeconds = Math.max(1, idleTimeoutSeconds / 4);
+        scheduler.scheduleWithFixedDelay(this::evictIdle, sweepSeconds, sweepSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Returns the pool for the tenant's credentials, creating it on first use, and marks it as
+     * recently used.
+     *
+     * @throws MdmCommandException if the tenant was not configured when the registry was created,
+     *                             its pool cannot be created, or the registry has been closed.
+     */
+    ApnsClientPool acquire(TenantProperties tenant) throws MdmCommandException {
+        final String key = tenant.getClientKey();
+        if (closed) {
+            throw new MdmCommandException("ApnsClient pools are shut down", null, null);
+        }
+        // Marking the pool as used inside the map keeps an idle sweep from closing it under us.
+        Entry entry = entries.computeIfPresent(key, (k, existing) -> {
+            existing.lastUsedNanos = System.nanoTime();
+            return existing;
+        });
+        if (entry == null) {
+            final Entry created = new Entry(createPool(tenant));
+            entry = entries.compute(key, (k, existing) -> {
+                Entry current = existing != null ? existing : created;
+                current.lastUsedNanos = System.nanoTime();
+                return current;
+            });
+            if (entry != created) {
+                // Another thread created the pool first.
+                created.pool.close();
+            }
+        }
+        if (entries.size() > maxClients) {
+            evictLeastRecentlyUsed();
+        }
+        return entry.pool;
+    }
+
+    Map<String, List<Map<String, Object>>> getStats() {
+        Map<String, List<Map<String, Object>>> stats = new LinkedHashMap<>();
+        entries.forEach((key, entry) -> stats.put(key, entry.pool.getStats()));
+        return stats;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    CompletableFuture<Void> close() {
+        closed = true;
+        List<CompletableFuture<Void>> closeFutures = new ArrayList<>();
+        for (String key : new ArrayList<>(entries.keySet())) {
+            Entry entry = entries.remove(key);
+            if (entry != null) {
+                closeFutures.add(entry.pool.close());
+            }
+        }
+        return CompletableFuture.allOf(closeFutures.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private ApnsClientPool createPool(TenantProperties tenant) throws MdmCommandException {
+        final ApnsSigningKey signingKey = signingKeys.get(tenant.getClientKey());
+        if (signingKey == null) {
+            throw new MdmCommandException("No APNs credentials configured for " + tenant.getClientKey(), null, null);
+        }
+        final String apnsHost = tenant.isProduction()
+                ? ApnsClientBuilder.PRODUCTION_APNS_HOST
+                : ApnsClientBuilder.DEVELOPMENT_APNS_HOST;
+        try {
+            ApnsClientPool pool = new ApnsClientPool(apnsHost, signingKey, clientCount, connectionsPerClient, eventLoopGroup);
+            logger.info("ApnsClient pool created for {} on host {} with {} clients x {} connections",
+                    tenant.getClientKey(), apnsHost, clientCount, connectionsPerClient);
+            return pool;
+        } catch (IOException | RuntimeException e) {
+            throw new MdmCommandException("Failed to initialize ApnsClient for " + tenant.getClientKey(), null, e);
+        }
+    }
+
+    private static ApnsSigningKey loadSigningKey(TenantProperties tenant) throws MdmCommandException {
+        try {
+            return ApnsSigningKey.loadFromPkcs8File(Paths.get(tenant.getAuthKeyPath()).toFile(), tenant.getTeamId(), tenant.getKeyId());
+        } catch (IOException | InvalidKeyException | NoSuchAlgorithmException | RuntimeException e) {
+            throw new MdmCommandException("Failed to load the APNs signing key for " + tenant.getClientKey(), null, e);
+        }
+    }
+
+    void evictIdle() {
+        final long now = System.nanoTime();
+        for (String key : entries.keySet()) {
+            evictIf(key, entry -> now - entry.lastUsedNanos >= idleTimeoutNanos);
+        }
+    }
+
+    private void evictLeastRecentlyUsed() {
+        while (entries.size() > maxClients) {
+            final long now = System.nanoTime();
+            String oldestKey = null;
+            long oldestIdleNanos = MIN_LRU_IDLE_NANOS - 1;
+            for (Map.Entry<String, Entry> candidate : entries.entrySet()) {
+                Entry entry = candidate.getValue();
+                long idleNanos = now - entry.lastUsedNanos;
+                if (entry.pool.getInFlight() == 0 && idleNanos > oldestIdleNanos) {
+                    oldestKey = candidate.getKey();
+                    oldestIdleNanos = idleNanos;
+                }
+            }
+            // Every pool is busy or was just used: tolerate the overshoot rather than cut off pushes.
+            if (oldestKey == null || !evictIf(oldestKey, entry -> now - entry.lastUsedNanos >= MIN_LRU_IDLE_NANOS)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes and closes the pool under {@code key} if it is idle and still matches the predicate.
+     * The check runs inside {@code computeIfPresent}, so it cannot race with {@link #acquire}.
+     */
+    private boolean evictIf(String key, Predicate<Entry> predicate) {
+        final Entry[] evicted = new Entry[1];
+        entries.computeIfPresent(key, (k, entry) -> {
+            if (entry.pool.getInFlight() == 0 && predicate.test(entry)) {
+                evicted[0] = entry;
+                return null;
+            }
+            return entry;
+        });
+        if (evicted[0] == null) {
+            return false;
+        }
+        logger.info("Closing idle ApnsClient pool for {}", key);
+        evicted[0].pool.close().whenComplete((ignored, error) -> {
+            if (error != null) {
+                logger.warn("Failed to cleanly close ApnsClient pool for {}", key, error);
+            }
+        });
+        return true;
+    }
+
+    private static final class Entry {
+        private final ApnsClientPool pool;
+        private volatile long lastUsedNanos;
+
+        private Entry(ApnsClientPool pool) {
+            this.pool = pool;
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -6,125 +6,583 @@
 package com.devinbroyal.mdm.service;
 
 import com.devinbroyal.mdm.config.MdmProperties;
+import com.devinbroyal.mdm.config.TenantProperties;
+import com.devinbroyal.mdm.domain.BatchSummary;
+import com.devinbroyal.mdm.domain.CheckInRequest;
+import com.devinbroyal.mdm.domain.CommandReport;
+import com.devinbroyal.mdm.domain.CommandPriority;
+import com.devinbroyal.mdm.domain.CommandRequest;
 import com.devinbroyal.mdm.domain.CommandResult;
+import com.devinbroyal.mdm.domain.InvalidToken;
 import com.devinbroyal.mdm.exception.MdmCommandException;
+import com.devinbroyal.mdm.exception.SendQueueFullException;
+import com.devinbroyal.mdm.persistence.AsyncExecutionHistoryRepository;
+import com.devinbroyal.mdm.persistence.BatchSummaryRepository;
 import com.devinbroyal.mdm.persistence.ExecutionHistoryRepository;
-import com.eatthepath.pushy.apns.ApnsClient;
-import com.eatthepath.pushy.apns.ApnsClientBuilder;
+import com.devinbroyal.mdm.persistence.InvalidTokenRepository;
 import com.eatthepath.pushy.apns.PushNotificationResponse;
-import com.eatthepath.pushy.apns.auth.ApnsSigningKey;
 import com.eatthepath.pushy.apns.util.SimpleApnsPushNotification;
 import com.eatthepath.pushy.apns.util.TokenUtil;
 import com.google.gson.Gson;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Paths;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 public class ApnsMdmService implements MdmService {
 
     private static final Logger logger = LoggerFactory.getLogger(ApnsMdmService.class);
-    private final ApnsClient apnsClient;
-    private final String topic;
+    private final ApnsClientRegistry clientRegistry;
+    private final EventLoopGroup eventLoopGroup;
+    private final TenantProperties defaultTenant;
+    private final Map<String, TenantProperties> tenants;
     private final ExecutorService notificationExecutor;
     private final ExecutionHistoryRepository historyRepository;
+    private final OutcomeRollups rollups;
+    private final BatchSummaryRepository batchSummaryRepository;
+    private final InvalidTokenRepository invalidTokenRepository;
+    private final LongAdder skippedInvalidTokens = new LongAdder();
+    private final InFlightLimiter inFlightLimiter;
+    private final AdaptiveConcurrencyLimit adaptiveLimit;
+    private final DeviceRateLimiter deviceRateLimiter;
+    private final LongAdder deviceRateDeferred = new LongAdder();
+    private final LongAdder deviceRateRefused = new LongAdder();
+    private final DeviceCommandQueues commandQueues;
+    private final RetryPolicy retryPolicy;
+    private final ScheduledExecutorService scheduler;
     private final Gson gson = new Gson();
+    private volatile boolean shuttingDown;
 
-    public ApnsMdmService(MdmProperties properties, ExecutorService notificationExecutor, ExecutionHistoryRepository historyRepository) throws MdmCommandException {
-        this.topic = Objects.requireNonNull(properties.getTopic(), "APNs topic cannot be null");
+    public ApnsMdmService(MdmProperties properties, ExecutorService notificationExecutor, ExecutionHistoryRepository historyRepository,
+                          BatchSummaryRepository batchSummaryRepository, InvalidTokenRepository invalidTokenRepository,
+                          OutcomeRollups rollups) throws MdmCommandException {
+        Objects.requireNonNull(properties.getTopic(), "APNs topic cannot be null");
+        this.defaultTenant = properties.getDefaultTenant();
+        this.tenants = Map.copyOf(properties.getTenants());
         this.notificationExecutor = Objects.requireNonNull(notificationExecutor, "ExecutorService cannot be null");
         this.historyRepository = Objects.requireNonNull(historyRepository, "ExecutionHistoryRepository cannot be null");
+        this.batchSummaryRepository = Objects.requireNonNull(batchSummaryRepository, "BatchSummaryRepository cannot be null");
+        this.invalidTokenRepository = Objects.requireNonNull(invalidTokenRepository, "InvalidTokenRepository cannot be null");
+        this.rollups = Objects.requireNonNull(rollups, "OutcomeRollups cannot be null");
+        this.inFlightLimiter = new InFlightLimiter(properties.getMaxInFlight(), properties.getMaxPending(), properties.getMaxPendingUrgent());
+        this.adaptiveLimit = properties.isAdaptiveLimit()
+                ? new AdaptiveConcurrencyLimit(inFlightLimiter, properties.getMinInFlight(), properties.getMaxInFlight(),
+                        properties.getLatencyThresholdMillis(), properties.getLimitBackoffRatio())
+                : null;
+        this.deviceRateLimiter = properties.getDeviceRatePerMinute() > 0
+                ? new DeviceRateLimiter(properties.getDeviceRateBurst(), properties.getDeviceRatePerMinute())
+                : null;
+        this.retryPolicy = new RetryPolicy(properties.getRetryMaxAttempts(), properties.getRetryBaseDelayMillis(), properties.getRetryMaxDelayMillis());
 
+        // One event loop group drives the connections of every tenant; threads beyond the core count buy nothing.
+        final int connections = properties.getApnsClientCount() * properties.getApnsConnectionsPerClient() * (1 + tenants.size());
+        this.eventLoopGroup = new NioEventLoopGroup(Math.min(connections, Runtime.getRuntime().availableProcessors()));
+
+        // Retries and rate-limited pushes wait on a timer rather than on a blocked thread; the same
+        // thread sweeps idle clients, per-device buckets and expired history and flushes the invalid
+        // token snapshot.
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "apns-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        final long flushSeconds = properties.getInvalidTokenFlushIntervalSeconds();
+        scheduler.scheduleWithFixedDelay(this::flushInvalidTokens, flushSeconds, flushSeconds, TimeUnit.SECONDS);
+        if (deviceRateLimiter != null) {
+            scheduler.scheduleWithFixedDelay(deviceRateLimiter::evictFull, 1, 1, TimeUnit.MINUTES);
+        }
+        scheduler.scheduleWithFixedDelay(this::evictExpiredHistory, 1, 1, TimeUnit.MINUTES);
+        this.commandQueues = properties.isCommandQueueing()
+                ? new DeviceCommandQueues(properties.getCheckInMaxCommands(), properties.getWakeUpIntervalSeconds())
+                : null;
+
+        final List<TenantProperties> allTenants = new ArrayList<>(tenants.values());
+        allTenants.add(defaultTenant);
         try {
-            final String apnsHost = properties.isProduction()
-                    ? ApnsClientBuilder.PRODUCTION_APNS_HOST
-                    : ApnsClientBuilder.DEVELOPMENT_APNS_HOST;
+            // Every tenant's signing key is read now, so that bad credentials fail at startup.
+            this.clientRegistry = new ApnsClientRegistry(allTenants, eventLoopGroup, properties.getApnsClientCount(), properties.getApnsConnectionsPerClient(),
+                    properties.getApnsClientIdleTimeoutSeconds(), properties.getApnsMaxTenantClients(), scheduler);
+            clientRegistry.acquire(defaultTenant);
+        } catch (MdmCommandException e) {
+            scheduler.shutdownNow();
+            eventLoopGroup.shutdownGracefully();
+            throw e;
+        }
+        logger.info("APNs dispatcher initialized for {} tenant(s) with an {} in-flight limit of {}", 1 + tenants.size(),
+                adaptiveLimit != null ? "adaptive" : "fixed", adaptiveLimit != null ? properties.getMinInFlight() + ".." + properties.getMaxInFlight() : properties.getMaxInFlight());
+    }
+
+    @Override
+    public void sendCommand(CommandRequest request) throws MdmCommandException {
+        final String deviceToken = Objects.requireNonNull(request.getDeviceToken(), "Device token cannot be null");
+        final Map<String, Object> payload = Objects.requireNonNull(request.getPayload(), "Payload cannot be null");
+        final TenantProperties tenant = resolveTenant(request.getTenant(), request.getTopic());
+        final CommandPriority priority = CommandPriority.resolve(request.getPriority(), payload, CommandPriority.NORMAL);
+
+        final String sanitizedToken = TokenUtil.sanitizeTokenString(deviceToken);
+        final String commandUUID = (String) payload.getOrDefault("CommandUUID", "UNKNOWN_UUID");
+        final String commandType = commandTypeOf(payload);
 
-            this.apnsClient = new ApnsClientBuilder()
-                    .setApnsServer(apnsHost)
-                    .setSigningKey(ApnsSigningKey.loadFromPkcs8File(
-                            Paths.get(properties.getAuthKeyPath()).toFile(),
-                            properties.getTeamId(),
-                            properties.getKeyId()))
-                    .build();
-            logger.info("ApnsClient initialized for host: {}", apnsHost);
-        } catch (IOException | InvalidKeyException | NoSuchAlgorithmException e) {
-            throw new MdmCommandException("Failed to initialize ApnsClient", null, e);
+        final InvalidToken invalidToken = findInvalidToken(sanitizedToken, tenant);
+        if (invalidToken != null) {
+            logger.info("Skipping MDM command {}: device token starting with {} was rejected by APNs as {}",
+                    commandUUID, getPartialTokenForLogging(sanitizedToken), invalidToken.getReason());
+            rejectKnownInvalid(OutboundPush.single(tenant, priority, sanitizedToken, commandUUID, commandType, null), invalidToken);
+            return;
         }
+        final String payloadJson = request.getPayloadJson() != null ? request.getPayloadJson() : gson.toJson(payload);
+
+        if (commandQueues != null) {
+            logger.info("Queueing {} MDM command {} for device token starting with {}", priority, commandUUID, getPartialTokenForLogging(sanitizedToken));
+            queue(OutboundPush.single(tenant, priority, sanitizedToken, commandUUID, commandType, payloadJson), request.getPushMagic());
+            return;
+        }
+
+        logger.info("Submitting {} MDM command {} to device token starting with {}", priority, commandUUID, getPartialTokenForLogging(sanitizedToken));
+
+        submit(OutboundPush.single(tenant, priority, sanitizedToken, commandUUID, commandType, payloadJson));
     }
 
     @Override
-    public void sendCommand(String deviceToken, Map<String, Object> payload) throws MdmCommandException {
-        Objects.requireNonNull(deviceToken, "Device token cannot be null");
+    public BatchSummary broadcastCommand(String tenantName, String topic, String priorityName, Map<String, Object> payload, Iterator<String> deviceTokens, boolean recordDetail) throws MdmCommandException {
         Objects.requireNonNull(payload, "Payload cannot be null");
+        Objects.requireNonNull(deviceTokens, "Device tokens cannot be null");
+        final TenantProperties tenant = resolveTenant(tenantName, topic);
+        final CommandPriority priority = CommandPriority.resolve(priorityName, payload, CommandPriority.BULK);
+
+        final PayloadTemplate template = PayloadTemplate.compile(gson, payload);
+        final String commandType = commandTypeOf(payload);
+        final BatchSummary batch = new BatchSummary(UUID.randomUUID().toString(), recordDetail);
+        batchSummaryRepository.save(batch);
+        logger.info("Starting {} broadcast {} (per-device detail {})", priority, batch.getBatchId(), recordDetail ? "enabled" : "disabled");
+
+        while (deviceTokens.hasNext()) {
+            final String deviceToken = deviceTokens.next();
+            if (deviceToken == null || deviceToken.isBlank()) {
+                batch.recordSkipped();
+                continue;
+            }
+            final String sanitizedToken = TokenUtil.sanitizeTokenString(deviceToken);
+            final OutboundPush push = OutboundPush.broadcast(tenant, priority, sanitizedToken, PayloadTemplate.newCommandUUID(), commandType, template, batch, recordDetail);
+            final InvalidToken invalidToken = findInvalidToken(sanitizedToken, tenant);
+            if (invalidToken != null) {
+                batch.recordSubmitted();
+                rejectKnownInvalid(push, invalidToken);
+                continue;
+            }
+            if (commandQueues != null) {
+                queue(push, null);
+            } else {
+                submit(push);
+            }
+            batch.recordSubmitted();
+        }
 
+        logger.info("Broadcast {} submitted to {} devices ({} skipped)", batch.getBatchId(), batch.getSubmitted(), batch.getSkipped());
+        return batch;
+    }
+
+    @Override
+    public List<String> checkIn(CheckInRequest request) {
+        if (commandQueues == null) {
+            throw new UnsupportedOperationException("Command queueing is not enabled (mdm.command.queue=false)");
+        }
+        final String deviceToken = Objects.requireNonNull(request.getDeviceToken(), "Device token cannot be null");
         final String sanitizedToken = TokenUtil.sanitizeTokenString(deviceToken);
-        final String payloadJson = gson.toJson(payload);
-        final String commandUUID = (String) payload.getOrDefault("CommandUUID", "UNKNOWN_UUID");
 
-        logger.info("Submitting MDM command {} to device token starting with {}", commandUUID, getPartialTokenForLogging(sanitizedToken));
+        // Map every status up front so that a malformed report leaves the queue untouched.
+        final List<CommandReport> reports = request.getReports();
+        final List<CommandResult.Status> statuses = new ArrayList<>(reports.size());
+        for (CommandReport report : reports) {
+            statuses.add(toStatus(report));
+        }
 
-        final SimpleApnsPushNotification pushNotification = new SimpleApnsPushNotification(
-                sanitizedToken,
-                this.topic,
-                payloadJson.getBytes(StandardCharsets.UTF_8));
-        
-        CompletableFuture.runAsync(() -> {
-            try {
-                final PushNotificationResponse<SimpleApnsPushNotification> response = apnsClient.sendNotification(pushNotification).get();
-                handleApnsResponse(response, sanitizedToken, commandUUID);
-            } catch (Exception e) {
-                logger.error("Failed to send notification for command {} to device {}", commandUUID, getPartialTokenForLogging(sanitizedToken), e);
-                CommandResult result = new CommandResult(commandUUID, CommandResult.Status.FAILED_TO_SEND, e.getMessage());
+        final List<OutboundPush> deferred = new ArrayList<>();
+        for (int i = 0; i < reports.size(); i++) {
+            final CommandReport report = reports.get(i);
+            final CommandResult.Status status = statuses.get(i);
+            final OutboundPush command = commandQueues.resolve(sanitizedToken, report.getCommandUUID());
+            if (command == null) {
+                // Not fetched from this instance (e.g. before a restart); the history still gets the outcome.
+                logger.debug("Device {} reported {} for unknown command {}", getPartialTokenForLogging(sanitizedToken), status, report.getCommandUUID());
+                final CommandResult result = new CommandResult(report.getCommandUUID(), status, report.describeError(), 0);
+                rollups.record(null, result);
                 historyRepository.recordResult(sanitizedToken, result);
+                continue;
+            }
+            recordResult(command, new CommandResult(command.getCommandUUID(), status, report.describeError(), command.getAttempt()));
+            if (status == CommandResult.Status.NOT_NOW) {
+                command.nextAttempt();
+                deferred.add(command);
+            }
+        }
+
+        final List<OutboundPush> commands = commandQueues.checkIn(sanitizedToken, deferred);
+        final List<String> payloads = new ArrayList<>(commands.size());
+        for (OutboundPush command : commands) {
+            payloads.add(command.renderPayload());
+        }
+        logger.debug("Device {} checked in with {} report(s); delivering {} command(s)", getPartialTokenForLogging(sanitizedToken), reports.size(), payloads.size());
+        return payloads;
+    }
+
+    private static CommandResult.Status toStatus(CommandReport report) {
+        if (report.getCommandUUID() == null || report.getCommandUUID().isBlank()) {
+            throw new IllegalArgumentException("Command report without CommandUUID");
+        }
+        final String status = report.getStatus() == null ? "" : report.getStatus();
+        switch (status) {
+            case CommandReport.ACKNOWLEDGED:
+                return CommandResult.Status.ACKNOWLEDGED;
+            case CommandReport.ERROR:
+            case CommandReport.COMMAND_FORMAT_ERROR:
+                return CommandResult.Status.ERROR;
+            case CommandReport.NOT_NOW:
+                return CommandResult.Status.NOT_NOW;
+            default:
+                throw new IllegalArgumentException("Unknown command status: " + report.getStatus());
+        }
+    }
+
+    /**
+     * @return The payload's {@code Command.RequestType}, under which the command's outcomes are
+     *         rolled up, or {@code null} if it has none.
+     */
+    private static String commandTypeOf(Map<String, Object> payload) {
+        final Object command = payload.get("Command");
+        final Object requestType = command instanceof Map ? ((Map<?, ?>) command).get("RequestType") : null;
+        return requestType instanceof String ? (String) requestType : null;
+    }
+
+    /**
+     * Puts the command in its device's queue and, unless the device has already been woken and not
+     * yet checked in, pushes a wake-up to it. Urgent commands always push.
+     */
+    private void queue(OutboundPush command, String pushMagic) throws MdmCommandException {
+        recordResult(command, new CommandResult(command.getCommandUUID(), CommandResult.Status.QUEUED, null, 0));
+        if (commandQueues.enqueue(command)) {
+            final String wakeUpJson = gson.toJson(Map.of("mdm", pushMagic == null ? "" : pushMagic));
+            submit(OutboundPush.wakeUp(command.getTenant(), command.getPriority(), command.getDeviceToken(), wakeUpJson));
+        }
+    }
+
+    /**
+     * Maps a request's tenant and topic selectors onto the credentials to send with.
+     *
+     * @throws IllegalArgumentException if the tenant is not configured, or the topic is not one it
+     *                                  may push to.
+     */
+    private TenantProperties resolveTenant(String tenantName, String topic) {
+        TenantProperties tenant;
+        if (tenantName == null || tenantName.isBlank() || MdmProperties.DEFAULT_TENANT.equals(tenantName)) {
+            tenant = defaultTenant;
+        } else {
+            tenant = tenants.get(tenantName);
+            if (tenant == null) {
+                throw new IllegalArgumentException("Unknown tenant: " + tenantName);
+            }
+        }
+        if (topic == null || topic.isBlank() || topic.equals(tenant.getTopic())) {
+            return tenant;
+        }
+        if (!tenant.isTopicAllowed(topic)) {
+            throw new IllegalArgumentException("Topic not allowed for this tenant: " + topic);
+        }
+        return tenant.withTopic(topic);
+    }
+
+    /**
+     * @return The entry for a token APNs has already rejected as unusable for the tenant's topic, or
+     *         {@code null} if the push should go ahead.
+     */
+    private InvalidToken findInvalidToken(String deviceToken, TenantProperties tenant) {
+        return invalidTokenRepository.find(tenant.getClientKey(), tenant.getTopic(), deviceToken).orElse(null);
+    }
+
+    private void rejectKnownInvalid(OutboundPush push, InvalidToken invalidToken) {
+        skippedInvalidTokens.increment();
+        recordResult(push, new CommandResult(push.getCommandUUID(), CommandResult.Status.REJECTED, invalidToken.getReason(), 0));
+    }
+
+    /**
+     * Applies the per-device rate limit and queues the push for an in-flight slot.
+     *
+     * @throws SendQueueFullException if the push is urgent and the urgent queue is full.
+     */
+    private void submit(OutboundPush push) throws MdmCommandException {
+        // Lost-device commands are rare and must not wait behind a device's earlier traffic. Asking
+        // for the urgent lane explicitly does not lift the limit. Wake-ups are already limited to one
+        // per device per wake-up interval.
+        if (deviceRateLimiter != null && !push.isWakeUp()
+                && !(push.getPriority() == CommandPriority.URGENT && CommandPriority.isUrgentRequestType(push.getCommandType()))) {
+            final long delayNanos = deviceRateLimiter.reserve(push.getDeviceToken());
+            if (delayNanos == DeviceRateLimiter.REFUSED) {
+                deviceRateRefused.increment();
+                logger.warn("Refusing command {} for device {}: too many pushes already waiting for this device",
+                        push.getCommandUUID(), getPartialTokenForLogging(push.getDeviceToken()));
+                recordResult(push, new CommandResult(push.getCommandUUID(), CommandResult.Status.THROTTLED, "DeviceRateLimited", 0));
+                return;
             }
-        }, notificationExecutor);
+            if (delayNanos > 0) {
+                deviceRateDeferred.increment();
+                try {
+                    scheduler.schedule(() -> inFlightLimiter.requeue(() -> dispatch(push), push.getPriority()), delayNanos, TimeUnit.NANOSECONDS);
+                } catch (RejectedExecutionException e) {
+                    throw new MdmCommandException("Dispatcher is shutting down", push.getDeviceToken(), e);
+                }
+                return;
+            }
+        }
+        try {
+            inFlightLimiter.submit(() -> dispatch(push), push.getPriority());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MdmCommandException("Interrupted while waiting for send queue capacity", push.getDeviceToken(), e);
+        } catch (RejectedExecutionException e) {
+            throw new SendQueueFullException(e.getMessage(), push.getDeviceToken(), e);
+        }
     }
-    
-    private void handleApnsResponse(PushNotificationResponse<SimpleApnsPushNotification> response, String deviceToken, String commandUUID) {
+
+    /**
+     * Hands the notification to the APNs client and attaches the response handling as completion
+     * stages. No thread waits on the round trip; history bookkeeping runs on the notification
+     * executor, and the in-flight permit is returned once the outcome has been recorded.
+     */
+    private void dispatch(OutboundPush push) {
+        CompletableFuture<PushNotificationResponse<SimpleApnsPushNotification>> sendFuture;
+        final long startNanos = System.nanoTime();
+        // Only failures after the push reached the client say anything about APNs or the network.
+        boolean handedOver = false;
+        try {
+            if (shuttingDown) {
+                throw new MdmCommandException("Dispatcher is shutting down", push.getDeviceToken(), null);
+            }
+            final SimpleApnsPushNotification pushNotification = new SimpleApnsPushNotification(
+                    push.getDeviceToken(),
+                    push.getTenant().getTopic(),
+                    push.renderPayload());
+            sendFuture = clientRegistry.acquire(push.getTenant()).send(pushNotification);
+            handedOver = true;
+        } catch (MdmCommandException | RuntimeException e) {
+            sendFuture = CompletableFuture.failedFuture(e);
+        }
+
+        final boolean sent = handedOver;
+        sendFuture.whenComplete((response, error) -> {
+            if (adaptiveLimit != null) {
+                if (response != null) {
+                    adaptiveLimit.onResponse(System.nanoTime() - startNanos,
+                            "TooManyRequests".equals(response.getRejectionReason().orElse(null)));
+                } else {
+                    final Throwable cause = unwrap(error);
+                    if (sent && ApnsRejectionClassifier.isRetryable(cause)) {
+                        adaptiveLimit.onDrop(ApnsRejectionClassifier.reasonOf(cause));
+                    }
+                }
+            }
+            final Runnable outcome = () -> {
+                try {
+                    if (error != null) {
+                        handleSendFailure(unwrap(error), push);
+                    } else {
+                        handleApnsResponse(response, push);
+                    }
+                } catch (RuntimeException e) {
+                    logger.error("Failed to record the outcome of command {} for device {}", push.getCommandUUID(), getPartialTokenForLogging(push.getDeviceToken()), e);
+                } finally {
+                    inFlightLimiter.release();
+                }
+            };
+            try {
+                notificationExecutor.execute(outcome);
+            } catch (RejectedExecutionException e) {
+                // Every outcome waiting for the pool holds an in-flight permit, and its queue has room
+                // for apns.max.in.flight of them, so it refuses only while the dispatcher shuts down. The
+                // outcome is then recorded here rather than lost.
+                outcome.run();
+            }
+        });
+    }
+
+    private void handleSendFailure(Throwable error, OutboundPush push) {
+        if (!shuttingDown && ApnsRejectionClassifier.isRetryable(error) && retryPolicy.hasAttemptsLeft(push.getAttempt())) {
+            scheduleRetry(push, ApnsRejectionClassifier.reasonOf(error));
+            return;
+        }
+        logger.error("Failed to send notification for command {} to device {} after {} attempt(s)",
+                push.getCommandUUID(), getPartialTokenForLogging(push.getDeviceToken()), push.getAttempt(), error);
+        recordResult(push, new CommandResult(push.getCommandUUID(), CommandResult.Status.FAILED_TO_SEND, ApnsRejectionClassifier.reasonOf(error), push.getAttempt()));
+    }
+
+    private void handleApnsResponse(PushNotificationResponse<SimpleApnsPushNotification> response, OutboundPush push) {
+        final String deviceToken = push.getDeviceToken();
+        final String commandUUID = push.getCommandUUID();
         CommandResult result;
         if (response.isAccepted()) {
-            logger.info("Command {} for device {} accepted by APNs.", commandUUID, getPartialTokenForLogging(deviceToken));
-            result = new CommandResult(commandUUID, CommandResult.Status.ACCEPTED, null);
+            if (push.getBatch() == null) {
+                logger.info("Command {} for device {} accepted by APNs.", commandUUID, getPartialTokenForLogging(deviceToken));
+            } else {
+                logger.debug("Broadcast {} command {} for device {} accepted by APNs.", push.getBatch().getBatchId(), commandUUID, getPartialTokenForLogging(deviceToken));
+            }
+            result = new CommandResult(commandUUID, CommandResult.Status.ACCEPTED, null, push.getAttempt());
         } else {
             final String rejectionReason = response.getRejectionReason().orElse("Unknown reason");
+            if (ApnsRejectionClassifier.isRetryable(rejectionReason) && retryPolicy.hasAttemptsLeft(push.getAttempt())) {
+                scheduleRetry(push, rejectionReason);
+                return;
+            }
             logger.warn("Command {} for device {} rejected by APNs. Reason: {}", commandUUID, getPartialTokenForLogging(deviceToken), rejectionReason);
-            response.getTokenInvalidationTimestamp().ifPresent(timestamp ->
-                    logger.error("Token for device {} was invalidated at {}. It should be removed from the system.", getPartialTokenForLogging(deviceToken), timestamp)
-            );
-            result = new CommandResult(commandUUID, CommandResult.Status.REJECTED, rejectionReason);
+            if (ApnsRejectionClassifier.isInvalidToken(rejectionReason)) {
+                final Instant invalidatedAt = response.getTokenInvalidationTimestamp().orElse(null);
+                invalidTokenRepository.save(new InvalidToken(deviceToken, push.getTenant().getClientKey(), push.getTenant().getTopic(), rejectionReason, invalidatedAt, Instant.now()));
+                logger.info("Token for device {} is no longer valid{}; further pushes to it will be skipped.",
+                        getPartialTokenForLogging(deviceToken), invalidatedAt == null ? "" : " since " + invalidatedAt);
+            }
+            result = new CommandResult(commandUUID, CommandResult.Status.REJECTED, rejectionReason, push.getAttempt());
+        }
+        recordResult(push, result);
+    }
+
+    /**
+     * Records the failed attempt and arms a timer that puts the push back into the send queue once
+     * its backoff has elapsed.
+     */
+    private void scheduleRetry(OutboundPush push, String reason) {
+        final long delayMillis = retryPolicy.nextDelayMillis(push.getAttempt());
+        logger.warn("Attempt {} of command {} for device {} failed ({}). Retrying in {} ms.",
+                push.getAttempt(), push.getCommandUUID(), getPartialTokenForLogging(push.getDeviceToken()), reason, delayMillis);
+        recordResult(push, new CommandResult(push.getCommandUUID(), CommandResult.Status.RETRYING, reason, push.getAttempt()));
+        push.nextAttempt();
+        try {
+            scheduler.schedule(() -> inFlightLimiter.requeue(() -> dispatch(push), push.getPriority()), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            recordResult(push, new CommandResult(push.getCommandUUID(), CommandResult.Status.FAILED_TO_SEND, "Dispatcher is shutting down", push.getAttempt()));
+        }
+    }
+
+    private void recordResult(OutboundPush push, CommandResult result) {
+        if (push.isWakeUp()) {
+            if (result.getStatus().isTerminal() && result.getStatus() != CommandResult.Status.ACCEPTED) {
+                // The device cannot be woken, so nothing waiting in its queue will be fetched.
+                for (OutboundPush command : commandQueues.drainPending(push.getDeviceToken())) {
+                    recordResult(command, new CommandResult(command.getCommandUUID(), result.getStatus(), result.getRejectionReason(), 0));
+                }
+            }
+            return;
+        }
+        rollups.record(push.getCommandType(), result);
+        if (push.getBatch() != null) {
+            push.getBatch().recordResult(result);
+        }
+        if (push.isRecordDetail()) {
+            historyRepository.recordResult(push.getDeviceToken(), push.getBatch() != null ? result.withBatchId(push.getBatch().getBatchId()) : result);
         }
-        historyRepository.recordResult(deviceToken, result);
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> sendQueue = new LinkedHashMap<>();
+        sendQueue.put("inFlight", inFlightLimiter.getInFlight());
+        sendQueue.put("inFlightLimit", inFlightLimiter.getLimit());
+        sendQueue.put("adaptiveLimit", adaptiveLimit != null ? adaptiveLimit.snapshot() : Map.of("enabled", false));
+        sendQueue.put("pending", inFlightLimiter.getPending());
+        sendQueue.put("maxPending", inFlightLimiter.getMaxPending());
+        sendQueue.put("maxPendingUrgent", inFlightLimiter.getMaxPendingUrgent());
+        sendQueue.put("urgentRefused", inFlightLimiter.getUrgentRefused());
+        sendQueue.put("maxAttempts", retryPolicy.getMaxAttempts());
+        sendQueue.put("lanes", inFlightLimiter.getLaneStats());
+
+        Map<String, Object> invalidTokens = new LinkedHashMap<>();
+        invalidTokens.put("known", invalidTokenRepository.size());
+        invalidTokens.put("skippedSends", skippedInvalidTokens.sum());
+
+        Map<String, Object> deviceRate = new LinkedHashMap<>();
+        deviceRate.put("enabled", deviceRateLimiter != null);
+        deviceRate.put("trackedDevices", deviceRateLimiter != null ? deviceRateLimiter.size() : 0);
+        deviceRate.put("deferred", deviceRateDeferred.sum());
+        deviceRate.put("refused", deviceRateRefused.sum());
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("sendQueue", sendQueue);
+        metrics.put("commandQueues", commandQueues != null ? commandQueues.snapshot() : Map.of("enabled", false));
+        metrics.put("deviceRateLimit", deviceRate);
+        metrics.put("invalidTokens", invalidTokens);
+        metrics.put("historyWriter", historyRepository instanceof AsyncExecutionHistoryRepository
+                ? ((AsyncExecutionHistoryRepository) historyRepository).snapshot() : Map.of("enabled", false));
+        metrics.put("apnsClients", clientRegistry.getStats());
+        return metrics;
     }
 
     @Override
     public void shutdown() {
-        if (this.apnsClient != null) {
-            logger.info("Shutting down ApnsClient...");
-            final CompletableFuture<Void> closeFuture = this.apnsClient.close();
-            try {
-                closeFuture.get();
-                logger.info("ApnsClient shut down successfully.");
-            } catch (Exception e) {
-                logger.error("Failed to cleanly shut down ApnsClient.", e);
+        shuttingDown = true;
+        scheduler.shutdownNow();
+        if (inFlightLimiter.getPending() > 0) {
+            logger.warn("Failing {} queued notifications that were never sent.", inFlightLimiter.getPending());
+        }
+        inFlightLimiter.shutdown();
+        logger.info("Shutting down {} ApnsClient pool(s)...", clientRegistry.size());
+        try {
+            this.clientRegistry.close().get();
+            logger.info("ApnsClient pools shut down successfully.");
+        } catch (Exception e) {
+            logger.error("Failed to cleanly shut down ApnsClient pools.", e);
+        }
+        this.eventLoopGroup.shutdownGracefully();
+        flushInvalidTokens();
+    }
+
+    private void flushInvalidTokens() {
+        try {
+            invalidTokenRepository.flush();
+        } catch (RuntimeException e) {
+            // An exception would cancel the periodic flush; log it and try again next time.
+            logger.error("Failed to flush invalid device tokens", e);
+        }
+    }
+
+    private void evictExpiredHistory() {
+        try {
+            int evicted = historyRepository.evictExpired();
+            if (evicted > 0) {
+                logger.debug("Dropped {} expired results from the execution history", evicted);
             }
+        } catch (RuntimeException e) {
+            logger.error("Failed to drop expired execution history", e);
         }
     }
-    
+
     private String getPartialTokenForLogging(String token) {
         if (token == null || token.length() <= 8) {
             return "****";
         }
         return token.substring(0, 4);
     }
+
+    private static Throwable unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
 }
 /*
  * Copyright © 2025 Devin B. Royal.
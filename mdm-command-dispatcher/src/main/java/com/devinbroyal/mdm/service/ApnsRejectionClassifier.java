@@ -0,0 +1,77 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.service;
+
+import java.util.Set;
+
+/**
+ * Classifies the rejection reasons returned by APNs.
+ *
+ * @see <a href="https://developer.apple.com/documentation/usernotifications/handling-notification-responses-from-apns">Handling notification responses from APNs</a>
+ */
+final class ApnsRejectionClassifier {
+
+    /**
+     * Reasons that describe a transient condition on the APNs side; the same push may succeed later.
+     */
+    private static final Set<String> RETRYABLE_REASONS = Set.of(
+            "TooManyRequests",
+            "ServiceUnavailable",
+            "InternalServerError",
+            "Shutdown",
+            "IdleTimeout",
+            "ExpiredProviderToken");
+
+    /**
+     * Reasons that mean the device token itself will never accept a push for this topic again.
+     */
+    private static final Set<String> INVALID_TOKEN_REASONS = Set.of(
+            "BadDeviceToken",
+            "Unregistered",
+            "DeviceTokenNotForTopic");
+
+    private ApnsRejectionClassifier() {
+        // Prevent instantiation
+    }
+
+    /**
+     * @return Whether a push rejected for this reason may be retried. Unknown reasons are treated as
+     *         permanent so that a misclassified payload error is never hammered at APNs.
+     */
+    static boolean isRetryable(String rejectionReason) {
+        return rejectionReason != null && RETRYABLE_REASONS.contains(rejectionReason);
+    }
+
+    /**
+     * @return Whether a push that failed with this exception, rather than an APNs rejection, may be
+     *         retried. Transport failures are transient; a notification the client refused to build
+     *         will be refused again.
+     */
+    static boolean isRetryable(Throwable sendFailure) {
+        return !(sendFailure instanceof IllegalArgumentException || sendFailure instanceof NullPointerException);
+    }
+
+    /**
+     * @return The reason to record for a push that failed with this exception rather than an APNs
+     *         rejection: the exception's class, not its message, which may carry addresses, tokens
+     *         or counts and would give every failure a reason of its own.
+     */
+    static String reasonOf(Throwable sendFailure) {
+        return sendFailure.getClass().getSimpleName();
+    }
+
+    /**
+     * @return Whether the rejection proves the device token is no longer usable.
+     */
+    static boolean isInvalidToken(String rejectionReason) {
+        return rejectionReason != null && INVALID_TOKEN_REASONS.contains(rejectionReason);
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
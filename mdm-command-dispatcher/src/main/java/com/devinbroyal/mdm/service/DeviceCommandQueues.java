@@ -0,0 +1,242 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.service;
+
+import com.devinbroyal.mdm.domain.CommandPriority;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Holds the commands waiting for each device to check in, in memory and without locks: every device
+ * has a lock-free deque of pending commands and a map of the commands it has fetched but not yet
+ * reported on.
+ * <p>
+ * A check-in requeues any fetched command the device did not report on (its response was lost),
+ * then hands over the whole queue, up to a per-check-in maximum, in one round trip. Commands the
+ * device answered with {@code NotNow} go back to the front of the queue after that, so they are
+ * offered again at the next check-in rather than immediately.
+ * <p>
+ * Only the first command queued for a sleeping device asks for a wake-up push; later commands ride
+ * along until the device checks in or the wake-up interval passes without a check-in, and are
+ * counted as coalesced. Urgent commands always ask for a push. An empty
+ * queue is removed by the thread that emptied it. An enqueuer that raced with the removal finds the
+ * queue marked retired, takes its command back and retries against a fresh queue.
+ */
+final class DeviceCommandQueues {
+
+    private static final long NEVER = Long.MIN_VALUE;
+
+    private final Map<String, DeviceQueue> queues = new ConcurrentHashMap<>();
+    private final int maxCommandsPerCheckIn;
+    private final long wakeUpIntervalNanos;
+    private final LongSupplier nanoClock;
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder awaitingResult = new LongAdder();
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder wakeUps = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder checkIns = new LongAdder();
+
+    DeviceCommandQueues(int maxCommandsPerCheckIn, long wakeUpIntervalSeconds) {
+        this(maxCommandsPerCheckIn, wakeUpIntervalSeconds, System::nanoTime);
+    }
+
+    DeviceCommandQueues(int maxCommandsPerCheckIn, long wakeUpIntervalSeconds, LongSupplier nanoClock) {
+        if (maxCommandsPerCheckIn < 1 || wakeUpIntervalSeconds < 1) {
+            throw new IllegalArgumentException("Commands per check-in and wake-up interval must be at least 1, were "
+                    + maxCommandsPerCheckIn + " and " + wakeUpIntervalSeconds);
+        }
+        this.maxCommandsPerCheckIn = maxCommandsPerCheckIn;
+        this.wakeUpIntervalNanos = TimeUnit.SECONDS.toNanos(wakeUpIntervalSeconds);
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Appends the command to its device's queue.
+     *
+     * @return Whether the device should be sent a wake-up push, i.e. the command is urgent or no
+     *         push has been sent to the device since its last check-in, or not within the wake-up
+     *         interval.
+     */
+    boolean enqueue(OutboundPush command) {
+        final String deviceToken = command.getDeviceToken();
+        while (true) {
+            DeviceQueue queue = queues.computeIfAbsent(deviceToken, token -> new DeviceQueue());
+            queue.pending.offerLast(command);
+            if (!queue.retired) {
+                queued.increment();
+                enqueued.increment();
+                return claimWakeUp(queue, command.getPriority() == CommandPriority.URGENT);
+            }
+            if (!queue.pending.removeFirstOccurrence(command)) {
+                // A concurrent check-in already took it, so it has been delivered.
+                enqueued.increment();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Takes a fetched command off the device's list of commands awaiting a report.
+     *
+     * @return The command, or {@code null} if the device has no such command outstanding.
+     */
+    OutboundPush resolve(String deviceToken, String commandUUID) {
+        final DeviceQueue queue = queues.get(deviceToken);
+        if (queue == null || commandUUID == null) {
+            return null;
+        }
+        final OutboundPush command = queue.fetched.remove(commandUUID);
+        if (command != null) {
+            awaitingResult.decrement();
+        }
+        return command;
+    }
+
+    /**
+     * Hands the device everything in its queue, up to the per-check-in maximum, after putting back
+     * the commands it fetched last time but did not report on. Call {@link #resolve(String, String)}
+     * for every reported command first.
+     *
+     * @param deferred Commands the device answered with {@code NotNow}; they are queued again behind
+     *                 the commands delivered now.
+     * @return The commands to deliver, in queue order.
+     */
+    List<OutboundPush> checkIn(String deviceToken, List<OutboundPush> deferred) {
+        checkIns.increment();
+        final DeviceQueue queue = deferred.isEmpty() ? queues.get(deviceToken) : queues.computeIfAbsent(deviceToken, token -> new DeviceQueue());
+        if (queue == null) {
+            return Collections.emptyList();
+        }
+        queue.lastWakeUpNanos.set(NEVER);
+
+        final List<OutboundPush> unreported = new ArrayList<>(queue.fetched.values());
+        for (OutboundPush command : unreported) {
+            if (queue.fetched.remove(command.getCommandUUID(), command)) {
+                awaitingResult.decrement();
+                command.nextAttempt();
+            }
+        }
+        requeueFirst(queue, unreported);
+
+        final List<OutboundPush> batch = new ArrayList<>();
+        OutboundPush next;
+        while (batch.size() < maxCommandsPerCheckIn && (next = queue.pending.pollFirst()) != null) {
+            queued.decrement();
+            if (queue.fetched.putIfAbsent(next.getCommandUUID(), next) != null) {
+                // The device still owes a report on another command with this UUID; hold this one back.
+                queue.pending.offerFirst(next);
+                queued.increment();
+                break;
+            }
+            awaitingResult.increment();
+            batch.add(next);
+        }
+        delivered.add(batch.size());
+
+        requeueFirst(queue, deferred);
+        retireIfEmpty(deviceToken, queue);
+        return batch;
+    }
+
+    /**
+     * Removes every command still waiting in the device's queue, e.g. because the device can no
+     * longer be woken. Commands already fetched stay outstanding.
+     */
+    List<OutboundPush> drainPending(String deviceToken) {
+        final DeviceQueue queue = queues.get(deviceToken);
+        if (queue == null) {
+            return Collections.emptyList();
+        }
+        final List<OutboundPush> drained = new ArrayList<>();
+        OutboundPush next;
+        while ((next = queue.pending.pollFirst()) != null) {
+            queued.decrement();
+            drained.add(next);
+        }
+        retireIfEmpty(deviceToken, queue);
+        return drained;
+    }
+
+    Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", true);
+        stats.put("devices", queues.size());
+        stats.put("queued", queued.sum());
+        stats.put("awaitingResult", awaitingResult.sum());
+        stats.put("enqueued", enqueued.sum());
+        stats.put("delivered", delivered.sum());
+        stats.put("checkIns", checkIns.sum());
+        stats.put("wakeUps", wakeUps.sum());
+        stats.put("coalesced", coalesced.sum());
+        return stats;
+    }
+
+    private boolean claimWakeUp(DeviceQueue queue, boolean urgent) {
+        final long now = nanoClock.getAsLong();
+        long last;
+        do {
+            last = queue.lastWakeUpNanos.get();
+            if (last != NEVER && now - last < wakeUpIntervalNanos) {
+                if (urgent) {
+                    wakeUps.increment();
+                    return true;
+                }
+                coalesced.increment();
+                return false;
+            }
+        } while (!queue.lastWakeUpNanos.compareAndSet(last, now));
+        wakeUps.increment();
+        return true;
+    }
+
+    private void requeueFirst(DeviceQueue queue, List<OutboundPush> commands) {
+        for (int i = commands.size() - 1; i >= 0; i--) {
+            queue.pending.offerFirst(commands.get(i));
+            queued.increment();
+        }
+    }
+
+    private void retireIfEmpty(String deviceToken, DeviceQueue queue) {
+        if (!queue.isEmpty()) {
+            return;
+        }
+        queue.retired = true;
+        if (queue.isEmpty()) {
+            queues.remove(deviceToken, queue);
+        } else {
+            // An enqueuer got in first; it will see the flag and retry, finding the queue still mapped.
+            queue.retired = false;
+        }
+    }
+
+    private static final class DeviceQueue {
+        private final ConcurrentLinkedDeque<OutboundPush> pending = new ConcurrentLinkedDeque<>();
+        private final Map<String, OutboundPush> fetched = new ConcurrentHashMap<>();
+        private final AtomicLong lastWakeUpNanos = new AtomicLong(NEVER);
+        private volatile boolean retired;
+
+        private boolean isEmpty() {
+            return pending.isEmpty() && fetched.isEmpty();
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
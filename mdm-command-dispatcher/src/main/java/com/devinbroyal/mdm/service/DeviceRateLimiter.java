@@ -0,0 +1,106 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket per device token, so that a burst of commands for one device is spread out
+ * instead of tripping APNs' per-device throttling.
+ * <p>
+ * A push that finds the bucket empty reserves the next token anyway and is told how long to wait
+ * for it, so deferred pushes to one device go out evenly spaced. At most {@code burst} pushes may
+ * be waiting per device; beyond that the push is refused. Buckets that have refilled completely
+ * hold no information and are removed by {@link #evictFull()}.
+ */
+final class DeviceRateLimiter {
+
+    /** Returned by {@link #reserve(String)} when the device already has a full backlog. */
+    static final long REFUSED = -1;
+
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final double burst;
+    private final double tokensPerNano;
+    private final LongSupplier nanoClock;
+
+    DeviceRateLimiter(int burst, int ratePerMinute) {
+        this(burst, ratePerMinute, System::nanoTime);
+    }
+
+    DeviceRateLimiter(int burst, int ratePerMinute, LongSupplier nanoClock) {
+        if (burst < 1 || ratePerMinute < 1) {
+            throw new IllegalArgumentException("Burst and rate must be at least 1, were " + burst + " and " + ratePerMinute);
+        }
+        this.burst = burst;
+        this.tokensPerNano = ratePerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Takes a token for the device.
+     *
+     * @return 0 to send now, a positive number of nanoseconds to wait before sending, or
+     *         {@link #REFUSED}.
+     */
+    long reserve(String deviceToken) {
+        final long now = nanoClock.getAsLong();
+        final long[] delay = new long[1];
+        buckets.compute(deviceToken, (token, bucket) -> {
+            Bucket current = bucket != null ? bucket : new Bucket(burst, now);
+            current.refill(now, burst, tokensPerNano);
+            if (current.tokens >= 1.0) {
+                current.tokens -= 1.0;
+            } else if (current.tokens - 1.0 >= -burst) {
+                current.tokens -= 1.0;
+                delay[0] = (long) Math.ceil(-current.tokens / tokensPerNano);
+            } else {
+                delay[0] = REFUSED;
+            }
+            return current;
+        });
+        return delay[0];
+    }
+
+    /**
+     * Drops every bucket that has refilled to capacity.
+     */
+    void evictFull() {
+        final long now = nanoClock.getAsLong();
+        for (String deviceToken : buckets.keySet()) {
+            buckets.computeIfPresent(deviceToken, (token, bucket) -> {
+                bucket.refill(now, burst, tokensPerNano);
+                return bucket.tokens >= burst ? null : bucket;
+            });
+        }
+    }
+
+    int size() {
+        return buckets.size();
+    }
+
+    private static final class Bucket {
+        private double tokens;
+        private long refilledAtNanos;
+
+        private Bucket(double tokens, long refilledAtNanos) {
+            this.tokens = tokens;
+            this.refilledAtNanos = refilledAtNanos;
+        }
+
+        private void refill(long now, double burst, double tokensPerNano) {
+            tokens = Math.min(burst, tokens + (now - refilledAtNanos) * tokensPerNano);
+            refilledAtNanos = now;
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
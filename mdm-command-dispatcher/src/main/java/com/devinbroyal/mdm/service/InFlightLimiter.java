@@ -0,0 +1,332 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.service;
+
+import com.devinbroyal.mdm.domain.CommandPriority;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounds the number of APNs pushes that are in flight at any moment without parking threads.
+ * <p>
+ * Sends that cannot start immediately are queued and started by whichever thread releases a
+ * permit, so throughput is governed by the configured limit rather than by a thread count. The
+ * queue itself is bounded: once it is full, submitters block until a queued send has started,
+ * which pushes back on callers such as a streaming batch upload instead of growing the heap.
+ * Retries re-enter through {@link #requeue(Runnable, CommandPriority)}, which never blocks: a retry
+ * was admitted once already, and its timer thread must not stall behind new work.
+ * <p>
+ * Queued sends wait in one lane per {@link CommandPriority}. Freed permits go to the lanes in a
+ * weighted round robin, falling back to the highest non-empty lane when the scheduled one is empty,
+ * so an urgent command overtakes a deep bulk backlog while bulk work keeps a guaranteed share.
+ * Urgent sends never block on queue capacity either: they are queued against a separate, smaller
+ * bound and refused once it is full, so a flood of urgent submissions cannot grow the heap or
+ * starve the other lanes of capacity.
+ * <p>
+ * Only one thread starts queued sends at a time. A send that completes, and releases its permit,
+ * while another thread is starting sends leaves the starting to that thread, so a backlog of sends
+ * that fail at once is worked off in a loop rather than by ever deeper recursion.
+ */
+final class InFlightLimiter {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Lane[] lanes;
+    private final int[] schedule;
+    private final AtomicLong turn = new AtomicLong();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    // Requests to drain since the draining thread last looked; non-zero while a thread is draining.
+    private final AtomicInteger drainRequests = new AtomicInteger();
+    private final Semaphore pendingCapacity;
+    private final Semaphore urgentCapacity;
+    private final LongAdder urgentRefused = new LongAdder();
+    private volatile int limit;
+    private volatile boolean shutdown;
+    private final int maxPending;
+    private final int maxPendingUrgent;
+
+    InFlightLimiter(int limit, int maxPending, int maxPendingUrgent) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("In-flight limit must be at least 1, was " + limit);
+        }
+        if (maxPending < 1) {
+            throw new IllegalArgumentException("Pending queue capacity must be at least 1, was " + maxPending);
+        }
+        if (maxPendingUrgent < 1) {
+            throw new IllegalArgumentException("Urgent queue capacity must be at least 1, was " + maxPendingUrgent);
+        }
+        this.limit = limit;
+        this.maxPending = maxPending;
+        this.maxPendingUrgent = maxPendingUrgent;
+        this.pendingCapacity = new Semaphore(maxPending);
+        this.urgentCapacity = new Semaphore(maxPendingUrgent);
+        CommandPriority[] priorities = CommandPriority.values();
+        this.lanes = new Lane[priorities.length];
+        for (CommandPriority priority : priorities) {
+            lanes[priority.ordinal()] = new Lane();
+        }
+        this.schedule = weightedSchedule(priorities);
+    }
+
+    /**
+     * Starts the given send now if a permit is available, otherwise queues it in the lane of its
+     * priority, blocking while the queue is full. Urgent sends do not block; they are refused when
+     * the urgent queue is full. The send must call {@link #release()} exactly once when its push has
+     * completed.
+     *
+     * @throws InterruptedException       if interrupted while waiting for queue capacity.
+     * @throws RejectedExecutionException if the send is urgent and the urgent queue is full.
+     */
+    void submit(Runnable send, CommandPriority priority) throws InterruptedException {
+        if (priority == CommandPriority.URGENT) {
+            if (!urgentCapacity.tryAcquire()) {
+                urgentRefused.increment();
+                throw new RejectedExecutionException("Urgent send queue is full (" + maxPendingUrgent + " pushes)");
+            }
+            enqueue(new QueuedSend(send, urgentCapacity), priority);
+            return;
+        }
+        pendingCapacity.acquire();
+        enqueue(new QueuedSend(send, pendingCapacity), priority);
+    }
+
+    /**
+     * Queues a send without waiting for queue capacity. Used for retries, which were admitted when
+     * first submitted; they take a capacity permit if one is free so the bound stays accurate.
+     */
+    void requeue(Runnable send, CommandPriority priority) {
+        Semaphore capacity = priority == CommandPriority.URGENT ? urgentCapacity : pendingCapacity;
+        enqueue(new QueuedSend(send, capacity.tryAcquire() ? capacity : null), priority);
+    }
+
+    private void enqueue(QueuedSend queued, CommandPriority priority) {
+        lanes[priority.ordinal()].offer(queued);
+        pendingCount.incrementAndGet();
+        drain();
+    }
+
+    /**
+     * Returns a permit and starts the next queued send, if any.
+     */
+    void release() {
+        inFlight.decrementAndGet();
+        drain();
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    int getPending() {
+        return pendingCount.get();
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Changes the in-flight limit. Lowering it takes effect as in-flight pushes complete; after
+     * raising it, call {@link #drain()} to start queued sends in the new slots.
+     */
+    void setLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("In-flight limit must be at least 1, was " + limit);
+        }
+        this.limit = limit;
+    }
+
+    int getMaxPending() {
+        return maxPending;
+    }
+
+    int getMaxPendingUrgent() {
+        return maxPendingUrgent;
+    }
+
+    /**
+     * @return The number of urgent sends refused because the urgent queue was full.
+     */
+    long getUrgentRefused() {
+        return urgentRefused.sum();
+    }
+
+    /**
+     * @return Per-lane queue depth, dispatch count and time spent queued, keyed by priority.
+     */
+    Map<String, Map<String, Object>> getLaneStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        for (CommandPriority priority : CommandPriority.values()) {
+            Map<String, Object> laneStats = lanes[priority.ordinal()].snapshot();
+            laneStats.put("weight", priority.getWeight());
+            stats.put(priority.name(), laneStats);
+        }
+        return stats;
+    }
+
+    /**
+     * Starts every queued send, and every send submitted from now on, whatever the limit. Each send
+     * is expected to see that the dispatcher is shutting down and fail without reaching APNs.
+     */
+    void shutdown() {
+        shutdown = true;
+        drain();
+    }
+
+    /**
+     * Starts queued sends while permits are available, or asks the thread already doing so to
+     * look again.
+     */
+    void drain() {
+        if (drainRequests.getAndIncrement() != 0) {
+            return;
+        }
+        int requests = 1;
+        do {
+            while (hasQueued() && tryAcquire()) {
+                QueuedSend next = poll();
+                if (next == null) {
+                    inFlight.decrementAndGet();
+                    break;
+                }
+                pendingCount.decrementAndGet();
+                if (next.capacity != null) {
+                    next.capacity.release();
+                }
+                try {
+                    next.send.run();
+                } catch (RuntimeException | Error e) {
+                    // Let the next release drain rather than leave the limiter stuck.
+                    drainRequests.set(0);
+                    throw e;
+                }
+            }
+            requests = drainRequests.addAndGet(-requests);
+        } while (requests != 0);
+    }
+
+    private boolean hasQueued() {
+        for (Lane lane : lanes) {
+            if (!lane.queue.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private QueuedSend poll() {
+        QueuedSend next = lanes[schedule[(int) (turn.getAndIncrement() % schedule.length)]].poll();
+        // Lanes are declared from most to least urgent.
+        for (int i = 0; next == null && i < lanes.length; i++) {
+            next = lanes[i].poll();
+        }
+        return next;
+    }
+
+    private boolean tryAcquire() {
+        if (shutdown) {
+            inFlight.incrementAndGet();
+            return true;
+        }
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Spreads each lane's weight evenly over one round (smooth weighted round robin), e.g. weights
+     * 8/3/1 give {@code U N U U B U N U U U N U} rather than eight urgent slots in a row.
+     */
+    private static int[] weightedSchedule(CommandPriority[] priorities) {
+        int total = 0;
+        for (CommandPriority priority : priorities) {
+            total += priority.getWeight();
+        }
+        int[] schedule = new int[total];
+        int[] current = new int[priorities.length];
+        for (int slot = 0; slot < total; slot++) {
+            int best = 0;
+            for (int i = 0; i < priorities.length; i++) {
+                current[i] += priorities[i].getWeight();
+                if (current[i] > current[best]) {
+                    best = i;
+                }
+            }
+            current[best] -= total;
+            schedule[slot] = best;
+        }
+        return schedule;
+    }
+
+    private static final class Lane {
+        private final Queue<QueuedSend> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger depth = new AtomicInteger();
+        private final LongAdder dispatched = new LongAdder();
+        private final LongAdder totalWaitNanos = new LongAdder();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        private void offer(QueuedSend queued) {
+            queue.offer(queued);
+            depth.incrementAndGet();
+        }
+
+        private QueuedSend poll() {
+            QueuedSend queued = queue.poll();
+            if (queued != null) {
+                depth.decrementAndGet();
+                long waitNanos = System.nanoTime() - queued.enqueuedNanos;
+                dispatched.increment();
+                totalWaitNanos.add(waitNanos);
+                maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+            }
+            return queued;
+        }
+
+        private Map<String, Object> snapshot() {
+            long count = dispatched.sum();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("depth", depth.get());
+            stats.put("dispatched", count);
+            stats.put("avgWaitMillis", count == 0 ? 0.0 : toMillis(totalWaitNanos.sum() / (double) count));
+            stats.put("maxWaitMillis", toMillis(maxWaitNanos.get()));
+            return stats;
+        }
+
+        private static double toMillis(double nanos) {
+            return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+
+    private static final class QueuedSend {
+        private final Runnable send;
+        // The queue capacity permit this send returns once started, if it took one.
+        private final Semaphore capacity;
+        private final long enqueuedNanos = System.nanoTime();
+
+        private QueuedSend(Runnable send, Semaphore capacity) {
+            this.send = send;
+            this.capacity = capacity;
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -5,8 +5,13 @@
 
 package com.devinbroyal.mdm.service;
 
+import com.devinbroyal.mdm.domain.BatchSummary;
+import com.devinbroyal.mdm.domain.CheckInRequest;
+import com.devinbroyal.mdm.domain.CommandRequest;
 import com.devinbroyal.mdm.exception.MdmCommandException;
 
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 public interface MdmService {
@@ -18,7 +23,71 @@ public interface MdmService {
      * @param payload     The MDM command payload as a map.
      * @throws MdmCommandException if the command could not be dispatched.
      */
-    void sendCommand(String deviceToken, Map<String, Object> payload) throws MdmCommandException;
+    default void sendCommand(String deviceToken, Map<String, Object> payload) throws MdmCommandException {
+        CommandRequest request = new CommandRequest();
+        request.setDeviceToken(deviceToken);
+        request.setPayload(payload);
+        sendCommand(request);
+    }
+
+    /**
+     * Asynchronously sends an MDM command payload to a specific device using the APNs credentials of
+     * the tenant named in the request, or of the default tenant if none is named.
+     *
+     * @param request The device token, payload and optional tenant, topic and priority selectors.
+     * @throws MdmCommandException if the command could not be dispatched.
+     * @throws IllegalArgumentException if the request names an unknown tenant or priority.
+     */
+    void sendCommand(CommandRequest request) throws MdmCommandException;
+
+    /**
+     * Asynchronously sends one MDM command payload to many devices. The payload is encoded once and
+     * each device receives it with its own generated {@code CommandUUID}. Tokens are consumed as
+     * they are produced, so the iterator may stream them from an arbitrarily large source.
+     *
+     * @param payload      The MDM command payload shared by every device.
+     * @param deviceTokens The APNs device tokens of the target devices.
+     * @param recordDetail Whether to also record a per-device result in the execution history.
+     * @return The batch summary, whose counters are updated as APNs responds.
+     * @throws MdmCommandException if the broadcast could not be dispatched.
+     */
+    default BatchSummary broadcastCommand(Map<String, Object> payload, Iterator<String> deviceTokens, boolean recordDetail) throws MdmCommandException {
+        return broadcastCommand(null, null, null, payload, deviceTokens, recordDetail);
+    }
+
+    /**
+     * Same as {@link #broadcastCommand(Map, Iterator, boolean)}, sending with the APNs credentials of
+     * the given tenant in the given dispatch lane.
+     *
+     * @param tenant   The tenant name, or {@code null} for the default tenant.
+     * @param topic    The APNs topic to push to instead of the tenant's configured topic, or {@code null}.
+     * @param priority The dispatch lane, or {@code null} for {@code bulk} (or {@code urgent} for
+     *                 security-critical request types).
+     * @throws IllegalArgumentException if the tenant or priority is unknown.
+     */
+    BatchSummary broadcastCommand(String tenant, String topic, String priority, Map<String, Object> payload, Iterator<String> deviceTokens, boolean recordDetail) throws MdmCommandException;
+
+    /**
+     * Handles a device checking in at {@code /mdm/connect}: records its reports on the commands it
+     * fetched last time and hands it every command now waiting in its queue.
+     *
+     * @param request The device token and its command reports.
+     * @return The JSON payloads of the commands to deliver, in queue order.
+     * @throws IllegalArgumentException if a report carries an unknown status.
+     * @throws UnsupportedOperationException if commands are pushed directly rather than queued.
+     */
+    default List<String> checkIn(CheckInRequest request) {
+        throw new UnsupportedOperationException("Command queueing is not enabled");
+    }
+
+    /**
+     * Returns a point-in-time view of the service's operational metrics, suitable for JSON rendering.
+     *
+     * @return A map of metric groups; empty if the implementation exposes none.
+     */
+    default Map<String, Object> getMetrics() {
+        return Map.of();
+    }
 
     /**
      * Shuts down the service and releases resources, such as closing the APNs client.
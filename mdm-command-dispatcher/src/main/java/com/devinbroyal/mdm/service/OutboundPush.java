@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.service;
+
+import com.devinbroyal.mdm.config.TenantProperties;
+import com.devinbroyal.mdm.domain.BatchSummary;
+import com.devinbroyal.mdm.domain.CommandPriority;
+
+/**
+ * A push waiting for, or occupying, an in-flight slot. Broadcast pushes keep a reference to their
+ * shared {@link PayloadTemplate} and only render the JSON when they are actually sent, so queued
+ * pushes stay small.
+ */
+final class OutboundPush {
+
+    private final TenantProperties tenant;
+    private final CommandPriority priority;
+    private final String deviceToken;
+    private final String commandUUID;
+    private final String commandType;
+    private final String payloadJson;
+    private final PayloadTemplate template;
+    private final BatchSummary batch;
+    private final boolean recordDetail;
+    private final boolean wakeUp;
+    private int attempt = 1;
+
+    private OutboundPush(TenantProperties tenant, CommandPriority priority, String deviceToken, String commandUUID, String commandType,
+                         String payloadJson, PayloadTemplate template, BatchSummary batch, boolean recordDetail, boolean wakeUp) {
+        this.tenant = tenant;
+        this.priority = priority;
+        this.deviceToken = deviceToken;
+        this.commandUUID = commandUUID;
+        this.commandType = commandType;
+        this.payloadJson = payloadJson;
+        this.template = template;
+        this.batch = batch;
+        this.recordDetail = recordDetail;
+        this.wakeUp = wakeUp;
+    }
+
+    static OutboundPush single(TenantProperties tenant, CommandPriority priority, String deviceToken, String commandUUID, String commandType,
+                               String payloadJson) {
+        return new OutboundPush(tenant, priority, deviceToken, commandUUID, commandType, payloadJson, null, null, true, false);
+    }
+
+    static OutboundPush broadcast(TenantProperties tenant, CommandPriority priority, String deviceToken, String commandUUID, String commandType,
+                                  PayloadTemplate template, BatchSummary batch, boolean recordDetail) {
+        return new OutboundPush(tenant, priority, deviceToken, commandUUID, commandType, null, template, batch, recordDetail, false);
+    }
+
+    /**
+     * A push that carries no command and only tells the device to check in for its queued commands.
+     */
+    static OutboundPush wakeUp(TenantProperties tenant, CommandPriority priority, String deviceToken, String payloadJson) {
+        return new OutboundPush(tenant, priority, deviceToken, "wake-up", null, payloadJson, null, null, false, true);
+    }
+
+    /**
+     * @return The credentials and topic the push is sent with.
+     */
+    TenantProperties getTenant() {
+        return tenant;
+    }
+
+    /**
+     * @return The dispatch lane the push waits in, including when it is retried.
+     */
+    CommandPriority getPriority() {
+        return priority;
+    }
+
+    String getDeviceToken() {
+        return deviceToken;
+    }
+
+    String getCommandUUID() {
+        return commandUUID;
+    }
+
+    /**
+     * @return The command's {@code RequestType}, or {@code null} if the payload does not name one.
+     */
+    String getCommandType() {
+        return commandType;
+    }
+
+    String renderPayload() {
+        return payloadJson != null ? payloadJson : template.render(commandUUID);
+    }
+
+    /**
+     * @return Whether this push only wakes the device; its outcome concerns the device's queue
+     *         rather than a command.
+     */
+    boolean isWakeUp() {
+        return wakeUp;
+    }
+
+    /**
+     * @return The delivery attempt in progress, starting at 1. For a queued command this counts the
+     *         check-ins that delivered it. Only the thread that owns the push for the current
+     *         attempt reads or advances it; hand-offs happen through executors.
+     */
+    int getAttempt() {
+        return attempt;
+    }
+
+    void nextAttempt() {
+        attempt++;
+    }
+
+    /**
+     * @return The broadcast this push belongs to, or {@code null} for a single command.
+     */
+    BatchSummary getBatch() {
+        return batch;
+    }
+
+    /**
+     * @return Whether a per-device {@code CommandResult} should be written to the history.
+     */
+    boolean isRecordDetail() {
+        return recordDetail;
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
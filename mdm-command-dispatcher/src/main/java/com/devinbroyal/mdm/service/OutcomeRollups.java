@@ -0,0 +1,273 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.service;
+
+import com.devinbroyal.mdm.domain.CommandResult;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts dispatch outcomes per minute and per hour as results are recorded: by status, by
+ * rejection reason, and by status within each command type. Reading them never touches the
+ * execution history, and costs in proportion to the buckets read.
+ * <p>
+ * Each resolution is a ring of fixed-size buckets in one array of longs; the oldest bucket is
+ * reused as a new one begins. A reason or command type gets its own counters the first time it is
+ * seen, up to {@value #MAX_NAMES} of each including {@value #OTHER}, under which later ones are
+ * counted. The current minute is kept apart, in one array of counters per stripe, a stripe being
+ * picked by thread as a {@link java.util.concurrent.atomic.LongAdder} picks its cell, so that the
+ * threads completing sends do not contend for the same counters. The first result or read of a new
+ * minute folds the stripes into both rings.
+ */
+public class OutcomeRollups {
+
+    /** The name under which reasons and command types beyond the first {@value #MAX_NAMES} are counted. */
+    public static final String OTHER = "other";
+    /** The command type of results whose command is not known, such as a report for a command sent before a restart. */
+    public static final String UNKNOWN_COMMAND_TYPE = "unknown";
+    static final int MAX_NAMES = 32;
+    private static final CommandResult.Status[] STATUSES = CommandResult.Status.values();
+    private static final int REASONS = STATUSES.length;
+    private static final int TYPES = REASONS + MAX_NAMES;
+    private static final int WIDTH = TYPES + STATUSES.length * MAX_NAMES;
+
+    private final Clock clock;
+    private final int minuteBuckets;
+    private final int hourBuckets;
+    private final long[] minutes;
+    private final long[] hours;
+    private final AtomicLongArray[] stripes;
+    private final Names reasons = new Names();
+    private final Names commandTypes = new Names();
+    // The minute the stripes are counting, in minutes since the epoch.
+    private volatile long liveMinute;
+
+    /**
+     * @param minuteBuckets The minutes kept, including the current one.
+     * @param hourBuckets   The hours kept, including the current one.
+     */
+    public OutcomeRollups(int minuteBuckets, int hourBuckets) {
+        this(minuteBuckets, hourBuckets, Clock.systemUTC());
+    }
+
+    OutcomeRollups(int minuteBuckets, int hourBuckets, Clock clock) {
+        if (minuteBuckets < 1 || hourBuckets < 1) {
+            throw new IllegalArgumentException("At least one bucket of each resolution is needed");
+        }
+        this.clock = clock;
+        this.minuteBuckets = minuteBuckets;
+        this.hourBuckets = hourBuckets;
+        this.minutes = new long[minuteBuckets * WIDTH];
+        this.hours = new long[hourBuckets * WIDTH];
+        int stripeCount = 1;
+        while (stripeCount < Runtime.getRuntime().availableProcessors() && stripeCount < 64) {
+            stripeCount <<= 1;
+        }
+        this.stripes = new AtomicLongArray[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new AtomicLongArray(WIDTH);
+        }
+        this.liveMinute = currentMinute();
+    }
+
+    /**
+     * Counts a result in the current minute.
+     *
+     * @param commandType The command's {@code RequestType}, or {@code null} if it is not known.
+     */
+    public void record(String commandType, CommandResult result) {
+        long minute = currentMinute();
+        if (minute > liveMinute) {
+            advance(minute);
+        }
+        // The thread's identity hash: stable for the thread, and unlike getId() not deprecated.
+        AtomicLongArray stripe = stripes[Thread.currentThread().hashCode() & (stripes.length - 1)];
+        int status = result.getStatus().ordinal();
+        stripe.getAndIncrement(status);
+        if (result.getRejectionReason() != null) {
+            stripe.getAndIncrement(REASONS + reasons.columnOf(result.getRejectionReason()));
+        }
+        int type = commandTypes.columnOf(commandType != null ? commandType : UNKNOWN_COMMAND_TYPE);
+        stripe.getAndIncrement(TYPES + type * STATUSES.length + status);
+    }
+
+    /**
+     * Closes the live minute and any after it up to {@code minute}, which becomes the live one.
+     * Results counted while the stripes are being folded may land in either minute.
+     */
+    private synchronized void advance(long minute) {
+        long live = liveMinute;
+        if (minute <= live) {
+            return;
+        }
+        int minuteOffset = slot(live, minuteBuckets) * WIDTH;
+        int hourOffset = slot(Math.floorDiv(live, 60), hourBuckets) * WIDTH;
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < WIDTH; i++) {
+                long count = stripe.getAndSet(i, 0);
+                if (count != 0) {
+                    minutes[minuteOffset + i] += count;
+                    hours[hourOffset + i] += count;
+                }
+            }
+        }
+        // The buckets the ring moves on to are reused, and cleared first.
+        for (long next = live + 1; next <= minute && next <= live + minuteBuckets; next++) {
+            int offset = slot(next, minuteBuckets) * WIDTH;
+            Arrays.fill(minutes, offset, offset + WIDTH, 0);
+        }
+        long liveHour = Math.floorDiv(live, 60);
+        long hour = Math.floorDiv(minute, 60);
+        for (long next = liveHour + 1; next <= hour && next <= liveHour + hourBuckets; next++) {
+            int offset = slot(next, hourBuckets) * WIDTH;
+            Arrays.fill(hours, offset, offset + WIDTH, 0);
+        }
+        liveMinute = minute;
+    }
+
+    /**
+     * Reads the newest buckets of one resolution, the current one included, and their totals.
+     *
+     * @param hourly  Whether to read hours rather than minutes.
+     * @param buckets How many buckets to read, at most the number kept.
+     * @return The buckets, oldest first, each with its start and its non-zero counts.
+     */
+    public synchronized Map<String, Object> snapshot(boolean hourly, int buckets) {
+        if (buckets < 1 || buckets > getBuckets(hourly)) {
+            throw new IllegalArgumentException("buckets must be between 1 and " + getBuckets(hourly));
+        }
+        advance(currentMinute());
+        long[] live = new long[WIDTH];
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < WIDTH; i++) {
+                live[i] += stripe.get(i);
+            }
+        }
+        long newest = hourly ? Math.floorDiv(liveMinute, 60) : liveMinute;
+        long[] totals = new long[WIDTH];
+        long[] counts = new long[WIDTH];
+        List<Map<String, Object>> series = new ArrayList<>(buckets);
+        for (long bucket = newest - buckets + 1; bucket <= newest; bucket++) {
+            int offset = slot(bucket, hourly ? hourBuckets : minuteBuckets) * WIDTH;
+            System.arraycopy(hourly ? hours : minutes, offset, counts, 0, WIDTH);
+            if (bucket == newest) {
+                for (int i = 0; i < WIDTH; i++) {
+                    counts[i] += live[i];
+                }
+            }
+            for (int i = 0; i < WIDTH; i++) {
+                totals[i] += counts[i];
+            }
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("start", Instant.ofEpochSecond(bucket * (hourly ? 3600 : 60)));
+            entry.putAll(describe(counts));
+            series.add(entry);
+        }
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("resolution", hourly ? "hour" : "minute");
+        snapshot.put("totals", describe(totals));
+        snapshot.put("buckets", series);
+        return snapshot;
+    }
+
+    /**
+     * @return The number of buckets kept at the resolution.
+     */
+    public int getBuckets(boolean hourly) {
+        return hourly ? hourBuckets : minuteBuckets;
+    }
+
+    private Map<String, Object> describe(long[] counts) {
+        long total = 0;
+        Map<String, Long> byStatus = new LinkedHashMap<>();
+        for (CommandResult.Status status : STATUSES) {
+            long count = counts[status.ordinal()];
+            total += count;
+            if (count != 0) {
+                byStatus.put(status.name(), count);
+            }
+        }
+        Map<String, Long> byReason = new LinkedHashMap<>();
+        for (int column = 0; column < MAX_NAMES; column++) {
+            long count = counts[REASONS + column];
+            if (count != 0) {
+                byReason.put(reasons.name(column), count);
+            }
+        }
+        Map<String, Map<String, Long>> byCommandType = new LinkedHashMap<>();
+        for (int column = 0; column < MAX_NAMES; column++) {
+            for (CommandResult.Status status : STATUSES) {
+                long count = counts[TYPES + column * STATUSES.length + status.ordinal()];
+                if (count != 0) {
+                    byCommandType.computeIfAbsent(commandTypes.name(column), k -> new LinkedHashMap<>()).put(status.name(), count);
+                }
+            }
+        }
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("total", total);
+        description.put("byStatus", byStatus);
+        description.put("byReason", byReason);
+        description.put("byCommandType", byCommandType);
+        return description;
+    }
+
+    private long currentMinute() {
+        return Math.floorDiv(clock.millis(), 60_000L);
+    }
+
+    private static int slot(long bucket, int buckets) {
+        return (int) Math.floorMod(bucket, (long) buckets);
+    }
+
+    /**
+     * Columns by name, column 0 being {@value #OTHER}. Names are only added, never removed.
+     */
+    private static final class Names {
+        private final Map<String, Integer> columns = new ConcurrentHashMap<>();
+        private final String[] names = new String[MAX_NAMES];
+        private int count = 1;
+
+        Names() {
+            names[0] = OTHER;
+        }
+
+        int columnOf(String name) {
+            Integer column = columns.get(name);
+            if (column != null) {
+                return column;
+            }
+            synchronized (this) {
+                column = columns.get(name);
+                if (column != null) {
+                    return column;
+                }
+                if (count == MAX_NAMES) {
+                    return 0;
+                }
+                names[count] = name;
+                columns.put(name, count);
+                return count++;
+            }
+        }
+
+        synchronized String name(int column) {
+            return names[column];
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
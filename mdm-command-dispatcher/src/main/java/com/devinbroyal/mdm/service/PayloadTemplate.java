@@ -0,0 +1,63 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.service;
+
+import com.google.gson.Gson;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A command payload encoded once, with a placeholder for the per-device {@code CommandUUID}.
+ * <p>
+ * The payload is serialized a single time into the JSON that precedes and follows the UUID value;
+ * rendering for a device only splices the UUID between the two pre-encoded halves.
+ */
+final class PayloadTemplate {
+
+    static final String COMMAND_UUID_KEY = "CommandUUID";
+    private static final String PREFIX = "{\"" + COMMAND_UUID_KEY + "\":\"";
+
+    private final String suffix;
+
+    private PayloadTemplate(String suffix) {
+        this.suffix = suffix;
+    }
+
+    /**
+     * Encodes the payload, ignoring any {@code CommandUUID} it already contains.
+     */
+    static PayloadTemplate compile(Gson gson, Map<String, Object> payload) {
+        Map<String, Object> withoutUUID = new LinkedHashMap<>(payload);
+        withoutUUID.remove(COMMAND_UUID_KEY);
+        String encoded = gson.toJson(withoutUUID);
+        // encoded is "{}" or "{...}"; the UUID becomes the first member of the object.
+        String suffix = encoded.length() == 2 ? "\"}" : "\"," + encoded.substring(1);
+        return new PayloadTemplate(suffix);
+    }
+
+    String render(String commandUUID) {
+        return PREFIX + commandUUID + suffix;
+    }
+
+    /**
+     * Generates a random (version 4) UUID without contending on the shared {@code SecureRandom}
+     * behind {@link UUID#randomUUID()}; broadcasts mint one per device.
+     */
+    static String newCommandUUID() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long mostSigBits = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long leastSigBits = (random.nextLong() & ~(0xC000000000000000L)) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits).toString();
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
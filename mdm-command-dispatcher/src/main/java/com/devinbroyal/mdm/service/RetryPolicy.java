@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with full jitter and a per-command attempt budget.
+ * <p>
+ * The delay before attempt {@code n + 1} is drawn uniformly from
+ * {@code [0, min(maxDelay, baseDelay * 2^(n - 1))]}, which spreads retries from a throttled burst
+ * instead of re-synchronising them.
+ */
+final class RetryPolicy {
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Max attempts must be at least 1, was " + maxAttempts);
+        }
+        if (baseDelayMillis < 1 || maxDelayMillis < baseDelayMillis) {
+            throw new IllegalArgumentException("Retry delays must satisfy 1 <= base <= max");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * @param attempt The attempt that just failed, starting at 1.
+     * @return Whether the attempt budget allows another try.
+     */
+    boolean hasAttemptsLeft(int attempt) {
+        return attempt < maxAttempts;
+    }
+
+    /**
+     * @param attempt The attempt that just failed, starting at 1.
+     * @return The delay in milliseconds before the next attempt.
+     */
+    long nextDelayMillis(int attempt) {
+        int exponent = Math.max(attempt - 1, 0);
+        // Shifting past the base's free high bits would overflow; the cap applies long before that.
+        long ceiling = exponent >= Long.numberOfLeadingZeros(baseDelayMillis) - 1
+                ? maxDelayMillis
+                : Math.min(maxDelayMillis, baseDelayMillis << exponent);
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    int getMaxAttempts() {
+        return maxAttempts;
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
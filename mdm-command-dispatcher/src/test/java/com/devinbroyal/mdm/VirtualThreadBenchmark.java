@@ -0,0 +1,211 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm;
+
+import com.devinbroyal.mdm.controller.AdmissionController;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fires a burst of concurrent requests at an {@link HttpServer} whose handler blocks for a while,
+ * as a handler waiting on APNs does, and prints the latency percentiles, the peak number of live
+ * threads and the peak resident memory of the process.
+ * <p>
+ * Not a unit test. The modes are {@code cached} (a thread per concurrent request, as the server
+ * used before its executor was bounded), {@code fixed} (the bounded pool of {@code server.http.threads}
+ * threads) and {@code virtual} (a virtual thread per request). Run each mode in its own JVM so that
+ * the peak memory figures do not mix. {@code virtual} needs Java 21 and the multi-release jar:
+ * <pre>
+ * mvn -Pvirtual-threads package
+ * java -cp target/mdm-command-dispatcher-1.0.0-RELEASE.jar:target/test-classes \
+ *     com.devinbroyal.mdm.VirtualThreadBenchmark virtual [requests] [blockMillis] [fixedThreads]
+ * </pre>
+ */
+public class VirtualThreadBenchmark {
+
+    private static final byte[] RESPONSE = "{\"message\":\"Command submitted for processing\"}".getBytes(StandardCharsets.UTF_8);
+
+    public static void main(String[] args) throws Exception {
+        final String mode = args.length > 0 ? args[0] : "fixed";
+        final int requests = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        final long blockMillis = args.length > 2 ? Long.parseLong(args[2]) : 50;
+        final int fixedThreads = args.length > 3 ? Integer.parseInt(args[3]) : 50;
+
+        final AdmissionController admission = new AdmissionController(1.0);
+        final ExecutorService serverExecutor;
+        switch (mode) {
+            case "cached":
+                serverExecutor = Executors.newCachedThreadPool();
+                break;
+            case "fixed":
+                serverExecutor = admission.newBoundedExecutor("http", fixedThreads, requests);
+                break;
+            case "virtual":
+                if (!VirtualThreads.isAvailable()) {
+                    throw new IllegalStateException("Virtual threads need Java 21 and the jar built with -Pvirtual-threads on the class path");
+                }
+                serverExecutor = admission.newConcurrencyLimitedExecutor("http", VirtualThreads.newThreadPerTaskExecutor("http"), requests);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mode " + mode + "; expected cached, fixed or virtual");
+        }
+
+        final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), requests);
+        server.createContext("/command", exchange -> {
+            try {
+                exchange.getRequestBody().readAllBytes();
+                Thread.sleep(blockMillis);
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+                exchange.sendResponseHeaders(202, RESPONSE.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(RESPONSE);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        });
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        final ExecutorService clientExecutor = Executors.newFixedThreadPool(4);
+        final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(clientExecutor).build();
+        final URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/command");
+        final HttpRequest request = HttpRequest.newBuilder(uri)
+                .POST(HttpRequest.BodyPublishers.ofString("{\"deviceToken\":\"0123\",\"payload\":{}}"))
+                .build();
+
+        // Warm up the server, the client and the JIT with a short, small burst.
+        send(client, request, Math.min(200, requests));
+
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        final MemorySampler sampler = new MemorySampler();
+        sampler.start();
+
+        final long start = System.nanoTime();
+        final Result result = send(client, request, requests);
+        final long elapsed = System.nanoTime() - start;
+        sampler.stop();
+
+        final long[] latencies = result.latencies;
+        Arrays.sort(latencies);
+        System.out.printf("mode=%s requests=%d blockMillis=%d java=%s%n", mode, requests, blockMillis, System.getProperty("java.version"));
+        System.out.printf("completed %d, failed %d in %.0f ms%n", latencies.length, result.failures.get(), elapsed / 1e6);
+        if (latencies.length > 0) {
+            System.out.printf("latency ms: p50 %.1f  p99 %.1f  max %.1f%n",
+                    percentile(latencies, 0.50), percentile(latencies, 0.99), latencies[latencies.length - 1] / 1e6);
+        }
+        System.out.printf("peak live threads %d, peak RSS %d MB, peak heap used %d MB%n",
+                threads.getPeakThreadCount(), sampler.peakRssKb.get() / 1024, sampler.peakHeapBytes.get() >> 20);
+
+        server.stop(0);
+        serverExecutor.shutdownNow();
+        clientExecutor.shutdownNow();
+    }
+
+    private static Result send(HttpClient client, HttpRequest request, int count) {
+        final long[] latencies = new long[count];
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        final CompletableFuture<?>[] futures = new CompletableFuture<?>[count];
+        for (int i = 0; i < count; i++) {
+            final long sent = System.nanoTime();
+            futures[i] = client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                if (error != null || response.statusCode() != 202) {
+                    failures.incrementAndGet();
+                } else {
+                    latencies[completed.getAndIncrement()] = System.nanoTime() - sent;
+                }
+            });
+        }
+        CompletableFuture.allOf(futures).exceptionally(error -> null).join();
+        return new Result(Arrays.copyOf(latencies, completed.get()), failures);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1)] / 1e6;
+    }
+
+    private static final class Result {
+        private final long[] latencies;
+        private final AtomicInteger failures;
+
+        private Result(long[] latencies, AtomicInteger failures) {
+            this.latencies = latencies;
+            this.failures = failures;
+        }
+    }
+
+    /**
+     * Samples the resident set size (Linux only; reported as 0 elsewhere) and the used heap every few
+     * milliseconds and keeps the maximum.
+     */
+    private static final class MemorySampler {
+        private final AtomicLong peakRssKb = new AtomicLong();
+        private final AtomicLong peakHeapBytes = new AtomicLong();
+        private final Thread thread = new Thread(this::run, "memory-sampler");
+        private volatile boolean running = true;
+
+        private void start() {
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void stop() throws InterruptedException {
+            running = false;
+            thread.join(TimeUnit.SECONDS.toMillis(1));
+        }
+
+        private void run() {
+            final Path status = Path.of("/proc/self/status");
+            while (running) {
+                final Runtime runtime = Runtime.getRuntime();
+                peakHeapBytes.accumulateAndGet(runtime.totalMemory() - runtime.freeMemory(), Math::max);
+                if (Files.isReadable(status)) {
+                    try {
+                        for (String line : Files.readAllLines(status)) {
+                            if (line.startsWith("VmRSS:")) {
+                                peakRssKb.accumulateAndGet(Long.parseLong(line.replaceAll("\\D", "")), Math::max);
+                            }
+                        }
+                    } catch (Exception ignored) {
+                        // Sampling is best effort.
+                    }
+                }
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,172 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.controller;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControllerTest {
+
+    @Test
+    void shedsOnceAQueueCrossesItsHighWaterMarkAndRefusesOverflow() throws Exception {
+        AdmissionController admission = new AdmissionController(0.5);
+        ThreadPoolExecutor executor = admission.newBoundedExecutor("test", 1, 4);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        try {
+            executor.execute(() -> {
+                started.countDown();
+                awaitQuietly(release);
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            executor.execute(() -> { });
+            executor.execute(() -> { });
+            assertEquals(0, admission.tryAdmit(), "at the high-water mark commands are still admitted");
+
+            executor.execute(() -> { });
+            long retryAfter = admission.tryAdmit();
+            assertTrue(retryAfter >= AdmissionController.MIN_RETRY_AFTER_SECONDS && retryAfter <= AdmissionController.MAX_RETRY_AFTER_SECONDS);
+
+            executor.execute(() -> { });
+            AtomicReference<Thread> ranOn = new AtomicReference<>();
+            assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> ranOn.set(Thread.currentThread())));
+            assertNull(ranOn.get(), "a full queue never runs the task on the submitting thread");
+
+            Map<String, Object> snapshot = admission.snapshot();
+            assertEquals(1L, snapshot.get("admitted"));
+            assertEquals(1L, snapshot.get("shed"));
+            @SuppressWarnings("unchecked")
+            Map<String, Object> queue = (Map<String, Object>) ((Map<String, Object>) snapshot.get("queues")).get("test");
+            assertEquals(4, queue.get("depth"));
+            assertEquals(2, queue.get("highWater"));
+            assertEquals(1L, queue.get("rejected"));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+        assertEquals(0, admission.tryAdmit());
+    }
+
+    @Test
+    void concurrencyLimitedExecutorRefusesTasksBeyondTheLimit() throws Exception {
+        AdmissionController admission = new AdmissionController(0.5);
+        ExecutorService executor = admission.newConcurrencyLimitedExecutor("test", Executors.newCachedThreadPool(), 2);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(2);
+        try {
+            executor.execute(() -> {
+                started.countDown();
+                awaitQuietly(release);
+            });
+            assertEquals(0, admission.tryAdmit());
+            executor.execute(() -> {
+                started.countDown();
+                awaitQuietly(release);
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertTrue(admission.tryAdmit() > 0, "two tasks in progress exceed the high-water mark of one");
+
+            AtomicReference<Thread> ranOn = new AtomicReference<>();
+            assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> ranOn.set(Thread.currentThread())));
+            assertNull(ranOn.get());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Object> queue = (Map<String, Object>) ((Map<String, Object>) admission.snapshot().get("queues")).get("test");
+        assertEquals(0, queue.get("depth"));
+        assertEquals("virtual", queue.get("threads"));
+        assertEquals(2L, queue.get("completed"));
+        assertEquals(1L, queue.get("rejected"));
+    }
+
+    @Test
+    void requestsAFullHttpPoolRefusesAreAnsweredWith503() throws Exception {
+        AdmissionController admission = new AdmissionController(1.0);
+        ThreadPoolExecutor executor = admission.newBoundedExecutor("http", 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger handled = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/slow", exchange -> {
+            handled.incrementAndGet();
+            started.countDown();
+            awaitQuietly(release);
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        }).getFilters().add(admission.refusedRequestFilter());
+        server.setExecutor(admission.refusingWithServiceUnavailable(executor));
+        server.start();
+        HttpClient client = HttpClient.newHttpClient();
+        URI slow = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/slow");
+        try {
+            CompletableFuture<HttpResponse<String>> first = client.sendAsync(HttpRequest.newBuilder(slow).build(), HttpResponse.BodyHandlers.ofString());
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            // A second connection waits in the queue; the third finds the pool full.
+            CompletableFuture<HttpResponse<String>> queued = HttpClient.newHttpClient().sendAsync(HttpRequest.newBuilder(slow).build(), HttpResponse.BodyHandlers.ofString());
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (executor.getQueue().isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+
+            HttpResponse<String> refused = HttpClient.newHttpClient().send(HttpRequest.newBuilder(slow).build(), HttpResponse.BodyHandlers.ofString());
+
+            assertEquals(503, refused.statusCode());
+            assertEquals("1", refused.headers().firstValue("Retry-After").orElse(null));
+            assertEquals(1, handled.get());
+            release.countDown();
+            assertEquals(204, first.get(5, TimeUnit.SECONDS).statusCode());
+            assertEquals(204, queued.get(5, TimeUnit.SECONDS).statusCode());
+        } finally {
+            release.countDown();
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void retryAfterIsTheTimeToDrainTheExcessClampedToTheAllowedRange() {
+        assertEquals(3, AdmissionController.retryAfterSeconds(250, 100.0));
+        assertEquals(AdmissionController.MIN_RETRY_AFTER_SECONDS, AdmissionController.retryAfterSeconds(10, 1000.0));
+        assertEquals(AdmissionController.MAX_RETRY_AFTER_SECONDS, AdmissionController.retryAfterSeconds(10_000, 10.0));
+        assertEquals(AdmissionController.MAX_RETRY_AFTER_SECONDS, AdmissionController.retryAfterSeconds(10, 0.0));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.controller;
+
+import com.devinbroyal.mdm.domain.BatchSummary;
+import com.devinbroyal.mdm.domain.CommandRequest;
+import com.devinbroyal.mdm.service.MdmService;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchCommandHandlerTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final Gson gson = new Gson();
+    private final List<CommandRequest> submitted = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private URI commands;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        MdmService service = new MdmService() {
+            @Override
+            public void sendCommand(CommandRequest request) {
+                submitted.add(request);
+            }
+
+            @Override
+            public BatchSummary broadcastCommand(String tenant, String topic, String priority, Map<String, Object> payload,
+                                                 Iterator<String> deviceTokens, boolean recordDetail) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void shutdown() {
+            }
+        };
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/commands", new BatchCommandHandler(service, gson, new AdmissionController(0.8)));
+        server.setExecutor(Executors.newFixedThreadPool(2));
+        server.start();
+        commands = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/commands");
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void badLinesAreReportedByNumberAndTheRestOfTheBatchIsSubmitted() throws Exception {
+        String body = "{\"deviceToken\":\"device-a\",\"payload\":{\"CommandUUID\":\"uuid-1\"},\"priority\":\"bulk\"}\r\n"
+                + "{\"deviceToken\":\"device-b\",\"payload\":\n"
+                + "\n"
+                + "{\"payload\":{}}\n"
+                + "{\"deviceToken\":\"device-c\",\"payload\":{\"pad\":\"" + "x".repeat(64 * 1024) + "\"}}\n"
+                + "{\"deviceToken\":\"device-d\",\"payload\":{}} trailing\n"
+                + "{\"deviceToken\":\"device-e\",\"payload\":{\"Command\":{\"RequestType\":\"DeviceLock\"}}}";
+
+        JsonObject summary = post(body, 202);
+
+        assertEquals(2, summary.get("accepted").getAsLong());
+        assertEquals(4, summary.get("rejected").getAsLong());
+        JsonArray errors = summary.getAsJsonArray("errors");
+        assertEquals(4, errors.size());
+        assertEquals(2, errors.get(0).getAsJsonObject().get("line").getAsLong());
+        assertTrue(errors.get(0).getAsJsonObject().get("error").getAsString().startsWith("Malformed record"));
+        assertEquals(4, errors.get(1).getAsJsonObject().get("line").getAsLong());
+        assertEquals("deviceToken and payload are required", errors.get(1).getAsJsonObject().get("error").getAsString());
+        assertEquals(5, errors.get(2).getAsJsonObject().get("line").getAsLong());
+        assertEquals("Line exceeds 65536 characters", errors.get(2).getAsJsonObject().get("error").getAsString());
+        assertEquals(6, errors.get(3).getAsJsonObject().get("line").getAsLong());
+
+        assertEquals(2, submitted.size());
+        assertEquals("device-a", submitted.get(0).getDeviceToken());
+        assertEquals("uuid-1", submitted.get(0).getPayload().get("CommandUUID"));
+        assertEquals("bulk", submitted.get(0).getPriority());
+        assertEquals("device-e", submitted.get(1).getDeviceToken());
+        assertNotNull(submitted.get(1).getPayload().get("CommandUUID"));
+    }
+
+    @Test
+    void anEmptyBodyIsAnEmptyBatch() throws Exception {
+        JsonObject summary = post("", 202);
+
+        assertEquals(0, summary.get("accepted").getAsLong());
+        assertEquals(0, summary.get("rejected").getAsLong());
+        assertEquals(0, summary.getAsJsonArray("errors").size());
+        assertFalse(summary.get("batchId").getAsString().isEmpty());
+        assertTrue(submitted.isEmpty());
+    }
+
+    @Test
+    void onlyPostIsAllowed() throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(commands).build(), HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(405, response.statusCode());
+    }
+
+    private JsonObject post(String body, int expectedStatus) throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(commands).POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(expectedStatus, response.statusCode());
+        return gson.fromJson(response.body(), JsonObject.class);
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
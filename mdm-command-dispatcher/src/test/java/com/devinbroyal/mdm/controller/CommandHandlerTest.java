@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.controller;
+
+import com.devinbroyal.mdm.domain.BatchSummary;
+import com.devinbroyal.mdm.domain.CommandRequest;
+import com.devinbroyal.mdm.service.MdmService;
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandHandlerTest {
+
+    private static final int MAX_BODY_BYTES = 1024;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final List<CommandRequest> submitted = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private URI command;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        MdmService service = new MdmService() {
+            @Override
+            public void sendCommand(CommandRequest request) {
+                submitted.add(request);
+            }
+
+            @Override
+            public BatchSummary broadcastCommand(String tenant, String topic, String priority, Map<String, Object> payload,
+                                                 Iterator<String> deviceTokens, boolean recordDetail) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void shutdown() {
+            }
+        };
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/command", new CommandHandler(service, new Gson(), new AdmissionController(0.8), MAX_BODY_BYTES));
+        server.setExecutor(Executors.newFixedThreadPool(2));
+        server.start();
+        command = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/command");
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void aBodyUpToTheLimitIsSubmitted() throws Exception {
+        HttpResponse<String> response = post(body(MAX_BODY_BYTES));
+
+        assertEquals(202, response.statusCode());
+        assertEquals(1, submitted.size());
+        assertEquals("uuid-1", submitted.get(0).getPayload().get("CommandUUID"));
+    }
+
+    @Test
+    void aBodyOverTheLimitIsRefusedWithoutBeingSubmitted() throws Exception {
+        HttpResponse<String> response = post(body(MAX_BODY_BYTES + 1));
+
+        assertEquals(413, response.statusCode());
+        assertTrue(response.body().contains("exceeds " + MAX_BODY_BYTES + " bytes"));
+        assertTrue(submitted.isEmpty());
+    }
+
+    /**
+     * @return A valid command of exactly {@code bytes} bytes, padded inside its payload.
+     */
+    private static String body(int bytes) {
+        String prefix = "{\"deviceToken\":\"device-a\",\"payload\":{\"CommandUUID\":\"uuid-1\",\"pad\":\"";
+        String suffix = "\"}}";
+        return prefix + "x".repeat(bytes - prefix.length() - suffix.length()) + suffix;
+    }
+
+    private HttpResponse<String> post(String body) throws Exception {
+        return client.send(HttpRequest.newBuilder(command).POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,77 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.controller;
+
+import com.devinbroyal.mdm.domain.CommandRequest;
+import com.google.gson.Gson;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Compares the work {@code POST /command} does on a body before handing the payload to APNs:
+ * binding it to a {@link CommandRequest} with Gson and encoding the payload map back to JSON,
+ * against {@link CommandRequestReader} keeping the payload text. Both splice in a missing
+ * {@code CommandUUID}. Prints time and heap allocation per command.
+ * <p>
+ * Not a unit test; run it after {@code mvn test-compile} with
+ * {@code java -cp target/classes:target/test-classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) com.devinbroyal.mdm.controller.CommandParseBenchmark [iterations]}.
+ */
+public class CommandParseBenchmark {
+
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final String BODY = "{\"deviceToken\":\"" + "0123456789abcdef".repeat(4) + "\",\"priority\":\"normal\",\"payload\":"
+            + "{\"Command\":{\"RequestType\":\"InstallApplication\",\"iTunesStoreID\":361309726,\"ManagementFlags\":1,"
+            + "\"ChangeManagementState\":\"Managed\",\"InstallAsManaged\":true,\"Options\":{\"PurchaseMethod\":1,\"NotManageable\":false},"
+            + "\"Attributes\":{\"VPNUUID\":\"" + UUID.randomUUID() + "\",\"Removable\":false,"
+            + "\"AssociatedDomains\":[\"applinks:example.com\",\"webcredentials:example.com\"]},"
+            + "\"Configuration\":{\"ServerURL\":\"https://mdm.example.com/app\",\"Tenant\":\"acme & co <eu>\"}}}}";
+    private static volatile Object sink;
+
+    public static void main(String[] args) {
+        final int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        final byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+        final Gson gson = new Gson();
+        final String commandUUID = UUID.randomUUID().toString();
+
+        System.out.printf("Body: %d bytes%n%n", body.length);
+        System.out.printf("%-26s %12s %14s%n", "operation", "ns/op", "bytes/op");
+        run("gson bind + toJson", iterations, () -> {
+            CommandRequest request = gson.fromJson(new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8), CommandRequest.class);
+            request.getPayload().put("CommandUUID", commandUUID);
+            sink = gson.toJson(request.getPayload());
+        });
+        run("raw passthrough", iterations, () -> {
+            CommandRequest request = CommandRequestReader.read(body);
+            request.getPayload().put("CommandUUID", commandUUID);
+            sink = CommandRequestReader.withCommandUUID(request.getPayloadJson(), commandUUID);
+        });
+    }
+
+    private static void run(String name, int iterations, Runnable task) {
+        // Warm up for as long as the measurement so that the JIT has compiled the hot paths.
+        for (int i = 0; i < iterations; i++) {
+            task.run();
+        }
+        final long threadId = Thread.currentThread().getId();
+        final long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            task.run();
+        }
+        final long elapsed = System.nanoTime() - start;
+        final long allocated = THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        System.out.printf("%-26s %12.0f %14.0f%n", name, elapsed / (double) iterations, allocated / (double) iterations);
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.controller;
+
+import com.devinbroyal.mdm.domain.CommandPriority;
+import com.devinbroyal.mdm.domain.CommandRequest;
+import com.google.gson.JsonSyntaxException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandRequestReaderTest {
+
+    @Test
+    void keepsThePayloadTextAndExtractsTheMembersTheDispatcherReads() {
+        String payload = "{ \"Command\": {\"RequestType\": \"EraseDevice\", \"PIN\": \"123456\", \"Big\": 12345678901234567890, \"Ratio\": 1.50e+2},"
+                + " \"CommandUUID\": \"abc-\\u00e9\", \"Note\": \"caf\u00e9 \\\"quoted\\\"\", \"List\": [1, true, null, {}] }";
+        CommandRequest request = read("{\"deviceToken\": \"00ff\", \"tenant\": \"acme\", \"priority\": null,"
+                + " \"payload\": " + payload + ", \"extra\": [{\"nested\": [0.5]}], \"pushMagic\": \"m\\/agic\"}");
+
+        assertEquals("00ff", request.getDeviceToken());
+        assertEquals("acme", request.getTenant());
+        assertNull(request.getPriority());
+        assertEquals("m/agic", request.getPushMagic());
+        assertEquals(payload, request.getPayloadJson(), "numbers, spacing and key order are kept as sent");
+        assertEquals("abc-\u00e9", request.getPayload().get("CommandUUID"));
+        assertEquals(Map.of("RequestType", "EraseDevice"), request.getPayload().get("Command"));
+        assertEquals(CommandPriority.URGENT, CommandPriority.resolve(null, request.getPayload(), CommandPriority.NORMAL));
+    }
+
+    @Test
+    void splicesACommandUUIDAsTheFirstPayloadMember() {
+        assertEquals("{\"CommandUUID\":\"u\",\"Command\":{}}", CommandRequestReader.withCommandUUID("{\"Command\":{}}", "u"));
+        assertEquals("{\"CommandUUID\":\"u\", \n\"a\":1}", CommandRequestReader.withCommandUUID("{ \n\"a\":1}", "u"));
+        assertEquals("{\"CommandUUID\":\"u\"}", CommandRequestReader.withCommandUUID("{ }", "u"));
+    }
+
+    @Test
+    void acceptsAMissingOrNullPayload() {
+        assertNull(read("{\"deviceToken\":\"00ff\"}").getPayloadJson());
+        CommandRequest request = read(" {\"payload\":null} ");
+        assertNull(request.getPayload());
+        assertNull(request.getPayloadJson());
+    }
+
+    @Test
+    void rejectsMalformedJson() {
+        String[] malformed = {
+                "", "[]", "{", "{\"payload\":{}", "{\"payload\":{}} x", "{\"a\":01}", "{\"a\":1.}", "{\"a\":-}",
+                "{\"a\":tru}", "{\"a\":\"\\x\"}", "{\"a\":\"\\u12g4\"}", "{\"a\":\"tab\there\"}", "{\"a\":[1,]}",
+                "{\"a\":1,}", "{a:1}", "{\"payload\":{\"Command\":{\"RequestType\":\"x\",}}}",
+                "{\"a\":" + "[".repeat(CommandRequestReader.MAX_DEPTH) + "]".repeat(CommandRequestReader.MAX_DEPTH) + "}"
+        };
+        for (String body : malformed) {
+            assertThrows(JsonSyntaxException.class, () -> read(body), body);
+        }
+        byte[] overlong = "{\"a\":\"..\"}".getBytes(StandardCharsets.US_ASCII);
+        overlong[6] = (byte) 0xC0;
+        overlong[7] = (byte) 0xAF;
+        assertThrows(JsonSyntaxException.class, () -> CommandRequestReader.read(overlong));
+    }
+
+    @Test
+    void rejectsMembersOfTheWrongType() {
+        assertThrows(IllegalArgumentException.class, () -> read("{\"deviceToken\":42}"));
+        assertThrows(IllegalArgumentException.class, () -> read("{\"payload\":[]}"));
+        assertThrows(IllegalArgumentException.class, () -> read("{\"payload\":{\"CommandUUID\":7}}"));
+    }
+
+    private static CommandRequest read(String body) {
+        return CommandRequestReader.read(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.controller;
+
+import com.devinbroyal.mdm.config.JsonConfig;
+import com.devinbroyal.mdm.domain.CommandResult;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistoryJsonWriterTest {
+
+    private final Gson gson = JsonConfig.createGson();
+
+    @Test
+    void writesTheSameBytesAsGson() throws IOException {
+        Map<String, List<CommandResult>> history = new LinkedHashMap<>();
+        history.put("token<1>", List.of(
+                new CommandResult("uuid-1", CommandResult.Status.ACCEPTED, null).withBatchId("batch-7"),
+                new CommandResult("uuid-2", CommandResult.Status.REJECTED, "BadDeviceToken \"quoted\" \\ a&b='c'\n\t\u0001", 3)));
+        history.put("token-2", List.of(new CommandResult(null, CommandResult.Status.RETRYING, "caf\u00e9 \u20ac \ud83d\ude00 \u2028 \u2029 \ud800", 0)));
+        history.put("token-3", List.of());
+
+        assertEquals(gsonBytes(history), write(history));
+    }
+
+    @Test
+    void streamsHistoriesLargerThanItsBuffer() throws IOException {
+        Map<String, List<CommandResult>> history = new LinkedHashMap<>();
+        for (int device = 0; device < 200; device++) {
+            List<CommandResult> results = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                results.add(new CommandResult("uuid-\u00e9-" + device + "-" + i, CommandResult.Status.ACCEPTED, i % 3 == 0 ? "\u20ac reason" : null, i));
+            }
+            history.put("device-" + device, results);
+        }
+
+        String json = write(history);
+        assertTrue(json.length() > 10 * HistoryJsonWriter.BUFFER_SIZE);
+        assertEquals(gsonBytes(history), json);
+    }
+
+    @Test
+    void formatsInstantsAndNumbersLikeTheJdk() throws IOException {
+        Instant[] instants = {
+                Instant.EPOCH, Instant.parse("2024-02-29T23:59:59.123Z"), Instant.parse("1969-12-31T23:59:59.000456Z"),
+                Instant.parse("0000-01-01T00:00:00.000000001Z"), Instant.parse("9999-12-31T23:59:59.999999999Z"),
+                Instant.parse("+10000-01-01T00:00:00Z"), Instant.parse("-0001-12-31T00:00:00Z"), Instant.now()
+        };
+        for (Instant instant : instants) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            HistoryJsonWriter json = new HistoryJsonWriter(out);
+            json.instant(instant);
+            json.flush();
+            assertEquals('"' + instant.toString() + '"', out.toString(StandardCharsets.UTF_8));
+        }
+        for (long value : new long[] {0, 7, 10, 99, 1_000_000_007L, Long.MAX_VALUE, -1, Long.MIN_VALUE}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            HistoryJsonWriter json = new HistoryJsonWriter(out);
+            json.number(value);
+            json.flush();
+            assertEquals(Long.toString(value), out.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * What the handler used to send: Gson's output encoded as UTF-8, which turns an unpaired
+     * surrogate into '?'.
+     */
+    private String gsonBytes(Map<String, List<CommandResult>> history) {
+        return new String(gson.toJson(history).getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+    }
+
+    private static String write(Map<String, List<CommandResult>> history) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HistoryJsonWriter json = new HistoryJsonWriter(out);
+        json.raw('{');
+        boolean firstDevice = true;
+        for (Map.Entry<String, List<CommandResult>> device : history.entrySet()) {
+            json.name(device.getKey(), firstDevice);
+            firstDevice = false;
+            json.raw('[');
+            boolean first = true;
+            for (CommandResult result : device.getValue()) {
+                if (!first) {
+                    json.raw(',');
+                }
+                json.commandResult(result);
+                first = false;
+            }
+            json.raw(']');
+        }
+        json.raw('}');
+        json.flush();
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,166 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.controller;
+
+import com.devinbroyal.mdm.config.JsonConfig;
+import com.devinbroyal.mdm.domain.CommandResult;
+import com.devinbroyal.mdm.persistence.InMemoryExecutionHistoryRepository;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatusHandlerTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private HttpServer server;
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void answersAnUnchangedHistoryWith304AndAChangedOneWithANewTag() throws Exception {
+        InMemoryExecutionHistoryRepository repository = new InMemoryExecutionHistoryRepository();
+        repository.recordResult("device-a", new CommandResult("uuid-1", CommandResult.Status.ACCEPTED, null));
+        URI status = start(new StatusHandler(repository, 1024 * 1024));
+
+        HttpResponse<String> first = client.send(HttpRequest.newBuilder(status).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, first.statusCode());
+        assertEquals(JsonConfig.createGson().toJson(repository.getFullHistory()), first.body());
+        String etag = first.headers().firstValue("ETag").orElseThrow();
+
+        HttpResponse<String> unchanged = client.send(HttpRequest.newBuilder(status).header("If-None-Match", "\"other\", " + etag).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(304, unchanged.statusCode());
+        assertEquals("", unchanged.body());
+
+        repository.recordResult("device-a", new CommandResult("uuid-2", CommandResult.Status.REJECTED, "Unregistered"));
+        HttpResponse<String> changed = client.send(HttpRequest.newBuilder(status).header("If-None-Match", etag).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, changed.statusCode());
+        assertTrue(changed.body().contains("uuid-2"));
+        assertNotEquals(etag, changed.headers().firstValue("ETag").orElseThrow());
+
+        HttpResponse<String> query = client.send(HttpRequest.newBuilder(URI.create(status + "?status=rejected")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, query.statusCode());
+        assertTrue(query.body().startsWith("{\"results\":[{\"deviceToken\":\"device-a\",\"commandUUID\":\"uuid-2\""));
+        assertEquals(changed.headers().firstValue("ETag"), query.headers().firstValue("ETag"));
+
+        HttpResponse<String> invalid = client.send(HttpRequest.newBuilder(URI.create(status + "?limit=0")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, invalid.statusCode());
+    }
+
+    @Test
+    void concurrentRequestsForTheSameVersionShareOneEncoding() throws Exception {
+        AtomicInteger encodings = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        InMemoryExecutionHistoryRepository repository = new InMemoryExecutionHistoryRepository() {
+            @Override
+            public void forEachDevice(BiConsumer<String, Collection<CommandResult>> action) {
+                encodings.incrementAndGet();
+                try {
+                    assertTrue(release.await(5, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.forEachDevice(action);
+            }
+        };
+        repository.recordResult("device-a", new CommandResult("uuid-1", CommandResult.Status.ACCEPTED, null));
+        URI status = start(new StatusHandler(repository, 1024 * 1024));
+
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            responses.add(client.sendAsync(HttpRequest.newBuilder(status).build(), HttpResponse.BodyHandlers.ofString()));
+        }
+        Thread.sleep(200);
+        release.countDown();
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            assertTrue(response.get(5, TimeUnit.SECONDS).body().contains("uuid-1"));
+        }
+        assertEquals(1, encodings.get());
+    }
+
+    @Test
+    void streamsAHistoryTooLargeToCache() throws Exception {
+        InMemoryExecutionHistoryRepository repository = new InMemoryExecutionHistoryRepository();
+        for (int i = 0; i < 100; i++) {
+            repository.recordResult("device-" + i, new CommandResult("uuid-" + i, CommandResult.Status.ACCEPTED, null));
+        }
+        URI status = start(new StatusHandler(repository, 64));
+
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(status).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        assertEquals(JsonConfig.createGson().toJson(repository.getFullHistory()).length(), response.body().length());
+        assertTrue(response.headers().firstValue("ETag").isPresent());
+    }
+
+    @Test
+    void looksUpCommandsOneAtATimeAndInBulk() throws Exception {
+        InMemoryExecutionHistoryRepository repository = new InMemoryExecutionHistoryRepository();
+        repository.recordResult("device-a", new CommandResult("uuid-1", CommandResult.Status.RETRYING, "TooManyRequests"));
+        repository.recordResult("device-a", new CommandResult("uuid-1", CommandResult.Status.ACCEPTED, null));
+        repository.recordResult("device-b", new CommandResult("uuid-2", CommandResult.Status.REJECTED, "Unregistered"));
+        URI status = start(new StatusHandler(repository, 1024 * 1024));
+
+        HttpResponse<String> one = client.send(HttpRequest.newBuilder(URI.create(status + "/uuid-1")).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, one.statusCode());
+        assertTrue(one.body().startsWith("{\"deviceToken\":\"device-a\",\"commandUUID\":\"uuid-1\",\"status\":\"ACCEPTED\""));
+        assertEquals(404, client.send(HttpRequest.newBuilder(URI.create(status + "/uuid-3")).build(), HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpResponse<String> bulk = client.send(HttpRequest.newBuilder(URI.create(status + "/query"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"commandUUIDs\":[\"uuid-2\",\"uuid-3\",\"uuid-1\",\"uuid-2\"]}")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, bulk.statusCode());
+        assertTrue(bulk.body().startsWith("{\"results\":[{\"deviceToken\":\"device-b\",\"commandUUID\":\"uuid-2\""));
+        assertTrue(bulk.body().endsWith("],\"notFound\":[\"uuid-3\"]}"));
+        assertEquals(2, bulk.body().split("\"deviceToken\"").length - 1);
+
+        StringBuilder tooMany = new StringBuilder("{\"commandUUIDs\":[");
+        for (int i = 0; i <= StatusHandler.MAX_LOOKUP_COMMANDS; i++) {
+            tooMany.append(i == 0 ? "" : ",").append('"').append(i).append('"');
+        }
+        tooMany.append("]}");
+        for (String body : List.of(tooMany.toString(), "{\"commandUUIDs\":[]}", "[\"uuid-1\"]")) {
+            HttpResponse<String> invalid = client.send(HttpRequest.newBuilder(URI.create(status + "/query"))
+                    .POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(400, invalid.statusCode(), body.length() > 100 ? "too many" : body);
+        }
+    }
+
+    private URI start(StatusHandler handler) throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/status", handler);
+        server.setExecutor(Executors.newFixedThreadPool(8));
+        server.start();
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/status");
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
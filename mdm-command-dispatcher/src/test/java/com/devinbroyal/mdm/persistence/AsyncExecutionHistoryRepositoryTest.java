@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.persistence;
+
+import com.devinbroyal.mdm.domain.CommandResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncExecutionHistoryRepositoryTest {
+
+    @Test
+    void recordsResultsInBatchesOnTheWriterThread() throws Exception {
+        List<Integer> batchSizes = new ArrayList<>();
+        List<String> threads = new ArrayList<>();
+        InMemoryExecutionHistoryRepository target = new InMemoryExecutionHistoryRepository() {
+            @Override
+            public CompletionStage<Void> recordResults(List<DeviceResult> results) {
+                batchSizes.add(results.size());
+                threads.add(Thread.currentThread().getName());
+                return super.recordResults(results);
+            }
+        };
+        try (AsyncExecutionHistoryRepository repository = new AsyncExecutionHistoryRepository(target, 1024, 16,
+                AsyncExecutionHistoryRepository.OverflowPolicy.BLOCK)) {
+            for (int i = 0; i < 100; i++) {
+                repository.recordResult("device-" + i % 3, new CommandResult("c-" + i, CommandResult.Status.ACCEPTED, null));
+            }
+            repository.recordResults(List.of(new DeviceResult("device-a", new CommandResult("last", CommandResult.Status.REJECTED, "Unregistered"))))
+                    .toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+            // Everything handed over earlier is recorded by the time a later batch completes.
+            assertEquals(101, target.size());
+            assertEquals(CommandResult.Status.REJECTED, repository.findLatest("last").getResult().getStatus());
+            assertTrue(batchSizes.stream().allMatch(size -> size <= 16 + 1));
+            assertTrue(threads.stream().allMatch("history-writer"::equals));
+        }
+    }
+
+    @Test
+    void dropsResultsOrWaitsForRoomWhenTheWriterIsBehind() throws Exception {
+        for (AsyncExecutionHistoryRepository.OverflowPolicy policy : AsyncExecutionHistoryRepository.OverflowPolicy.values()) {
+            CountDownLatch writing = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            AtomicInteger recorded = new AtomicInteger();
+            InMemoryExecutionHistoryRepository target = new InMemoryExecutionHistoryRepository() {
+                @Override
+                public CompletionStage<Void> recordResults(List<DeviceResult> results) {
+                    writing.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    recorded.addAndGet(results.size());
+                    return super.recordResults(results);
+                }
+            };
+            AsyncExecutionHistoryRepository repository = new AsyncExecutionHistoryRepository(target, 4, 1, policy);
+            repository.recordResult("device-a", new CommandResult("first", CommandResult.Status.ACCEPTED, null));
+            assertTrue(writing.await(5, TimeUnit.SECONDS));
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 20; i++) {
+                    repository.recordResult("device-a", new CommandResult("c-" + i, CommandResult.Status.ACCEPTED, null));
+                }
+            });
+            producer.start();
+            producer.join(500);
+
+            if (policy == AsyncExecutionHistoryRepository.OverflowPolicy.DROP) {
+                // The writer is stuck on the first result and four wait; the rest are dropped.
+                assertFalse(producer.isAlive());
+                assertEquals(16L, repository.snapshot().get("dropped"));
+                CompletionException rejected = assertThrows(CompletionException.class, () -> repository.recordResults(
+                        List.of(new DeviceResult("device-a", new CommandResult("batch", CommandResult.Status.ACCEPTED, null)))).toCompletableFuture().join());
+                assertInstanceOf(RejectedExecutionException.class, rejected.getCause());
+            } else {
+                assertTrue(producer.isAlive());
+                assertEquals(1L, repository.snapshot().get("blockedProducers"));
+            }
+            release.countDown();
+            producer.join(5000);
+            repository.close();
+            assertEquals(policy == AsyncExecutionHistoryRepository.OverflowPolicy.DROP ? 5 : 21, recorded.get(), policy.name());
+        }
+    }
+
+    @Test
+    void closesTheRepositoryItWritesTo() throws IOException {
+        boolean[] closed = {false};
+        class ClosableRepository extends InMemoryExecutionHistoryRepository implements java.io.Closeable {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        }
+        ClosableRepository target = new ClosableRepository();
+        AsyncExecutionHistoryRepository repository = new AsyncExecutionHistoryRepository(target, 64, 8, AsyncExecutionHistoryRepository.OverflowPolicy.BLOCK);
+        repository.recordResult("device-a", new CommandResult("c-1", CommandResult.Status.ACCEPTED, null));
+        repository.close();
+        assertEquals(1, target.size());
+        assertTrue(closed[0]);
+        repository.recordResult("device-a", new CommandResult("c-2", CommandResult.Status.ACCEPTED, null));
+        assertEquals(1L, repository.snapshot().get("dropped"));
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,192 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.persistence;
+
+import com.devinbroyal.mdm.domain.CommandResult;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarExecutionHistoryRepositoryTest {
+
+    @Test
+    void answersQueriesExactlyAsTheObjectRepository() {
+        ColumnarExecutionHistoryRepository columnar = new ColumnarExecutionHistoryRepository();
+        InMemoryExecutionHistoryRepository objects = new InMemoryExecutionHistoryRepository();
+        Random random = new Random(7);
+        String[] devices = new String[50];
+        for (int i = 0; i < devices.length; i++) {
+            devices[i] = String.format("%064x", random.nextLong()).replace(' ', '0');
+        }
+        devices[1] = devices[1].toUpperCase();
+        devices[2] = "not-a-hex-token";
+        String[] reasons = {null, "BadDeviceToken", "Unregistered", "TooManyRequests"};
+        Instant start = Instant.parse("2025-09-26T10:00:00Z");
+        List<Instant> timestamps = new ArrayList<>();
+        for (int i = 0; i < 3 * ColumnarExecutionHistoryRepository.CHUNK_SIZE; i++) {
+            String uuid = i % 97 == 0 ? null : i % 89 == 0 ? "Mixed-" + i : i % 2 == 0 ? UUID.randomUUID().toString() : UUID.randomUUID().toString().toUpperCase();
+            // Mostly in order, with some results recorded late and some sharing a timestamp.
+            Instant timestamp = start.plusMillis(i % 50 == 0 ? i - 300 : i - i % 3).plusNanos(i % 7);
+            timestamps.add(timestamp);
+            CommandResult.Status status = CommandResult.Status.values()[random.nextInt(CommandResult.Status.values().length)];
+            CommandResult result = new CommandResult(uuid, status, timestamp, reasons[random.nextInt(reasons.length)],
+                    random.nextInt(4), i % 10 == 0 ? "batch-" + i / 1000 : null);
+            String device = devices[random.nextInt(devices.length)];
+            columnar.recordResult(device, result);
+            objects.recordResult(device, result);
+        }
+        assertEquals(objects.size(), columnar.size());
+
+        List<Consumer<HistoryQuery>> queries = List.of(
+                query -> { },
+                query -> query.setDeviceToken(devices[1]),
+                query -> query.setDeviceToken(devices[2]),
+                query -> query.setDeviceToken(devices[3]),
+                query -> query.setStatus(CommandResult.Status.NOT_NOW),
+                query -> query.setBatchId("batch-7"),
+                query -> {
+                    query.setBatchId("batch-3");
+                    query.setStatus(CommandResult.Status.ACCEPTED);
+                },
+                query -> {
+                    query.setSince(timestamps.get(2000));
+                    query.setUntil(timestamps.get(9000));
+                    query.setStatus(CommandResult.Status.REJECTED);
+                },
+                // Bounds beyond the times a row can hold.
+                query -> {
+                    query.setSince(Instant.parse("0001-01-01T00:00:00Z"));
+                    query.setUntil(Instant.parse("9999-01-01T00:00:00Z"));
+                },
+                query -> query.setSince(Instant.parse("9999-01-01T00:00:00Z")),
+                query -> query.setUntil(Instant.parse("0001-01-01T00:00:00Z")));
+        for (Consumer<HistoryQuery> filters : queries) {
+            for (int limit : new int[]{1, 37, HistoryQuery.MAX_LIMIT}) {
+                assertEquals(pages(objects, filters, limit), pages(columnar, filters, limit));
+            }
+        }
+        // The same results, though in recording rather than timestamp order.
+        for (String device : devices) {
+            List<CommandResult> expected = new ArrayList<>(objects.getFullHistory().get(device));
+            List<CommandResult> actual = new ArrayList<>(columnar.getFullHistory().get(device));
+            expected.sort(Comparator.comparing(CommandResult::getTimestamp).thenComparing(CommandResult::getCommandUUID, Comparator.nullsFirst(Comparator.naturalOrder())));
+            actual.sort(Comparator.comparing(CommandResult::getTimestamp).thenComparing(CommandResult::getCommandUUID, Comparator.nullsFirst(Comparator.naturalOrder())));
+            assertEquals(describe(expected), describe(actual));
+        }
+        assertEquals(objects.getFullHistory().keySet(), columnar.getFullHistory().keySet());
+
+        HistoryQuery unknown = new HistoryQuery();
+        unknown.setDeviceToken(devices[0].replace('0', '1').replace('a', 'b'));
+        assertTrue(columnar.query(unknown).getEntries().isEmpty());
+    }
+
+    @Test
+    void dropsWholeChunksOnceExpired() {
+        Instant start = Instant.parse("2025-09-26T10:00:00Z");
+        ColumnarExecutionHistoryRepository repository = new ColumnarExecutionHistoryRepository(Duration.ofHours(1),
+                Clock.fixed(start.plus(Duration.ofHours(2)), ZoneOffset.UTC));
+        for (int i = 0; i < ColumnarExecutionHistoryRepository.CHUNK_SIZE + 10; i++) {
+            // The first chunk has expired, the second has not.
+            Instant timestamp = i < ColumnarExecutionHistoryRepository.CHUNK_SIZE ? start : start.plus(Duration.ofMinutes(90));
+            repository.recordResult("device-" + i % 3, new CommandResult("c-" + i, CommandResult.Status.ACCEPTED, timestamp, null, 1, null));
+        }
+        long version = repository.getVersion();
+
+        assertEquals(ColumnarExecutionHistoryRepository.CHUNK_SIZE, repository.evictExpired());
+        assertEquals(0, repository.evictExpired());
+        assertEquals(10, repository.size());
+        assertTrue(repository.getVersion() > version);
+        assertEquals(10, repository.getFullHistory().values().stream().mapToInt(List::size).sum());
+        HistoryQuery query = new HistoryQuery();
+        assertEquals("c-" + (ColumnarExecutionHistoryRepository.CHUNK_SIZE + 9), repository.query(query).getEntries().get(0).getResult().getCommandUUID());
+        assertEquals(10, repository.query(query).getEntries().size());
+    }
+
+    @Test
+    void findsTheNewestResultOfEachCommandAsTheObjectRepository() {
+        Instant start = Instant.parse("2025-09-26T10:00:00Z");
+        Clock clock = Clock.fixed(start.plus(Duration.ofHours(2)), ZoneOffset.UTC);
+        ColumnarExecutionHistoryRepository columnar = new ColumnarExecutionHistoryRepository(Duration.ofHours(1), clock);
+        InMemoryExecutionHistoryRepository objects = new InMemoryExecutionHistoryRepository(0, Duration.ofHours(1), clock);
+        Random random = new Random(11);
+        List<String> commands = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            String uuid = UUID.randomUUID().toString();
+            commands.add(i % 3 == 0 ? uuid.toUpperCase() : i % 50 == 0 ? "Mixed-" + i : uuid);
+        }
+        // The same UUID in the other case is another command.
+        commands.add(commands.get(1).toUpperCase());
+        int rows = 3 * ColumnarExecutionHistoryRepository.CHUNK_SIZE;
+        for (int i = 0; i < rows; i++) {
+            // The first chunk expires; some results are recorded late.
+            Instant timestamp = i < ColumnarExecutionHistoryRepository.CHUNK_SIZE ? start : start.plus(Duration.ofMinutes(90)).plusMillis(i % 40 == 0 ? -i : i);
+            CommandResult result = new CommandResult(commands.get(random.nextInt(commands.size())),
+                    CommandResult.Status.values()[random.nextInt(CommandResult.Status.values().length)], timestamp, null, i % 3, null);
+            columnar.recordResult("device-" + i % 20, result);
+            objects.recordResult("device-" + i % 20, result);
+        }
+        assertEquals(latest(objects, commands), latest(columnar, commands));
+
+        assertEquals(objects.evictExpired(), columnar.evictExpired());
+        assertEquals(latest(objects, commands), latest(columnar, commands));
+        for (int i = 0; i < 500; i++) {
+            CommandResult result = new CommandResult(commands.get(i), CommandResult.Status.ACCEPTED, start.plus(Duration.ofHours(2)), null, 1, null);
+            columnar.recordResult("device-x", result);
+            objects.recordResult("device-x", result);
+        }
+        assertEquals(latest(objects, commands), latest(columnar, commands));
+        assertNull(columnar.findLatest("unknown"));
+        assertNull(columnar.findLatest(UUID.randomUUID().toString()));
+    }
+
+    private static List<String> latest(ExecutionHistoryRepository repository, List<String> commands) {
+        return repository.findLatest(commands).values().stream()
+                .map(entry -> entry.getDeviceToken() + " " + entry.getSequence() + " " + describe(List.of(entry.getResult())))
+                .collect(Collectors.toList());
+    }
+
+    private static List<String> pages(ExecutionHistoryRepository repository, Consumer<HistoryQuery> filters, int limit) {
+        List<String> seen = new ArrayList<>();
+        HistoryQuery query = new HistoryQuery();
+        filters.accept(query);
+        query.setLimit(limit);
+        for (int page = 0; page < 5; page++) {
+            HistoryPage result = repository.query(query);
+            for (HistoryEntry entry : result.getEntries()) {
+                seen.add(entry.getDeviceToken() + " " + entry.getSequence() + " " + describe(List.of(entry.getResult())));
+            }
+            seen.add("cursor " + result.getNextCursor());
+            if (result.getNextCursor() == null) {
+                break;
+            }
+            query.setCursor(result.getNextCursor());
+        }
+        return seen;
+    }
+
+    private static String describe(List<CommandResult> results) {
+        return results.stream()
+                .map(r -> r.getCommandUUID() + "/" + r.getStatus() + "/" + r.getTimestamp() + "/" + r.getRejectionReason() + "/" + r.getAttempt() + "/" + r.getBatchId())
+                .collect(Collectors.joining(","));
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,229 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.persistence;
+
+import com.devinbroyal.mdm.domain.CommandResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DurableExecutionHistoryRepositoryTest {
+
+    private static final int SEGMENT_BYTES = 4096;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysEveryResultAcrossSegmentsAfterARestart() throws IOException {
+        String hexToken = "0123456789abcdef".repeat(4);
+        Instant timestamp = Instant.parse("2025-09-26T10:00:00.123456789Z");
+        Map<String, List<CommandResult>> recorded;
+        try (DurableExecutionHistoryRepository repository = open(new InMemoryExecutionHistoryRepository())) {
+            for (int i = 0; i < 200; i++) {
+                String token = i % 3 == 0 ? hexToken : i % 3 == 1 ? hexToken.toUpperCase() : "device-é-" + i % 5;
+                String uuid = i % 4 == 0 ? UUID.randomUUID().toString() : i % 4 == 1 ? UUID.randomUUID().toString().toUpperCase()
+                        : i % 4 == 2 ? "Custom-" + i : null;
+                repository.recordResult(token, new CommandResult(uuid, CommandResult.Status.values()[i % CommandResult.Status.values().length],
+                        timestamp.plusMillis(i), i % 2 == 0 ? null : "Reason " + i % 7, i % 4, i % 5 == 0 ? "batch-" + i % 2 : null));
+            }
+            recorded = repository.getFullHistory();
+        }
+        assertTrue(segments().size() > 2);
+
+        try (DurableExecutionHistoryRepository reopened = open(new InMemoryExecutionHistoryRepository())) {
+            assertEquals(describe(recorded), describe(reopened.getFullHistory()));
+            reopened.recordResult(hexToken, new CommandResult("after-restart", CommandResult.Status.ACCEPTED, null));
+        }
+        try (DurableExecutionHistoryRepository reopened = open(new ColumnarExecutionHistoryRepository())) {
+            assertEquals(201, reopened.getFullHistory().values().stream().mapToInt(List::size).sum());
+            HistoryQuery query = new HistoryQuery();
+            query.setLimit(1);
+            assertEquals("after-restart", reopened.query(query).getEntries().get(0).getResult().getCommandUUID());
+        }
+    }
+
+    @Test
+    void resumesAfterATornRecord() throws IOException {
+        try (DurableExecutionHistoryRepository repository = open(new InMemoryExecutionHistoryRepository())) {
+            for (int i = 0; i < 3; i++) {
+                repository.recordResult("device-a", new CommandResult("c-" + i, CommandResult.Status.ACCEPTED, null));
+            }
+        }
+        // Corrupt the payload of the last record, as a crash part way through writing it would.
+        Path segment = segments().get(0);
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(segment));
+        int position = DurableExecutionHistoryRepository.SEGMENT_HEADER_BYTES;
+        int last = position;
+        while (bytes.getInt(position) != 0) {
+            last = position;
+            position += 8 + bytes.getInt(position);
+        }
+        bytes.put(last + 12, (byte) (bytes.get(last + 12) ^ 0x5A));
+        Files.write(segment, bytes.array());
+
+        try (DurableExecutionHistoryRepository reopened = open(new InMemoryExecutionHistoryRepository())) {
+            assertEquals(List.of("c-0", "c-1"), uuids(reopened.getFullHistory().get("device-a")));
+            reopened.recordResult("device-a", new CommandResult("c-3", CommandResult.Status.ACCEPTED, null));
+        }
+        try (DurableExecutionHistoryRepository reopened = open(new InMemoryExecutionHistoryRepository())) {
+            assertEquals(List.of("c-0", "c-1", "c-3"), uuids(reopened.getFullHistory().get("device-a")));
+        }
+    }
+
+    @Test
+    void refusesALogThatIsAlreadyOpen() throws IOException {
+        try (DurableExecutionHistoryRepository repository = open(new InMemoryExecutionHistoryRepository())) {
+            // Closed at once should it open after all.
+            assertThrows(IOException.class, () -> open(new InMemoryExecutionHistoryRepository()).close());
+            // The refusal leaves the open log untouched.
+            repository.recordResult("device-a", new CommandResult("c-0", CommandResult.Status.ACCEPTED, null));
+        }
+        try (DurableExecutionHistoryRepository reopened = open(new InMemoryExecutionHistoryRepository())) {
+            assertEquals(List.of("c-0"), uuids(reopened.getFullHistory().get("device-a")));
+        }
+    }
+
+    @Test
+    void restartsFromTheSnapshotAndReplaysOnlyTheLogWrittenAfterIt() throws IOException {
+        Map<String, List<CommandResult>> recorded;
+        try (DurableExecutionHistoryRepository repository = open(new ColumnarExecutionHistoryRepository())) {
+            recordVaried(repository, 0, 150);
+        }
+        Path snapshot = directory.resolve(DurableExecutionHistoryRepository.SNAPSHOT_NAME);
+        byte[] firstSnapshot = Files.readAllBytes(snapshot);
+        try (DurableExecutionHistoryRepository repository = open(new ColumnarExecutionHistoryRepository())) {
+            assertEquals(150, repository.getFullHistory().values().stream().mapToInt(List::size).sum());
+            recordVaried(repository, 150, 200);
+            recorded = repository.getFullHistory();
+        }
+        assertTrue(segments().size() > 2);
+        // Put back the snapshot of the first 150, as if the process had died before taking another.
+        Files.write(snapshot, firstSnapshot);
+
+        AtomicInteger replayed = new AtomicInteger();
+        ColumnarExecutionHistoryRepository counting = new ColumnarExecutionHistoryRepository() {
+            @Override
+            public synchronized void recordResult(String deviceToken, CommandResult result) {
+                replayed.incrementAndGet();
+                super.recordResult(deviceToken, result);
+            }
+        };
+        try (DurableExecutionHistoryRepository reopened = open(counting)) {
+            assertEquals(50, replayed.get());
+            assertEquals(describe(recorded), describe(reopened.getFullHistory()));
+            assertEquals("Custom-198", reopened.findLatest("Custom-198").getResult().getCommandUUID());
+            assertEquals(new UUID(4, 4).toString(), reopened.findLatest(new UUID(4, 4).toString()).getResult().getCommandUUID());
+            HistoryQuery query = new HistoryQuery();
+            query.setBatchId("batch-1");
+            query.setLimit(100);
+            assertEquals(20, reopened.query(query).getEntries().size());
+        }
+
+        // A store that cannot take the snapshot replays the whole log.
+        try (DurableExecutionHistoryRepository reopened = open(new InMemoryExecutionHistoryRepository())) {
+            assertEquals(describe(recorded), describe(reopened.getFullHistory()));
+        }
+    }
+
+    @Test
+    void segmentsInTheSnapshotAreDeletedOnceExpiredWithoutBeingReplayed() throws IOException {
+        Instant now = Instant.parse("2025-09-26T10:00:00Z");
+        Clock clock = Clock.fixed(now, ZoneOffset.UTC);
+        try (DurableExecutionHistoryRepository repository = new DurableExecutionHistoryRepository(new ColumnarExecutionHistoryRepository(),
+                directory, SEGMENT_BYTES, 10, Duration.ofHours(1), 3600, clock)) {
+            for (int i = 0; i < 100; i++) {
+                Instant timestamp = i < 90 ? now.minus(Duration.ofHours(2)) : now;
+                repository.recordResult("device-a", new CommandResult("c-" + i, CommandResult.Status.ACCEPTED, timestamp, null, 1, null));
+            }
+        }
+        int before = segments().size();
+        try (DurableExecutionHistoryRepository reopened = new DurableExecutionHistoryRepository(new ColumnarExecutionHistoryRepository(),
+                directory, SEGMENT_BYTES, 10, Duration.ofHours(1), 3600, clock)) {
+            assertEquals(100, reopened.getFullHistory().get("device-a").size());
+            reopened.evictExpired();
+            assertTrue(segments().size() < before);
+        }
+    }
+
+    @Test
+    void deletesExpiredSegmentsAndSkipsExpiredResultsOnReplay() throws IOException {
+        Instant now = Instant.parse("2025-09-26T10:00:00Z");
+        Clock clock = Clock.fixed(now, ZoneOffset.UTC);
+        try (DurableExecutionHistoryRepository repository = new DurableExecutionHistoryRepository(new InMemoryExecutionHistoryRepository(),
+                directory, SEGMENT_BYTES, 10, Duration.ofHours(1), 3600, clock)) {
+            for (int i = 0; i < 100; i++) {
+                Instant timestamp = i < 90 ? now.minus(Duration.ofHours(2)) : now;
+                repository.recordResult("device-a", new CommandResult("c-" + i, CommandResult.Status.ACCEPTED, timestamp, null, 1, null));
+            }
+            int before = segments().size();
+            repository.sync();
+            repository.evictExpired();
+            assertTrue(segments().size() < before);
+        }
+        try (DurableExecutionHistoryRepository reopened = new DurableExecutionHistoryRepository(new InMemoryExecutionHistoryRepository(),
+                directory, SEGMENT_BYTES, 10, Duration.ofHours(1), 3600, clock)) {
+            assertEquals(10, reopened.getFullHistory().get("device-a").size());
+        }
+    }
+
+    private DurableExecutionHistoryRepository open(ExecutionHistoryRepository index) throws IOException {
+        // Snapshotted on closing only.
+        return new DurableExecutionHistoryRepository(index, directory, SEGMENT_BYTES, 10, Duration.ZERO, 3600);
+    }
+
+    private static void recordVaried(ExecutionHistoryRepository repository, int from, int to) {
+        String hexToken = "0123456789abcdef".repeat(4);
+        Instant timestamp = Instant.parse("2025-09-26T10:00:00.123456789Z");
+        for (int i = from; i < to; i++) {
+            String token = i % 3 == 0 ? hexToken : i % 3 == 1 ? hexToken.toUpperCase() : "device-é-" + i % 5;
+            String uuid = i % 4 == 0 ? new UUID(i, i).toString() : i % 4 == 1 ? new UUID(i, i).toString().toUpperCase()
+                    : i % 4 == 2 ? "Custom-" + i : null;
+            repository.recordResult(token, new CommandResult(uuid, CommandResult.Status.values()[i % CommandResult.Status.values().length],
+                    timestamp.plusMillis(i), i % 2 == 0 ? null : "Reason " + i % 7, i % 4, i % 5 == 0 ? "batch-" + i % 2 : null));
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".log")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static List<String> uuids(List<CommandResult> results) {
+        return results.stream().map(CommandResult::getCommandUUID).collect(Collectors.toList());
+    }
+
+    private static String describe(Map<String, List<CommandResult>> history) {
+        return history.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(entry -> entry.getKey() + "=" + entry.getValue().stream()
+                        .map(r -> r.getCommandUUID() + "/" + r.getStatus() + "/" + r.getTimestamp() + "/" + r.getRejectionReason() + "/" + r.getAttempt() + "/" + r.getBatchId())
+                        .collect(Collectors.joining(",")))
+                .collect(Collectors.joining("\n"));
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.persistence;
+
+import com.devinbroyal.mdm.domain.CommandResult;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Measures the {@link DurableExecutionHistoryRepository}: the time per {@code recordResult} with
+ * the log attached, the bytes each result takes on disk, how long closing takes to snapshot the
+ * columnar index, and how long a restart takes to load that snapshot and, without it, to replay
+ * the whole log. The results are shaped like those of {@link HistoryMemoryBenchmark}.
+ * <p>
+ * Not a unit test; run it after {@code mvn test-compile}, e.g.
+ * {@code java -Xmx4g -cp target/classes:target/test-classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) com.devinbroyal.mdm.persistence.HistoryLogRecoveryBenchmark [results] [devices] [directory]}.
+ * The directory, a new temporary one by default, is emptied first.
+ */
+public class HistoryLogRecoveryBenchmark {
+
+    private static final int SEGMENT_BYTES = 64 * 1024 * 1024;
+
+    public static void main(String[] args) throws IOException {
+        final int results = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        final int devices = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+        final Path directory = args.length > 2 ? Paths.get(args[2]) : Files.createTempDirectory("history-log");
+        delete(directory);
+
+        final Random random = new Random(42);
+        final String[] tokens = new String[devices];
+        for (int i = 0; i < devices; i++) {
+            tokens[i] = String.format("%016x%016x%016x%016x", random.nextLong(), random.nextLong(), random.nextLong(), random.nextLong());
+        }
+        long start = System.nanoTime();
+        final long recordNanos;
+        DurableExecutionHistoryRepository recording = open(directory, new ColumnarExecutionHistoryRepository());
+        try {
+            for (int i = 0; i < results; i++) {
+                CommandResult.Status status = i % 5 == 0 ? CommandResult.Status.REJECTED : CommandResult.Status.ACCEPTED;
+                String reason = status == CommandResult.Status.REJECTED ? "BadDeviceToken" : null;
+                recording.recordResult(tokens[random.nextInt(devices)], new CommandResult(UUID.randomUUID().toString().toUpperCase(), status, reason, 1));
+            }
+            recordNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+        } finally {
+            recording.close();
+        }
+        final long closeNanos = System.nanoTime() - start;
+        final Path snapshot = directory.resolve(DurableExecutionHistoryRepository.SNAPSHOT_NAME);
+        final long snapshotBytes = Files.size(snapshot);
+        final long logBytes;
+        try (Stream<Path> files = Files.list(directory)) {
+            logBytes = files.filter(path -> !path.equals(snapshot)).mapToLong(path -> path.toFile().length()).sum();
+        }
+        System.out.printf("%d results over %d devices%n", results, devices);
+        System.out.printf("record:   %.2f us/result%n", recordNanos / 1000.0 / results);
+        System.out.printf("on disk:  %.1f bytes/result in the log (segments preallocated), %.1f in the snapshot%n",
+                logBytes / (double) results, snapshotBytes / (double) results);
+        System.out.printf("close:    %d ms, with the snapshot%n", closeNanos / 1_000_000);
+
+        recover("snapshot", directory, results);
+        Files.delete(snapshot);
+        recover("replay", directory, results);
+        delete(directory);
+    }
+
+    private static DurableExecutionHistoryRepository open(Path directory, ColumnarExecutionHistoryRepository index) throws IOException {
+        return new DurableExecutionHistoryRepository(index, directory, SEGMENT_BYTES, 100, Duration.ZERO, 3600);
+    }
+
+    private static void recover(String from, Path directory, int results) throws IOException {
+        ColumnarExecutionHistoryRepository index = new ColumnarExecutionHistoryRepository();
+        long start = System.nanoTime();
+        DurableExecutionHistoryRepository repository = open(directory, index);
+        long nanos = System.nanoTime() - start;
+        try {
+            System.out.printf("%-9s %d ms (%.0f results/s), %d results%n", from + ":", nanos / 1_000_000, results / (nanos / 1e9), index.size());
+        } finally {
+            repository.close();
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        if (Files.isDirectory(directory)) {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.persistence;
+
+import com.devinbroyal.mdm.domain.CommandResult;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Measures the heap each {@link ExecutionHistoryRepository} retains per result: a history of
+ * {@code results} results spread over {@code devices} devices with 64-digit tokens, random
+ * {@code CommandUUID}s and a handful of rejection reasons, as the dispatcher records them. The
+ * generated results are discarded as they are recorded, so only what the repository keeps is
+ * counted. Also prints the time per {@code recordResult}.
+ * <p>
+ * Not a unit test; run it after {@code mvn test-compile} with a heap large enough for the object
+ * repository, e.g.
+ * {@code java -Xmx8g -cp target/classes:target/test-classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) com.devinbroyal.mdm.persistence.HistoryMemoryBenchmark [results] [devices]}.
+ */
+public class HistoryMemoryBenchmark {
+
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+    private static final String[] REASONS = {null, null, null, "BadDeviceToken", "Unregistered", "TooManyRequests", "DeviceTokenNotForTopic"};
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws InterruptedException {
+        final int results = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        final int devices = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+
+        System.out.printf("%d results over %d devices%n%n", results, devices);
+        System.out.printf("%-10s %14s %14s%n", "store", "bytes/result", "ns/record");
+        run("memory", results, devices, InMemoryExecutionHistoryRepository::new);
+        run("columnar", results, devices, ColumnarExecutionHistoryRepository::new);
+    }
+
+    private static void run(String name, int results, int devices, Supplier<ExecutionHistoryRepository> factory) throws InterruptedException {
+        final Random random = new Random(42);
+        final String[] tokens = new String[devices];
+        for (int i = 0; i < devices; i++) {
+            tokens[i] = String.format("%016x%016x%016x%016x", random.nextLong(), random.nextLong(), random.nextLong(), random.nextLong());
+        }
+        final long before = usedHeap();
+        ExecutionHistoryRepository repository = factory.get();
+        final long start = System.nanoTime();
+        for (int i = 0; i < results; i++) {
+            CommandResult.Status status = i % 5 == 0 ? CommandResult.Status.REJECTED : CommandResult.Status.ACCEPTED;
+            String reason = status == CommandResult.Status.REJECTED ? REASONS[random.nextInt(REASONS.length)] : null;
+            repository.recordResult(tokens[random.nextInt(devices)], new CommandResult(UUID.randomUUID().toString().toUpperCase(), status, reason, 1));
+        }
+        final long elapsed = System.nanoTime() - start;
+        final long retained = usedHeap() - before;
+        sink = repository;
+        System.out.printf("%-10s %14.1f %14.0f%n", name, retained / (double) results, elapsed / (double) results);
+        sink = null;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,202 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.persistence;
+
+import com.devinbroyal.mdm.domain.CommandResult;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryExecutionHistoryRepositoryTest {
+
+    @Test
+    void pagesThroughADevicesResultsNewestFirst() {
+        InMemoryExecutionHistoryRepository repository = new InMemoryExecutionHistoryRepository();
+        for (int i = 0; i < 25; i++) {
+            repository.recordResult("device-a", new CommandResult("a-" + i, CommandResult.Status.ACCEPTED, null));
+            repository.recordResult("device-b", new CommandResult("b-" + i, CommandResult.Status.ACCEPTED, null));
+        }
+
+        HistoryQuery query = new HistoryQuery();
+        query.setDeviceToken("device-a");
+        query.setLimit(10);
+        List<String> seen = new ArrayList<>();
+        int pages = 0;
+        HistoryPage page;
+        do {
+            page = repository.query(query);
+            page.getEntries().forEach(entry -> seen.add(entry.getResult().getCommandUUID()));
+            query.setCursor(page.getNextCursor());
+            pages++;
+        } while (page.getNextCursor() != null);
+
+        assertEquals(3, pages);
+        assertEquals(25, seen.size());
+        assertEquals("a-24", seen.get(0));
+        assertEquals("a-0", seen.get(24));
+        assertEquals(25, seen.stream().distinct().count());
+    }
+
+    @Test
+    void filtersByStatusBatchAndTimeRange() {
+        InMemoryExecutionHistoryRepository repository = new InMemoryExecutionHistoryRepository();
+        List<CommandResult> recorded = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            CommandResult.Status status = i % 3 == 0 ? CommandResult.Status.REJECTED : CommandResult.Status.ACCEPTED;
+            CommandResult result = new CommandResult("c-" + i, status, null);
+            if (i % 2 == 0) {
+                result = result.withBatchId("batch-1");
+            }
+            recorded.add(result);
+            repository.recordResult("device-" + i % 4, result);
+        }
+
+        HistoryQuery rejected = new HistoryQuery();
+        rejected.setStatus(CommandResult.Status.REJECTED);
+        assertEquals(List.of("c-27", "c-24", "c-21", "c-18", "c-15", "c-12", "c-9", "c-6", "c-3", "c-0"), uuids(repository.query(rejected)));
+
+        HistoryQuery batch = new HistoryQuery();
+        batch.setBatchId("batch-1");
+        batch.setStatus(CommandResult.Status.REJECTED);
+        assertEquals(List.of("c-24", "c-18", "c-12", "c-6", "c-0"), uuids(repository.query(batch)));
+
+        HistoryQuery range = new HistoryQuery();
+        range.setSince(recorded.get(10).getTimestamp());
+        range.setUntil(recorded.get(20).getTimestamp());
+        List<String> inRange = uuids(repository.query(range));
+        assertTrue(inRange.contains("c-10"));
+        for (String uuid : inRange) {
+            CommandResult result = recorded.get(Integer.parseInt(uuid.substring(2)));
+            assertFalse(result.getTimestamp().isBefore(range.getSince()));
+            assertTrue(result.getTimestamp().isBefore(range.getUntil()));
+        }
+
+        HistoryQuery unknown = new HistoryQuery();
+        unknown.setDeviceToken("nobody");
+        assertTrue(repository.query(unknown).getEntries().isEmpty());
+    }
+
+    @Test
+    void rejectsMalformedCursorsAndLimits() {
+        HistoryQuery query = new HistoryQuery();
+        assertThrows(IllegalArgumentException.class, () -> query.setCursor("not-a-cursor"));
+        assertThrows(IllegalArgumentException.class, () -> query.setLimit(0));
+        assertThrows(IllegalArgumentException.class, () -> query.setLimit(HistoryQuery.MAX_LIMIT + 1));
+    }
+
+    @Test
+    void keepsOnlyTheNewestResultsOfEachDevice() {
+        InMemoryExecutionHistoryRepository repository = new InMemoryExecutionHistoryRepository(3, Duration.ZERO);
+        for (int i = 0; i < 10; i++) {
+            repository.recordResult("device-a", new CommandResult("a-" + i, CommandResult.Status.REJECTED, null).withBatchId("batch-" + i));
+        }
+        repository.recordResult("device-b", new CommandResult("b-0", CommandResult.Status.REJECTED, null));
+
+        assertEquals(4, repository.size());
+        assertEquals(List.of("a-7", "a-8", "a-9"), repository.getFullHistory().get("device-a").stream()
+                .map(CommandResult::getCommandUUID).collect(Collectors.toList()));
+        HistoryQuery rejected = new HistoryQuery();
+        rejected.setStatus(CommandResult.Status.REJECTED);
+        assertEquals(List.of("b-0", "a-9", "a-8", "a-7"), uuids(repository.query(rejected)));
+        HistoryQuery displacedBatch = new HistoryQuery();
+        displacedBatch.setBatchId("batch-0");
+        assertTrue(repository.query(displacedBatch).getEntries().isEmpty());
+    }
+
+    @Test
+    void dropsExpiredResultsAndEmptiedDevices() {
+        Instant now = Instant.now();
+        InMemoryExecutionHistoryRepository repository = new InMemoryExecutionHistoryRepository(0, Duration.ofHours(1),
+                Clock.fixed(now.plus(Duration.ofMinutes(90)), ZoneOffset.UTC));
+        repository.recordResult("device-a", new CommandResult("a-0", CommandResult.Status.ACCEPTED, null));
+        repository.recordResult("device-b", new CommandResult("b-0", CommandResult.Status.ACCEPTED, null));
+        long version = repository.getVersion();
+
+        assertEquals(2, repository.evictExpired());
+        assertEquals(0, repository.size());
+        assertTrue(repository.getFullHistory().isEmpty());
+        assertTrue(repository.getVersion() > version);
+
+        repository.recordResult("device-a", new CommandResult("a-1", CommandResult.Status.ACCEPTED, null));
+        assertEquals(List.of("a-1"), uuids(repository.query(new HistoryQuery())));
+        assertEquals(0, new InMemoryExecutionHistoryRepository().evictExpired());
+    }
+
+    @Test
+    void shedsTheOldestShareOfTheWholeHistory() {
+        InMemoryExecutionHistoryRepository repository = new InMemoryExecutionHistoryRepository();
+        for (int i = 0; i < 100; i++) {
+            repository.recordResult("device-" + i % 7, new CommandResult("c-" + i, CommandResult.Status.ACCEPTED, null));
+        }
+
+        assertEquals(25, repository.evictOldest(0.25));
+        assertEquals(75, repository.size());
+        HistoryQuery query = new HistoryQuery();
+        query.setLimit(HistoryQuery.MAX_LIMIT);
+        List<String> remaining = uuids(repository.query(query));
+        assertEquals(75, remaining.size());
+        assertEquals("c-25", remaining.get(remaining.size() - 1));
+        assertEquals(75, repository.getFullHistory().values().stream().mapToInt(List::size).sum());
+    }
+
+    @Test
+    void findsTheNewestResultOfEachCommand() {
+        InMemoryExecutionHistoryRepository repository = new InMemoryExecutionHistoryRepository(2, Duration.ZERO);
+        Instant now = Instant.now();
+        repository.recordResult("device-a", new CommandResult("c-1", CommandResult.Status.RETRYING, now, "TooManyRequests", 1, null));
+        repository.recordResult("device-a", new CommandResult("c-1", CommandResult.Status.ACCEPTED, now.plusSeconds(5), null, 2, null));
+        // Recorded last but created first: not the command's newest.
+        repository.recordResult("device-a", new CommandResult("c-1", CommandResult.Status.FAILED_TO_SEND, now.minusSeconds(5), null, 0, null));
+
+        assertEquals(CommandResult.Status.ACCEPTED, repository.findLatest("c-1").getResult().getStatus());
+        assertEquals("device-a", repository.findLatest("c-1").getDeviceToken());
+        assertNull(repository.findLatest("C-1"));
+
+        repository.recordResult("device-b", new CommandResult("c-2", CommandResult.Status.QUEUED, null));
+        assertEquals(List.of("c-2", "c-1"), List.copyOf(repository.findLatest(List.of("c-2", "unknown", "c-1")).keySet()));
+
+        // The device's cap displaces its two results of c-1 that remained.
+        repository.recordResult("device-a", new CommandResult("c-3", CommandResult.Status.ACCEPTED, now.plusSeconds(10), null, 1, null));
+        repository.recordResult("device-a", new CommandResult("c-4", CommandResult.Status.ACCEPTED, now.plusSeconds(10), null, 1, null));
+        assertNull(repository.findLatest("c-1"));
+        assertEquals("c-3", repository.findLatest("c-3").getResult().getCommandUUID());
+    }
+
+    @Test
+    void aCommandKeepsItsNewestRemainingResultWhenADevicesCapDropsTheNewest() {
+        InMemoryExecutionHistoryRepository repository = new InMemoryExecutionHistoryRepository(1, Duration.ZERO);
+        Instant now = Instant.now();
+        repository.recordResult("device-a", new CommandResult("broadcast", CommandResult.Status.ACCEPTED, now, null, 1, "batch-1"));
+        repository.recordResult("device-b", new CommandResult("broadcast", CommandResult.Status.REJECTED, now.plusSeconds(1), "BadDeviceToken", 1, "batch-1"));
+        assertEquals("device-b", repository.findLatest("broadcast").getDeviceToken());
+
+        // Device b's cap drops its result of the broadcast; device a's remains.
+        repository.recordResult("device-b", new CommandResult("c-2", CommandResult.Status.ACCEPTED, now.plusSeconds(2), null, 1, null));
+
+        assertEquals("device-a", repository.findLatest("broadcast").getDeviceToken());
+        assertEquals(CommandResult.Status.ACCEPTED, repository.findLatest("broadcast").getResult().getStatus());
+
+        repository.recordResult("device-a", new CommandResult("c-3", CommandResult.Status.ACCEPTED, now.plusSeconds(3), null, 1, null));
+        assertNull(repository.findLatest("broadcast"));
+    }
+
+    private static List<String> uuids(HistoryPage page) {
+        return page.getEntries().stream().map(entry -> entry.getResult().getCommandUUID()).collect(Collectors.toList());
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
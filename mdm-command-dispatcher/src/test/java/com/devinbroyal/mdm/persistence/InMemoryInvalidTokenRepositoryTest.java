@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.persistence;
+
+import com.devinbroyal.mdm.domain.InvalidToken;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryInvalidTokenRepositoryTest {
+
+    private static final String KEY = "TEAM/KEY1/production";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void flush_snapshotIsReloadedOnStartup() throws IOException {
+        Path snapshot = tempDir.resolve("invalid-tokens.tsv");
+        Instant invalidatedAt = Instant.parse("2025-01-02T03:04:05Z");
+
+        InMemoryInvalidTokenRepository repository = new InMemoryInvalidTokenRepository(snapshot);
+        repository.save(new InvalidToken("aaaa", KEY, "com.devin.test", "Unregistered", invalidatedAt, Instant.now()));
+        repository.save(new InvalidToken("bbbb", KEY, "com.devin.test", "BadDeviceToken", null, Instant.now()));
+        repository.flush();
+
+        InMemoryInvalidTokenRepository reloaded = new InMemoryInvalidTokenRepository(snapshot);
+        assertEquals(2, reloaded.size());
+        InvalidToken unregistered = reloaded.find(KEY, "com.devin.test", "aaaa").orElseThrow();
+        assertEquals("Unregistered", unregistered.getReason());
+        assertEquals("com.devin.test", unregistered.getTopic());
+        assertEquals(KEY, unregistered.getClientKey());
+        assertEquals(invalidatedAt, unregistered.getInvalidatedAt());
+        assertNull(reloaded.find(KEY, "com.devin.test", "bbbb").orElseThrow().getInvalidatedAt());
+    }
+
+    @Test
+    void load_skipsMalformedLines() throws IOException {
+        Path snapshot = tempDir.resolve("invalid-tokens.tsv");
+        Files.writeString(snapshot, "not a snapshot line\ncccc\t" + KEY + "\tcom.devin.test\tUnregistered\t-\t-\n");
+
+        InMemoryInvalidTokenRepository repository = new InMemoryInvalidTokenRepository(snapshot);
+
+        assertEquals(1, repository.size());
+        assertTrue(repository.find(KEY, "com.devin.test", "cccc").isPresent());
+    }
+
+    @Test
+    void load_appliesLegacyLinesToEveryCredential() throws IOException {
+        Path snapshot = tempDir.resolve("invalid-tokens.tsv");
+        Files.writeString(snapshot, "cccc\tcom.devin.test\tUnregistered\t-\t-\n");
+
+        InMemoryInvalidTokenRepository repository = new InMemoryInvalidTokenRepository(snapshot);
+
+        assertTrue(repository.find(KEY, "com.devin.test", "cccc").isPresent());
+        assertTrue(repository.find("TEAM/KEY2/development", "com.devin.test", "cccc").isPresent());
+        assertFalse(repository.find(KEY, "com.devin.other", "cccc").isPresent());
+    }
+
+    @Test
+    void find_isScopedToCredentialsAndTopicAndIgnoresCase() {
+        InMemoryInvalidTokenRepository repository = new InMemoryInvalidTokenRepository();
+        repository.save(new InvalidToken("abcd", KEY, "com.devin.first", "DeviceTokenNotForTopic", null, Instant.now()));
+        repository.save(new InvalidToken("abcd", KEY, "com.devin.first", "BadDeviceToken", null, Instant.now()));
+        repository.save(new InvalidToken("ABCD", "TEAM/KEY1/development", "com.devin.first", "BadDeviceToken", null, Instant.now()));
+
+        assertEquals(2, repository.size());
+        assertEquals("BadDeviceToken", repository.find(KEY, "com.devin.first", "ABCD").orElseThrow().getReason());
+        assertFalse(repository.find(KEY, "com.devin.second", "abcd").isPresent());
+        assertFalse(repository.find("TEAM/KEY2/production", "com.devin.first", "abcd").isPresent());
+
+        assertEquals(2, repository.remove("AbCd"));
+        assertEquals(0, repository.size());
+        assertTrue(repository.findAll().isEmpty());
+    }
+
+    @Test
+    void removeAndClear_areFlushedToSnapshot() throws IOException {
+        Path snapshot = tempDir.resolve("invalid-tokens.tsv");
+        InMemoryInvalidTokenRepository repository = new InMemoryInvalidTokenRepository(snapshot);
+        repository.save(new InvalidToken("aaaa", KEY, "com.devin.test", "Unregistered", null, Instant.now()));
+        repository.save(new InvalidToken("bbbb", KEY, "com.devin.test", "Unregistered", null, Instant.now()));
+
+        assertEquals(1, repository.remove("aaaa"));
+        assertEquals(0, repository.remove("aaaa"));
+        repository.flush();
+        assertEquals(1, new InMemoryInvalidTokenRepository(snapshot).size());
+
+        assertEquals(1, repository.clear());
+        repository.flush();
+        assertEquals(0, new InMemoryInvalidTokenRepository(snapshot).size());
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,46 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.plist;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryPlistWriterTest {
+
+    @Test
+    void writesObjectTableOffsetsAndTrailer() {
+        byte[] expected = {
+                'b', 'p', 'l', 'i', 's', 't', '0', '0',
+                (byte) 0xD1, 1, 2,          // dict of one entry: key ref 1, value ref 2
+                0x51, 'a',                  // "a"
+                0x10, 1,                    // integer 1 (a whole double, as Gson produces)
+                8, 11, 13,                  // offset table
+                0, 0, 0, 0, 0, 0, 1, 1,     // offset and reference widths
+                0, 0, 0, 0, 0, 0, 0, 3,     // object count
+                0, 0, 0, 0, 0, 0, 0, 0,     // root object
+                0, 0, 0, 0, 0, 0, 0, 15     // offset table position
+        };
+
+        assertArrayEquals(expected, new BinaryPlistWriter().write(Map.of("a", 1.0)).toByteArray());
+    }
+
+    @Test
+    void storesRepeatedStringsOnce() {
+        BinaryPlistWriter writer = new BinaryPlistWriter();
+        byte[] plist = writer.write(Map.of("RequestType", "RequestType")).toByteArray();
+
+        // Trailer object count: the dict and a single string.
+        assertEquals(2, plist[plist.length - 17]);
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,192 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.plist;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compares the streaming plist codec with the DOM-based approach (build a {@link Document}, then
+ * serialize it with a {@link Transformer}; parse with a {@link DocumentBuilder}, then walk the tree)
+ * on a typical MDM command. Prints time and heap allocation per operation.
+ * <p>
+ * Not a unit test; run it after {@code mvn test-compile} with
+ * {@code java -cp target/classes:target/test-classes com.devinbroyal.mdm.plist.PlistCodecBenchmark [iterations]}.
+ */
+public class PlistCodecBenchmark {
+
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws Exception {
+        final int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        final Map<String, Object> payload = samplePayload();
+
+        final XmlPlistWriter xmlWriter = new XmlPlistWriter();
+        final BinaryPlistWriter binaryWriter = new BinaryPlistWriter();
+        final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        // Do not fetch Apple's DTD for every document.
+        documentBuilderFactory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        final DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
+        final Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.setOutputProperty(OutputKeys.DOCTYPE_PUBLIC, "-//Apple//DTD PLIST 1.0//EN");
+        transformer.setOutputProperty(OutputKeys.DOCTYPE_SYSTEM, "http://www.apple.com/DTDs/PropertyList-1.0.dtd");
+        final byte[] document = xmlWriter.write(payload).toByteArray();
+
+        System.out.printf("Payload: %d bytes as XML plist, %d bytes as binary plist%n%n",
+                document.length, binaryWriter.write(payload).size());
+        System.out.printf("%-26s %12s %14s%n", "operation", "ns/op", "bytes/op");
+
+        run("encode xml (streaming)", iterations, () -> sink = xmlWriter.write(payload).size());
+        run("encode binary", iterations, () -> sink = binaryWriter.write(payload).size());
+        run("encode xml (DOM)", iterations / 10, () -> sink = domEncode(documentBuilder, transformer, payload));
+        run("decode xml (streaming)", iterations, () -> sink = XmlPlistReader.parse(document));
+        run("decode xml (DOM)", iterations / 10, () -> sink = domDecode(documentBuilder, document));
+    }
+
+    private static void run(String name, int iterations, Task task) throws Exception {
+        // Warm up for as long as the measurement so that the JIT has compiled the hot paths.
+        for (int i = 0; i < iterations; i++) {
+            task.run();
+        }
+        final long threadId = Thread.currentThread().getId();
+        final long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            task.run();
+        }
+        final long elapsed = System.nanoTime() - start;
+        final long allocated = THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        System.out.printf("%-26s %12.0f %14.0f%n", name, elapsed / (double) iterations, allocated / (double) iterations);
+    }
+
+    private static Map<String, Object> samplePayload() {
+        Map<String, Object> command = new LinkedHashMap<>();
+        command.put("RequestType", "InstallApplication");
+        command.put("iTunesStoreID", 361309726.0);
+        command.put("ManagementFlags", 1.0);
+        command.put("ChangeManagementState", "Managed");
+        command.put("InstallAsManaged", true);
+        command.put("Options", Map.of("PurchaseMethod", 1.0, "NotManageable", false));
+        command.put("Attributes", Map.of("VPNUUID", UUID.randomUUID().toString(), "Removable", false,
+                "AssociatedDomains", List.of("applinks:example.com", "webcredentials:example.com")));
+        command.put("Configuration", Map.of("ServerURL", "https://mdm.example.com/app", "Tenant", "acme & co <eu>"));
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("CommandUUID", UUID.randomUUID().toString());
+        payload.put("Command", command);
+        return payload;
+    }
+
+    private static byte[] domEncode(DocumentBuilder builder, Transformer transformer, Object value) throws Exception {
+        Document document = builder.newDocument();
+        Element plist = document.createElement("plist");
+        plist.setAttribute("version", "1.0");
+        document.appendChild(plist);
+        plist.appendChild(domValue(document, value));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        transformer.transform(new DOMSource(document), new StreamResult(out));
+        return out.toByteArray();
+    }
+
+    private static Element domValue(Document document, Object value) {
+        if (value instanceof Map) {
+            Element dict = document.createElement("dict");
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                Element key = document.createElement("key");
+                key.setTextContent(entry.getKey().toString());
+                dict.appendChild(key);
+                dict.appendChild(domValue(document, entry.getValue()));
+            }
+            return dict;
+        }
+        if (value instanceof List) {
+            Element array = document.createElement("array");
+            for (Object element : (List<?>) value) {
+                array.appendChild(domValue(document, element));
+            }
+            return array;
+        }
+        if (value instanceof Boolean) {
+            return document.createElement(value.toString());
+        }
+        Element element;
+        if (value instanceof Double) {
+            element = document.createElement("integer");
+            element.setTextContent(Long.toString(((Double) value).longValue()));
+        } else {
+            element = document.createElement("string");
+            element.setTextContent(value.toString());
+        }
+        return element;
+    }
+
+    private static Object domDecode(DocumentBuilder builder, byte[] document) throws Exception {
+        Document parsed = builder.parse(new ByteArrayInputStream(document));
+        return domRead(firstElement(parsed.getDocumentElement().getFirstChild()));
+    }
+
+    private static Object domRead(Element element) {
+        switch (element.getTagName()) {
+            case "dict": {
+                Map<String, Object> dict = new LinkedHashMap<>();
+                for (Element key = firstElement(element.getFirstChild()); key != null; ) {
+                    Element value = firstElement(key.getNextSibling());
+                    dict.put(key.getTextContent(), domRead(value));
+                    key = firstElement(value.getNextSibling());
+                }
+                return dict;
+            }
+            case "array": {
+                List<Object> array = new ArrayList<>();
+                for (Element child = firstElement(element.getFirstChild()); child != null; child = firstElement(child.getNextSibling())) {
+                    array.add(domRead(child));
+                }
+                return array;
+            }
+            case "integer":
+                return Long.parseLong(element.getTextContent());
+            case "true":
+                return true;
+            case "false":
+                return false;
+            default:
+                return element.getTextContent();
+        }
+    }
+
+    private static Element firstElement(Node node) {
+        while (node != null && node.getNodeType() != Node.ELEMENT_NODE) {
+            node = node.getNextSibling();
+        }
+        return (Element) node;
+    }
+
+    private interface Task {
+        void run() throws Exception;
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.plist;
+
+import com.devinbroyal.mdm.exception.PlistFormatException;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XmlPlistCodecTest {
+
+    @Test
+    void writtenPlistParsesBackToTheSameValues() {
+        Map<String, Object> command = new LinkedHashMap<>();
+        command.put("RequestType", "InstallProfile");
+        command.put("Payload", new byte[]{1, 2, 3, (byte) 0xFF});
+        command.put("Message", "Call <IT> & \"help\" é中😀");
+        command.put("Sequence", 5.0);
+        command.put("Ratio", 0.25);
+        command.put("ManagedOnly", true);
+        command.put("Skipped", null);
+        command.put("Identifiers", List.of("a", "b"));
+        command.put("Until", Instant.parse("2025-01-02T03:04:05Z"));
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("CommandUUID", "uuid-1");
+        payload.put("Command", command);
+
+        XmlPlistWriter writer = new XmlPlistWriter(16);
+        writer.write(Map.of("ignored", "previous document"));
+        writer.write(payload);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> parsed = (Map<String, Object>) XmlPlistReader.parse(writer.toByteArray());
+
+        assertEquals("uuid-1", parsed.get("CommandUUID"));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> parsedCommand = (Map<String, Object>) parsed.get("Command");
+        assertArrayEquals(new byte[]{1, 2, 3, (byte) 0xFF}, (byte[]) parsedCommand.get("Payload"));
+        assertEquals(command.get("Message"), parsedCommand.get("Message"));
+        assertEquals(5L, parsedCommand.get("Sequence"));
+        assertEquals(0.25, parsedCommand.get("Ratio"));
+        assertEquals(true, parsedCommand.get("ManagedOnly"));
+        assertFalse(parsedCommand.containsKey("Skipped"));
+        assertEquals(List.of("a", "b"), parsedCommand.get("Identifiers"));
+        assertEquals(Instant.parse("2025-01-02T03:04:05Z"), parsedCommand.get("Until"));
+    }
+
+    @Test
+    void jsonIsTranscodedLikeTheEquivalentMap() throws Exception {
+        Map<String, Object> payload = Map.of("Command", Map.of("RequestType", "DeviceLock", "PIN", "123456", "Count", 3));
+        String json = new Gson().toJson(payload);
+
+        byte[] fromJson = new XmlPlistWriter().writeJson(new JsonReader(new StringReader(json))).toByteArray();
+
+        assertEquals(XmlPlistReader.parse(new XmlPlistWriter().write(payload).toByteArray()), XmlPlistReader.parse(fromJson));
+    }
+
+    @Test
+    void parsesAppleFormattingAndRejectsForeignMarkup() {
+        String document = "﻿<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<!DOCTYPE plist PUBLIC \"-//Apple//DTD PLIST 1.0//EN\" \"http://www.apple.com/DTDs/PropertyList-1.0.dtd\">\n"
+                + "<plist version=\"1.0\">\n<dict>\n"
+                + "  <!-- status report -->\n"
+                + "  <key>Status</key>\n  <string>Error</string>\n"
+                + "  <key>Note</key>\n  <string>a &amp; b &#x263A; <![CDATA[<raw>]]></string>\n"
+                + "  <key>Empty</key>\n  <string/>\n"
+                + "  <key>Flags</key>\n  <array><true/><false/><integer>-7</integer></array>\n"
+                + "</dict>\n</plist>\n";
+
+        Map<String, Object> parsed = XmlPlistReader.parseDict(document.getBytes(StandardCharsets.UTF_8), 0, document.getBytes(StandardCharsets.UTF_8).length);
+
+        assertEquals("Error", parsed.get("Status"));
+        assertEquals("a & b ☺ <raw>", parsed.get("Note"));
+        assertEquals("", parsed.get("Empty"));
+        assertEquals(List.of(true, false, -7L), parsed.get("Flags"));
+        assertThrows(PlistFormatException.class, () -> XmlPlistReader.parse("<plist><dict><foo/></dict></plist>".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(PlistFormatException.class, () -> XmlPlistReader.parse("<plist><string>&xxe;</string></plist>".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(PlistFormatException.class, () -> XmlPlistReader.parse("<plist><array><string>x</array></plist>".getBytes(StandardCharsets.UTF_8)));
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
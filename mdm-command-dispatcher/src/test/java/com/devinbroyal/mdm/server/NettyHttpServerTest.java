@@ -0,0 +1,156 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NettyHttpServerTest {
+
+    private ExecutorService executor;
+    private NettyHttpServer server;
+    private URI base;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        Map<String, HttpHandler> contexts = new LinkedHashMap<>();
+        contexts.put("/echo", NettyHttpServerTest::echo);
+        contexts.put("/echo/upper", exchange -> respond(exchange, 200, read(exchange).toUpperCase()));
+        contexts.put("/stream", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                for (int i = 0; i < 20_000; i++) {
+                    os.write(("line " + i + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        });
+        executor = Executors.newFixedThreadPool(4);
+        server = new NettyHttpServer(new InetSocketAddress("127.0.0.1", 0), contexts, executor);
+        server.start();
+        base = URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void servesHttp1AndUpgradesToH2cWithTheSameHandlers() throws Exception {
+        for (HttpClient.Version version : HttpClient.Version.values()) {
+            HttpClient client = HttpClient.newBuilder().version(version).build();
+            for (int i = 0; i < 3; i++) {
+                HttpResponse<String> response = client.send(HttpRequest.newBuilder(base.resolve("/echo/upper?x=1"))
+                        .POST(HttpRequest.BodyPublishers.ofString("hello " + i)).build(), HttpResponse.BodyHandlers.ofString());
+                assertEquals(200, response.statusCode());
+                assertEquals("HELLO " + i, response.body());
+                assertEquals(version, response.version());
+            }
+
+            HttpResponse<String> streamed = client.send(HttpRequest.newBuilder(base.resolve("/stream")).build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(20_000, streamed.body().lines().count());
+            assertTrue(streamed.body().endsWith("line 19999\n"));
+
+            HttpResponse<String> missing = client.send(HttpRequest.newBuilder(base.resolve("/nope")).build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(404, missing.statusCode());
+        }
+    }
+
+    @Test
+    void answersPipelinedRequestsInOrder() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", server.getAddress().getPort())) {
+            StringBuilder requests = new StringBuilder();
+            for (int i = 0; i < 5; i++) {
+                String body = "request-" + i;
+                requests.append("POST /echo HTTP/1.1\r\nHost: localhost\r\nContent-Length: ").append(body.length())
+                        .append("\r\n\r\n").append(body);
+            }
+            socket.getOutputStream().write(requests.toString().getBytes(StandardCharsets.US_ASCII));
+            socket.getOutputStream().flush();
+
+            InputStream in = socket.getInputStream();
+            for (int i = 0; i < 5; i++) {
+                assertEquals("request-" + i, readResponseBody(in));
+            }
+        }
+    }
+
+    @Test
+    void streamsLargeRequestBodiesThroughTheHandler() throws Exception {
+        byte[] body = new byte[8 * 1024 * 1024];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) ('a' + i % 26);
+        }
+        HttpResponse<String> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder(base.resolve("/echo"))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body)).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        assertEquals(new String(body, StandardCharsets.US_ASCII), response.body());
+    }
+
+    private static void echo(HttpExchange exchange) throws IOException {
+        respond(exchange, 200, read(exchange));
+    }
+
+    private static String read(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    /**
+     * Reads one response with a Content-Length from the stream and returns its body.
+     */
+    private static String readResponseBody(InputStream in) throws IOException {
+        StringBuilder head = new StringBuilder();
+        while (!head.toString().endsWith("\r\n\r\n")) {
+            int b = in.read();
+            assertNotEquals(-1, b, "connection closed early");
+            head.append((char) b);
+        }
+        int length = 0;
+        for (String line : head.toString().split("\r\n")) {
+            if (line.toLowerCase().startsWith("content-length:")) {
+                length = Integer.parseInt(line.substring("content-length:".length()).trim());
+            }
+        }
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.service;
+
+import com.devinbroyal.mdm.domain.CommandPriority;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimitTest {
+
+    private static final long HEALTHY = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(5_000);
+
+    @Test
+    void slowStartGrowsByOnePerHealthyResponseWhileSaturated() throws InterruptedException {
+        InFlightLimiter limiter = new InFlightLimiter(100, 1_000, 100);
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(limiter, 4, 100, 1_000, 0.5);
+        occupy(limiter, 4);
+
+        for (int i = 0; i < 4; i++) {
+            limit.onResponse(HEALTHY, false);
+        }
+
+        assertEquals(8, limit.getLimit());
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    void throttlingCutsLimitOncePerCooldownThenGrowsAdditively() throws InterruptedException {
+        AtomicLong clock = new AtomicLong();
+        InFlightLimiter limiter = new InFlightLimiter(100, 1_000, 100);
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(limiter, 2, 100, 1_000, 0.5, clock::get);
+        occupy(limiter, 40);
+        for (int i = 0; i < 38; i++) {
+            limit.onResponse(HEALTHY, false);
+        }
+        assertEquals(40, limit.getLimit());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        limit.onResponse(HEALTHY, true);
+        limit.onResponse(SLOW, false);
+        assertEquals(20, limit.getLimit(), "a burst of congestion signals counts once");
+
+        for (int i = 0; i < 19; i++) {
+            limit.onResponse(HEALTHY, false);
+        }
+        assertEquals(20, limit.getLimit());
+        limit.onResponse(HEALTHY, false);
+        assertEquals(21, limit.getLimit());
+    }
+
+    @Test
+    void droppedPushesCutTheLimitLikeThrottling() throws InterruptedException {
+        AtomicLong clock = new AtomicLong();
+        InFlightLimiter limiter = new InFlightLimiter(100, 1_000, 100);
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(limiter, 2, 100, 1_000, 0.5, clock::get);
+        occupy(limiter, 16);
+        for (int i = 0; i < 14; i++) {
+            limit.onResponse(HEALTHY, false);
+        }
+        assertEquals(16, limit.getLimit());
+
+        limit.onDrop("ClosedChannelException");
+        limit.onDrop("ClosedChannelException");
+
+        assertEquals(8, limit.getLimit());
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    void limitDoesNotGrowWhileMostlyIdle() {
+        InFlightLimiter limiter = new InFlightLimiter(100, 1_000, 100);
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(limiter, 10, 100, 1_000, 0.5);
+
+        for (int i = 0; i < 100; i++) {
+            limit.onResponse(HEALTHY, false);
+        }
+
+        assertEquals(10, limit.getLimit());
+    }
+
+    private static void occupy(InFlightLimiter limiter, int sends) throws InterruptedException {
+        for (int i = 0; i < sends; i++) {
+            limiter.submit(() -> { }, CommandPriority.NORMAL);
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,219 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.service;
+
+import com.devinbroyal.mdm.config.MdmProperties;
+import com.devinbroyal.mdm.domain.CheckInRequest;
+import com.devinbroyal.mdm.domain.CommandRequest;
+import com.devinbroyal.mdm.domain.CommandResult;
+import com.devinbroyal.mdm.persistence.HistoryEntry;
+import com.devinbroyal.mdm.persistence.InMemoryBatchSummaryRepository;
+import com.devinbroyal.mdm.persistence.InMemoryExecutionHistoryRepository;
+import com.devinbroyal.mdm.persistence.InMemoryInvalidTokenRepository;
+import com.eatthepath.pushy.apns.PushNotificationResponse;
+import com.eatthepath.pushy.apns.util.SimpleApnsPushNotification;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedConstruction;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockConstruction;
+import static org.mockito.Mockito.when;
+
+class ApnsMdmServiceTest {
+
+    private static final String DEVICE = "a1b2c3d4e5f6";
+
+    private final List<SimpleApnsPushNotification> sent = new CopyOnWriteArrayList<>();
+    // Bounded like the production pool, which refuses work once its queue is full.
+    private final ThreadPoolExecutor notificationExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(10));
+    private final InMemoryExecutionHistoryRepository history = new InMemoryExecutionHistoryRepository();
+    private volatile RuntimeException sendFailure;
+    private MockedConstruction<ApnsClientRegistry> registries;
+    private ApnsMdmService service;
+
+    @BeforeEach
+    void stubApns() {
+        // Every push the service hands to a client pool is recorded and accepted at once, unless a
+        // test sets a failure for it to fail with.
+        ApnsClientPool pool = mock(ApnsClientPool.class);
+        when(pool.send(any())).thenAnswer(invocation -> {
+            SimpleApnsPushNotification notification = invocation.getArgument(0);
+            sent.add(notification);
+            if (sendFailure != null) {
+                return CompletableFuture.failedFuture(sendFailure);
+            }
+            @SuppressWarnings("unchecked")
+            PushNotificationResponse<SimpleApnsPushNotification> response = mock(PushNotificationResponse.class);
+            when(response.isAccepted()).thenReturn(true);
+            return CompletableFuture.completedFuture(response);
+        });
+        registries = mockConstruction(ApnsClientRegistry.class, (registry, context) -> {
+            when(registry.acquire(any())).thenReturn(pool);
+            when(registry.close()).thenReturn(CompletableFuture.completedFuture(null));
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+        registries.close();
+        notificationExecutor.shutdownNow();
+    }
+
+    @Test
+    void withoutQueueingEveryCommandIsSentInItsOwnPush() throws Exception {
+        // Every push carries its command, so none may be folded away.
+        service = newService(false);
+
+        service.sendCommand(command("uuid-1", "InstallApplication"));
+        service.sendCommand(command("uuid-2", "RemoveApplication"));
+
+        assertEquals(2, sent.size());
+        assertTrue(sent.get(0).getPayload().contains("uuid-1"));
+        assertTrue(sent.get(1).getPayload().contains("uuid-2"));
+    }
+
+    @Test
+    void queuedCommandsShareOneWakeUpAndAreAllDeliveredAtCheckIn() throws Exception {
+        service = newService(true);
+
+        for (int i = 1; i <= 5; i++) {
+            service.sendCommand(command("uuid-" + i, "InstallApplication"));
+        }
+
+        assertEquals(1, sent.size());
+        assertEquals("{\"mdm\":\"magic\"}", sent.get(0).getPayload());
+        Map<?, ?> commandQueues = (Map<?, ?>) service.getMetrics().get("commandQueues");
+        assertEquals(1L, commandQueues.get("wakeUps"));
+        assertEquals(4L, commandQueues.get("coalesced"));
+
+        CheckInRequest checkIn = new CheckInRequest();
+        checkIn.setDeviceToken(DEVICE);
+        List<String> payloads = service.checkIn(checkIn);
+
+        assertEquals(5, payloads.size());
+        assertTrue(payloads.get(0).contains("uuid-1"));
+        assertTrue(payloads.get(4).contains("uuid-5"));
+        assertEquals(1, sent.size());
+    }
+
+    @Test
+    void anUrgentCommandWakesADeviceThatWasAlreadyWoken() throws Exception {
+        service = newService(true);
+
+        service.sendCommand(command("uuid-1", "InstallApplication"));
+        service.sendCommand(command("uuid-2", "DeviceLock"));
+
+        assertEquals(2, sent.size());
+        Map<?, ?> commandQueues = (Map<?, ?>) service.getMetrics().get("commandQueues");
+        assertEquals(0L, commandQueues.get("coalesced"));
+    }
+
+    @Test
+    void failedSendsAreRecordedWithTheExceptionClassRatherThanItsMessage() throws Exception {
+        service = newService(false);
+        // Refused again on every attempt, so not retried.
+        sendFailure = new IllegalArgumentException("Payload for a1b2c3d4e5f6 exceeds 4096 bytes");
+
+        service.sendCommand(command("uuid-1", "InstallApplication"));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (history.findLatest("uuid-1") == null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        HistoryEntry entry = history.findLatest("uuid-1");
+        assertNotNull(entry);
+        assertEquals(CommandResult.Status.FAILED_TO_SEND, entry.getResult().getStatus());
+        assertEquals("IllegalArgumentException", entry.getResult().getRejectionReason());
+    }
+
+    @Test
+    void theOutcomeIsRecordedEvenWhenTheNotificationPoolIsFull() throws Exception {
+        service = newService(false);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // One task holds the pool's only thread and the rest fill its queue.
+        notificationExecutor.execute(() -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        running.await();
+        while (notificationExecutor.getQueue().remainingCapacity() > 0) {
+            notificationExecutor.execute(() -> { });
+        }
+
+        try {
+            service.sendCommand(command("uuid-1", "InstallApplication"));
+
+            HistoryEntry entry = history.findLatest("uuid-1");
+            assertNotNull(entry);
+            assertEquals(CommandResult.Status.ACCEPTED, entry.getResult().getStatus());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private ApnsMdmService newService(boolean commandQueueing) throws Exception {
+        MdmProperties properties = new MdmProperties();
+        properties.setTeamId("TEAM");
+        properties.setKeyId("KEY");
+        properties.setAuthKeyPath("/dev/null");
+        properties.setTopic("com.devin.test");
+        properties.setMaxInFlight(10);
+        properties.setMaxPending(100);
+        properties.setMaxPendingUrgent(10);
+        properties.setDeviceRateBurst(20);
+        properties.setCommandQueueing(commandQueueing);
+        properties.setCheckInMaxCommands(50);
+        properties.setWakeUpIntervalSeconds(60);
+        properties.setApnsClientCount(1);
+        properties.setApnsConnectionsPerClient(1);
+        properties.setRetryMaxAttempts(1);
+        properties.setRetryBaseDelayMillis(100);
+        properties.setRetryMaxDelayMillis(100);
+        properties.setApnsClientIdleTimeoutSeconds(600);
+        properties.setApnsMaxTenantClients(8);
+        properties.setInvalidTokenFlushIntervalSeconds(60);
+        return new ApnsMdmService(properties, notificationExecutor, history,
+                new InMemoryBatchSummaryRepository(), new InMemoryInvalidTokenRepository(), new OutcomeRollups(5, 1));
+    }
+
+    private static CommandRequest command(String commandUUID, String requestType) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("CommandUUID", commandUUID);
+        payload.put("Command", new HashMap<>(Map.of("RequestType", requestType)));
+        CommandRequest request = new CommandRequest();
+        request.setDeviceToken(DEVICE);
+        request.setPayload(payload);
+        request.setPushMagic("magic");
+        return request;
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
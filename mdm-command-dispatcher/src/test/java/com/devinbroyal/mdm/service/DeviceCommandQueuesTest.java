@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.service;
+
+import com.devinbroyal.mdm.domain.CommandPriority;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeviceCommandQueuesTest {
+
+    @Test
+    void onlyTheFirstCommandForASleepingDeviceWakesIt() {
+        AtomicLong clock = new AtomicLong();
+        DeviceCommandQueues queues = new DeviceCommandQueues(10, 60, clock::get);
+
+        assertTrue(queues.enqueue(command("device", "1")));
+        assertFalse(queues.enqueue(command("device", "2")));
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(61));
+        assertTrue(queues.enqueue(command("device", "3")));
+
+        assertEquals(3, queues.checkIn("device", List.of()).size());
+        assertTrue(queues.enqueue(command("device", "4")));
+        assertEquals(1L, queues.snapshot().get("coalesced"));
+    }
+
+    @Test
+    void urgentCommandsAlwaysWakeTheDevice() {
+        DeviceCommandQueues queues = new DeviceCommandQueues(10, 60, () -> 0L);
+
+        assertTrue(queues.enqueue(command("device", "1")));
+        assertTrue(queues.enqueue(OutboundPush.single(null, CommandPriority.URGENT, "device", "2", "DeviceLock", "{}")));
+        assertEquals(2L, queues.snapshot().get("wakeUps"));
+        assertEquals(0L, queues.snapshot().get("coalesced"));
+    }
+
+    @Test
+    void checkIn_deliversWholeQueueAndRedeliversUnreportedCommands() {
+        DeviceCommandQueues queues = new DeviceCommandQueues(10, 60, () -> 0L);
+        queues.enqueue(command("device", "1"));
+        queues.enqueue(command("device", "2"));
+
+        assertEquals(List.of("1", "2"), uuids(queues.checkIn("device", List.of())));
+
+        assertNotNull(queues.resolve("device", "1"));
+        assertNull(queues.resolve("device", "1"));
+        List<OutboundPush> redelivered = queues.checkIn("device", List.of());
+        assertEquals(List.of("2"), uuids(redelivered));
+        assertEquals(2, redelivered.get(0).getAttempt());
+
+        assertNotNull(queues.resolve("device", "2"));
+        assertTrue(queues.checkIn("device", List.of()).isEmpty());
+        assertEquals(0, queues.snapshot().get("devices"));
+    }
+
+    @Test
+    void checkIn_keepsDeferredCommandsForTheNextCheckIn() {
+        DeviceCommandQueues queues = new DeviceCommandQueues(1, 60, () -> 0L);
+        queues.enqueue(command("device", "1"));
+        queues.enqueue(command("device", "2"));
+
+        assertEquals(List.of("1"), uuids(queues.checkIn("device", List.of())));
+        OutboundPush notNow = queues.resolve("device", "1");
+
+        assertEquals(List.of("2"), uuids(queues.checkIn("device", List.of(notNow))));
+        queues.resolve("device", "2");
+        assertEquals(List.of("1"), uuids(queues.checkIn("device", List.of())));
+    }
+
+    private static OutboundPush command(String deviceToken, String commandUUID) {
+        return OutboundPush.single(null, CommandPriority.NORMAL, deviceToken, commandUUID, null, "{}");
+    }
+
+    private static List<String> uuids(List<OutboundPush> commands) {
+        return commands.stream().map(OutboundPush::getCommandUUID).toList();
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
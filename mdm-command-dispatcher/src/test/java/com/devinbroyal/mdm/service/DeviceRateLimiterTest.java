@@ -0,0 +1,47 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeviceRateLimiterTest {
+
+    @Test
+    void burstIsSentImmediatelyThenPushesAreSpacedAndFinallyRefused() {
+        AtomicLong clock = new AtomicLong();
+        DeviceRateLimiter limiter = new DeviceRateLimiter(2, 60, clock::get);
+
+        assertEquals(0, limiter.reserve("device"));
+        assertEquals(0, limiter.reserve("device"));
+        assertEquals(TimeUnit.SECONDS.toNanos(1), limiter.reserve("device"), 1_000);
+        assertEquals(TimeUnit.SECONDS.toNanos(2), limiter.reserve("device"), 1_000);
+        assertEquals(DeviceRateLimiter.REFUSED, limiter.reserve("device"));
+        assertEquals(0, limiter.reserve("other-device"));
+    }
+
+    @Test
+    void evictFull_dropsOnlyRefilledBuckets() {
+        AtomicLong clock = new AtomicLong();
+        DeviceRateLimiter limiter = new DeviceRateLimiter(2, 60, clock::get);
+        limiter.reserve("a");
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        limiter.reserve("b");
+
+        limiter.evictFull();
+
+        assertEquals(1, limiter.size());
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,149 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.service;
+
+import com.devinbroyal.mdm.domain.CommandPriority;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InFlightLimiterTest {
+
+    @Test
+    void sendsBeyondTheLimitWaitForAPermit() throws InterruptedException {
+        InFlightLimiter limiter = new InFlightLimiter(2, 100, 10);
+        AtomicInteger started = new AtomicInteger();
+        for (int i = 0; i < 5; i++) {
+            limiter.submit(started::incrementAndGet, CommandPriority.NORMAL);
+        }
+        assertEquals(2, started.get());
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(3, limiter.getPending());
+
+        limiter.release();
+
+        assertEquals(3, started.get());
+        assertEquals(2, limiter.getInFlight());
+    }
+
+    @Test
+    void sendsThatCompleteAtOnceDoNotRecurse() throws InterruptedException {
+        InFlightLimiter limiter = new InFlightLimiter(1, 200_000, 10);
+        AtomicInteger completed = new AtomicInteger();
+        limiter.submit(() -> { }, CommandPriority.NORMAL);
+        for (int i = 0; i < 100_000; i++) {
+            // Like a send that fails before reaching APNs, these return their permit on the same thread.
+            limiter.submit(() -> {
+                completed.incrementAndGet();
+                limiter.release();
+            }, CommandPriority.NORMAL);
+        }
+
+        limiter.release();
+
+        assertEquals(100_000, completed.get());
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(0, limiter.getPending());
+    }
+
+    @Test
+    void shutdownStartsQueuedSendsRegardlessOfTheLimit() throws InterruptedException {
+        InFlightLimiter limiter = new InFlightLimiter(1, 100, 10);
+        AtomicInteger started = new AtomicInteger();
+        for (int i = 0; i < 10; i++) {
+            limiter.submit(started::incrementAndGet, CommandPriority.BULK);
+        }
+
+        limiter.shutdown();
+        limiter.submit(started::incrementAndGet, CommandPriority.BULK);
+
+        assertEquals(11, started.get());
+        assertEquals(0, limiter.getPending());
+    }
+
+    @Test
+    void urgentSendOvertakesQueuedBulkSends() throws InterruptedException {
+        InFlightLimiter limiter = new InFlightLimiter(1, 100, 10);
+        List<String> started = new ArrayList<>();
+
+        limiter.submit(() -> started.add("blocker"), CommandPriority.BULK);
+        for (int i = 0; i < 5; i++) {
+            limiter.submit(() -> started.add("bulk"), CommandPriority.BULK);
+        }
+        limiter.submit(() -> started.add("urgent"), CommandPriority.URGENT);
+        assertEquals(6, limiter.getPending());
+
+        limiter.release();
+
+        assertEquals(List.of("blocker", "urgent"), started);
+    }
+
+    @Test
+    void lanesAreDrainedInProportionToTheirWeights() throws InterruptedException {
+        InFlightLimiter limiter = new InFlightLimiter(1, 1_000, 1_000);
+        List<CommandPriority> started = new ArrayList<>();
+
+        limiter.submit(() -> { }, CommandPriority.BULK);
+        for (int i = 0; i < 100; i++) {
+            for (CommandPriority priority : CommandPriority.values()) {
+                limiter.submit(() -> started.add(priority), priority);
+            }
+        }
+        int total = 0;
+        for (CommandPriority priority : CommandPriority.values()) {
+            total += priority.getWeight();
+        }
+        for (int i = 0; i < total * 5; i++) {
+            limiter.release();
+        }
+
+        for (CommandPriority priority : CommandPriority.values()) {
+            long count = started.stream().filter(p -> p == priority).count();
+            assertEquals(priority.getWeight() * 5L, count, "dispatch slots for " + priority);
+        }
+    }
+
+    @Test
+    void urgentSubmitDoesNotBlockWhenQueueIsFull() throws InterruptedException {
+        InFlightLimiter limiter = new InFlightLimiter(1, 1, 10);
+        limiter.submit(() -> { }, CommandPriority.BULK);
+        limiter.submit(() -> { }, CommandPriority.BULK);
+
+        limiter.submit(() -> { }, CommandPriority.URGENT);
+
+        assertEquals(2, limiter.getPending());
+        assertEquals(1, limiter.getLaneStats().get(CommandPriority.URGENT.name()).get("depth"));
+    }
+
+    @Test
+    void urgentSubmitIsRefusedWhenTheUrgentQueueIsFull() throws InterruptedException {
+        InFlightLimiter limiter = new InFlightLimiter(1, 100, 2);
+        List<String> started = new ArrayList<>();
+        limiter.submit(() -> started.add("first"), CommandPriority.NORMAL);
+        limiter.submit(() -> started.add("urgent-1"), CommandPriority.URGENT);
+        limiter.submit(() -> started.add("urgent-2"), CommandPriority.URGENT);
+
+        assertThrows(RejectedExecutionException.class, () -> limiter.submit(() -> started.add("urgent-3"), CommandPriority.URGENT));
+        assertEquals(1, limiter.getUrgentRefused());
+        // Retries are never refused, and an urgent slot frees up once a queued urgent send starts.
+        limiter.requeue(() -> started.add("retry"), CommandPriority.URGENT);
+        limiter.release();
+        limiter.submit(() -> started.add("urgent-4"), CommandPriority.URGENT);
+
+        assertEquals(List.of("first", "urgent-1"), started);
+        assertEquals(3, limiter.getPending());
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
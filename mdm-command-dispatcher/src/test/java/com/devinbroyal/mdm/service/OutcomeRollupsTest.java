@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.service;
+
+import com.devinbroyal.mdm.domain.CommandResult;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutcomeRollupsTest {
+
+    private static final Instant START = Instant.parse("2025-01-31T10:00:00Z");
+
+    @Test
+    void closedMinutesAreKeptAndAddedUpIntoTheirHour() {
+        TestClock clock = new TestClock(START);
+        OutcomeRollups rollups = new OutcomeRollups(3, 2, clock);
+        rollups.record("InstallApplication", result(CommandResult.Status.ACCEPTED, null));
+        rollups.record("InstallApplication", result(CommandResult.Status.REJECTED, "BadDeviceToken"));
+        clock.advance(Duration.ofMinutes(1));
+        rollups.record("DeviceLock", result(CommandResult.Status.ACCEPTED, null));
+        clock.advance(Duration.ofMinutes(1));
+
+        List<Map<String, Object>> minutes = buckets(rollups.snapshot(false, 3));
+        assertEquals(START.toString(), minutes.get(0).get("start").toString());
+        assertEquals(2L, minutes.get(0).get("total"));
+        assertEquals(Map.of("BadDeviceToken", 1L), minutes.get(0).get("byReason"));
+        assertEquals(Map.of("InstallApplication", Map.of("ACCEPTED", 1L, "REJECTED", 1L)), minutes.get(0).get("byCommandType"));
+        assertEquals(Map.of("DeviceLock", Map.of("ACCEPTED", 1L)), minutes.get(1).get("byCommandType"));
+        assertEquals(0L, minutes.get(2).get("total"));
+
+        // A minute the ring has moved past is cleared before it is reused.
+        clock.advance(Duration.ofMinutes(2));
+        assertEquals(0L, totals(rollups.snapshot(false, 3)).get("total"));
+
+        Map<String, Object> hours = rollups.snapshot(true, 2);
+        assertEquals(Map.of("ACCEPTED", 2L, "REJECTED", 1L), totals(hours).get("byStatus"));
+        assertEquals(3L, buckets(hours).get(1).get("total"));
+        clock.advance(Duration.ofHours(1));
+        assertEquals(3L, buckets(rollups.snapshot(true, 2)).get(0).get("total"));
+        assertThrows(IllegalArgumentException.class, () -> rollups.snapshot(true, 3));
+    }
+
+    @Test
+    void namesBeyondTheLimitAreCountedAsOther() {
+        OutcomeRollups rollups = new OutcomeRollups(1, 1, new TestClock(START));
+        for (int i = 0; i < OutcomeRollups.MAX_NAMES + 5; i++) {
+            rollups.record("Type" + i, result(CommandResult.Status.REJECTED, "Reason" + i));
+        }
+        rollups.record(null, result(CommandResult.Status.ACKNOWLEDGED, null));
+
+        Map<String, Object> totals = totals(rollups.snapshot(false, 1));
+        Map<?, ?> byReason = (Map<?, ?>) totals.get("byReason");
+        assertEquals(OutcomeRollups.MAX_NAMES, byReason.size());
+        assertEquals(6L, byReason.get(OutcomeRollups.OTHER));
+        Map<?, ?> byCommandType = (Map<?, ?>) totals.get("byCommandType");
+        // The unknown type arrived after the table was full.
+        assertNull(byCommandType.get(OutcomeRollups.UNKNOWN_COMMAND_TYPE));
+        assertEquals(Map.of("REJECTED", 6L, "ACKNOWLEDGED", 1L), byCommandType.get(OutcomeRollups.OTHER));
+    }
+
+    @Test
+    void countsFromConcurrentThreadsAreNotLost() throws InterruptedException {
+        TestClock clock = new TestClock(START);
+        OutcomeRollups rollups = new OutcomeRollups(5, 1, clock);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    rollups.record("DeviceInformation", result(CommandResult.Status.ACCEPTED, null));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40_000L, totals(rollups.snapshot(false, 5)).get("total"));
+        clock.advance(Duration.ofMinutes(1));
+        assertEquals(40_000L, buckets(rollups.snapshot(false, 2)).get(0).get("total"));
+    }
+
+    private static CommandResult result(CommandResult.Status status, String reason) {
+        return new CommandResult("uuid", status, reason);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> buckets(Map<String, Object> snapshot) {
+        return (List<Map<String, Object>>) snapshot.get("buckets");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> totals(Map<String, Object> snapshot) {
+        return (Map<String, Object>) snapshot.get("totals");
+    }
+
+    private static final class TestClock extends Clock {
+        private final AtomicReference<Instant> now;
+
+        TestClock(Instant now) {
+            this.now = new AtomicReference<>(now);
+        }
+
+        void advance(Duration duration) {
+            now.updateAndGet(instant -> instant.plus(duration));
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now.get();
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.service;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PayloadTemplateTest {
+
+    private final Gson gson = new Gson();
+
+    @Test
+    void render_splicesCommandUUIDIntoEncodedPayload() {
+        Map<String, Object> command = new LinkedHashMap<>();
+        command.put("RequestType", "DeviceLock");
+        command.put("Message", "Return to \"IT\"");
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("Command", command);
+
+        PayloadTemplate template = PayloadTemplate.compile(gson, payload);
+        Map<String, Object> rendered = gson.fromJson(template.render("UUID-1"), new TypeToken<Map<String, Object>>() {}.getType());
+
+        assertEquals("UUID-1", rendered.get("CommandUUID"));
+        assertEquals(command, rendered.get("Command"));
+    }
+
+    @Test
+    void render_replacesExistingCommandUUID() {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("CommandUUID", "caller-supplied");
+
+        PayloadTemplate template = PayloadTemplate.compile(gson, payload);
+
+        assertEquals("{\"CommandUUID\":\"UUID-2\"}", template.render("UUID-2"));
+    }
+
+    @Test
+    void newCommandUUID_producesDistinctVersion4UUIDs() {
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            UUID uuid = UUID.fromString(PayloadTemplate.newCommandUUID());
+            assertEquals(4, uuid.version());
+            assertEquals(2, uuid.variant());
+            assertTrue(seen.add(uuid.toString()));
+        }
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */
+
+package com.devinbroyal.mdm.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryPolicyTest {
+
+    @Test
+    void hasAttemptsLeft_honoursAttemptBudget() {
+        RetryPolicy policy = new RetryPolicy(3, 100, 1_000);
+
+        assertTrue(policy.hasAttemptsLeft(1));
+        assertTrue(policy.hasAttemptsLeft(2));
+        assertFalse(policy.hasAttemptsLeft(3));
+    }
+
+    @Test
+    void nextDelayMillis_staysWithinExponentialCeiling() {
+        RetryPolicy policy = new RetryPolicy(10, 100, 1_000);
+
+        for (int i = 0; i < 500; i++) {
+            assertTrue(policy.nextDelayMillis(1) <= 100);
+            assertTrue(policy.nextDelayMillis(3) <= 400);
+            assertTrue(policy.nextDelayMillis(8) <= 1_000);
+        }
+    }
+
+    @Test
+    void nextDelayMillis_doesNotOverflowForLargeAttempts() {
+        RetryPolicy policy = new RetryPolicy(Integer.MAX_VALUE, 1_000, 60_000);
+
+        long delay = policy.nextDelayMillis(200);
+
+        assertTrue(delay >= 0 && delay <= 60_000);
+    }
+
+    @Test
+    void classifier_separatesTransientFromPermanentRejections() {
+        assertTrue(ApnsRejectionClassifier.isRetryable("TooManyRequests"));
+        assertTrue(ApnsRejectionClassifier.isRetryable("ServiceUnavailable"));
+        assertTrue(ApnsRejectionClassifier.isRetryable("InternalServerError"));
+        assertFalse(ApnsRejectionClassifier.isRetryable("BadDeviceToken"));
+        assertFalse(ApnsRejectionClassifier.isRetryable("Unregistered"));
+        assertFalse(ApnsRejectionClassifier.isRetryable("SomeFutureReason"));
+        assertTrue(ApnsRejectionClassifier.isRetryable(new IOException("connection reset")));
+        assertFalse(ApnsRejectionClassifier.isRetryable(new IllegalArgumentException("bad payload")));
+    }
+}
+
+/*
+ * Copyright © 2025 Devin B. Royal.
+ * All Rights Reserved.
+ */